@@ -0,0 +1,143 @@
+#!/usr/bin/env python3
+"""
+Benchmark de rendimiento con muchos clientes MCP simultáneos (POST /mcp).
+
+Sirve para comparar el servidor con hilos de plataforma (Tomcat: 200 hilos)
+y con hilos virtuales (spring.threads.virtual.enabled=true). Cada cliente
+es un hilo con su propia conexión HTTP keep-alive que repite tools/call
+durante --duration segundos.
+
+Ejemplo (dos servidores, uno en cada modo):
+
+  java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --server.port=8082
+  java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --server.port=8083 \\
+      --spring.threads.virtual.enabled=true
+
+  python3 bench/concurrent_clients.py \\
+      "plataforma=http://localhost:8082/mcp" \\
+      "virtuales=http://localhost:8083/mcp" \\
+      --clients 1000 --duration 30
+
+La herramienta por defecto (find_users_by_department) siempre va a la BD:
+find_user_by_id y execute_count_by_department responden desde memoria.
+Después se puede mirar GET /mcp/metrics (virtualThreads.pinning) del
+servidor con hilos virtuales.
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import http.client
+import json
+import sys
+import threading
+import time
+import urllib.parse
+
+
+def percentile(sorted_values, p):
+    index = min(len(sorted_values) - 1, int(round(p / 100.0 * (len(sorted_values) - 1))))
+    return sorted_values[index]
+
+
+class Client(threading.Thread):
+    def __init__(self, url, body, start_event, stop_at):
+        super().__init__(daemon=True)
+        self.url = url
+        self.body = body
+        self.start_event = start_event
+        self.stop_at = stop_at
+        self.latencies = []
+        self.errors = 0
+
+    def connect(self):
+        return http.client.HTTPConnection(self.url.hostname, self.url.port or 80, timeout=60)
+
+    def run(self):
+        connection = self.connect()
+        headers = {"Content-Type": "application/json", "Accept": "application/json, text/event-stream"}
+        try:
+            connection.connect()
+        except OSError:
+            pass  # se reintenta en la primera petición
+        self.start_event.wait()
+        while time.monotonic() < self.stop_at:
+            start = time.perf_counter_ns()
+            try:
+                connection.request("POST", self.url.path, body=self.body, headers=headers)
+                response = connection.getresponse()
+                message = json.loads(response.read())
+                ok = response.status == 200 and "error" not in message and not message.get("result", {}).get("isError")
+            except (OSError, http.client.HTTPException, ValueError):
+                ok = False
+                connection.close()
+                connection = self.connect()
+            if ok:
+                self.latencies.append((time.perf_counter_ns() - start) / 1_000_000.0)
+            else:
+                self.errors += 1
+        connection.close()
+
+
+def run(label, url, tool, arguments, clients, duration, ramp):
+    body = json.dumps({"jsonrpc": "2.0", "id": 1, "method": "tools/call",
+                       "params": {"name": tool, "arguments": arguments}}).encode("utf-8")
+    start_event = threading.Event()
+    stop_at = time.monotonic() + ramp + duration
+    workers = [Client(urllib.parse.urlparse(url), body, start_event, stop_at) for _ in range(clients)]
+    for worker in workers:
+        worker.start()
+
+    time.sleep(ramp)  # todos los hilos creados y conectados antes de medir
+    started = time.monotonic()
+    start_event.set()
+    for worker in workers:
+        worker.join()
+    elapsed = time.monotonic() - started
+
+    latencies = sorted(latency for worker in workers for latency in worker.latencies)
+    errors = sum(worker.errors for worker in workers)
+    if not latencies:
+        raise RuntimeError(f"{label}: ninguna llamada ha terminado bien ({errors} errores)")
+    return {
+        "target": label,
+        "clients": clients,
+        "calls": len(latencies),
+        "errors": errors,
+        "req_s": round(len(latencies) / elapsed, 1),
+        "p50_ms": round(percentile(latencies, 50), 2),
+        "p99_ms": round(percentile(latencies, 99), 2),
+        "max_ms": round(latencies[-1], 2),
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Rendimiento de tools/call con muchos clientes simultáneos")
+    parser.add_argument("targets", nargs="+", help='"etiqueta=url de POST /mcp"')
+    parser.add_argument("--tool", default="find_users_by_department")
+    parser.add_argument("--args", default='{"department": "IT"}', help="argumentos JSON de la herramienta")
+    parser.add_argument("-c", "--clients", type=int, default=1000)
+    parser.add_argument("-d", "--duration", type=float, default=30, help="segundos de medida")
+    parser.add_argument("--ramp", type=float, default=5, help="segundos para crear los clientes")
+    options = parser.parse_args()
+
+    # 1000 hilos de Python: pilas pequeñas para no agotar memoria
+    threading.stack_size(256 * 1024)
+
+    arguments = json.loads(options.args)
+    results = []
+    for target in options.targets:
+        label, _, url = target.partition("=")
+        if not url:
+            parser.error(f"destino sin etiqueta: {target}")
+        print(f"Midiendo {label} con {options.clients} clientes...", file=sys.stderr)
+        results.append(run(label, url, options.tool, arguments, options.clients, options.duration, options.ramp))
+
+    columns = ["target", "clients", "calls", "errors", "req_s", "p50_ms", "p99_ms", "max_ms"]
+    print("\t".join(columns))
+    for result in results:
+        print("\t".join(str(result[column]) for column in columns))
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,140 @@
+#!/usr/bin/env python3
+"""
+Inserción masiva: endpoint normal (/mcp/batch_insert_users, el cuerpo
+entero como lista) frente a streaming (/mcp/batch_insert_users/stream,
+UserIngestService).
+
+Para cada endpoint se arranca un servidor nuevo, se envía un único cuerpo
+de --rows usuarios (generado mientras se envía, con Transfer-Encoding:
+chunked) y se mide:
+- filas/s: filas insertadas / tiempo de la petición
+- pico de memoria: VmHWM del proceso java (/proc/<pid>/status, solo Linux)
+
+Con -Xmx bajo (p.ej. -- -Xmx256m) el endpoint normal acaba en
+OutOfMemoryError con cuerpos grandes; el de streaming no.
+
+Ejemplo:
+
+  ./gradlew bootJar
+  python3 bench/ingest_memory.py build/libs/mcp-server-ra2-jdbc-1.0.0.jar --rows 1000000 -- -Xmx512m
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import http.client
+import json
+import subprocess
+import sys
+import time
+import urllib.error
+import urllib.request
+
+ENDPOINTS = {
+    "buffered": ("/mcp/batch_insert_users", "application/json"),
+    "stream": ("/mcp/batch_insert_users/stream?format=ndjson&commitMode=PER_CHUNK", "application/x-ndjson"),
+}
+
+DEPARTMENTS = ["IT", "HR", "Sales", "Finance"]
+
+
+def wait_until_up(port, process, timeout):
+    url = f"http://localhost:{port}/mcp/health"
+    deadline = time.monotonic() + timeout
+    while time.monotonic() < deadline:
+        if process.poll() is not None:
+            raise RuntimeError(f"El servidor terminó al arrancar (código {process.returncode})")
+        try:
+            with urllib.request.urlopen(url, timeout=1) as response:
+                if response.status == 200 and b'"UP"' in response.read():
+                    return
+        except (urllib.error.URLError, OSError):
+            pass
+        time.sleep(0.1)
+    raise RuntimeError(f"{url} no respondió UP en {timeout} s")
+
+
+def peak_rss_mb(pid):
+    """VmHWM (pico de memoria residente) del proceso, en MB"""
+    with open(f"/proc/{pid}/status") as status:
+        for line in status:
+            if line.startswith("VmHWM:"):
+                return int(line.split()[1]) / 1024.0
+    return float("nan")
+
+
+def body(rows, endpoint, piece=1000):
+    """Cuerpo generado por trozos de piece usuarios (nunca entero en memoria)"""
+    if endpoint == "buffered":
+        yield b'{"chunkSize": 500, "commitMode": "PER_CHUNK", "users": ['
+    for start in range(0, rows, piece):
+        lines = []
+        for i in range(start, min(rows, start + piece)):
+            user = json.dumps({"name": f"Bench {i}", "email": f"bench-{i}@example.com",
+                               "department": DEPARTMENTS[i % len(DEPARTMENTS)],
+                               "role": "Developer", "active": True})
+            if endpoint == "buffered":
+                lines.append(user if i == 0 else "," + user)
+            else:
+                lines.append(user + "\n")
+        yield "".join(lines).encode("utf-8")
+    if endpoint == "buffered":
+        yield b"]}"
+
+
+def run_once(jar, endpoint, rows, port, jvm_args, timeout):
+    command = ["java", *jvm_args, "-jar", jar, f"--server.port={port}"]
+    process = subprocess.Popen(command, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+    try:
+        wait_until_up(port, process, timeout)
+        path, content_type = ENDPOINTS[endpoint]
+        connection = http.client.HTTPConnection("localhost", port, timeout=timeout)
+        start = time.perf_counter()
+        connection.request("POST", path, body=body(rows, endpoint),
+                           headers={"Content-Type": content_type}, encode_chunked=True)
+        response = connection.getresponse()
+        payload = response.read()
+        elapsed = time.perf_counter() - start
+        peak = peak_rss_mb(process.pid)
+
+        inserted = 0
+        try:
+            inserted = json.loads(payload).get("result") or 0
+        except ValueError:
+            pass
+        return response.status, inserted, elapsed, peak
+    finally:
+        process.terminate()
+        try:
+            process.wait(timeout=30)
+        except subprocess.TimeoutExpired:
+            process.kill()
+            process.wait()
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Memoria y filas/s: batch_insert_users normal frente a streaming")
+    parser.add_argument("jar", help="jar de la aplicación (./gradlew bootJar)")
+    parser.add_argument("--rows", type=int, default=200000, help="usuarios en el cuerpo")
+    parser.add_argument("--port", type=int, default=8093)
+    parser.add_argument("--timeout", type=float, default=600.0, help="segundos máximos por petición")
+    parser.add_argument("-e", "--endpoint", action="append", choices=list(ENDPOINTS),
+                        help="endpoints a medir (por defecto los dos)")
+    parser.add_argument("jvm_args", nargs="*", help="argumentos para la JVM (después de --)")
+    args = parser.parse_args()
+
+    print(f"{'endpoint':<10}{'HTTP':>6}{'filas':>12}{'segundos':>10}{'filas/s':>12}{'pico MB':>10}")
+    for endpoint in args.endpoint or list(ENDPOINTS):
+        try:
+            status, inserted, elapsed, peak = run_once(args.jar, endpoint, args.rows, args.port,
+                                                       args.jvm_args, args.timeout)
+        except (OSError, http.client.HTTPException) as e:
+            print(f"{endpoint:<10} error: {e}")
+            continue
+        rate = inserted / elapsed if elapsed > 0 else 0.0
+        print(f"{endpoint:<10}{status:>6}{inserted:>12}{elapsed:>10.1f}{rate:>12.0f}{peak:>10.0f}")
+        sys.stdout.flush()
+
+
+if __name__ == "__main__":
+    main()
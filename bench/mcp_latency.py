@@ -0,0 +1,142 @@
+#!/usr/bin/env python3
+"""
+Benchmark de latencia extremo a extremo de tools/call por distintos caminos MCP.
+
+Cada destino es "etiqueta=especificación":
+  - http://...   -> transporte Streamable HTTP nativo (POST /mcp)
+  - otro texto   -> comando que habla MCP por stdio (un mensaje JSON por línea)
+
+Ejemplo (servidor ya arrancado con ./gradlew bootRun para los dos primeros):
+
+  python3 bench/mcp_latency.py \\
+      "adaptador=python3 mcp_adapter.py" \\
+      "http=http://localhost:8082/mcp" \\
+      "stdio=java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --spring.profiles.active=stdio" \\
+      --tool find_user_by_id --args '{"userId": 1}' -n 2000
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import json
+import shlex
+import statistics
+import subprocess
+import sys
+import time
+import urllib.request
+
+
+class HttpTarget:
+    def __init__(self, url):
+        self.url = url
+
+    def request(self, message):
+        body = json.dumps(message).encode("utf-8")
+        req = urllib.request.Request(self.url, data=body, headers={
+            "Content-Type": "application/json",
+            "Accept": "application/json, text/event-stream",
+        })
+        with urllib.request.urlopen(req, timeout=30) as resp:
+            payload = resp.read()
+        return json.loads(payload) if payload else None
+
+    def close(self):
+        pass
+
+
+class StdioTarget:
+    def __init__(self, command):
+        self.proc = subprocess.Popen(shlex.split(command), stdin=subprocess.PIPE, stdout=subprocess.PIPE,
+                                     stderr=subprocess.DEVNULL, text=True, encoding="utf-8", bufsize=1)
+
+    def request(self, message):
+        self.proc.stdin.write(json.dumps(message) + "\n")
+        self.proc.stdin.flush()
+        if "id" not in message:
+            return None
+        while True:
+            line = self.proc.stdout.readline()
+            if not line:
+                raise RuntimeError("el proceso stdio ha terminado")
+            response = json.loads(line)
+            if response.get("id") == message["id"]:
+                return response
+
+    def close(self):
+        self.proc.stdin.close()
+        try:
+            self.proc.wait(timeout=10)
+        except subprocess.TimeoutExpired:
+            self.proc.kill()
+
+
+def open_target(spec):
+    return HttpTarget(spec) if spec.startswith(("http://", "https://")) else StdioTarget(spec)
+
+
+def percentile(sorted_values, p):
+    index = min(len(sorted_values) - 1, int(round(p / 100.0 * (len(sorted_values) - 1))))
+    return sorted_values[index]
+
+
+def run(label, spec, tool, arguments, iterations, warmup):
+    target = open_target(spec)
+    try:
+        target.request({"jsonrpc": "2.0", "id": 0, "method": "initialize",
+                        "params": {"protocolVersion": "2025-03-26", "capabilities": {},
+                                   "clientInfo": {"name": "mcp_latency", "version": "1.0"}}})
+        target.request({"jsonrpc": "2.0", "method": "notifications/initialized"})
+
+        samples = []
+        for i in range(warmup + iterations):
+            message = {"jsonrpc": "2.0", "id": i + 1, "method": "tools/call",
+                       "params": {"name": tool, "arguments": arguments}}
+            start = time.perf_counter_ns()
+            response = target.request(message)
+            elapsed = time.perf_counter_ns() - start
+            if "error" in response or response["result"].get("isError"):
+                raise RuntimeError(f"{label}: la llamada ha fallado: {response}")
+            if i >= warmup:
+                samples.append(elapsed / 1000.0)
+    finally:
+        target.close()
+
+    samples.sort()
+    return {
+        "target": label,
+        "calls": len(samples),
+        "mean_us": round(statistics.fmean(samples), 1),
+        "p50_us": round(percentile(samples, 50), 1),
+        "p90_us": round(percentile(samples, 90), 1),
+        "p99_us": round(percentile(samples, 99), 1),
+        "max_us": round(samples[-1], 1),
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Latencia de tools/call por transporte MCP")
+    parser.add_argument("targets", nargs="+", help='"etiqueta=url o comando stdio"')
+    parser.add_argument("--tool", default="find_user_by_id")
+    parser.add_argument("--args", default='{"userId": 1}', help="argumentos JSON de la herramienta")
+    parser.add_argument("-n", "--iterations", type=int, default=1000)
+    parser.add_argument("--warmup", type=int, default=200)
+    options = parser.parse_args()
+
+    arguments = json.loads(options.args)
+    results = []
+    for target in options.targets:
+        label, _, spec = target.partition("=")
+        if not spec:
+            parser.error(f"destino sin etiqueta: {target}")
+        print(f"Midiendo {label}...", file=sys.stderr)
+        results.append(run(label, spec, options.tool, arguments, options.iterations, options.warmup))
+
+    columns = ["target", "calls", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"]
+    print("\t".join(columns))
+    for result in results:
+        print("\t".join(str(result[column]) for column in columns))
+
+
+if __name__ == "__main__":
+    main()
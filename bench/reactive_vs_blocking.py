@@ -0,0 +1,247 @@
+#!/usr/bin/env python3
+"""
+Benchmark de lecturas grandes: pila bloqueante (Tomcat + JDBC, por defecto)
+frente a la pila reactiva (perfil "reactive": Netty + R2DBC).
+
+Mide, para cada endpoint, el rendimiento con --clients clientes simultáneos
+y la memoria residente (RSS) máxima del proceso servidor durante la prueba,
+leída de /proc/<pid>/status (solo Linux; sin pid no se mide memoria).
+La JVM casi nunca devuelve memoria al sistema: el pico de un endpoint
+incluye el de los anteriores. Para aislar uno, usar -e y reiniciar.
+
+Endpoints por defecto:
+- find_all_users          lista completa en un único JSON (las dos pilas)
+- find_all_users/stream   NDJSON fila a fila (las dos pilas)
+- search_users            limit grande en un único JSON (las dos pilas)
+- search_users/stream     NDJSON fila a fila (solo reactiva)
+
+Ejemplo (un servidor de cada tipo, cada uno con su propia BD en memoria;
+el jar debe estar construido con ./gradlew -Preactive bootJar):
+
+  java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --server.port=8082 &
+  BLOCKING=$!
+  java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --server.port=8083 \\
+      --spring.profiles.active=reactive &
+  REACTIVE=$!
+
+  python3 bench/reactive_vs_blocking.py \\
+      "bloqueante=http://localhost:8082/mcp@$BLOCKING" \\
+      "reactiva=http://localhost:8083/mcp@$REACTIVE" \\
+      --seed 200000 --clients 50 --duration 20
+
+--seed inserta N usuarios en cada servidor (batch_insert_users por
+/mcp/call) antes de medir. Conviene arrancar los servidores con el mismo
+-Xmx para que la comparación de memoria tenga sentido.
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import http.client
+import json
+import sys
+import threading
+import time
+import urllib.parse
+import uuid
+
+ENDPOINTS = {
+    "find_all_users": {},
+    "find_all_users/stream": {},
+    "search_users": {"active": True, "limit": 100000},
+    "search_users/stream": {"active": True, "limit": 100000},
+}
+
+SEED_CHUNK = 5000
+
+
+def percentile(sorted_values, p):
+    index = min(len(sorted_values) - 1, int(round(p / 100.0 * (len(sorted_values) - 1))))
+    return sorted_values[index]
+
+
+def rss_kb(pid):
+    try:
+        with open(f"/proc/{pid}/status") as status:
+            for line in status:
+                if line.startswith("VmRSS:"):
+                    return int(line.split()[1])
+    except OSError:
+        pass
+    return None
+
+
+class RssSampler(threading.Thread):
+    """Muestrea la RSS del servidor cada 50 ms y guarda el máximo"""
+
+    def __init__(self, pid):
+        super().__init__(daemon=True)
+        self.pid = pid
+        self.peak_kb = rss_kb(pid) or 0
+        self.stopped = threading.Event()
+
+    def run(self):
+        while not self.stopped.wait(0.05):
+            value = rss_kb(self.pid)
+            if value is not None:
+                self.peak_kb = max(self.peak_kb, value)
+
+
+class Client(threading.Thread):
+    def __init__(self, url, path, body, start_event, stop_at):
+        super().__init__(daemon=True)
+        self.url = url
+        self.path = path
+        self.body = body
+        self.start_event = start_event
+        self.stop_at = stop_at
+        self.latencies = []
+        self.rows = 0
+        self.bytes = 0
+        self.errors = 0
+
+    def connect(self):
+        return http.client.HTTPConnection(self.url.hostname, self.url.port or 80, timeout=300)
+
+    def call(self, connection):
+        """Lee la respuesta por trozos, como haría un cliente real con un stream"""
+        headers = {"Content-Type": "application/json", "Accept": "application/json, application/x-ndjson"}
+        connection.request("POST", self.path, body=self.body, headers=headers)
+        response = connection.getresponse()
+        if response.status != 200:
+            response.read()
+            return None
+        if response.getheader("Content-Type", "").startswith("application/x-ndjson"):
+            rows, size = 0, 0
+            for line in response:
+                size += len(line)
+                if line.strip():
+                    rows += 1
+            return rows, size
+        payload = response.read()
+        return json.loads(payload).get("count", 0), len(payload)
+
+    def run(self):
+        connection = self.connect()
+        self.start_event.wait()
+        while time.monotonic() < self.stop_at:
+            start = time.perf_counter_ns()
+            try:
+                result = self.call(connection)
+            except (OSError, http.client.HTTPException, ValueError):
+                result = None
+                connection.close()
+                connection = self.connect()
+            if result is None:
+                self.errors += 1
+                continue
+            self.latencies.append((time.perf_counter_ns() - start) / 1_000_000.0)
+            self.rows += result[0]
+            self.bytes += result[1]
+        connection.close()
+
+
+def seed(base_url, count):
+    url = urllib.parse.urlparse(base_url)
+    connection = http.client.HTTPConnection(url.hostname, url.port or 80, timeout=300)
+    prefix = uuid.uuid4().hex[:8]
+    departments = ["IT", "HR", "Finance", "Marketing", "Sales"]
+    inserted = 0
+    while inserted < count:
+        size = min(SEED_CHUNK, count - inserted)
+        users = [{"name": f"Bench {inserted + i}",
+                  "email": f"bench-{prefix}-{inserted + i}@example.com",
+                  "department": departments[(inserted + i) % len(departments)],
+                  "role": "Developer",
+                  "active": (inserted + i) % 4 != 0}
+                 for i in range(size)]
+        connection.request("POST", url.path + "/call/batch_insert_users",
+                           body=json.dumps({"users": users}).encode("utf-8"),
+                           headers={"Content-Type": "application/json"})
+        response = connection.getresponse()
+        body = response.read()
+        if response.status != 200:
+            raise RuntimeError(f"Error insertando usuarios en {base_url}: {response.status} {body[:200]!r}")
+        inserted += size
+    connection.close()
+
+
+def run(label, base_url, pid, endpoint, clients, duration):
+    url = urllib.parse.urlparse(base_url)
+    path = url.path + "/" + endpoint
+    body = json.dumps(ENDPOINTS[endpoint]).encode("utf-8")
+
+    sampler = RssSampler(pid) if pid else None
+    start_event = threading.Event()
+    stop_at = time.monotonic() + duration
+    workers = [Client(url, path, body, start_event, stop_at) for _ in range(clients)]
+    for worker in workers:
+        worker.start()
+    if sampler:
+        sampler.start()
+
+    started = time.monotonic()
+    start_event.set()
+    for worker in workers:
+        worker.join()
+    elapsed = time.monotonic() - started
+    if sampler:
+        sampler.stopped.set()
+        sampler.join()
+
+    latencies = sorted(latency for worker in workers for latency in worker.latencies)
+    errors = sum(worker.errors for worker in workers)
+    if not latencies:
+        return {"target": label, "endpoint": endpoint, "errors": errors}
+    return {
+        "target": label,
+        "endpoint": endpoint,
+        "calls": len(latencies),
+        "errors": errors,
+        "req_s": round(len(latencies) / elapsed, 2),
+        "rows_s": round(sum(worker.rows for worker in workers) / elapsed),
+        "mb_s": round(sum(worker.bytes for worker in workers) / elapsed / 1_000_000, 1),
+        "p50_ms": round(percentile(latencies, 50), 1),
+        "p99_ms": round(percentile(latencies, 99), 1),
+        "peak_rss_mb": round(sampler.peak_kb / 1024) if sampler else "-",
+    }
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Lecturas grandes: pila bloqueante frente a reactiva")
+    parser.add_argument("targets", nargs="+", help='"etiqueta=url base /mcp[@pid del servidor]"')
+    parser.add_argument("-e", "--endpoints", default=",".join(ENDPOINTS),
+                        help="endpoints separados por comas (%(default)s)")
+    parser.add_argument("-c", "--clients", type=int, default=50)
+    parser.add_argument("-d", "--duration", type=float, default=20, help="segundos por endpoint")
+    parser.add_argument("--seed", type=int, default=0, help="usuarios a insertar antes de medir")
+    options = parser.parse_args()
+
+    endpoints = [endpoint.strip() for endpoint in options.endpoints.split(",") if endpoint.strip()]
+    for endpoint in endpoints:
+        if endpoint not in ENDPOINTS:
+            parser.error(f"endpoint desconocido: {endpoint}")
+
+    results = []
+    for target in options.targets:
+        label, _, rest = target.partition("=")
+        if not rest:
+            parser.error(f"destino sin etiqueta: {target}")
+        base_url, _, pid = rest.partition("@")
+        base_url = base_url.rstrip("/")
+        if options.seed:
+            print(f"Insertando {options.seed} usuarios en {label}...", file=sys.stderr)
+            seed(base_url, options.seed)
+        for endpoint in endpoints:
+            print(f"Midiendo {label} {endpoint} con {options.clients} clientes...", file=sys.stderr)
+            results.append(run(label, base_url, int(pid) if pid else None, endpoint,
+                               options.clients, options.duration))
+
+    columns = ["target", "endpoint", "calls", "errors", "req_s", "rows_s", "mb_s", "p50_ms", "p99_ms", "peak_rss_mb"]
+    print("\t".join(columns))
+    for result in results:
+        print("\t".join(str(result.get(column, "-")) for column in columns))
+
+
+if __name__ == "__main__":
+    main()
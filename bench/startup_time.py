@@ -0,0 +1,148 @@
+#!/usr/bin/env python3
+"""
+Tiempo de arranque: desde que se lanza la JVM hasta que /mcp/health
+responde UP, con la BD inicializada por scripts (ra2.jdbc.init.mode=script)
+o desde el snapshot (ra2.jdbc.init.mode=snapshot, ver DatabaseSnapshot).
+
+Además del modo de la BD se puede elegir cómo se lanza la JVM (--variant):
+- jar: java -jar con el jar de Boot
+- cds: jar extraído en --cds-dir con el archivo AppCDS (./gradlew cdsArchive)
+- aot: java -jar con -Dspring.aot.enabled=true (jar de ./gradlew -Paot bootJar)
+- cds+aot: las dos cosas (./gradlew -Paot cdsArchive)
+
+Cada combinación se arranca --runs veces (un proceso nuevo cada vez) y
+se muestran la mediana, el mínimo, el máximo y la mejora de la mediana
+respecto a la primera fila. Antes de medir el modo snapshot se hace un
+arranque sin medir que genera el snapshot si no existe (o usar antes
+./gradlew dbSnapshot).
+
+Ejemplo:
+
+  ./gradlew bootJar
+  python3 bench/startup_time.py build/libs/mcp-server-ra2-jdbc-1.0.0.jar --runs 10
+
+  # jar normal frente a CDS y CDS + Spring AOT
+  ./gradlew -Paot cdsArchive
+  python3 bench/startup_time.py build/libs/mcp-server-ra2-jdbc-1.0.0.jar --runs 10 \\
+      -v jar -v cds -v cds+aot -m script
+
+Los argumentos después de -- se pasan a la JVM (p.ej. -- -Xshare:auto).
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import os
+import statistics
+import subprocess
+import sys
+import tempfile
+import time
+import urllib.error
+import urllib.request
+
+MODES = ["script", "snapshot"]
+
+VARIANTS = ["jar", "cds", "aot", "cds+aot"]
+
+
+def wait_until_up(port, process, timeout):
+    url = f"http://localhost:{port}/mcp/health"
+    deadline = time.monotonic() + timeout
+    while time.monotonic() < deadline:
+        if process.poll() is not None:
+            raise RuntimeError(f"El servidor terminó al arrancar (código {process.returncode})")
+        try:
+            with urllib.request.urlopen(url, timeout=1) as response:
+                if response.status == 200 and b'"UP"' in response.read():
+                    return
+        except (urllib.error.URLError, OSError):
+            pass
+        time.sleep(0.01)
+    raise RuntimeError(f"{url} no respondió UP en {timeout} s")
+
+
+def java_command(jar, variant, cds_dir):
+    """java ... -jar para la variante de lanzamiento"""
+    command = ["java"]
+    if variant.startswith("cds"):
+        archive = os.path.join(cds_dir, "app.jsa")
+        if not os.path.exists(archive):
+            raise RuntimeError(f"No existe {archive}: ejecuta antes ./gradlew cdsArchive")
+        # El archivo solo vale para el jar extraído con el que se generó
+        command.append(f"-XX:SharedArchiveFile={archive}")
+        jar = os.path.join(cds_dir, os.path.basename(jar))
+    if variant.endswith("aot"):
+        command.append("-Dspring.aot.enabled=true")
+    return command, os.path.abspath(jar)
+
+
+def start_once(jar, variant, cds_dir, port, mode, snapshot_dir, jvm_args, timeout):
+    """Arranca un servidor y devuelve los ms hasta /mcp/health UP"""
+    java, jar = java_command(jar, variant, cds_dir)
+    command = [*java, *jvm_args, "-jar", jar,
+               f"--server.port={port}",
+               f"--ra2.jdbc.init.mode={mode}",
+               f"--ra2.jdbc.init.snapshot-dir={snapshot_dir}"]
+    start = time.perf_counter()
+    process = subprocess.Popen(command, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+    try:
+        wait_until_up(port, process, timeout)
+        return (time.perf_counter() - start) * 1000.0
+    finally:
+        process.terminate()
+        try:
+            process.wait(timeout=30)
+        except subprocess.TimeoutExpired:
+            process.kill()
+            process.wait()
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Tiempo de arranque con y sin snapshot de la BD, CDS y AOT")
+    parser.add_argument("jar", help="jar de la aplicación (./gradlew bootJar)")
+    parser.add_argument("--runs", type=int, default=5, help="arranques por modo")
+    parser.add_argument("--port", type=int, default=8092)
+    parser.add_argument("--timeout", type=float, default=120.0, help="segundos máximos por arranque")
+    parser.add_argument("--snapshot-dir", default=None,
+                        help="directorio del snapshot (por defecto uno temporal)")
+    parser.add_argument("-m", "--mode", action="append", choices=MODES, help="modos a medir (por defecto todos)")
+    parser.add_argument("-v", "--variant", action="append", choices=VARIANTS,
+                        help="cómo se lanza la JVM (por defecto solo jar)")
+    parser.add_argument("--cds-dir", default="build/cds/app", help="jar extraído y app.jsa (./gradlew cdsArchive)")
+    parser.add_argument("jvm_args", nargs="*", help="argumentos para la JVM (después de --)")
+    args = parser.parse_args()
+
+    snapshot_dir = args.snapshot_dir or tempfile.mkdtemp(prefix="ra2db-snapshot-")
+    modes = args.mode or MODES
+
+    variants = args.variant or ["jar"]
+
+    print(f"{'variante':<10}{'modo':<10}{'mediana ms':>12}{'mín ms':>10}{'máx ms':>10}{'mejora':>9}")
+    baseline = None
+    for variant in variants:
+        for mode in modes:
+            def start():
+                return start_once(args.jar, variant, args.cds_dir, args.port, mode, snapshot_dir,
+                                  args.jvm_args, args.timeout)
+
+            if mode == "snapshot":
+                # Genera el snapshot (si no existe) sin contarlo
+                start()
+
+            times = [start() for _ in range(args.runs)]
+            median = statistics.median(times)
+            baseline = baseline or median
+            improvement = (1.0 - median / baseline) * 100.0
+            print(f"{variant:<10}{mode:<10}{median:>12.0f}{min(times):>10.0f}{max(times):>10.0f}"
+                  f"{improvement:>8.0f}%")
+            sys.stdout.flush()
+
+    if not args.snapshot_dir:
+        for name in os.listdir(snapshot_dir):
+            os.remove(os.path.join(snapshot_dir, name))
+        os.rmdir(snapshot_dir)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,234 @@
+#!/usr/bin/env python3
+"""
+Matriz de almacenamiento de H2 (ra2.jdbc.storage.*): mem, memFS y file,
+con y sin compresión, con las herramientas existentes y --rows filas.
+
+Para cada configuración arranca un servidor nuevo (un proceso por
+configuración, cada uno con su BD), inserta las filas con
+batch_insert_users y mide la latencia de cada herramienta llamándola
+--calls veces seguidas. Muestra también la memoria residente (RSS) del
+servidor al terminar y el tamaño del fichero de la BD (file).
+
+La caché de usuarios y los contadores por departamento se desactivan
+para medir la BD y no las cachés de la aplicación.
+
+Ejemplo:
+
+  ./gradlew bootJar
+  python3 bench/storage_matrix.py build/libs/mcp-server-ra2-jdbc-1.0.0.jar --rows 1000000
+
+  # Solo algunas configuraciones, y con más caché de páginas
+  python3 bench/storage_matrix.py build/libs/mcp-server-ra2-jdbc-1.0.0.jar \\
+      -c mem -c file -c file+lzf --cache-size-kb 262144
+
+Los argumentos después de -- se pasan a la JVM (p.ej. -- -Xmx2g).
+
+Solo usa la biblioteca estándar de Python.
+"""
+
+import argparse
+import http.client
+import json
+import os
+import random
+import shutil
+import subprocess
+import tempfile
+import time
+import urllib.error
+import urllib.request
+
+# etiqueta -> propiedades ra2.jdbc.storage.*
+CONFIGURATIONS = {
+    "mem": {"mode": "mem"},
+    "memfs": {"mode": "memfs"},
+    "memfs+lzf": {"mode": "memfs", "compress": "true"},
+    "file": {"mode": "file"},
+    "file+lzf": {"mode": "file", "compress": "true"},
+    "file+sync": {"mode": "file", "write-delay": "0ms"},
+}
+
+DEPARTMENTS = ["IT", "HR", "Finance", "Marketing", "Sales"]
+
+SEED_CHUNK = 5000
+
+
+def percentile(sorted_values, p):
+    index = min(len(sorted_values) - 1, int(round(p / 100.0 * (len(sorted_values) - 1))))
+    return sorted_values[index]
+
+
+def rss_mb(pid):
+    try:
+        with open(f"/proc/{pid}/status") as status:
+            for line in status:
+                if line.startswith("VmRSS:"):
+                    return int(line.split()[1]) / 1024.0
+    except OSError:
+        pass
+    return None
+
+
+def directory_mb(path):
+    total = 0
+    for root, _, files in os.walk(path):
+        for name in files:
+            total += os.path.getsize(os.path.join(root, name))
+    return total / (1024.0 * 1024.0)
+
+
+class Server:
+    def __init__(self, jar, port, storage, cache_size_kb, data_dir, jvm_args):
+        properties = dict(storage)
+        properties["path"] = os.path.join(data_dir, "ra2db") if storage["mode"] == "file" else "ra2db"
+        if cache_size_kb:
+            properties["cache-size-kb"] = str(cache_size_kb)
+        command = ["java", *jvm_args, "-jar", jar,
+                   f"--server.port={port}",
+                   "--ra2.cache.users.enabled=false",
+                   "--ra2.counters.departments.enabled=false",
+                   "--logging.level.com.dam.accesodatos=INFO",
+                   "--logging.level.org.springframework.jdbc=INFO"]
+        command += [f"--ra2.jdbc.storage.{name}={value}" for name, value in properties.items()]
+        self.port = port
+        self.process = subprocess.Popen(command, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+
+    def wait_until_up(self, timeout=180):
+        deadline = time.monotonic() + timeout
+        while time.monotonic() < deadline:
+            if self.process.poll() is not None:
+                raise RuntimeError(f"El servidor terminó al arrancar (código {self.process.returncode})")
+            try:
+                with urllib.request.urlopen(f"http://localhost:{self.port}/mcp/health", timeout=1) as response:
+                    if response.status == 200:
+                        return
+            except (urllib.error.URLError, OSError):
+                pass
+            time.sleep(0.1)
+        raise RuntimeError("El servidor no respondió a /mcp/health")
+
+    def stop(self):
+        self.process.terminate()
+        try:
+            self.process.wait(timeout=60)
+        except subprocess.TimeoutExpired:
+            self.process.kill()
+            self.process.wait()
+
+
+class Client:
+    def __init__(self, port):
+        self.connection = http.client.HTTPConnection("localhost", port, timeout=600)
+
+    def call(self, path, body):
+        self.connection.request("POST", "/mcp/" + path, body=json.dumps(body).encode("utf-8"),
+                                headers={"Content-Type": "application/json"})
+        response = self.connection.getresponse()
+        payload = response.read()
+        if response.status != 200:
+            raise RuntimeError(f"{path}: {response.status} {payload[:200]!r}")
+        return payload
+
+    def close(self):
+        self.connection.close()
+
+
+def seed(client, rows):
+    """Inserta rows usuarios; devuelve filas/s"""
+    start = time.perf_counter()
+    inserted = 0
+    while inserted < rows:
+        size = min(SEED_CHUNK, rows - inserted)
+        users = [{"name": f"Bench {inserted + i}",
+                  "email": f"bench-{inserted + i}@example.com",
+                  "department": DEPARTMENTS[(inserted + i) % len(DEPARTMENTS)],
+                  "role": "Developer",
+                  "active": (inserted + i) % 4 != 0}
+                 for i in range(size)]
+        client.call("call/batch_insert_users", {"users": users})
+        inserted += size
+    return rows / (time.perf_counter() - start)
+
+
+def tool_calls(rows):
+    """Herramienta -> función que genera el cuerpo de cada llamada"""
+    max_id = rows + 100
+    return {
+        "find_user_by_id": lambda: {"userId": random.randint(100, max_id)},
+        "find_users_by_ids": lambda: {"userIds": random.sample(range(100, max_id), 100)},
+        "search_users": lambda: {"department": random.choice(DEPARTMENTS), "active": True,
+                                 "limit": 100, "offset": random.randint(0, rows // 10)},
+        "execute_count_by_department": lambda: {"department": random.choice(DEPARTMENTS)},
+        "update_user": lambda: {"userId": random.randint(100, max_id), "name": "Actualizado",
+                                "email": f"upd-{random.getrandbits(48)}@example.com",
+                                "department": "IT", "role": "Developer"},
+        "find_all_users/stream": lambda: {},
+    }
+
+
+def measure(client, path, make_body, calls):
+    latencies = []
+    for _ in range(calls):
+        body = make_body()
+        start = time.perf_counter()
+        client.call(path, body)
+        latencies.append((time.perf_counter() - start) * 1000.0)
+    latencies.sort()
+    return percentile(latencies, 50), percentile(latencies, 99)
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Herramientas MCP con H2 en mem, memFS y file")
+    parser.add_argument("jar", help="jar de la aplicación (./gradlew bootJar)")
+    parser.add_argument("--rows", type=int, default=1_000_000)
+    parser.add_argument("--calls", type=int, default=200, help="llamadas por herramienta")
+    parser.add_argument("--stream-calls", type=int, default=3, help="llamadas a find_all_users/stream")
+    parser.add_argument("--cache-size-kb", type=int, default=0, help="ra2.jdbc.storage.cache-size-kb")
+    parser.add_argument("--port", type=int, default=8093)
+    parser.add_argument("-c", "--config", action="append", choices=list(CONFIGURATIONS),
+                        help="configuraciones a medir (por defecto todas)")
+    parser.add_argument("jvm_args", nargs="*", help="argumentos para la JVM (después de --)")
+    args = parser.parse_args()
+
+    random.seed(42)
+    labels = args.config or list(CONFIGURATIONS)
+    tools = tool_calls(args.rows)
+
+    results = []
+    for label in labels:
+        data_dir = tempfile.mkdtemp(prefix="ra2db-matrix-")
+        server = Server(args.jar, args.port, CONFIGURATIONS[label], args.cache_size_kb, data_dir, args.jvm_args)
+        try:
+            server.wait_until_up()
+            client = Client(args.port)
+            row = {"config": label, "seed": seed(client, args.rows)}
+            for tool, make_body in tools.items():
+                calls = args.stream_calls if tool.endswith("/stream") else args.calls
+                row[tool] = measure(client, tool, make_body, calls)
+            client.close()
+            row["rss"] = rss_mb(server.process.pid)
+        finally:
+            server.stop()
+        row["disk"] = directory_mb(data_dir) if CONFIGURATIONS[label]["mode"] == "file" else None
+        shutil.rmtree(data_dir, ignore_errors=True)
+        results.append(row)
+
+        print(f"\n== {label} ({args.rows} filas) ==")
+        print(f"  inserción: {row['seed']:.0f} filas/s")
+        for tool in tools:
+            p50, p99 = row[tool]
+            print(f"  {tool:<30} p50 {p50:9.2f} ms   p99 {p99:9.2f} ms")
+        rss = f"{row['rss']:.0f} MB" if row["rss"] is not None else "-"
+        disk = f"{row['disk']:.0f} MB" if row["disk"] is not None else "-"
+        print(f"  RSS {rss}   disco {disk}")
+
+    print("\np50 en ms")
+    header = f"{'herramienta':<30}" + "".join(f"{row['config']:>12}" for row in results)
+    print(header)
+    for tool in tools:
+        print(f"{tool:<30}" + "".join(f"{row[tool][0]:>12.2f}" for row in results))
+    print(f"{'inserción (filas/s)':<30}" + "".join(f"{row['seed']:>12.0f}" for row in results))
+
+
+if __name__ == "__main__":
+    main()
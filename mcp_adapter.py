@@ -24,13 +24,56 @@ def log_error(message: str):
         print(f"ERROR: {message}", file=sys.stderr, flush=True)
 
 def check_server_running():
-    """Verifica si el servidor Spring Boot ya está corriendo"""
+    """Verifica si el servidor Spring Boot ya está corriendo (y calentado)"""
     try:
         response = requests.get(f"{SERVER_URL}/health", timeout=2)
         return response.status_code == 200
     except:
         return False
 
+def check_server_warming():
+    """Verifica si el servidor ya está arrancado pero calentando (503 WARMING)"""
+    try:
+        response = requests.get(f"{SERVER_URL}/health", timeout=2)
+        return response.status_code == 503 and response.json().get("status") == "WARMING"
+    except:
+        return False
+
+def cds_is_stale(boot_jar, cds_jar, cds_archive):
+    """
+    True si el jar de Boot es posterior al jar extraído o a su archivo CDS
+    (se ha hecho ./gradlew bootJar sin volver a hacer cdsArchive): el jar
+    extraído tendría el código anterior
+    """
+    if not os.path.exists(boot_jar):
+        return False
+    built = os.path.getmtime(boot_jar)
+    return built > os.path.getmtime(cds_jar) or built > os.path.getmtime(cds_archive)
+
+def server_command(project_dir):
+    """
+    Comando para arrancar el servidor, del más rápido al más lento:
+    1. Jar extraído con archivo AppCDS (./gradlew cdsArchive), si no es
+       anterior al jar de Boot
+    2. Jar de Boot (./gradlew bootJar)
+    3. ./gradlew bootRun (compila si hace falta)
+    """
+    jar_name = "mcp-server-ra2-jdbc-1.0.0.jar"
+    boot_jar = os.path.join(project_dir, "build", "libs", jar_name)
+    cds_dir = os.path.join(project_dir, "build", "cds", "app")
+    cds_jar = os.path.join(cds_dir, jar_name)
+    cds_archive = os.path.join(cds_dir, "app.jsa")
+    if os.path.exists(cds_jar) and os.path.exists(cds_archive) and not cds_is_stale(boot_jar, cds_jar, cds_archive):
+        command = ["java", f"-XX:SharedArchiveFile={cds_archive}"]
+        if os.environ.get("MCP_AOT", "").lower() in ["1", "true", "yes"]:
+            command.append("-Dspring.aot.enabled=true")
+        return command + ["-jar", cds_jar]
+
+    if os.path.exists(boot_jar):
+        return ["java", "-jar", boot_jar]
+
+    return ["./gradlew", "bootRun"]
+
 def start_spring_server():
     """Inicia el servidor Spring Boot en segundo plano si no está corriendo"""
     global spring_process
@@ -39,22 +82,30 @@ def start_spring_server():
         log_error("Servidor Spring Boot ya está corriendo")
         return True
 
-    log_error("Iniciando servidor Spring Boot...")
-
-    # Obtener el directorio del proyecto
-    project_dir = os.path.dirname(os.path.abspath(__file__))
-
-    spring_process = subprocess.Popen(
-        ["./gradlew", "bootRun"],
-        stdout=subprocess.PIPE,
-        stderr=subprocess.PIPE,
-        cwd=project_dir,
-        preexec_fn=os.setsid
-    )
+    if check_server_warming():
+        # Otro proceso ya lo arrancó: solo hay que esperar a que termine de calentar
+        log_error("Servidor Spring Boot calentando, esperando...")
+    else:
+        log_error("Iniciando servidor Spring Boot...")
+
+        # Obtener el directorio del proyecto
+        project_dir = os.path.dirname(os.path.abspath(__file__))
+
+        spring_process = subprocess.Popen(
+            server_command(project_dir),
+            stdout=subprocess.DEVNULL,
+            stderr=subprocess.DEVNULL,
+            cwd=project_dir,
+            preexec_fn=os.setsid
+        )
 
-    # Esperar a que el servidor esté listo
-    max_retries = 60
-    for i in range(max_retries):
+    # Esperar a que el servidor esté listo, calentamiento incluido (con CDS
+    # arranca en menos de un segundo: se pregunta cada 100 ms)
+    deadline = time.monotonic() + 60
+    attempts = 0
+    while time.monotonic() < deadline:
+        if spring_process and spring_process.poll() is not None:
+            break
         try:
             response = requests.get(f"{SERVER_URL}/health", timeout=2)
             if response.status_code == 200:
@@ -63,9 +114,10 @@ def start_spring_server():
         except:
             pass
 
-        time.sleep(1)
-        if i % 5 == 0:
-            log_error(f"Esperando servidor... ({i+1}/{max_retries})")
+        time.sleep(0.1)
+        attempts += 1
+        if attempts % 50 == 0:
+            log_error(f"Esperando servidor... ({attempts // 10} s)")
 
     log_error("ERROR: No se pudo iniciar el servidor Spring Boot")
     return False
@@ -81,13 +133,28 @@ def stop_spring_server():
         except:
             pass
 
+# Última lista de herramientas recibida y su ETag (ver get_tools)
+_tools_cache: Dict[str, Any] = {"etag": None, "tools": []}
+
 def get_tools() -> List[Dict[str, Any]]:
-    """Obtiene la lista de herramientas disponibles del servidor"""
+    """Obtiene la lista de herramientas disponibles del servidor.
+
+    Se envía el ETag de la última respuesta en If-None-Match: si el
+    catálogo no ha cambiado el servidor responde 304 sin cuerpo y se
+    reutiliza la lista guardada.
+    """
     try:
-        response = requests.get(f"{SERVER_URL}/tools", timeout=5)
+        headers = {}
+        if _tools_cache["etag"]:
+            headers["If-None-Match"] = _tools_cache["etag"]
+        response = requests.get(f"{SERVER_URL}/tools", headers=headers, timeout=5)
+        if response.status_code == 304:
+            return _tools_cache["tools"]
         if response.status_code == 200:
             data = response.json()
-            return data.get("tools", [])
+            _tools_cache["etag"] = response.headers.get("ETag")
+            _tools_cache["tools"] = data.get("tools", [])
+            return _tools_cache["tools"]
         return []
     except Exception as e:
         log_error(f"Error obteniendo herramientas: {e}")
@@ -101,6 +168,7 @@ def call_tool(tool_name: str, arguments: Dict[str, Any]) -> Any:
         "test_connection": "/test_connection",
         "create_user": "/create_user",
         "find_user_by_id": "/find_user_by_id",
+        "find_users_by_ids": "/find_users_by_ids",
         "update_user": "/update_user",
         "delete_user": "/delete_user",
         "find_all_users": "/find_all_users",
@@ -112,12 +180,13 @@ def call_tool(tool_name: str, arguments: Dict[str, Any]) -> Any:
         "get_connection_info": "/get_connection_info",
         "get_database_info": "/get_database_info",
         "get_table_columns": "/get_table_columns",
-        "execute_count_by_department": "/execute_count_by_department"
+        "execute_count_by_department": "/execute_count_by_department",
+        "run_pipeline": "/call/run_pipeline"
     }
 
-    endpoint = endpoint_map.get(tool_name)
-    if not endpoint:
-        raise Exception(f"Herramienta desconocida: {tool_name}")
+    # Las que no tienen endpoint propio van por el genérico /call/{tool}
+    # (el servidor responde 404 si la herramienta no existe)
+    endpoint = endpoint_map.get(tool_name, f"/call/{tool_name}")
 
     try:
         response = requests.post(
@@ -166,8 +235,12 @@ def handle_tools_list(params: Dict[str, Any]) -> Dict[str, Any]:
             }
         }
 
-        # Definir esquemas de parámetros para cada herramienta
-        if tool["name"] == "test_connection":
+        # El servidor ya envía el esquema (generado de la firma @Tool)
+        if "inputSchema" in tool:
+            mcp_tool["inputSchema"] = tool["inputSchema"]
+
+        # Esquemas escritos a mano (servidores sin inputSchema)
+        elif tool["name"] == "test_connection":
             pass  # No requiere parámetros
 
         elif tool["name"] == "create_user":
@@ -191,9 +264,10 @@ def handle_tools_list(params: Dict[str, Any]) -> Dict[str, Any]:
                 "name": {"type": "string", "description": "Nombre del usuario"},
                 "email": {"type": "string", "description": "Email del usuario"},
                 "department": {"type": "string", "description": "Departamento"},
-                "role": {"type": "string", "description": "Rol del usuario"}
+                "role": {"type": "string", "description": "Rol del usuario"},
+                "active": {"type": "boolean", "description": "Activo (si no se indica no cambia)"}
             }
-            mcp_tool["inputSchema"]["required"] = ["userId", "name", "email", "department", "role"]
+            mcp_tool["inputSchema"]["required"] = ["userId"]
 
         elif tool["name"] == "find_users_by_department":
             mcp_tool["inputSchema"]["properties"] = {
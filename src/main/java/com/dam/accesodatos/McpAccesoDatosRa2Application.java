@@ -6,6 +6,8 @@ import org.springframework.ai.mcp.server.annotation.EnableMcpServer;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.annotation.DependsOn;
 
 
 
@@ -21,23 +23,27 @@ import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
  * Esta aplicación proporciona:
  * - Servidor MCP con herramientas JDBC para interactuar con LLMs
  * - API REST para testing manual (opcional)
- * - Base de datos H2 en memoria (sin pool de Spring)
- * - 15 herramientas (5 ejemplos implementados + 10 TODOs para estudiantes)
+ * - Base de datos H2 en memoria (sin pool de Spring, con pool JDBC propio)
+ * - 15 herramientas MCP: las 14 de DatabaseUserService + run_pipeline
  *
  * Configuración:
  * - Puerto HTTP: 8082 (para no conflictir con RA1 que usa 8081)
  * - Puerto MCP: 3001
  * - Base de datos: H2 en memoria (jdbc:h2:mem:ra2db)
  * - Console H2: http://localhost:8082/h2-console
- * - JDBC: DriverManager.getConnection() - SIN Spring DataSource
+ * - JDBC: DatabaseConfig.getConnection() - SIN Spring DataSource
+ *   (pool propio o DriverManager según ra2.jdbc.pool.mode)
+ * - Perfil "reactive": WebFlux + R2DBC (ver paquete reactive); solo se
+ *   compila con ./gradlew -Preactive
  *
  * Para arrancar:
  * ./gradlew bootRun
  *
  * o desde IntelliJ: Run → McpAccesoDatosRa2Application
  */
-@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class})
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, R2dbcAutoConfiguration.class})
 @EnableMcpServer
+@DependsOn("dataSourceConfig") // el pool debe estar configurado antes de initializeDatabase()
 public class McpAccesoDatosRa2Application {
 
     public static void main(String[] args) {
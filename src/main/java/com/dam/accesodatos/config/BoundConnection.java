@@ -0,0 +1,129 @@
+package com.dam.accesodatos.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conexión ligada al hilo actual con {@link DatabaseConfig#bindConnection}.
+ *
+ * Mientras está ligada, DatabaseConfig.getConnection() devuelve en ese hilo
+ * una vista de esta conexión en la que:
+ * - close() no hace nada (la cierra quien la ligó)
+ * - si es transaccional, setAutoCommit() y commit() no hacen nada y
+ *   rollback() solo marca la transacción para deshacerla (rollback-only):
+ *   quien la ligó decide al final si hace commit o rollback de todo
+ *
+ * Así los métodos de DatabaseUserServiceImpl, que abren y cierran su
+ * conexión con try-with-resources, se pueden encadenar sobre una misma
+ * conexión (y transacción) sin cambiar su código.
+ *
+ * Lo que no debe verse fuera antes del commit real (p.ej. los contadores
+ * por departamento) se apunta con afterCommit(): quien ligó la conexión
+ * lo ejecuta con runAfterCommit() tras su commit o lo descarta con
+ * discardAfterCommit() si hace rollback.
+ */
+public final class BoundConnection {
+
+    private final Connection target;
+    private final boolean transactional;
+    private final Connection view;
+    private volatile boolean rollbackOnly;
+
+    // Solo la usa el hilo al que está ligada la conexión
+    private final List<Runnable> afterCommit = new ArrayList<>();
+
+    BoundConnection(Connection target, boolean transactional) {
+        this.target = target;
+        this.transactional = transactional;
+        this.view = (Connection) Proxy.newProxyInstance(
+                BoundConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> handle(proxy, method, args));
+    }
+
+    /**
+     * Vista que reciben los llamadores de DatabaseConfig.getConnection()
+     */
+    Connection view() {
+        return view;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    /**
+     * true si algún llamador ha hecho rollback(): la transacción no debe confirmarse
+     */
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * Apunta una acción para después del commit real de la transacción.
+     * Si la conexión no es transaccional (cada llamador confirma lo suyo)
+     * se ejecuta ya.
+     */
+    public void afterCommit(Runnable action) {
+        if (transactional) {
+            afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Ejecuta (en orden) las acciones apuntadas: llamar tras el commit real
+     */
+    public void runAfterCommit() {
+        List<Runnable> actions = new ArrayList<>(afterCommit);
+        afterCommit.clear();
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * Olvida las acciones apuntadas: llamar tras el rollback
+     */
+    public void discardAfterCommit() {
+        afterCommit.clear();
+    }
+
+    private Object handle(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                break;
+        }
+
+        if (transactional) {
+            switch (method.getName()) {
+                case "setAutoCommit":
+                case "commit":
+                    return null;
+                case "rollback":
+                    if (method.getParameterCount() == 0) {
+                        rollbackOnly = true;
+                        return null;
+                    }
+                    break; // rollback(Savepoint) sí se aplica
+                default:
+                    break;
+            }
+        }
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
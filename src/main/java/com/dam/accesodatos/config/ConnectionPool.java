@@ -0,0 +1,517 @@
+package com.dam.accesodatos.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexiones JDBC acotado y sin bloqueos (lock-free).
+ *
+ * Funcionamiento:
+ * - Las conexiones libres se guardan en una {@link ConcurrentLinkedDeque} (LIFO:
+ *   se reutiliza primero la conexión usada más recientemente).
+ * - Un {@link Semaphore} limita el número máximo de conexiones prestadas y
+ *   permite esperar con timeout cuando el pool está agotado.
+ * - Al prestar una conexión se valida con {@link Connection#isValid(int)}.
+ * - Un hilo daemon (virtual si así se configura) cierra las conexiones ociosas que superan el idle-timeout,
+ *   manteniendo siempre al menos {@code minSize} conexiones abiertas.
+ *
+ * Las conexiones devueltas son proxies: {@code close()} NO cierra la conexión
+ * física, la devuelve al pool. Por eso el patrón try-with-resources de los
+ * estudiantes sigue funcionando sin cambios.
+ *
+ * Cada conexión física tiene además su propia {@link StatementCache}: los
+ * PreparedStatement cerrados por el llamador vuelven a la caché y se reutilizan
+ * la próxima vez que se prepare el mismo SQL en esa conexión.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Parámetros de configuración del pool.
+     *
+     * @param minSize conexiones que se mantienen abiertas aunque estén ociosas
+     * @param maxSize máximo de conexiones físicas simultáneas
+     * @param acquireTimeout tiempo máximo de espera cuando el pool está agotado
+     * @param idleTimeout tiempo a partir del cual una conexión ociosa se cierra
+     * @param validationTimeoutSeconds timeout de {@link Connection#isValid(int)}
+     * @param statementCacheSize PreparedStatement cacheados por conexión (0 = sin caché)
+     * @param virtualThreads hilo de mantenimiento virtual (ver {@link VirtualThreads})
+     */
+    public record Settings(int minSize, int maxSize, Duration acquireTimeout,
+                           Duration idleTimeout, int validationTimeoutSeconds,
+                           int statementCacheSize, boolean virtualThreads) {
+
+        public Settings {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("maxSize debe ser >= 1");
+            }
+            if (minSize < 0 || minSize > maxSize) {
+                throw new IllegalArgumentException("minSize debe estar entre 0 y maxSize");
+            }
+            if (statementCacheSize < 0) {
+                throw new IllegalArgumentException("statementCacheSize debe ser >= 0");
+            }
+        }
+
+        public Settings(int minSize, int maxSize, Duration acquireTimeout,
+                        Duration idleTimeout, int validationTimeoutSeconds, int statementCacheSize) {
+            this(minSize, maxSize, acquireTimeout, idleTimeout, validationTimeoutSeconds, statementCacheSize, false);
+        }
+
+        public static Settings defaults() {
+            return new Settings(2, 10, Duration.ofSeconds(5), Duration.ofMinutes(5), 1, 32);
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Settings settings;
+
+    private final ConcurrentLinkedDeque<PooledEntry> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger idleConnections = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService housekeeper;
+
+    // Métricas
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    public ConnectionPool(String url, String user, String password, Settings settings) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize());
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.factory("ra2-pool-housekeeper", settings.virtualThreads()));
+        long periodMillis = Math.max(1000L, settings.idleTimeout().toMillis() / 2);
+        housekeeper.scheduleWithFixedDelay(this::evictIdleConnections,
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene una conexión del pool, esperando como máximo {@code acquireTimeout}.
+     *
+     * @return proxy de Connection cuyo close() devuelve la conexión al pool
+     * @throws SQLTransientConnectionException si se agota el tiempo de espera
+     * @throws SQLException si no se puede abrir una conexión física nueva
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+
+        try {
+            if (!permits.tryAcquire(settings.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                acquireTimeouts.increment();
+                throw new SQLTransientConnectionException(String.format(
+                        "Timeout de %d ms esperando conexión (activas=%d, máximo=%d)",
+                        settings.acquireTimeout().toMillis(), getActiveConnections(), settings.maxSize()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión del pool", e);
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                idleConnections.decrementAndGet();
+                if (isUsable(entry)) {
+                    borrowed.increment();
+                    return entry.lend();
+                }
+                validationFailures.increment();
+                destroy(entry);
+            }
+
+            entry = new PooledEntry(openPhysicalConnection());
+            totalConnections.incrementAndGet();
+            created.increment();
+            borrowed.increment();
+            return entry.lend();
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre conexiones hasta alcanzar {@code minSize}. Útil al arrancar para
+     * que las primeras peticiones no paguen el coste de conexión.
+     */
+    public void prefill() throws SQLException {
+        while (!closed.get() && totalConnections.get() < settings.minSize()) {
+            PooledEntry entry = new PooledEntry(openPhysicalConnection());
+            totalConnections.incrementAndGet();
+            created.increment();
+            entry.lastReleasedNanos = System.nanoTime();
+            idle.offerLast(entry);
+            idleConnections.incrementAndGet();
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones ociosas. Las conexiones prestadas se cierran
+     * físicamente cuando el llamador las devuelve.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            idleConnections.decrementAndGet();
+            destroy(entry);
+        }
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.get();
+    }
+
+    public int getActiveConnections() {
+        return settings.maxSize() - permits.availablePermits();
+    }
+
+    /**
+     * Métricas del pool para el endpoint de diagnóstico
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("minSize", settings.minSize());
+        stats.put("maxSize", settings.maxSize());
+        stats.put("total", getTotalConnections());
+        stats.put("idle", getIdleConnections());
+        stats.put("active", getActiveConnections());
+        stats.put("borrowed", borrowed.sum());
+        stats.put("created", created.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("validationFailures", validationFailures.sum());
+        stats.put("acquireTimeouts", acquireTimeouts.sum());
+
+        Map<String, Object> statementCache = new LinkedHashMap<>();
+        long hits = statementStats.hits.sum();
+        long misses = statementStats.misses.sum();
+        statementCache.put("sizePerConnection", settings.statementCacheSize());
+        statementCache.put("hits", hits);
+        statementCache.put("misses", misses);
+        statementCache.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        statementCache.put("evictions", statementStats.evictions.sum());
+        statementCache.put("reclaimed", statementStats.reclaimed.sum());
+        stats.put("statementCache", statementCache);
+        return stats;
+    }
+
+    // ========== Gestión interna ==========
+
+    private Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        try {
+            return entry.physical.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Llamado por el proxy al hacer close(): limpia el estado de la sesión y
+     * devuelve la conexión física a la cola de ociosas.
+     *
+     * Cierra los statements que el prestatario dejó abiertos, deshace la
+     * transacción pendiente y restaura readOnly, aislamiento, catálogo y
+     * esquema a los valores con los que se abrió la conexión.
+     */
+    private void release(PooledEntry entry) {
+        try {
+            if (closed.get() || entry.physical.isClosed()) {
+                destroy(entry);
+                return;
+            }
+            // Dejar la sesión como la encontró el siguiente usuario
+            entry.closeOpenStatements();
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            entry.restoreSessionDefaults();
+            entry.physical.clearWarnings();
+
+            entry.lastReleasedNanos = System.nanoTime();
+            idle.offerFirst(entry);
+            idleConnections.incrementAndGet();
+
+        } catch (SQLException e) {
+            destroy(entry);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static boolean isClosedQuietly(Statement statement) {
+        try {
+            return statement.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.nanoTime();
+        long idleTimeoutNanos = settings.idleTimeout().toNanos();
+
+        // Recorrer desde el final: ahí están las conexiones que llevan más tiempo sin usarse
+        Iterator<PooledEntry> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > settings.minSize()) {
+            PooledEntry entry = it.next();
+            if (now - entry.lastReleasedNanos < idleTimeoutNanos) {
+                break;
+            }
+            // remove() solo tiene éxito si ningún hilo se la ha llevado entretanto
+            if (idle.removeLastOccurrence(entry)) {
+                idleConnections.decrementAndGet();
+                evicted.increment();
+                destroy(entry);
+            }
+        }
+
+        try {
+            prefill();
+        } catch (SQLException e) {
+            logger.warn("Error rellenando el pool de conexiones: {}", e.getMessage());
+        }
+    }
+
+    private void destroy(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        if (entry.statementCache != null) {
+            entry.statementCache.closeAll();
+        }
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            // Registrar error pero no propagar: la conexión ya no se usará
+            logger.warn("Error al cerrar conexión física: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Conexión física gestionada por el pool
+     */
+    private final class PooledEntry {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        // Estado de la sesión recién abierta: se restaura al devolverla
+        private final boolean defaultReadOnly;
+        private final int defaultTransactionIsolation;
+        private final String defaultCatalog;
+        private final String defaultSchema;
+        // Statements sin caché (createStatement, prepareCall...) del prestatario actual
+        private final List<Statement> openStatements = new ArrayList<>();
+        private boolean sessionChanged;
+        private volatile long lastReleasedNanos;
+
+        private PooledEntry(Connection physical) throws SQLException {
+            this.physical = physical;
+            try {
+                this.defaultReadOnly = physical.isReadOnly();
+                this.defaultTransactionIsolation = physical.getTransactionIsolation();
+                this.defaultCatalog = physical.getCatalog();
+                this.defaultSchema = physical.getSchema();
+            } catch (SQLException e) {
+                physical.close();
+                throw e;
+            }
+            this.statementCache = settings.statementCacheSize() > 0
+                    ? new StatementCache(settings.statementCacheSize(), statementStats)
+                    : null;
+        }
+
+        /**
+         * Cierra los statements (y con ellos sus ResultSet) que el prestatario
+         * dejó abiertos
+         */
+        private void closeOpenStatements() throws SQLException {
+            if (statementCache != null) {
+                int reclaimed = statementCache.reclaim();
+                if (reclaimed > 0) {
+                    logger.debug("Recuperados {} PreparedStatement sin cerrar al devolver la conexión", reclaimed);
+                }
+            }
+            for (Statement statement : openStatements) {
+                if (!statement.isClosed()) {
+                    statement.close();
+                }
+            }
+            openStatements.clear();
+        }
+
+        /**
+         * Deshace setReadOnly, setTransactionIsolation, setCatalog y setSchema
+         * del prestatario. Solo se consulta si alguno de ellos se ha llamado.
+         */
+        private void restoreSessionDefaults() throws SQLException {
+            if (!sessionChanged) {
+                return;
+            }
+            if (physical.isReadOnly() != defaultReadOnly) {
+                physical.setReadOnly(defaultReadOnly);
+            }
+            if (physical.getTransactionIsolation() != defaultTransactionIsolation) {
+                physical.setTransactionIsolation(defaultTransactionIsolation);
+            }
+            if (!Objects.equals(physical.getCatalog(), defaultCatalog)) {
+                physical.setCatalog(defaultCatalog);
+            }
+            if (!Objects.equals(physical.getSchema(), defaultSchema)) {
+                physical.setSchema(defaultSchema);
+            }
+            sessionChanged = false;
+        }
+
+        private Connection lend() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new PooledConnectionHandler(this));
+        }
+    }
+
+    /**
+     * Proxy de la conexión prestada: intercepta close(), isClosed() y
+     * prepareStatement() (caché de statements) y delega el resto de métodos
+     * en la conexión física.
+     */
+    private final class PooledConnectionHandler implements InvocationHandler {
+        private final PooledEntry entry;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private PooledConnectionHandler(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    break;
+            }
+
+            if (returned.get()) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (entry.statementCache != null) {
+                        StatementCache.Key key = StatementCache.Key.of(args);
+                        if (key != null) {
+                            return entry.statementCache.prepare((Connection) proxy, key,
+                                    () -> (PreparedStatement) invokePhysical(method, args));
+                        }
+                    }
+                    return track(invokePhysical(method, args));
+                case "createStatement":
+                case "prepareCall":
+                    return track(invokePhysical(method, args));
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "setCatalog":
+                case "setSchema":
+                    entry.sessionChanged = true;
+                    break;
+                default:
+                    break;
+            }
+
+            return invokePhysical(method, args);
+        }
+
+        private Object track(Object statement) {
+            // Conexiones que se retienen mucho (pipelines): olvidar los ya cerrados
+            if (entry.openStatements.size() >= 32) {
+                entry.openStatements.removeIf(ConnectionPool::isClosedQuietly);
+            }
+            entry.openStatements.add((Statement) statement);
+            return statement;
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws SQLException {
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (IllegalAccessException e) {
+                throw new SQLException("No se pudo invocar " + method.getName(), e);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new SQLException(e.getCause());
+            }
+        }
+    }
+}
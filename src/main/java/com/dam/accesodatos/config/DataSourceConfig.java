@@ -1,30 +1,128 @@
 package com.dam.accesodatos.config;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 /**
- * Configuración del DataSource para H2 Database
- *
- * En este proyecto, la configuración del DataSource se realiza
- * automáticamente por Spring Boot a través de application.yml.
+ * Configuración de las conexiones JDBC para H2 Database
  *
- * Este archivo está aquí por completitud, pero no es necesario
- * configurar nada manualmente para H2.
+ * En este proyecto NO se usa el DataSource de Spring Boot: el código de los
+ * estudiantes obtiene las conexiones con DatabaseConfig.getConnection().
  *
- * Si en el futuro se necesita personalizar el DataSource
- * (ej: pool de conexiones HikariCP), se puede hacer aquí:
+ * Esta clase solo traslada las propiedades {@code ra2.jdbc.pool.*},
+ * {@code ra2.jdbc.storage.*} y {@code ra2.jdbc.init.*} de application.yml a {@link DatabaseConfig} antes de que se inicialice la base
+ * de datos, y cierra el pool al parar la aplicación:
  *
- * @Bean
- * public DataSource dataSource() {
- *     HikariConfig config = new HikariConfig();
- *     config.setJdbcUrl("jdbc:h2:mem:ra2db");
- *     config.setUsername("sa");
- *     config.setPassword("");
- *     config.setMaximumPoolSize(10);
- *     return new HikariDataSource(config);
- * }
+ * <pre>
+ * ra2:
+ *   jdbc:
+ *     pool:
+ *       mode: pooled          # pooled | unpooled
+ *       min-size: 2
+ *       max-size: 10
+ *       acquire-timeout: 5s
+ *       idle-timeout: 5m
+ *       validation-timeout-seconds: 1
+ *       statement-cache-size: 32   # PreparedStatement cacheados por conexión (0 = off)
+ *     storage:
+ *       mode: mem             # mem | file | memfs (ver DatabaseStorage)
+ *       path: ./data/ra2db
+ *       cache-size-kb: 0      # caché de páginas del MVStore (0 = la de H2)
+ *       compress: false
+ *       write-delay: 500ms
+ *     init:
+ *       mode: script          # script | snapshot (ver DatabaseSnapshot)
+ *       snapshot-dir: build/ra2db-snapshot
+ * </pre>
  */
 @Configuration
 public class DataSourceConfig {
-    // Configuración automática por Spring Boot via application.yml
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    @Value("${ra2.jdbc.pool.mode:pooled}")
+    private String mode;
+
+    @Value("${ra2.jdbc.pool.min-size:2}")
+    private int minSize;
+
+    @Value("${ra2.jdbc.pool.max-size:10}")
+    private int maxSize;
+
+    @Value("${ra2.jdbc.pool.acquire-timeout:5s}")
+    private Duration acquireTimeout;
+
+    @Value("${ra2.jdbc.pool.idle-timeout:5m}")
+    private Duration idleTimeout;
+
+    @Value("${ra2.jdbc.pool.validation-timeout-seconds:1}")
+    private int validationTimeoutSeconds;
+
+    @Value("${ra2.jdbc.pool.statement-cache-size:32}")
+    private int statementCacheSize;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${ra2.jdbc.storage.mode:mem}")
+    private String storageMode;
+
+    @Value("${ra2.jdbc.storage.path:./data/ra2db}")
+    private String storagePath;
+
+    @Value("${ra2.jdbc.storage.cache-size-kb:0}")
+    private int cacheSizeKb;
+
+    @Value("${ra2.jdbc.storage.compress:false}")
+    private boolean compress;
+
+    @Value("${ra2.jdbc.storage.write-delay:500ms}")
+    private Duration writeDelay;
+
+    @Value("${ra2.jdbc.storage.reset-on-schema-change:false}")
+    private boolean resetOnSchemaChange;
+
+    @Value("${ra2.jdbc.init.mode:script}")
+    private String initMode;
+
+    @Value("${ra2.jdbc.init.snapshot-dir:build/ra2db-snapshot}")
+    private String snapshotDir;
+
+    @PostConstruct
+    public void configureConnections() {
+        DatabaseConfig.ConnectionMode connectionMode = DatabaseConfig.ConnectionMode.valueOf(mode.trim().toUpperCase());
+        ConnectionPool.Settings settings = new ConnectionPool.Settings(
+                minSize, maxSize, acquireTimeout, idleTimeout, validationTimeoutSeconds, statementCacheSize,
+                virtualThreads);
+
+        DatabaseConfig.configure(connectionMode, settings);
+
+        DatabaseStorage storage = new DatabaseStorage(
+                DatabaseStorage.Mode.valueOf(storageMode.trim().toUpperCase()),
+                storagePath, cacheSizeKb, compress, writeDelay);
+        DatabaseConfig.configureStorage(storage);
+        DatabaseConfig.configureSchemaReset(resetOnSchemaChange);
+        logger.info("Base de datos H2: {}", storage.jdbcUrl());
+
+        logger.info("Conexiones JDBC en modo {} (pool min={}, max={}, acquireTimeout={}, statementCache={}, hilos virtuales={})",
+                connectionMode, minSize, maxSize, acquireTimeout, statementCacheSize, virtualThreads);
+
+        DatabaseConfig.InitMode databaseInit = DatabaseConfig.InitMode.valueOf(initMode.trim().toUpperCase());
+        DatabaseConfig.configureInitialization(databaseInit, Path.of(snapshotDir));
+        logger.info("Inicialización de la BD en modo {}{}", databaseInit,
+                databaseInit == DatabaseConfig.InitMode.SNAPSHOT ? " (" + Path.of(snapshotDir).toAbsolutePath() + ")" : "");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        DatabaseConfig.shutdownPool();
+        DatabaseConfig.shutdownDatabase();
+    }
 }
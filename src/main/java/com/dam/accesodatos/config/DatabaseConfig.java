@@ -1,31 +1,92 @@
 package com.dam.accesodatos.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Configuración de base de datos para JDBC puro (sin Spring DataSource)
  *
  * Esta clase proporciona las propiedades de conexión para que los estudiantes
- * usen DriverManager.getConnection() directamente, aprendiendo JDBC vanilla.
+ * usen DatabaseConfig.getConnection() en cada método, aprendiendo JDBC vanilla.
  *
  * IMPORTANTE PEDAGÓGICO:
- * - Los estudiantes usarán DriverManager.getConnection() en cada método
- * - NO hay pool de conexiones de Spring
+ * - Los estudiantes usarán DatabaseConfig.getConnection() en cada método
+ * - NO hay pool de conexiones de Spring: el pool es propio ({@link ConnectionPool})
  * - Deben cerrar conexiones manualmente con try-with-resources
+ *   (en modo POOLED, close() devuelve la conexión al pool)
  * - Aprenden el ciclo completo de JDBC sin abstracciones
+ *
+ * Modos de conexión ({@link ConnectionMode}):
+ * - POOLED (por defecto): conexiones reutilizadas desde {@link ConnectionPool}
+ * - UNPOOLED: DriverManager.getConnection() en cada llamada, útil para
+ *   comparar ambos modos en benchmarks
+ *
+ * Almacenamiento ({@link DatabaseStorage}): en memoria (por defecto),
+ * en fichero (persistente) o memFS. Con almacenamiento persistente, las
+ * tablas solo se crean si la versión del esquema guardada en la BD
+ * (tabla ra2_schema_version) no coincide con la de {@link #getSchemaSQL()}.
+ *
+ * Inicialización de la BD ({@link InitMode}):
+ * - SCRIPT (por defecto): esquema y datos sentencia a sentencia
+ * - SNAPSHOT: se restaura una imagen guardada de la BD inicial con un
+ *   solo RUNSCRIPT ({@link DatabaseSnapshot})
  */
 public class DatabaseConfig {
 
-    // Configuración H2 Database (en memoria)
+    /**
+     * Cómo se crean las tablas y los datos iniciales en {@link #initializeDatabase()}
+     */
+    public enum InitMode {
+        SCRIPT,
+        SNAPSHOT
+    }
+
+    /**
+     * Estrategia usada por {@link #getConnection()}
+     */
+    public enum ConnectionMode {
+        POOLED,
+        UNPOOLED
+    }
+
+    // Configuración H2 Database (en memoria, la URL por defecto: ver DatabaseStorage)
     public static final String DB_URL = "jdbc:h2:mem:ra2db;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
     public static final String DB_USER = "sa";
     public static final String DB_PASSWORD = "";
     public static final String DB_DRIVER = "org.h2.Driver";
 
-    private static boolean initialized = false;
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
+
+    private static volatile boolean initialized = false;
+
+    // ReentrantLock y no synchronized: no clava hilos virtuales a su portador
+    private static final ReentrantLock initLock = new ReentrantLock();
+
+    private static volatile ConnectionMode connectionMode = ConnectionMode.POOLED;
+    private static volatile ConnectionPool.Settings poolSettings = ConnectionPool.Settings.defaults();
+    private static final AtomicReference<ConnectionPool> pool = new AtomicReference<>();
+
+    private static volatile DatabaseStorage storage = DatabaseStorage.memory();
+
+    private static volatile InitMode initMode = InitMode.SCRIPT;
+    private static volatile Path snapshotDirectory = Path.of("build/ra2db-snapshot");
+
+    // BD persistente con otro esquema: recrearla (borra sus datos) en vez de no arrancar
+    private static volatile boolean resetOnSchemaChange = false;
+
+    // Conexión compartida por todas las llamadas del hilo (pipelines de herramientas)
+    private static final ThreadLocal<BoundConnection> boundConnection = new ThreadLocal<>();
 
     /**
      * Carga el driver JDBC de H2.
@@ -49,7 +110,10 @@ public class DatabaseConfig {
     }
 
     /**
-     * Obtiene una conexión a la base de datos usando DriverManager.
+     * Obtiene una conexión a la base de datos.
+     *
+     * En modo POOLED la conexión sale del pool y close() la devuelve;
+     * en modo UNPOOLED se abre una conexión nueva con DriverManager.
      *
      * PATRÓN EDUCATIVO para estudiantes:
      *
@@ -59,11 +123,143 @@ public class DatabaseConfig {
      *     throw new RuntimeException("Error: " + e.getMessage(), e);
      * }
      *
+     * Si el hilo tiene una conexión ligada ({@link #bindConnection}) se
+     * devuelve esa misma conexión.
+     *
      * @return Connection JDBC
      * @throws SQLException si no se puede conectar
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        BoundConnection bound = boundConnection.get();
+        if (bound != null) {
+            return bound.view();
+        }
+        if (connectionMode == ConnectionMode.UNPOOLED) {
+            return openPhysicalConnection();
+        }
+        return getPool().getConnection();
+    }
+
+    /**
+     * Liga una conexión al hilo actual: hasta {@link #unbindConnection()},
+     * cada getConnection() de este hilo devuelve esa conexión (ver
+     * {@link BoundConnection}). Quien la liga la cierra y, si es
+     * transaccional, decide el commit o rollback final.
+     *
+     * @throws IllegalStateException si el hilo ya tiene una conexión ligada
+     */
+    public static BoundConnection bindConnection(Connection connection, boolean transactional) {
+        if (boundConnection.get() != null) {
+            throw new IllegalStateException("El hilo ya tiene una conexión ligada");
+        }
+        BoundConnection bound = new BoundConnection(connection, transactional);
+        boundConnection.set(bound);
+        return bound;
+    }
+
+    public static void unbindConnection() {
+        boundConnection.remove();
+    }
+
+    /**
+     * Conexión ligada al hilo actual, o null
+     */
+    public static BoundConnection getBoundConnection() {
+        return boundConnection.get();
+    }
+
+    /**
+     * Abre una conexión física nueva con DriverManager (sin pool)
+     */
+    public static Connection openPhysicalConnection() throws SQLException {
+        return DriverManager.getConnection(getUrl(), DB_USER, DB_PASSWORD);
+    }
+
+    /**
+     * Cambia el modo de conexión y la configuración del pool.
+     * El pool anterior (si existía) se cierra; las conexiones prestadas
+     * se cierran físicamente cuando sus usuarios las devuelven.
+     */
+    public static void configure(ConnectionMode mode, ConnectionPool.Settings settings) {
+        connectionMode = mode;
+        poolSettings = settings;
+        shutdownPool();
+    }
+
+    public static ConnectionMode getConnectionMode() {
+        return connectionMode;
+    }
+
+    /**
+     * Cambia dónde se guarda la BD (antes de {@link #initializeDatabase()}).
+     * El pool anterior (si existía) se cierra.
+     */
+    public static void configureStorage(DatabaseStorage newStorage) {
+        storage = newStorage;
+        shutdownPool();
+    }
+
+    public static DatabaseStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * URL JDBC actual (DB_URL salvo que se configure otro almacenamiento)
+     */
+    public static String getUrl() {
+        return storage.jdbcUrl();
+    }
+
+    /**
+     * Cambia cómo se inicializa la BD (antes de {@link #initializeDatabase()})
+     *
+     * @param directory directorio del snapshot en modo SNAPSHOT
+     */
+    public static void configureInitialization(InitMode mode, Path directory) {
+        initMode = mode;
+        snapshotDirectory = directory;
+    }
+
+    public static InitMode getInitMode() {
+        return initMode;
+    }
+
+    /**
+     * Qué hacer si una BD persistente tiene un esquema distinto del actual
+     * (antes de {@link #initializeDatabase()})
+     *
+     * @param reset true: se recrea y se PIERDEN sus datos; false: no se arranca
+     */
+    public static void configureSchemaReset(boolean reset) {
+        resetOnSchemaChange = reset;
+    }
+
+    /**
+     * Pool actual, creado de forma perezosa en el primer uso.
+     */
+    public static ConnectionPool getPool() {
+        while (true) {
+            ConnectionPool current = pool.get();
+            if (current != null) {
+                return current;
+            }
+            ConnectionPool created = new ConnectionPool(getUrl(), DB_USER, DB_PASSWORD, poolSettings);
+            if (pool.compareAndSet(null, created)) {
+                return created;
+            }
+            // Otro hilo ganó la carrera: descartar el nuestro y reintentar
+            created.close();
+        }
+    }
+
+    /**
+     * Cierra el pool actual (si existe)
+     */
+    public static void shutdownPool() {
+        ConnectionPool current = pool.getAndSet(null);
+        if (current != null) {
+            current.close();
+        }
     }
 
     /**
@@ -73,29 +269,198 @@ public class DatabaseConfig {
      * NOTA: En producción, esto se haría con herramientas como Flyway o Liquibase,
      * pero aquí lo hacemos manualmente para propósitos educativos.
      */
-    public static synchronized void initializeDatabase() {
+    public static void initializeDatabase() {
         if (initialized) {
             return;
         }
 
-        loadDriver();
+        initLock.lock();
+        try {
+            if (initialized) {
+                return; // otro hilo la inicializó mientras esperábamos
+            }
+
+            loadDriver();
 
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+            try (Connection conn = getConnection();
+                 Statement stmt = conn.createStatement()) {
+
+                if (!storage.isPersistent()) {
+                    createSchema(conn, stmt);
+                } else {
+                    initializePersistent(conn, stmt);
+                }
+
+                initialized = true;
+
+                // Abrir las conexiones mínimas para que la primera petición no espere
+                if (connectionMode == ConnectionMode.POOLED) {
+                    getPool().prefill();
+                }
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Error inicializando base de datos: " + e.getMessage(), e);
+            }
+        } finally {
+            initLock.unlock();
+        }
+    }
 
+    /**
+     * BD en fichero: se conservan los datos si ya tiene el esquema actual y
+     * se crea si está vacía. Si tiene otro esquema (o datos sin versión),
+     * recrearla ejecutaría DROP TABLE ... CASCADE: solo se hace con
+     * ra2.jdbc.storage.reset-on-schema-change=true; si no, no se arranca.
+     */
+    private static void initializePersistent(Connection conn, Statement stmt) throws SQLException {
+        if (schemaVersionMatches(conn)) {
+            return;
+        }
+        if (!tableExists(conn, "USERS") && !tableExists(conn, "RA2_SCHEMA_VERSION")) {
+            logger.info("BD nueva en {}: se crea el esquema", storage.jdbcUrl());
+            createSchema(conn, stmt);
+            return;
+        }
+        if (!resetOnSchemaChange) {
+            throw new IllegalStateException("La BD " + storage.jdbcUrl() + " tiene un esquema distinto del actual"
+                    + " (o no tiene ra2_schema_version). Recrearla borraría sus datos: migra el esquema a mano,"
+                    + " o arranca con ra2.jdbc.storage.reset-on-schema-change=true para borrarla y recrearla");
+        }
+        logger.warn("ra2.jdbc.storage.reset-on-schema-change=true: se BORRAN las tablas y los datos de {}"
+                + " para recrear el esquema actual", storage.jdbcUrl());
+        createSchema(conn, stmt);
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        // H2 guarda en mayúsculas los nombres sin comillas
+        try (ResultSet tables = conn.getMetaData().getTables(null, null, table, null)) {
+            return tables.next();
+        }
+    }
+
+    /**
+     * Crea las tablas y los datos iniciales (DROP + CREATE + INSERT)
+     */
+    private static void createSchema(Connection conn, Statement stmt) throws SQLException {
+        if (storage.isPersistent()) {
+            // Esquema antiguo: la versión se vuelve a guardar al final
+            stmt.execute("DROP TABLE IF EXISTS ra2_schema_version");
+        }
+
+        if (initMode == InitMode.SNAPSHOT) {
+            initializeFromSnapshot(conn, stmt);
+        } else {
             // Ejecutar schema.sql
             executeScript(stmt, getSchemaSQL());
 
             // Ejecutar data.sql
             executeScript(stmt, getDataSQL());
+        }
+
+        if (storage.isPersistent()) {
+            saveSchemaVersion(conn);
+        }
+    }
+
+    /**
+     * Versión del esquema: hash de {@link #getSchemaSQL()} sin comentarios
+     * y con los espacios normalizados. Cambia cuando cambian las sentencias
+     * (no los datos iniciales, ni el formato o los comentarios del script).
+     */
+    static String schemaVersion() {
+        StringBuilder normalized = new StringBuilder();
+        for (String line : getSchemaSQL().split("\\R")) {
+            int comment = line.indexOf("--");
+            String code = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (!code.isEmpty()) {
+                normalized.append(code.replaceAll("\\s+", " ")).append('\n');
+            }
+        }
+        return DatabaseSnapshot.hash(normalized.toString());
+    }
+
+    /**
+     * Versión que guardaban las BD creadas antes de normalizar el script
+     * (hash del texto tal cual): se siguen aceptando
+     */
+    private static String legacySchemaVersion() {
+        return DatabaseSnapshot.hash(getSchemaSQL());
+    }
+
+    /**
+     * true si la BD ya tiene el esquema actual (tabla ra2_schema_version)
+     */
+    private static boolean schemaVersionMatches(Connection conn) throws SQLException {
+        if (!tableExists(conn, "RA2_SCHEMA_VERSION")) {
+            return false;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT COUNT(*) FROM ra2_schema_version WHERE version IN (?, ?)")) {
+            stmt.setString(1, schemaVersion());
+            stmt.setString(2, legacySchemaVersion());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
 
-            initialized = true;
+    /**
+     * Guarda la versión del esquema recién creado. Se hace después de los
+     * scripts (y del snapshot): así el snapshot no incluye esta tabla.
+     */
+    private static void saveSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS ra2_schema_version ("
+                    + "version VARCHAR(64) NOT NULL, "
+                    + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("DELETE FROM ra2_schema_version");
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO ra2_schema_version (version) VALUES (?)")) {
+            stmt.setString(1, schemaVersion());
+            stmt.executeUpdate();
+        }
+    }
 
+    /**
+     * Cierra la BD si es persistente (SHUTDOWN): H2 escribe en disco lo
+     * pendiente (WRITE_DELAY) y cierra el fichero. Con DB_CLOSE_DELAY=-1
+     * no se cerraría sola. Llamar después de {@link #shutdownPool()}.
+     */
+    public static void shutdownDatabase() {
+        if (!storage.isPersistent() || !initialized) {
+            return;
+        }
+        try (Connection conn = openPhysicalConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SHUTDOWN");
+            initialized = false;
         } catch (SQLException e) {
-            throw new RuntimeException("Error inicializando base de datos: " + e.getMessage(), e);
+            throw new RuntimeException("Error cerrando la base de datos: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Modo SNAPSHOT: restaura el snapshot si existe; si no (o está dañado),
+     * ejecuta los scripts y lo guarda para el siguiente arranque
+     */
+    private static void initializeFromSnapshot(Connection conn, Statement stmt) throws SQLException {
+        Path snapshot = DatabaseSnapshot.fileFor(snapshotDirectory, getSchemaSQL() + getDataSQL());
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                DatabaseSnapshot.restore(conn, snapshot);
+                return;
+            } catch (SQLException e) {
+                // Fichero dañado: se vuelve a generar
+                DatabaseSnapshot.deleteQuietly(snapshot);
+            }
+        }
+
+        executeScript(stmt, getSchemaSQL());
+        executeScript(stmt, getDataSQL());
+        DatabaseSnapshot.write(conn, snapshot);
+    }
+
     /**
      * Ejecuta un script SQL compuesto de múltiples statements
      */
@@ -132,6 +497,8 @@ public class DatabaseConfig {
             CREATE INDEX idx_users_role ON users(role);
             CREATE INDEX idx_users_active ON users(active);
             CREATE INDEX idx_users_email ON users(email);
+            CREATE INDEX idx_users_name_id ON users(name, id);
+            CREATE INDEX idx_users_created_at_id ON users(created_at DESC, id);
 
             CREATE TABLE user_statistics (
                 id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -0,0 +1,132 @@
+package com.dam.accesodatos.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HexFormat;
+
+/**
+ * Imagen (snapshot) de la base de datos inicial para arrancar más rápido.
+ *
+ * Sin snapshot, cada arranque ejecuta el esquema y los datos sentencia a
+ * sentencia (DatabaseConfig.executeScript: un Statement.execute por cada
+ * trozo entre ';'). Con snapshot:
+ * - El primer arranque (o el task de Gradle dbSnapshot) ejecuta los
+ *   scripts y guarda la BD entera con
+ *   {@code SCRIPT NOPASSWORDS NOSETTINGS DROP TO ? COMPRESSION GZIP}
+ * - Los siguientes la restauran con un solo
+ *   {@code RUNSCRIPT FROM ? COMPRESSION GZIP}, que H2 ejecuta por dentro
+ *   sin ida y vuelta por JDBC para cada sentencia
+ *
+ * El nombre del fichero lleva un hash de los scripts
+ * (ra2db-&lt;hash&gt;.sql.gz): si cambian el esquema o los datos, el
+ * snapshot antiguo deja de usarse sin tener que borrarlo a mano.
+ */
+public final class DatabaseSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseSnapshot.class);
+
+    private DatabaseSnapshot() {
+        throw new AssertionError("DatabaseSnapshot no debe ser instanciada");
+    }
+
+    /**
+     * Fichero del snapshot para estos scripts dentro del directorio
+     */
+    public static Path fileFor(Path directory, String scripts) {
+        return directory.resolve("ra2db-" + hash(scripts) + ".sql.gz");
+    }
+
+    /**
+     * Hash corto (12 caracteres hexadecimales de SHA-256) de un script
+     */
+    static String hash(String script) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(script.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Restaura la base de datos desde el snapshot (borra antes las tablas que existan)
+     *
+     * @throws SQLException si el fichero no se puede leer o está dañado
+     */
+    public static void restore(Connection conn, Path snapshot) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement stmt = conn.prepareStatement("RUNSCRIPT FROM ? COMPRESSION GZIP")) {
+            stmt.setString(1, snapshot.toAbsolutePath().toString());
+            stmt.execute();
+        }
+        logger.info("Base de datos restaurada desde {} en {} ms",
+                snapshot, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Guarda la base de datos actual en el snapshot.
+     *
+     * Se escribe en un fichero temporal y se renombra al final: otro
+     * proceso que arranque a la vez nunca ve un snapshot a medias.
+     * Si no se puede escribir (directorio de solo lectura...) solo se
+     * avisa: la aplicación sigue funcionando sin snapshot.
+     *
+     * @return true si se ha guardado
+     */
+    public static boolean write(Connection conn, Path snapshot) {
+        Path temp = null;
+        try {
+            Path directory = snapshot.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "ra2db-", ".tmp");
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SCRIPT NOPASSWORDS NOSETTINGS DROP TO ? COMPRESSION GZIP")) {
+                stmt.setString(1, temp.toString());
+                stmt.execute();
+            }
+
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Snapshot de la base de datos guardado en {} ({} bytes)", snapshot, Files.size(snapshot));
+            return true;
+        } catch (IOException | SQLException e) {
+            logger.warn("No se pudo guardar el snapshot {}: {}", snapshot, e.getMessage());
+            deleteQuietly(temp);
+            return false;
+        }
+    }
+
+    static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("No se pudo borrar {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Genera el snapshot sin arrancar la aplicación (task de Gradle dbSnapshot)
+     *
+     * @param args directorio de destino (por defecto build/ra2db-snapshot)
+     */
+    public static void main(String[] args) {
+        Path directory = Path.of(args.length > 0 ? args[0] : "build/ra2db-snapshot");
+        DatabaseConfig.configure(DatabaseConfig.ConnectionMode.UNPOOLED, ConnectionPool.Settings.defaults());
+        DatabaseConfig.configureInitialization(DatabaseConfig.InitMode.SNAPSHOT, directory);
+        DatabaseConfig.initializeDatabase();
+    }
+}
@@ -0,0 +1,77 @@
+package com.dam.accesodatos.config;
+
+import java.time.Duration;
+
+/**
+ * Dónde guarda H2 la base de datos ({@code ra2.jdbc.storage.*}).
+ *
+ * - MEM (por defecto): jdbc:h2:mem. Todas las filas son objetos en el
+ *   heap; al parar la aplicación se pierde todo y en cada arranque se
+ *   vuelven a crear las tablas.
+ * - FILE: jdbc:h2:file. MVStore en disco: los datos sobreviven a los
+ *   reinicios y en el heap solo está la caché de páginas (cacheSizeKb).
+ * - MEMFS: jdbc:h2:memFS. El mismo MVStore que FILE pero sobre un
+ *   sistema de ficheros en memoria: sirve para medir el coste del
+ *   formato de páginas sin el del disco. No es persistente.
+ *
+ * Ajustes del MVStore (solo FILE y MEMFS):
+ * @param cacheSizeKb caché de páginas en KB (CACHE_SIZE; 0 = la de H2)
+ * @param compress páginas comprimidas con LZF (COMPRESS=TRUE): menos
+ *                 disco y más filas en la caché, a cambio de CPU
+ * @param writeDelay cada cuánto se escriben en disco los cambios
+ *                   confirmados (WRITE_DELAY): con 0 cada commit espera
+ *                   a la escritura; más alto = más rápido, pero una
+ *                   caída puede perder los últimos commits
+ */
+public record DatabaseStorage(Mode mode, String path, int cacheSizeKb, boolean compress, Duration writeDelay) {
+
+    public enum Mode {
+        MEM,
+        FILE,
+        MEMFS
+    }
+
+    public DatabaseStorage {
+        if (mode != Mode.MEM && (path == null || path.isBlank())) {
+            throw new IllegalArgumentException("path es obligatorio en modo " + mode);
+        }
+        if (cacheSizeKb < 0) {
+            throw new IllegalArgumentException("cacheSizeKb debe ser >= 0");
+        }
+    }
+
+    public static DatabaseStorage memory() {
+        return new DatabaseStorage(Mode.MEM, null, 0, false, Duration.ofMillis(500));
+    }
+
+    /**
+     * true si los datos sobreviven a un reinicio de la aplicación
+     */
+    public boolean isPersistent() {
+        return mode == Mode.FILE;
+    }
+
+    /**
+     * URL JDBC de H2 para este almacenamiento
+     */
+    public String jdbcUrl() {
+        if (mode == Mode.MEM) {
+            return DatabaseConfig.DB_URL;
+        }
+
+        StringBuilder url = new StringBuilder("jdbc:h2:")
+                .append(mode == Mode.FILE ? "file:" : "memFS:")
+                .append(path)
+                .append(";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        if (cacheSizeKb > 0) {
+            url.append(";CACHE_SIZE=").append(cacheSizeKb);
+        }
+        if (compress) {
+            url.append(";COMPRESS=TRUE");
+        }
+        if (mode == Mode.FILE) {
+            url.append(";WRITE_DELAY=").append(writeDelay.toMillis());
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.dam.accesodatos.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor dedicado a las llamadas JDBC asíncronas (AsyncDatabaseUserService).
+ *
+ * Tiene tantos hilos como conexiones el pool ({@code ra2.jdbc.pool.max-size}):
+ * más hilos solo esperarían en el pool. Las llamadas que no caben esperan
+ * en una cola acotada ({@code ra2.jdbc.async.queue-size}); si la cola está
+ * llena, el futuro falla en el acto con RejectedExecutionException en vez
+ * de acumular peticiones sin límite.
+ *
+ * Así un hilo de Tomcat no espera a la BD: deja la llamada aquí, se libera
+ * y la respuesta se escribe cuando el futuro termina (DeferredResult).
+ */
+@Component
+public class JdbcExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcExecutor.class);
+
+    @Value("${ra2.jdbc.pool.max-size:10}")
+    private int threads = 10;
+
+    @Value("${ra2.jdbc.async.queue-size:500}")
+    private int queueSize = 500;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public JdbcExecutor() {
+    }
+
+    JdbcExecutor(int threads, int queueSize) {
+        this.threads = threads;
+        this.queueSize = queueSize;
+        start();
+    }
+
+    @PostConstruct
+    void start() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                VirtualThreads.factory("ra2-jdbc", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("Ejecutor JDBC asíncrono: {} hilos, cola de {}", threads, queueSize);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ejecuta la llamada JDBC en un hilo del ejecutor
+     *
+     * @return futuro con el resultado; falla con la excepción de la llamada
+     *         o con RejectedExecutionException si la cola está llena
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(call, executor);
+            submitted.increment();
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Cola JDBC llena (" + queueSize + " llamadas esperando)", e));
+        }
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueSize", queueSize);
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,162 @@
+package com.dam.accesodatos.config;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detector de hilos virtuales clavados (pinned) a su hilo portador.
+ *
+ * Un hilo virtual que se bloquea (JDBC, sleep, esperar el pool...) dentro
+ * de un bloque synchronized o de código nativo no puede soltar su portador:
+ * si pasa a menudo, los hilos virtuales rinden como un pool pequeño de
+ * hilos de plataforma.
+ *
+ * Con {@code spring.threads.virtual.enabled=true} se escucha el evento JFR
+ * jdk.VirtualThreadPinned (JDK 21) con un RecordingStream dentro del propio
+ * proceso, sin fichero .jfr ni herramientas externas. Las métricas salen en
+ * GET /mcp/metrics (virtualThreads.pinning):
+ * - events: bloqueos clavados más largos que el umbral
+ * - totalMs / maxMs: tiempo clavado
+ * - sites: dónde ocurrió (primer método que no es del JDK) y cuántas veces
+ *
+ * <pre>
+ * ra2:
+ *   virtual-threads:
+ *     pinning-monitor:
+ *       enabled: true
+ *       threshold: 20ms   # duración mínima para registrar el evento
+ * </pre>
+ */
+@Component
+public class PinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinningMonitor.class);
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    // Lugares distintos que se cuentan por separado (el resto va a "otros")
+    private static final int MAX_SITES = 50;
+    private static final String OTHER_SITES = "otros";
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${ra2.virtual-threads.pinning-monitor.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ra2.virtual-threads.pinning-monitor.threshold:20ms}")
+    private Duration threshold = Duration.ofMillis(20);
+
+    private RecordingStream stream;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final ConcurrentHashMap<String, LongAdder> sites = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!virtualThreads || !enabled) {
+            return;
+        }
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.startAsync();
+            logger.info("Detector de hilos virtuales clavados activo (umbral {})", threshold);
+        } catch (RuntimeException e) {
+            // JFR no disponible (p.ej. JVM sin soporte): la aplicación sigue sin métrica
+            logger.warn("No se pudo iniciar el detector de pinning (JFR): {}", e.getMessage());
+            stream = null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        record(event.getDuration(), siteOf(event.getStackTrace()));
+    }
+
+    void record(Duration duration, String site) {
+        long nanos = duration.toNanos();
+        events.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+
+        LongAdder counter = sites.get(site);
+        if (counter == null) {
+            counter = sites.size() < MAX_SITES
+                    ? sites.computeIfAbsent(site, key -> new LongAdder())
+                    : sites.computeIfAbsent(OTHER_SITES, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Primer método de la pila que no es del JDK: el código (nuestro o de
+     * una librería, p.ej. el driver JDBC) que tenía el monitor
+     */
+    private static String siteOf(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "desconocido";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return "jdk";
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", virtualThreads);
+
+        Map<String, Object> pinning = new LinkedHashMap<>();
+        pinning.put("monitoring", isRunning());
+        pinning.put("thresholdMs", threshold.toMillis());
+        pinning.put("events", events.sum());
+        pinning.put("totalMs", totalNanos.sum() / 1_000_000);
+        pinning.put("maxMs", maxNanos.get() / 1_000_000);
+
+        Map<String, Long> bySite = new LinkedHashMap<>();
+        sites.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(10)
+                .forEach(entry -> bySite.put(entry.getKey(), entry.getValue().sum()));
+        pinning.put("sites", bySite);
+
+        stats.put("pinning", pinning);
+        return stats;
+    }
+}
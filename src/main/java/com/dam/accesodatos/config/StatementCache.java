@@ -0,0 +1,338 @@
+package com.dam.accesodatos.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de PreparedStatement para UNA conexión física del pool.
+ *
+ * Cuando el código llama a {@code conn.prepareStatement(sql)} se busca un
+ * statement ya preparado con el mismo SQL y las mismas opciones
+ * (RETURN_GENERATED_KEYS, tipo de ResultSet...). Así H2 no vuelve a parsear
+ * ni a planificar la consulta.
+ *
+ * El statement devuelto es un proxy: su {@code close()} no lo destruye, lo
+ * devuelve a la caché tras limpiar los parámetros.
+ *
+ * Al devolver la conexión al pool, {@link #reclaim()} cierra los statements
+ * que el llamador olvidó cerrar: vuelven a la caché y sus proxies dejan de
+ * funcionar, así que no pueden ejecutar SQL en la conexión del siguiente.
+ *
+ * No es thread-safe: una conexión (y por tanto su caché) solo la usa el hilo
+ * que la ha tomado prestada del pool.
+ */
+final class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    /**
+     * Clave de la caché: SQL + opciones con las que se preparó el statement
+     */
+    record Key(String sql, int autoGeneratedKeys, int resultSetType, int resultSetConcurrency,
+               int resultSetHoldability, List<Object> columns) {
+
+        private static final int NONE = Integer.MIN_VALUE;
+
+        /**
+         * Construye la clave a partir de los argumentos de cualquiera de las
+         * variantes de {@link Connection#prepareStatement}. Devuelve null si
+         * la variante no se cachea.
+         */
+        static Key of(Object[] args) {
+            String sql = (String) args[0];
+            if (args.length == 1) {
+                return new Key(sql, NONE, NONE, NONE, NONE, List.of());
+            }
+            if (args.length == 2) {
+                Object option = args[1];
+                if (option instanceof Integer autoGeneratedKeys) {
+                    return new Key(sql, autoGeneratedKeys, NONE, NONE, NONE, List.of());
+                }
+                if (option instanceof int[] columnIndexes) {
+                    return new Key(sql, NONE, NONE, NONE, NONE, List.of(Arrays.toString(columnIndexes)));
+                }
+                if (option instanceof String[] columnNames) {
+                    return new Key(sql, NONE, NONE, NONE, NONE, List.of((Object[]) columnNames));
+                }
+                return null;
+            }
+            if (args.length == 3) {
+                return new Key(sql, NONE, (Integer) args[1], (Integer) args[2], NONE, List.of());
+            }
+            if (args.length == 4) {
+                return new Key(sql, NONE, (Integer) args[1], (Integer) args[2], (Integer) args[3], List.of());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Operación que prepara un statement nuevo en la conexión física
+     */
+    @FunctionalInterface
+    interface Preparer {
+        PreparedStatement prepare() throws SQLException;
+    }
+
+    /**
+     * Contadores compartidos por todas las cachés del pool
+     */
+    static final class Stats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder reclaimed = new LongAdder();
+    }
+
+    private final int maxSize;
+    private final Stats stats;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+    // Proxies prestados y aún sin cerrar (cacheados o no)
+    private final List<LentStatementHandler> lent = new ArrayList<>();
+    private boolean closed;
+
+    StatementCache(int maxSize, Stats stats) {
+        this.maxSize = maxSize;
+        this.stats = stats;
+        // accessOrder = true: la iteración empieza por el menos usado recientemente (LRU)
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Devuelve un statement cacheado o prepara uno nuevo.
+     *
+     * @param owner conexión (proxy) que verá el llamador en getConnection()
+     * @param key   SQL + opciones
+     * @param preparer crea el statement físico si no está en caché
+     */
+    PreparedStatement prepare(Connection owner, Key key, Preparer preparer) throws SQLException {
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            stats.hits.increment();
+            cached.inUse = true;
+            return lend(cached.physical, cached, owner);
+        }
+
+        stats.misses.increment();
+        PreparedStatement physical = preparer.prepare();
+
+        if (cached != null) {
+            // El mismo SQL ya está abierto en esta conexión: sin caché, pero
+            // también con proxy (getConnection() y cierre al devolver la conexión)
+            return lend(physical, null, owner);
+        }
+
+        cached = new CachedStatement(physical);
+        cached.inUse = true;
+        statements.put(key, cached);
+        evictIfNeeded();
+        return lend(physical, cached, owner);
+    }
+
+    private PreparedStatement lend(PreparedStatement physical, CachedStatement cached, Connection owner) {
+        LentStatementHandler handler = new LentStatementHandler(physical, cached, owner);
+        lent.add(handler);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                handler);
+    }
+
+    /**
+     * Cierra lógicamente los statements que siguen prestados. Se llama al
+     * devolver la conexión al pool.
+     *
+     * @return número de statements que el llamador había dejado abiertos
+     */
+    int reclaim() {
+        if (lent.isEmpty()) {
+            return 0;
+        }
+        List<LentStatementHandler> open = new ArrayList<>(lent);
+        for (LentStatementHandler handler : open) {
+            handler.closeLogically();
+        }
+        stats.reclaimed.add(open.size());
+        return open.size();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Cierra físicamente todos los statements (al destruir la conexión)
+     */
+    void closeAll() {
+        closed = true;
+        // Con closed = true, los prestados se cierran físicamente
+        reclaim();
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.closePhysical();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, CachedStatement>> it = statements.entrySet().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next().getValue();
+            it.remove();
+            stats.evictions.increment();
+            if (eldest.inUse) {
+                // Se cerrará cuando su usuario actual lo cierre
+                eldest.evicted = true;
+            } else {
+                eldest.closePhysical();
+            }
+        }
+    }
+
+    /**
+     * Statement físico guardado en la caché
+     */
+    private final class CachedStatement {
+        private final PreparedStatement physical;
+        // Valores del driver al preparar: se restauran al devolverlo
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private final int defaultQueryTimeout;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) throws SQLException {
+            this.physical = physical;
+            this.defaultFetchSize = physical.getFetchSize();
+            this.defaultMaxRows = physical.getMaxRows();
+            this.defaultQueryTimeout = physical.getQueryTimeout();
+        }
+
+        /**
+         * close() lógico: limpia el statement y lo deja disponible en la caché
+         */
+        private void giveBack() {
+            if (evicted || closed) {
+                closePhysical();
+                return;
+            }
+            try {
+                ResultSet open = physical.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+                // Lo que cambie un llamador (p.ej. setFetchSize en streamAllUsers) no pasa al siguiente
+                if (physical.getFetchSize() != defaultFetchSize) {
+                    physical.setFetchSize(defaultFetchSize);
+                }
+                if (physical.getMaxRows() != defaultMaxRows) {
+                    physical.setMaxRows(defaultMaxRows);
+                }
+                if (physical.getQueryTimeout() != defaultQueryTimeout) {
+                    physical.setQueryTimeout(defaultQueryTimeout);
+                }
+                inUse = false;
+            } catch (SQLException e) {
+                // Statement inservible: sacarlo de la caché
+                statements.values().remove(this);
+                closePhysical();
+            }
+        }
+
+        private void closePhysical() {
+            StatementCache.closePhysical(physical);
+        }
+    }
+
+    private static void closePhysical(PreparedStatement physical) {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            logger.warn("Error al cerrar PreparedStatement cacheado: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Proxy del statement prestado. {@code cached} es null si el statement no
+     * está en la caché (mismo SQL abierto dos veces): entonces close() lo
+     * cierra físicamente.
+     */
+    private final class LentStatementHandler implements InvocationHandler {
+        private final PreparedStatement physical;
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean logicallyClosed;
+
+        private LentStatementHandler(PreparedStatement physical, CachedStatement cached, Connection owner) {
+            this.physical = physical;
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        private void closeLogically() {
+            if (logicallyClosed) {
+                return;
+            }
+            logicallyClosed = true;
+            lent.remove(this);
+            if (cached != null) {
+                cached.giveBack();
+            } else {
+                closePhysical(physical);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    closeLogically();
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (cached != null ? "CachedPreparedStatement[" : "PooledPreparedStatement[") + physical + "]";
+                default:
+                    break;
+            }
+
+            // Tras cerrarlo (o tras devolver la conexión al pool) no se puede
+            // usar: el statement físico ya es de otro prestatario o está cerrado
+            if (logicallyClosed || owner.isClosed()) {
+                throw new SQLException("El PreparedStatement está cerrado");
+            }
+            if ("getConnection".equals(method.getName())) {
+                return owner;
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
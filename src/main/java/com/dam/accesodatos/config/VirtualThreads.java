@@ -0,0 +1,40 @@
+package com.dam.accesodatos.config;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábrica de hilos para los ejecutores internos (pool, lotes MCP,
+ * contadores...), con hilos virtuales o de plataforma según
+ * {@code spring.threads.virtual.enabled}.
+ *
+ * Con hilos virtuales (JDK 21) un hilo bloqueado en JDBC no ocupa un hilo
+ * del sistema operativo: se "desmonta" de su hilo portador (carrier) y este
+ * atiende a otro. Excepto si el bloqueo ocurre dentro de un bloque
+ * synchronized: entonces el hilo virtual queda clavado (pinned) a su
+ * portador. Por eso el pool, las cachés y DatabaseConfig usan
+ * ReentrantLock y no synchronized (ver PinningMonitor).
+ *
+ * Los hilos virtuales siempre son daemon.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param prefix  nombre de los hilos: prefix-1, prefix-2...
+     * @param virtual true = hilos virtuales, false = hilos de plataforma daemon
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(prefix + "-", 1).factory();
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
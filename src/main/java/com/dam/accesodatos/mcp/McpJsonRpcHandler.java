@@ -0,0 +1,305 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.VirtualThreads;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementación nativa del protocolo MCP (JSON-RPC 2.0) dentro de la JVM.
+ *
+ * Antes, cada llamada de un cliente MCP pasaba por mcp_adapter.py:
+ * cliente → stdio → Python → HTTP REST → Spring Boot. Este componente
+ * atiende los mensajes MCP directamente y ejecuta las herramientas de
+ * McpToolRegistry sin saltos intermedios. Lo usan dos transportes:
+ *
+ * - McpStreamableHttpController: POST /mcp (Streamable HTTP)
+ * - McpStdioTransport: stdin/stdout del propio proceso (perfil "stdio")
+ *
+ * Métodos soportados: initialize, ping, tools/list, tools/call y las
+ * notificaciones del cliente (notifications/*, no tienen respuesta).
+ * También acepta lotes JSON-RPC (un array de mensajes).
+ *
+ * Los argumentos de tools/call se enlazan por nombre de parámetro, con los
+ * mismos nombres que los endpoints REST (userId, userIds, department...).
+ * Los parámetros DTO (UserCreateDto, UserUpdateDto, UserQueryDto) se
+ * rellenan con el objeto de argumentos completo.
+ */
+@Component
+public class McpJsonRpcHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpJsonRpcHandler.class);
+
+    public static final String JSONRPC_VERSION = "2.0";
+
+    // Códigos de error JSON-RPC 2.0
+    public static final int PARSE_ERROR = -32700;
+    public static final int INVALID_REQUEST = -32600;
+    public static final int METHOD_NOT_FOUND = -32601;
+    public static final int INVALID_PARAMS = -32602;
+    public static final int INTERNAL_ERROR = -32603;
+
+    /**
+     * Versiones del protocolo MCP soportadas, la preferida primero
+     */
+    static final List<String> PROTOCOL_VERSIONS = List.of("2025-03-26", "2024-11-05");
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // tools/list ya construido (y con inputSchema) en ToolCatalog
+    @Autowired
+    private ToolCatalog toolCatalog;
+
+    @Autowired
+    private ToolConcurrencyLimiter toolLimiter;
+
+    @Value("${ra2.mcp.batch.max-concurrency:4}")
+    private int batchMaxConcurrency = 4;
+
+    @Value("${ra2.mcp.batch.max-size:100}")
+    private int batchMaxSize = 100;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor batchExecutor;
+
+    @PostConstruct
+    void init() {
+        // Hilos fijos y cola acotada; si se llena, el hilo de la petición
+        // ejecuta la llamada él mismo (nunca se rechaza ninguna)
+        // (con hilos virtuales el pool sigue limitando cuántas van a la vez)
+        batchExecutor = new ThreadPoolExecutor(batchMaxConcurrency, batchMaxConcurrency,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(batchMaxSize),
+                VirtualThreads.factory("ra2-mcp-batch", virtualThreads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        batchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
+    /**
+     * Procesa un mensaje tal como llega del transporte (texto JSON)
+     *
+     * @return la respuesta, o null si no hay que responder (notificaciones)
+     */
+    public JsonNode handlePayload(String payload) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            return error(null, PARSE_ERROR, "JSON no válido: " + e.getOriginalMessage());
+        }
+        if (message == null || message.isMissingNode()) {
+            return error(null, INVALID_REQUEST, "Mensaje vacío");
+        }
+        if (message.isArray()) {
+            return handleBatch(message);
+        }
+        return handle(message);
+    }
+
+    /**
+     * Lote JSON-RPC: las llamadas son independientes y se ejecutan a la vez
+     * (como mucho ra2.mcp.batch.max-concurrency), así su trabajo en la BD se
+     * solapa. Las respuestas se devuelven juntas en el orden de las peticiones.
+     *
+     * @return array de respuestas, o null si el lote solo tenía notificaciones
+     */
+    private JsonNode handleBatch(JsonNode batch) {
+        if (batch.isEmpty()) {
+            return error(null, INVALID_REQUEST, "Lote JSON-RPC vacío");
+        }
+        if (batch.size() > batchMaxSize) {
+            return error(null, INVALID_REQUEST,
+                    "Lote demasiado grande: " + batch.size() + " mensajes (máximo " + batchMaxSize + ")");
+        }
+
+        List<CompletableFuture<ObjectNode>> calls = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size() - 1; i++) {
+            JsonNode message = batch.get(i);
+            calls.add(CompletableFuture.supplyAsync(() -> handle(message), batchExecutor));
+        }
+        // El último lo ejecuta el propio hilo de la petición, que si no solo esperaría
+        calls.add(CompletableFuture.completedFuture(handle(batch.get(batch.size() - 1))));
+
+        ArrayNode responses = objectMapper.createArrayNode();
+        for (CompletableFuture<ObjectNode> call : calls) {
+            ObjectNode response = call.join();
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses.isEmpty() ? null : responses;
+    }
+
+    /**
+     * Procesa un mensaje JSON-RPC ya parseado
+     *
+     * @return la respuesta, o null si no hay que responder (notificaciones)
+     */
+    public ObjectNode handle(JsonNode message) {
+        if (!message.isObject()) {
+            return error(null, INVALID_REQUEST, "El mensaje debe ser un objeto JSON-RPC");
+        }
+        JsonNode id = message.get("id");
+        if (!message.has("method") && (message.has("result") || message.has("error"))) {
+            // Respuesta del cliente a una petición del servidor: no enviamos ninguna
+            return null;
+        }
+        if (!JSONRPC_VERSION.equals(message.path("jsonrpc").asText()) || !message.path("method").isTextual()) {
+            return error(id, INVALID_REQUEST, "Petición JSON-RPC no válida");
+        }
+
+        String method = message.get("method").asText();
+        boolean notification = id == null;
+        try {
+            JsonNode result = dispatch(method, message.path("params"));
+            return notification ? null : success(id, result);
+        } catch (JsonRpcException e) {
+            return notification ? null : error(id, e.getCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Error procesando {}", method, e);
+            return notification ? null : error(id, INTERNAL_ERROR, e.getMessage());
+        }
+    }
+
+    private JsonNode dispatch(String method, JsonNode params) {
+        switch (method) {
+            case "initialize":
+                return initialize(params);
+            case "ping":
+                return objectMapper.createObjectNode();
+            case "tools/list":
+                return toolCatalog.current().toolsList();
+            case "tools/call":
+                return callTool(params);
+            default:
+                if (method.startsWith("notifications/")) {
+                    // notifications/initialized, notifications/cancelled...: nada que hacer
+                    return null;
+                }
+                throw new JsonRpcException(METHOD_NOT_FOUND, "Método no soportado: " + method);
+        }
+    }
+
+    private ObjectNode initialize(JsonNode params) {
+        String requested = params.path("protocolVersion").asText(null);
+        String version = requested != null && PROTOCOL_VERSIONS.contains(requested) ? requested : PROTOCOL_VERSIONS.get(0);
+
+        ObjectNode result = objectMapper.createObjectNode();
+        result.put("protocolVersion", version);
+        result.putObject("capabilities").putObject("tools").put("listChanged", false);
+        ObjectNode serverInfo = result.putObject("serverInfo");
+        serverInfo.put("name", "mcp-server-ra2-jdbc");
+        serverInfo.put("version", "1.0.0");
+        return result;
+    }
+
+    /**
+     * tools/call: enlaza los argumentos y ejecuta el método @Tool.
+     *
+     * Un error de la herramienta (SQL, usuario inexistente...) no es un
+     * error de protocolo: se devuelve como resultado con isError = true.
+     * Igual si la herramienta está saturada (ToolConcurrencyLimiter).
+     */
+    private ObjectNode callTool(JsonNode params) {
+        String name = params.path("name").asText(null);
+        McpToolRegistry.McpToolInfo tool = name != null ? toolRegistry.getTool(name) : null;
+        if (tool == null) {
+            throw new JsonRpcException(INVALID_PARAMS, "Herramienta desconocida: " + name);
+        }
+
+        JsonNode arguments = params.path("arguments");
+        if (arguments.isMissingNode() || arguments.isNull()) {
+            arguments = objectMapper.createObjectNode();
+        } else if (!arguments.isObject()) {
+            throw new JsonRpcException(INVALID_PARAMS, "arguments debe ser un objeto");
+        }
+
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire(name)) {
+            Object value = tool.invoke(arguments);
+            String text = value instanceof String string ? string : objectMapper.writeValueAsString(value);
+            return toolResult(text, false);
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            logger.warn("{} rechazada: {}", name, e.getMessage());
+            return toolResult("Error: " + e.getMessage() + " (reintentar más tarde)", true);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            throw new JsonRpcException(INVALID_PARAMS, e.getMessage());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el resultado de " + name, e);
+        } catch (RuntimeException e) {
+            logger.error("Error ejecutando herramienta {}", name, e);
+            return toolResult("Error: " + e.getMessage(), true);
+        }
+    }
+
+    private ObjectNode toolResult(String text, boolean isError) {
+        ObjectNode result = objectMapper.createObjectNode();
+        ObjectNode content = result.putArray("content").addObject();
+        content.put("type", "text");
+        content.put("text", text);
+        if (isError) {
+            result.put("isError", true);
+        }
+        return result;
+    }
+
+    private ObjectNode success(JsonNode id, JsonNode result) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", JSONRPC_VERSION);
+        response.set("id", id);
+        response.set("result", result != null ? result : objectMapper.createObjectNode());
+        return response;
+    }
+
+    private ObjectNode error(JsonNode id, int code, String message) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", JSONRPC_VERSION);
+        response.set("id", id);
+        ObjectNode error = response.putObject("error");
+        error.put("code", code);
+        error.put("message", message);
+        return response;
+    }
+
+    /**
+     * Error de protocolo con su código JSON-RPC
+     */
+    static class JsonRpcException extends RuntimeException {
+        private final int code;
+
+        JsonRpcException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        int getCode() {
+            return code;
+        }
+    }
+}
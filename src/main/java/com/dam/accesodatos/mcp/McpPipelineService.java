@@ -0,0 +1,474 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.mcp.McpToolRegistry.InvalidArgumentsException;
+import com.dam.accesodatos.mcp.McpToolRegistry.McpToolInfo;
+import com.dam.accesodatos.model.PipelineRequest;
+import com.dam.accesodatos.model.PipelineStep;
+import com.dam.accesodatos.ra2.DepartmentCounters;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.mcp.server.annotation.Tool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Herramienta run_pipeline: ejecuta en el servidor un pequeño grafo (DAG)
+ * de llamadas a herramientas en una sola petición MCP.
+ *
+ * Un agente que hace "buscar usuarios de IT -> actualizar cada uno ->
+ * volver a contar" necesita varias idas y vueltas, y entre ellas otro
+ * cliente puede cambiar los datos. Con run_pipeline envía todos los pasos
+ * a la vez; los pasos posteriores usan los resultados de los anteriores
+ * con referencias "$.paso.campo" (ver PipelineStep).
+ *
+ * Ejecución:
+ * 1. Se valida todo antes de empezar: herramientas, referencias, ciclos y límites
+ * 2. Se ordenan los pasos por dependencias (orden topológico; a igualdad,
+ *    el orden en que se declararon)
+ * 3. Se toma UNA conexión del pool y se liga al hilo
+ *    (DatabaseConfig.bindConnection): todas las herramientas la usan
+ * 4. Si transactional=true, autoCommit=false durante todo el pipeline:
+ *    commit al final, rollback si falla cualquier paso. Tras ese commit se
+ *    aplican los cambios en los contadores por departamento y se vuelven a
+ *    invalidar en la caché de usuarios las filas cambiadas
+ *    (BoundConnection.afterCommit)
+ *
+ * Con transactional=false cada paso confirma lo suyo y, si uno falla,
+ * los anteriores quedan hechos y los siguientes no se ejecutan.
+ */
+@Service
+public class McpPipelineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpPipelineService.class);
+
+    static final String TOOL_NAME = "run_pipeline";
+
+    private static final String ITEM = "$item";
+
+    // @Lazy: el registro también registra esta herramienta (dependencia circular)
+    @Autowired
+    @Lazy
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    @Value("${ra2.mcp.pipeline.max-steps:20}")
+    private int maxSteps = 20;
+
+    @Value("${ra2.mcp.pipeline.max-items:100}")
+    private int maxItems = 100;
+
+    /**
+     * Ejecuta un pipeline de herramientas sobre una única conexión
+     *
+     * @param request pasos y modo transaccional
+     * @return status (completed, failed o rolled_back), committed, el
+     *         resultado de cada paso ejecutado y, si falla, failedStep y error
+     * @throws InvalidArgumentsException si el pipeline no es válido (no se ejecuta nada)
+     */
+    @Tool(name = TOOL_NAME,
+          description = "Ejecuta varias herramientas en una sola petición y conexión, opcionalmente en una transacción; "
+                  + "los pasos usan resultados anteriores con referencias \"$.paso.campo\"")
+    public Map<String, Object> runPipeline(PipelineRequest request) {
+        List<PlannedStep> plan = plan(request);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        ObjectNode stepResults = objectMapper.createObjectNode();
+        boolean transactional = request.isTransactional();
+        boolean committed = false;
+        String failedStep = null;
+        String error = null;
+
+        // Transaccional: la barrera de escrituras se mantiene hasta aplicar a
+        // los contadores los cambios apuntados en la conexión (tras el commit)
+        if (transactional) {
+            departmentCounters.beginWrite();
+        }
+        try {
+            Connection connection;
+            try {
+                connection = DatabaseConfig.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException("Error al obtener conexión para el pipeline: " + e.getMessage(), e);
+            }
+
+            try (connection) {
+                boolean previousAutoCommit = connection.getAutoCommit();
+                if (transactional) {
+                    connection.setAutoCommit(false);
+                }
+                BoundConnection bound = DatabaseConfig.bindConnection(connection, transactional);
+                try {
+                    for (PlannedStep step : plan) {
+                        try {
+                            stepResults.set(step.id, execute(step, stepResults));
+                            if (bound.isRollbackOnly()) {
+                                throw new IllegalStateException("la herramienta ha deshecho la transacción");
+                            }
+                        } catch (RuntimeException e) {
+                            failedStep = step.id;
+                            error = e.getMessage();
+                            logger.warn("Pipeline: falla el paso '{}' ({}): {}", step.id, step.tool.getName(), error);
+                            break;
+                        }
+                    }
+                } finally {
+                    DatabaseConfig.unbindConnection();
+                }
+
+                if (transactional) {
+                    try {
+                        if (failedStep == null) {
+                            connection.commit();
+                            committed = true;
+                            bound.runAfterCommit();
+                        } else {
+                            connection.rollback();
+                            bound.discardAfterCommit();
+                        }
+                    } finally {
+                        connection.setAutoCommit(previousAutoCommit);
+                    }
+                } else {
+                    committed = true;
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Error al terminar el pipeline: " + e.getMessage(), e);
+            }
+        } finally {
+            if (transactional) {
+                departmentCounters.endWrite();
+            }
+        }
+
+        result.put("status", failedStep == null ? "completed" : transactional ? "rolled_back" : "failed");
+        result.put("transactional", transactional);
+        result.put("committed", committed);
+        result.put("steps", stepResults);
+        if (failedStep != null) {
+            result.put("failedStep", failedStep);
+            result.put("error", error);
+        }
+        return result;
+    }
+
+    private JsonNode execute(PlannedStep step, ObjectNode stepResults) {
+        if (step.forEach == null) {
+            return objectMapper.valueToTree(step.tool.invoke(resolve(step.arguments, stepResults, null)));
+        }
+        JsonNode items = step.forEach.select(stepResults, null);
+        if (!items.isArray()) {
+            throw new IllegalArgumentException("forEach " + step.forEach.text + " no es un array");
+        }
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("forEach " + step.forEach.text + " tiene " + items.size()
+                    + " elementos (máximo " + maxItems + ")");
+        }
+        ArrayNode results = objectMapper.createArrayNode();
+        for (JsonNode item : items) {
+            results.add((JsonNode) objectMapper.valueToTree(step.tool.invoke(resolve(step.arguments, stepResults, item))));
+        }
+        return results;
+    }
+
+    /**
+     * Copia de los argumentos con las referencias sustituidas por su valor
+     */
+    private JsonNode resolve(JsonNode node, ObjectNode stepResults, JsonNode item) {
+        if (node.isTextual()) {
+            Reference reference = Reference.parse(node.asText());
+            return reference != null ? reference.select(stepResults, item) : node;
+        }
+        if (node.isObject()) {
+            ObjectNode copy = objectMapper.createObjectNode();
+            node.fields().forEachRemaining(field -> copy.set(field.getKey(), resolve(field.getValue(), stepResults, item)));
+            return copy;
+        }
+        if (node.isArray()) {
+            ArrayNode copy = objectMapper.createArrayNode();
+            node.forEach(element -> copy.add(resolve(element, stepResults, item)));
+            return copy;
+        }
+        return node;
+    }
+
+    // ========== VALIDACIÓN Y ORDEN ==========
+
+    private List<PlannedStep> plan(PipelineRequest request) {
+        List<PipelineStep> steps = request != null ? request.getSteps() : null;
+        if (steps == null || steps.isEmpty()) {
+            throw new InvalidArgumentsException(TOOL_NAME, "el pipeline no tiene pasos");
+        }
+        if (steps.size() > maxSteps) {
+            throw new InvalidArgumentsException(TOOL_NAME, "máximo " + maxSteps + " pasos por pipeline");
+        }
+
+        Map<String, PlannedStep> byId = new LinkedHashMap<>();
+        for (PipelineStep step : steps) {
+            PlannedStep planned = prepare(step);
+            if (byId.putIfAbsent(planned.id, planned) != null) {
+                throw new InvalidArgumentsException(TOOL_NAME, "id de paso repetido '" + planned.id + "'");
+            }
+        }
+        for (PlannedStep step : byId.values()) {
+            for (String dependency : step.dependencies) {
+                if (!byId.containsKey(dependency)) {
+                    throw new InvalidArgumentsException(TOOL_NAME,
+                            "el paso '" + step.id + "' usa el paso '" + dependency + "', que no existe");
+                }
+            }
+        }
+
+        return topologicalOrder(byId);
+    }
+
+    private PlannedStep prepare(PipelineStep step) {
+        String id = step.getId();
+        if (id == null || id.isBlank()) {
+            throw new InvalidArgumentsException(TOOL_NAME, "todos los pasos necesitan id");
+        }
+        if (TOOL_NAME.equals(step.getTool())) {
+            throw new InvalidArgumentsException(TOOL_NAME, "el paso '" + id + "' no puede ser otro " + TOOL_NAME);
+        }
+        McpToolInfo tool = step.getTool() != null ? toolRegistry.getTool(step.getTool()) : null;
+        if (tool == null) {
+            throw new InvalidArgumentsException(TOOL_NAME, "el paso '" + id + "' usa una herramienta desconocida: " + step.getTool());
+        }
+
+        JsonNode arguments = step.getArguments() != null
+                ? objectMapper.valueToTree(step.getArguments())
+                : objectMapper.createObjectNode();
+
+        Reference forEach = null;
+        if (step.getForEach() != null) {
+            forEach = Reference.parse(step.getForEach());
+            if (forEach == null || forEach.stepId == null) {
+                throw new InvalidArgumentsException(TOOL_NAME,
+                        "forEach del paso '" + id + "' debe ser una referencia \"$.paso...\"");
+            }
+        }
+
+        Set<String> dependencies = new LinkedHashSet<>();
+        if (step.getDependsOn() != null) {
+            dependencies.addAll(step.getDependsOn());
+        }
+        if (forEach != null) {
+            dependencies.add(forEach.stepId);
+        }
+        collectReferences(id, arguments, forEach != null, dependencies);
+        if (dependencies.contains(id)) {
+            throw new InvalidArgumentsException(TOOL_NAME, "el paso '" + id + "' depende de sí mismo");
+        }
+        return new PlannedStep(id, tool, arguments, forEach, dependencies);
+    }
+
+    private void collectReferences(String stepId, JsonNode node, boolean hasItem, Set<String> dependencies) {
+        if (node.isTextual()) {
+            Reference reference = Reference.parse(node.asText());
+            if (reference == null) {
+                return;
+            }
+            if (reference.stepId != null) {
+                dependencies.add(reference.stepId);
+            } else if (!hasItem) {
+                throw new InvalidArgumentsException(TOOL_NAME, "el paso '" + stepId + "' usa " + ITEM + " sin forEach");
+            }
+        } else if (node.isContainerNode()) {
+            node.forEach(child -> collectReferences(stepId, child, hasItem, dependencies));
+        }
+    }
+
+    /**
+     * Algoritmo de Kahn: cada vez se toma el primer paso declarado cuyas
+     * dependencias ya están ejecutadas. Si no queda ninguno, hay un ciclo.
+     */
+    private static List<PlannedStep> topologicalOrder(Map<String, PlannedStep> byId) {
+        List<PlannedStep> ordered = new ArrayList<>(byId.size());
+        Set<String> done = new LinkedHashSet<>();
+        List<PlannedStep> pending = new ArrayList<>(byId.values());
+
+        while (!pending.isEmpty()) {
+            boolean progress = false;
+            for (Iterator<PlannedStep> it = pending.iterator(); it.hasNext(); ) {
+                PlannedStep step = it.next();
+                if (done.containsAll(step.dependencies)) {
+                    ordered.add(step);
+                    done.add(step.id);
+                    it.remove();
+                    progress = true;
+                    break;
+                }
+            }
+            if (!progress) {
+                List<String> ids = pending.stream().map(step -> step.id).toList();
+                throw new InvalidArgumentsException(TOOL_NAME, "hay un ciclo entre los pasos " + ids);
+            }
+        }
+        return ordered;
+    }
+
+    // ========== MODELO INTERNO ==========
+
+    private static final class PlannedStep {
+        final String id;
+        final McpToolInfo tool;
+        final JsonNode arguments;
+        final Reference forEach;
+        final Set<String> dependencies;
+
+        PlannedStep(String id, McpToolInfo tool, JsonNode arguments, Reference forEach, Set<String> dependencies) {
+            this.id = id;
+            this.tool = tool;
+            this.arguments = arguments;
+            this.forEach = forEach;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Referencia JSONPath reducida: $.paso, .campo, [n] y [*]; o $item
+     *
+     * Solo se reconoce si es el valor de texto completo (no se sustituye
+     * dentro de otro texto) y el valor sustituido conserva su tipo JSON.
+     */
+    static final class Reference {
+        private static final Object WILDCARD = new Object();
+
+        final String text;
+        final String stepId;          // null = $item
+        final List<Object> segments;  // String (campo), Integer (índice) o WILDCARD
+
+        private Reference(String text, String stepId, List<Object> segments) {
+            this.text = text;
+            this.stepId = stepId;
+            this.segments = segments;
+        }
+
+        /**
+         * @return la referencia, o null si el texto no es una referencia
+         * @throws InvalidArgumentsException si empieza como referencia pero está mal escrita
+         */
+        static Reference parse(String text) {
+            int position;
+            String stepId = null;
+            if (text.equals(ITEM) || text.startsWith(ITEM + ".") || text.startsWith(ITEM + "[")) {
+                position = ITEM.length();
+            } else if (text.startsWith("$.")) {
+                position = 2;
+                int end = identifierEnd(text, position);
+                if (end == position) {
+                    throw invalid(text);
+                }
+                stepId = text.substring(position, end);
+                position = end;
+            } else {
+                return null;
+            }
+
+            List<Object> segments = new ArrayList<>();
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (c == '.') {
+                    int end = identifierEnd(text, position + 1);
+                    if (end == position + 1) {
+                        throw invalid(text);
+                    }
+                    segments.add(text.substring(position + 1, end));
+                    position = end;
+                } else if (c == '[') {
+                    int close = text.indexOf(']', position);
+                    if (close < 0) {
+                        throw invalid(text);
+                    }
+                    String index = text.substring(position + 1, close);
+                    if (index.equals("*")) {
+                        segments.add(WILDCARD);
+                    } else {
+                        try {
+                            segments.add(Integer.parseInt(index));
+                        } catch (NumberFormatException e) {
+                            throw invalid(text);
+                        }
+                    }
+                    position = close + 1;
+                } else {
+                    throw invalid(text);
+                }
+            }
+            return new Reference(text, stepId, segments);
+        }
+
+        private static int identifierEnd(String text, int start) {
+            int end = start;
+            while (end < text.length()
+                    && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_' || text.charAt(end) == '-')) {
+                end++;
+            }
+            return end;
+        }
+
+        private static InvalidArgumentsException invalid(String text) {
+            return new InvalidArgumentsException(TOOL_NAME, "referencia mal formada: " + text);
+        }
+
+        /**
+         * Valor de la referencia; tras un [*] el resultado es un array con
+         * el resto del camino aplicado a cada elemento
+         *
+         * @throws IllegalArgumentException si el camino no existe en el resultado
+         */
+        JsonNode select(ObjectNode stepResults, JsonNode item) {
+            JsonNode root = stepId != null ? stepResults.get(stepId) : item;
+            return select(root, 0);
+        }
+
+        private JsonNode select(JsonNode node, int from) {
+            for (int i = from; i < segments.size(); i++) {
+                Object segment = segments.get(i);
+                if (segment == WILDCARD) {
+                    if (node == null || !node.isArray()) {
+                        throw missing();
+                    }
+                    ArrayNode values = ((ArrayNode) node).arrayNode();
+                    for (JsonNode element : node) {
+                        values.add(select(element, i + 1));
+                    }
+                    return values;
+                }
+                node = node == null ? null
+                        : segment instanceof Integer index ? node.get(index)
+                        : node.get((String) segment);
+            }
+            if (node == null || node.isMissingNode()) {
+                throw missing();
+            }
+            return node;
+        }
+
+        private IllegalArgumentException missing() {
+            return new IllegalArgumentException("la referencia " + text + " no existe en el resultado");
+        }
+    }
+}
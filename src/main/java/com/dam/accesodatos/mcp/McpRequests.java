@@ -0,0 +1,125 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cuerpos de las peticiones REST de herramientas (/mcp/{tool}).
+ *
+ * Jackson construye cada record directamente desde el JSON del cuerpo,
+ * leyendo los tokens uno a uno: sin Map intermedio, sin casts y con los
+ * tipos ya convertidos (un "userId": 1 llega como Long). Los campos que no
+ * vienen en el JSON quedan a null; los desconocidos se ignoran
+ * (fail-on-unknown-properties: false).
+ */
+public final class McpRequests {
+
+    private McpRequests() {
+    }
+
+    public record UserIdRequest(Long userId) {
+        public long requireUserId(String tool) {
+            return required(tool, "userId", userId);
+        }
+    }
+
+    public record UserIdsRequest(List<Long> userIds) {
+        public List<Long> requireUserIds(String tool) {
+            return required(tool, "userIds", userIds);
+        }
+    }
+
+    public record DepartmentRequest(String department) {
+    }
+
+    public record TableRequest(String tableName) {
+    }
+
+    public record CreateUserRequest(String name, String email, String department, String role) {
+        public UserCreateDto toDto() {
+            return new UserCreateDto(name, email, department, role);
+        }
+    }
+
+    /**
+     * Los campos ausentes (null), también active, no se modifican
+     */
+    public record UpdateUserRequest(Long userId, String name, String email, String department, String role,
+                                    Boolean active) {
+        public long requireUserId(String tool) {
+            return required(tool, "userId", userId);
+        }
+
+        public UserUpdateDto toDto() {
+            return new UserUpdateDto(name, email, department, role, active);
+        }
+    }
+
+    /**
+     * cursor: ausente = paginación por offset; null o "" = primera página
+     * por cursor; otro texto = el nextCursor de la página anterior.
+     * Es un JsonNode para distinguir "ausente" (null) de "null" (NullNode).
+     */
+    public record SearchUsersRequest(String department, String role, Boolean active,
+                                     Integer limit, Integer offset, JsonNode cursor) {
+        public UserQueryDto toQuery() {
+            UserQueryDto query = new UserQueryDto(department, role, active, limit, offset);
+            if (cursor != null) {
+                query.setCursor(cursor.isNull() ? "" : cursor.asText());
+            }
+            return query;
+        }
+    }
+
+    /**
+     * transfer_data y batch_insert_users. chunkSize, mode y commitMode solo
+     * los usa batch_insert_users; si no viene ninguno se usa la
+     * configuración ra2.jdbc.batch.* del servicio.
+     */
+    public record UsersRequest(List<User> users, Integer chunkSize, String mode, String commitMode) {
+        public List<User> requireUsers(String tool) {
+            return required(tool, "users", users);
+        }
+
+        public BatchInsertOptions options(String tool) {
+            if (chunkSize == null && mode == null && commitMode == null) {
+                return null;
+            }
+            return new BatchInsertOptions(
+                    chunkSize != null ? chunkSize : 0,
+                    parseEnum(tool, "mode", BatchInsertOptions.Mode.class, mode),
+                    parseEnum(tool, "commitMode", BatchInsertOptions.CommitMode.class, commitMode));
+        }
+    }
+
+    /**
+     * Valor de un enum sin distinguir mayúsculas; null si no viene
+     *
+     * @throws McpToolRegistry.InvalidArgumentsException si no es uno de los valores (400)
+     */
+    static <E extends Enum<E>> E parseEnum(String tool, String name, Class<E> type, String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new McpToolRegistry.InvalidArgumentsException(tool, "'" + name + "' no es válido: " + value
+                    + " (valores: " + Arrays.toString(type.getEnumConstants()) + ")");
+        }
+    }
+
+    private static <T> T required(String tool, String name, T value) {
+        if (value == null) {
+            throw new McpToolRegistry.InvalidArgumentsException(tool, "falta '" + name + "'");
+        }
+        return value;
+    }
+}
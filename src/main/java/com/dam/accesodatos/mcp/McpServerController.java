@@ -3,15 +3,44 @@ package com.dam.accesodatos.mcp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.JdbcExecutor;
+import com.dam.accesodatos.config.PinningMonitor;
+import com.dam.accesodatos.ra2.AsyncDatabaseUserService;
+import com.dam.accesodatos.ra2.CoalescingDatabaseUserService;
 import com.dam.accesodatos.ra2.DatabaseUserService;
+import com.dam.accesodatos.ra2.DepartmentCounters;
+import com.dam.accesodatos.ra2.UserCache;
+import com.dam.accesodatos.ra2.UserIngestService;
+import com.dam.accesodatos.ra2.UserStreamReader;
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
+import com.dam.accesodatos.model.IngestResult;
 import com.dam.accesodatos.model.User;
-import com.dam.accesodatos.model.UserCreateDto;
 
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Controlador REST que expone las herramientas MCP via HTTP para operaciones JDBC.
@@ -20,10 +49,22 @@ import java.util.Map;
  * - Listar herramientas JDBC disponibles
  * - Ejecutar operaciones JDBC específicas
  * - Obtener información sobre el servidor MCP
+ *
+ * Las lecturas (find_*, search_users, execute_count_by_department y
+ * /call/{tool}) son asíncronas: devuelven un DeferredResult y la llamada
+ * JDBC se ejecuta en el JdbcExecutor, sin ocupar el hilo de Tomcat
+ * mientras espera a la BD.
+ *
+ * Los cuerpos se leen como records tipados (McpRequests) y las respuestas
+ * son ToolResponse, que se escriben con serializadores hechos a mano
+ * (ToolResponse.Serializer, UserSerializer) sin Map intermedio.
+ *
+ * Con el perfil "reactive" lo sustituye ReactiveMcpController (WebFlux + R2DBC).
  */
 @RestController
 @RequestMapping("/mcp")
 @CrossOrigin(origins = "*")
+@Profile("!reactive")
 public class McpServerController {
 
     private static final Logger logger = LoggerFactory.getLogger(McpServerController.class);
@@ -34,43 +75,130 @@ public class McpServerController {
     @Autowired
     private McpToolRegistry toolRegistry;
 
+    @Autowired
+    private ToolCatalog toolCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    @Autowired
+    private CoalescingDatabaseUserService coalescingService;
+
+    @Autowired
+    private PinningMonitor pinningMonitor;
+
+    @Autowired
+    private AsyncDatabaseUserService asyncUserService;
+
+    @Autowired
+    private JdbcExecutor jdbcExecutor;
+
+    @Autowired
+    private ToolConcurrencyLimiter toolLimiter;
+
+    @Autowired
+    private ToolWarmup toolWarmup;
+
+    @Autowired
+    private UserIngestService ingestService;
+
+    // Tiempo máximo de una respuesta diferida (DeferredResult)
+    @Value("${ra2.jdbc.async.timeout:30s}")
+    private Duration asyncTimeout = Duration.ofSeconds(30);
+
     /**
-     * Endpoint de health check
+     * Endpoint de health check: 503 WARMING mientras se calientan las
+     * herramientas (ToolWarmup), 200 UP después
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> getHealth() {
         Map<String, String> health = new HashMap<>();
-        health.put("status", "UP");
         health.put("service", "MCP Server RA2 JDBC");
+        if (toolWarmup.isWarming()) {
+            health.put("status", "WARMING");
+            health.put("progress", toolWarmup.getProgress() + "%");
+            return ResponseEntity.status(503).body(health);
+        }
+        health.put("status", "UP");
 
         return ResponseEntity.ok(health);
     }
 
+    /**
+     * Endpoint de métricas internas (pool de conexiones, caché de usuarios, contadores...)
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> connections = new LinkedHashMap<>();
+        connections.put("mode", DatabaseConfig.getConnectionMode().name());
+        if (DatabaseConfig.getConnectionMode() == DatabaseConfig.ConnectionMode.POOLED) {
+            connections.put("pool", DatabaseConfig.getPool().getStats());
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connections);
+        metrics.put("userCache", userCache.getStats());
+        metrics.put("departmentCounters", departmentCounters.getStats());
+        metrics.put("coalescing", coalescingService.getStats());
+        metrics.put("virtualThreads", pinningMonitor.getStats());
+        metrics.put("jdbcExecutor", jdbcExecutor.getStats());
+        metrics.put("toolLimits", toolLimiter.getStats());
+        metrics.put("warmup", toolWarmup.getStats());
+        metrics.put("ingest", ingestService.getStats());
+
+        return ResponseEntity.ok(metrics);
+    }
+
     /**
      * Endpoint para listar todas las herramientas MCP disponibles
+     * (con el inputSchema de cada una).
+     *
+     * El JSON ya está serializado en ToolCatalog: se envían siempre los
+     * mismos bytes. Lleva un ETag fuerte; si el cliente manda
+     * If-None-Match con ese valor, Spring responde 304 Not Modified sin
+     * cuerpo. Cache-Control: no-cache = se puede guardar, pero hay que
+     * revalidarlo con el ETag en cada uso.
      */
     @GetMapping("/tools")
-    public ResponseEntity<Map<String, Object>> getTools() {
+    public ResponseEntity<byte[]> getTools() {
         logger.debug("Solicitadas herramientas MCP JDBC disponibles");
 
-        List<McpToolRegistry.McpToolInfo> tools = toolRegistry.getRegisteredTools();
-
-        List<Map<String, String>> toolsList = tools.stream()
-                .map(tool -> {
-                    Map<String, String> toolMap = new HashMap<>();
-                    toolMap.put("name", tool.getName());
-                    toolMap.put("description", tool.getDescription());
-                    return toolMap;
-                })
-                .collect(java.util.stream.Collectors.toList());
+        ToolCatalog.Snapshot catalog = toolCatalog.current();
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.json());
+    }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("tools", toolsList);
-        response.put("count", toolsList.size());
-        response.put("server", "MCP Server - RA2 JDBC DAM");
-        response.put("version", "1.0.0");
+    /**
+     * Ejecuta cualquier herramienta registrada por su nombre.
+     *
+     * El cuerpo son los argumentos con los mismos nombres que en MCP
+     * (p.ej. {"userId": 1}). No necesita código nuevo al añadir una
+     * herramienta @Tool: McpToolRegistry ya la tiene preparada.
+     */
+    @PostMapping("/call/{tool}")
+    public DeferredResult<ResponseEntity<ToolResponse>> callTool(@PathVariable("tool") String toolName,
+                                                                 @RequestBody(required = false) JsonNode arguments) {
+        logger.debug("Ejecutando herramienta {}", toolName);
+
+        McpToolRegistry.McpToolInfo tool = toolRegistry.getTool(toolName);
+        if (tool == null) {
+            DeferredResult<ResponseEntity<ToolResponse>> notFound = new DeferredResult<>();
+            notFound.setResult(errorResponse(toolName, 404, "Herramienta desconocida: " + toolName));
+            return notFound;
+        }
 
-        return ResponseEntity.ok(response);
+        return deferred(toolName, "Error ejecutando " + toolName,
+                () -> jdbcExecutor.submit(() -> tool.invoke(arguments)),
+                result -> ToolResponse.success(toolName, result));
     }
 
     // ========== JDBC OPERATION ENDPOINTS ==========
@@ -79,27 +207,17 @@ public class McpServerController {
      * Prueba la conexión a la base de datos
      */
     @PostMapping("/test_connection")
-    public ResponseEntity<Map<String, Object>> testConnection() {
+    public ResponseEntity<ToolResponse> testConnection() {
         logger.debug("Probando conexión JDBC");
 
-        try {
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("test_connection")) {
             String result = databaseUserService.testConnection();
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "test_connection");
-            response.put("result", result);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ToolResponse.success("test_connection", result));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("test_connection", e);
         } catch (Exception e) {
             logger.error("Error probando conexión", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error probando conexión: " + e.getMessage());
-            error.put("tool", "test_connection");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("test_connection", 500, "Error probando conexión: " + e.getMessage());
         }
     }
 
@@ -107,33 +225,17 @@ public class McpServerController {
      * Crea un nuevo usuario
      */
     @PostMapping("/create_user")
-    public ResponseEntity<Map<String, Object>> createUser(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ToolResponse> createUser(@RequestBody McpRequests.CreateUserRequest request) {
         logger.debug("Creando usuario");
 
-        try {
-            String name = request.get("name");
-            String email = request.get("email");
-            String department = request.get("department");
-            String role = request.get("role");
-
-            UserCreateDto dto = new UserCreateDto(name, email, department, role);
-            User user = databaseUserService.createUser(dto);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "create_user");
-            response.put("result", user);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("create_user")) {
+            User user = databaseUserService.createUser(request.toDto());
+            return ResponseEntity.ok(ToolResponse.success("create_user", user));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("create_user", e);
         } catch (Exception e) {
             logger.error("Error creando usuario", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error creando usuario: " + e.getMessage());
-            error.put("tool", "create_user");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("create_user", 500, "Error creando usuario: " + e.getMessage());
         }
     }
 
@@ -141,63 +243,59 @@ public class McpServerController {
      * Busca un usuario por ID
      */
     @PostMapping("/find_user_by_id")
-    public ResponseEntity<Map<String, Object>> findUserById(@RequestBody Map<String, Object> request) {
+    public DeferredResult<ResponseEntity<ToolResponse>> findUserById(@RequestBody McpRequests.UserIdRequest request) {
         logger.debug("Buscando usuario por ID");
 
-        try {
-            Long userId = ((Number) request.get("userId")).longValue();
-            User user = databaseUserService.findUserById(userId);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_user_by_id");
-            response.put("result", user);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error buscando usuario", e);
+        return deferred("find_user_by_id", "Error buscando usuario",
+                () -> asyncUserService.findUserById(request.requireUserId("find_user_by_id")),
+                user -> ToolResponse.success("find_user_by_id", user));
+    }
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error buscando usuario: " + e.getMessage());
-            error.put("tool", "find_user_by_id");
-            error.put("status", "error");
+    /**
+     * Busca varios usuarios por ID en una sola llamada
+     *
+     * result está alineado con userIds (null = no existe) y missing lista
+     * los ids no encontrados.
+     */
+    @PostMapping("/find_users_by_ids")
+    public DeferredResult<ResponseEntity<ToolResponse>> findUsersByIds(@RequestBody McpRequests.UserIdsRequest request) {
+        logger.debug("Buscando usuarios por lista de IDs");
+
+        // Sin userIds: 400 (la comprobación va dentro de la llamada diferida)
+        return deferred("find_users_by_ids", "Error buscando usuarios",
+                () -> asyncUserService.findUsersByIds(request.requireUserIds("find_users_by_ids")),
+                users -> {
+                    List<Long> userIds = request.userIds();
+                    List<Long> missing = new java.util.ArrayList<>();
+                    for (int i = 0; i < users.size(); i++) {
+                        if (users.get(i) == null) {
+                            missing.add(userIds.get(i));
+                        }
+                    }
 
-            return ResponseEntity.status(500).body(error);
-        }
+                    return ToolResponse.success("find_users_by_ids", users)
+                            .with("count", users.size() - missing.size())
+                            .with("missing", missing);
+                });
     }
 
     /**
      * Actualiza un usuario
      */
     @PostMapping("/update_user")
-    public ResponseEntity<Map<String, Object>> updateUser(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<ToolResponse> updateUser(@RequestBody McpRequests.UpdateUserRequest request) {
         logger.debug("Actualizando usuario");
 
-        try {
-            Long userId = ((Number) request.get("userId")).longValue();
-            String name = (String) request.get("name");
-            String email = (String) request.get("email");
-            String department = (String) request.get("department");
-            String role = (String) request.get("role");
-
-            com.dam.accesodatos.model.UserUpdateDto dto = new com.dam.accesodatos.model.UserUpdateDto(name, email, department, role, true);
-            User user = databaseUserService.updateUser(userId, dto);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "update_user");
-            response.put("result", user);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("update_user")) {
+            User user = databaseUserService.updateUser(request.requireUserId("update_user"), request.toDto());
+            return ResponseEntity.ok(ToolResponse.success("update_user", user));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("update_user", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("update_user", 400, e.getMessage());
         } catch (Exception e) {
             logger.error("Error actualizando usuario", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error actualizando usuario: " + e.getMessage());
-            error.put("tool", "update_user");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("update_user", 500, "Error actualizando usuario: " + e.getMessage());
         }
     }
 
@@ -205,28 +303,19 @@ public class McpServerController {
      * Elimina un usuario
      */
     @PostMapping("/delete_user")
-    public ResponseEntity<Map<String, Object>> deleteUser(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<ToolResponse> deleteUser(@RequestBody McpRequests.UserIdRequest request) {
         logger.debug("Eliminando usuario");
 
-        try {
-            Long userId = ((Number) request.get("userId")).longValue();
-            boolean result = databaseUserService.deleteUser(userId);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "delete_user");
-            response.put("result", result);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("delete_user")) {
+            boolean result = databaseUserService.deleteUser(request.requireUserId("delete_user"));
+            return ResponseEntity.ok(ToolResponse.success("delete_user", result));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("delete_user", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("delete_user", 400, e.getMessage());
         } catch (Exception e) {
             logger.error("Error eliminando usuario", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error eliminando usuario: " + e.getMessage());
-            error.put("tool", "delete_user");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("delete_user", 500, "Error eliminando usuario: " + e.getMessage());
         }
     }
 
@@ -234,151 +323,121 @@ public class McpServerController {
      * Obtiene todos los usuarios
      */
     @PostMapping("/find_all_users")
-    public ResponseEntity<Map<String, Object>> findAllUsers() {
+    public DeferredResult<ResponseEntity<ToolResponse>> findAllUsers() {
         logger.debug("Obteniendo todos los usuarios");
 
-        try {
-            List<User> users = databaseUserService.findAll();
+        return deferred("find_all_users", "Error obteniendo usuarios",
+                asyncUserService::findAll,
+                users -> ToolResponse.success("find_all_users", users).with("count", users.size()));
+    }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_all_users");
-            response.put("result", users);
-            response.put("count", users.size());
-            response.put("status", "success");
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error obteniendo usuarios", e);
+    /**
+     * Obtiene todos los usuarios en streaming, sin construir la lista en memoria
+     *
+     * - format=ndjson (por defecto): un objeto JSON por línea (application/x-ndjson)
+     * - format=json: un único array JSON enviado por trozos
+     *
+     * Las filas se escriben según se leen del ResultSet. Una vez enviada la
+     * cabecera 200 no se puede cambiar el estado: si falla a mitad, la
+     * respuesta queda truncada y el error se registra en el log.
+     *
+     * Cuenta como una llamada a find_all_users en ToolConcurrencyLimiter
+     * (429 si está saturada): mientras se escribe al cliente se ocupa una
+     * conexión del pool. El hueco se libera al terminar de escribir.
+     */
+    @PostMapping("/find_all_users/stream")
+    public ResponseEntity<?> streamAllUsers(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) {
+        logger.debug("Obteniendo todos los usuarios en streaming ({})", format);
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error obteniendo usuarios: " + e.getMessage());
-            error.put("tool", "find_all_users");
-            error.put("status", "error");
+        boolean ndjson = !"json".equalsIgnoreCase(format);
 
-            return ResponseEntity.status(500).body(error);
+        ToolConcurrencyLimiter.Permit permit;
+        try {
+            permit = toolLimiter.acquire("find_all_users");
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("find_all_users", e);
         }
+
+        StreamingResponseBody body = outputStream -> {
+            try (permit;
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // El OutputStream lo cierra el contenedor de servlets
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+                if (ndjson) {
+                    generator.setRootValueSeparator(new SerializedString("\n"));
+                } else {
+                    generator.writeStartArray();
+                }
+
+                long count = databaseUserService.streamAllUsers(generator);
+
+                if (ndjson) {
+                    if (count > 0) {
+                        generator.writeRaw('\n');
+                    }
+                } else {
+                    generator.writeEndArray();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error en streaming de usuarios", e);
+                throw e;
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /**
      * Busca usuarios por departamento
      */
     @PostMapping("/find_users_by_department")
-    public ResponseEntity<Map<String, Object>> findUsersByDepartment(@RequestBody Map<String, String> request) {
+    public DeferredResult<ResponseEntity<ToolResponse>> findUsersByDepartment(@RequestBody McpRequests.DepartmentRequest request) {
         logger.debug("Buscando usuarios por departamento");
 
-        try {
-            String department = request.get("department");
-            List<User> users = databaseUserService.findUsersByDepartment(department);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "find_users_by_department");
-            response.put("result", users);
-            response.put("count", users.size());
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error buscando usuarios por departamento", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error buscando usuarios: " + e.getMessage());
-            error.put("tool", "find_users_by_department");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
-        }
+        return deferred("find_users_by_department", "Error buscando usuarios",
+                () -> asyncUserService.findUsersByDepartment(request.department()),
+                users -> ToolResponse.success("find_users_by_department", users).with("count", users.size()));
     }
 
     /**
-     * Busca usuarios con filtros dinámicos y paginación
+     * Busca usuarios con filtros dinámicos y paginación (offset o cursor)
      */
     @PostMapping("/search_users")
-    public ResponseEntity<Map<String, Object>> searchUsers(@RequestBody Map<String, Object> request) {
+    public DeferredResult<ResponseEntity<ToolResponse>> searchUsers(@RequestBody McpRequests.SearchUsersRequest request) {
         logger.debug("Buscando usuarios con filtros dinámicos");
 
-        try {
-            com.dam.accesodatos.model.UserQueryDto query = new com.dam.accesodatos.model.UserQueryDto();
-
-            if (request.containsKey("department")) {
-                query.setDepartment((String) request.get("department"));
-            }
-            if (request.containsKey("role")) {
-                query.setRole((String) request.get("role"));
-            }
-            if (request.containsKey("active")) {
-                query.setActive((Boolean) request.get("active"));
-            }
-            if (request.containsKey("limit")) {
-                query.setLimit(((Number) request.get("limit")).intValue());
-            }
-            if (request.containsKey("offset")) {
-                query.setOffset(((Number) request.get("offset")).intValue());
-            }
-
-            List<User> users = databaseUserService.searchUsers(query);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "search_users");
-            response.put("result", users);
-            response.put("count", users.size());
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error buscando usuarios con filtros", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error buscando usuarios: " + e.getMessage());
-            error.put("tool", "search_users");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
-        }
+        return deferred("search_users", "Error buscando usuarios",
+                () -> asyncUserService.searchUsersPage(request.toQuery()),
+                page -> ToolResponse.success("search_users", page.getUsers())
+                        .with("count", page.getUsers().size())
+                        .with("nextCursor", page.getNextCursor()));
     }
 
     /**
      * Transfiere múltiples usuarios en una transacción
      */
     @PostMapping("/transfer_data")
-    public ResponseEntity<Map<String, Object>> transferData(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<ToolResponse> transferData(@RequestBody McpRequests.UsersRequest request) {
         logger.debug("Transfiriendo datos con transacción");
 
-        try {
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> usersData = (List<Map<String, Object>>) request.get("users");
-
-            List<User> users = usersData.stream()
-                    .map(userData -> {
-                        User user = new User();
-                        user.setName((String) userData.get("name"));
-                        user.setEmail((String) userData.get("email"));
-                        user.setDepartment((String) userData.get("department"));
-                        user.setRole((String) userData.get("role"));
-                        if (userData.containsKey("active")) {
-                            user.setActive((Boolean) userData.get("active"));
-                        }
-                        return user;
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("transfer_data")) {
+            List<User> users = request.requireUsers("transfer_data");
             boolean result = databaseUserService.transferData(users);
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "transfer_data");
-            response.put("result", result);
-            response.put("inserted_count", users.size());
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ToolResponse.success("transfer_data", result)
+                    .with("inserted_count", users.size()));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("transfer_data", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("transfer_data", 400, e.getMessage());
         } catch (Exception e) {
             logger.error("Error en transacción de datos", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error en transacción: " + e.getMessage());
-            error.put("tool", "transfer_data");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("transfer_data", 500, "Error en transacción: " + e.getMessage());
         }
     }
 
@@ -386,72 +445,150 @@ public class McpServerController {
      * Inserta múltiples usuarios usando batch operations
      */
     @PostMapping("/batch_insert_users")
-    public ResponseEntity<Map<String, Object>> batchInsertUsers(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<ToolResponse> batchInsertUsers(@RequestBody McpRequests.UsersRequest request) {
         logger.debug("Insertando usuarios con batch operations");
 
-        try {
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> usersData = (List<Map<String, Object>>) request.get("users");
-
-            List<User> users = usersData.stream()
-                    .map(userData -> {
-                        User user = new User();
-                        user.setName((String) userData.get("name"));
-                        user.setEmail((String) userData.get("email"));
-                        user.setDepartment((String) userData.get("department"));
-                        user.setRole((String) userData.get("role"));
-                        if (userData.containsKey("active")) {
-                            user.setActive((Boolean) userData.get("active"));
-                        }
-                        return user;
-                    })
-                    .collect(java.util.stream.Collectors.toList());
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("batch_insert_users")) {
+            // Sin opciones en la petición: configuración ra2.jdbc.batch.* del servicio
+            BatchInsertResult result = databaseUserService.batchInsertUsers(
+                    request.requireUsers("batch_insert_users"), request.options("batch_insert_users"));
 
-            int insertedCount = databaseUserService.batchInsertUsers(users);
+            ToolResponse response = ToolResponse.success("batch_insert_users", result.getInsertedCount())
+                    .with("generated_ids", result.getGeneratedIds())
+                    .with("failed_rows", result.getFailedRows())
+                    .with("committed", result.isCommitted());
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "batch_insert_users");
-            response.put("result", insertedCount);
-            response.put("status", "success");
+            if (!result.hasFailures()) {
+                return ResponseEntity.ok(response);
+            }
 
-            return ResponseEntity.ok(response);
+            response.with("error", "Error en batch insert: " + result.getError());
+            if (!result.isCommitted()) {
+                return ResponseEntity.status(500).body(response.status("error"));
+            }
+            return ResponseEntity.ok(response.status("partial"));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("batch_insert_users", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("batch_insert_users", 400, e.getMessage());
         } catch (Exception e) {
             logger.error("Error en batch insert", e);
+            return errorResponse("batch_insert_users", 500, "Error en batch insert: " + e.getMessage());
+        }
+    }
+
+    /**
+     * transfer_data en streaming: el cuerpo se lee e inserta a la vez, sin
+     * cargar la lista entera en memoria (UserIngestService)
+     *
+     * - format=json (por defecto): array de usuarios o {"users": [...]}
+     * - format=ndjson: un usuario por línea
+     *
+     * Una sola transacción: cualquier error deshace todo.
+     */
+    @PostMapping("/transfer_data/stream")
+    public ResponseEntity<ToolResponse> transferDataStream(
+            @RequestParam(name = "format", defaultValue = "json") String format,
+            @RequestParam(name = "chunkSize", defaultValue = "0") int chunkSize,
+            InputStream body) {
+        logger.debug("Transfiriendo datos en streaming ({})", format);
+
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("transfer_data")) {
+            IngestResult result = ingestService.ingest(body, UserStreamReader.Format.of(format),
+                    chunkSize, BatchInsertOptions.CommitMode.ALL_OR_NOTHING);
+
+            if (result.hasFailures()) {
+                return ingestErrorResponse("transfer_data", result, "Error en transacción: ");
+            }
+            return ResponseEntity.ok(ToolResponse.success("transfer_data", true)
+                    .with("inserted_count", result.getInsertedCount()));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("transfer_data", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("transfer_data", 400, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error en transacción de datos en streaming", e);
+            return errorResponse("transfer_data", 500, "Error en transacción: " + e.getMessage());
+        }
+    }
+
+    /**
+     * batch_insert_users en streaming (ver transferDataStream)
+     *
+     * commitMode=PER_CHUNK confirma cada chunk y responde "partial" si
+     * alguna fila falla. No devuelve generated_ids: failed_rows tiene como
+     * mucho IngestResult.MAX_FAILED_ROWS índices.
+     */
+    @PostMapping("/batch_insert_users/stream")
+    public ResponseEntity<ToolResponse> batchInsertUsersStream(
+            @RequestParam(name = "format", defaultValue = "json") String format,
+            @RequestParam(name = "chunkSize", defaultValue = "0") int chunkSize,
+            @RequestParam(name = "commitMode", defaultValue = "ALL_OR_NOTHING") String commitMode,
+            InputStream body) {
+        logger.debug("Insertando usuarios en streaming ({}, {})", format, commitMode);
+
+        BatchInsertOptions.CommitMode mode;
+        try {
+            mode = BatchInsertOptions.CommitMode.valueOf(commitMode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return errorResponse("batch_insert_users", 400, "commitMode no válido: " + commitMode);
+        }
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error en batch insert: " + e.getMessage());
-            error.put("tool", "batch_insert_users");
-            error.put("status", "error");
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("batch_insert_users")) {
+            IngestResult result = ingestService.ingest(body, UserStreamReader.Format.of(format), chunkSize, mode);
+
+            if (!result.hasFailures()) {
+                return ResponseEntity.ok(ToolResponse.success("batch_insert_users", result.getInsertedCount())
+                        .with("rows_read", result.getRowsRead())
+                        .with("committed", true));
+            }
+            return ingestErrorResponse("batch_insert_users", result, "Error en batch insert: ");
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("batch_insert_users", e);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("batch_insert_users", 400, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error en batch insert en streaming", e);
+            return errorResponse("batch_insert_users", 500, "Error en batch insert: " + e.getMessage());
+        }
+    }
 
-            return ResponseEntity.status(500).body(error);
+    /**
+     * Respuesta de una inserción en streaming con errores: 400 si el cuerpo
+     * no es válido, 500 si se hizo rollback, "partial" si hubo commits
+     */
+    private static ResponseEntity<ToolResponse> ingestErrorResponse(String toolName, IngestResult result, String prefix) {
+        ToolResponse response = ToolResponse.success(toolName, result.getInsertedCount())
+                .with("rows_read", result.getRowsRead())
+                .with("failed_count", result.getFailedCount())
+                .with("failed_rows", result.getFailedRows())
+                .with("committed", result.isCommitted())
+                .with("error", prefix + result.getError());
+
+        if (result.isInvalidInput()) {
+            return ResponseEntity.status(400).body(response.status("error"));
         }
+        if (!result.isCommitted()) {
+            return ResponseEntity.status(500).body(response.status("error"));
+        }
+        return ResponseEntity.ok(response.status("partial"));
     }
 
     /**
      * Obtiene metadatos de la base de datos
      */
     @PostMapping("/get_database_info")
-    public ResponseEntity<Map<String, Object>> getDatabaseInfo() {
+    public ResponseEntity<ToolResponse> getDatabaseInfo() {
         logger.debug("Obteniendo información de la base de datos");
 
-        try {
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("get_database_info")) {
             String info = databaseUserService.getDatabaseInfo();
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "get_database_info");
-            response.put("result", info);
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ToolResponse.success("get_database_info", info));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("get_database_info", e);
         } catch (Exception e) {
             logger.error("Error obteniendo información de BD", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error obteniendo información: " + e.getMessage());
-            error.put("tool", "get_database_info");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("get_database_info", 500, "Error obteniendo información: " + e.getMessage());
         }
     }
 
@@ -459,29 +596,18 @@ public class McpServerController {
      * Obtiene metadatos de las columnas de una tabla
      */
     @PostMapping("/get_table_columns")
-    public ResponseEntity<Map<String, Object>> getTableColumns(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ToolResponse> getTableColumns(@RequestBody McpRequests.TableRequest request) {
         logger.debug("Obteniendo columnas de tabla");
 
-        try {
-            String tableName = request.get("tableName");
-            List<Map<String, Object>> columns = databaseUserService.getTableColumns(tableName);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "get_table_columns");
-            response.put("result", columns);
-            response.put("column_count", columns.size());
-            response.put("status", "success");
-
-            return ResponseEntity.ok(response);
+        try (ToolConcurrencyLimiter.Permit permit = toolLimiter.acquire("get_table_columns")) {
+            List<Map<String, Object>> columns = databaseUserService.getTableColumns(request.tableName());
+            return ResponseEntity.ok(ToolResponse.success("get_table_columns", columns)
+                    .with("column_count", columns.size()));
+        } catch (ToolConcurrencyLimiter.ToolOverloadedException e) {
+            return overloadedResponse("get_table_columns", e);
         } catch (Exception e) {
             logger.error("Error obteniendo columnas", e);
-
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error obteniendo columnas: " + e.getMessage());
-            error.put("tool", "get_table_columns");
-            error.put("status", "error");
-
-            return ResponseEntity.status(500).body(error);
+            return errorResponse("get_table_columns", 500, "Error obteniendo columnas: " + e.getMessage());
         }
     }
 
@@ -489,30 +615,80 @@ public class McpServerController {
      * Cuenta usuarios activos por departamento
      */
     @PostMapping("/execute_count_by_department")
-    public ResponseEntity<Map<String, Object>> executeCountByDepartment(@RequestBody Map<String, String> request) {
+    public DeferredResult<ResponseEntity<ToolResponse>> executeCountByDepartment(@RequestBody McpRequests.DepartmentRequest request) {
         logger.debug("Contando usuarios por departamento");
 
-        try {
-            String department = request.get("department");
-            int count = databaseUserService.executeCountByDepartment(department);
+        String department = request.department();
+        return deferred("execute_count_by_department", "Error contando usuarios",
+                () -> asyncUserService.executeCountByDepartment(department),
+                count -> ToolResponse.success("execute_count_by_department", count)
+                        .with("department", department));
+    }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("tool", "execute_count_by_department");
-            response.put("result", count);
-            response.put("department", department);
-            response.put("status", "success");
+    // ========== RESPUESTAS ASÍNCRONAS ==========
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            logger.error("Error contando usuarios", e);
+    /**
+     * Respuesta diferida para una llamada asíncrona: el hilo de Tomcat
+     * vuelve en cuanto se encola la llamada y la respuesta se escribe
+     * cuando el futuro termina.
+     *
+     * Errores (mismo formato que las respuestas síncronas):
+     * - 400: argumentos de herramienta no válidos (InvalidArgumentsException
+     *   o cualquier IllegalArgumentException del servicio, p.ej. un cursor
+     *   de search_users mal formado)
+     * - 429: la herramienta ya tiene tantas llamadas en curso como su
+     *   límite (ToolConcurrencyLimiter)
+     * - 503: ejecutor JDBC saturado o timeout ({@code ra2.jdbc.async.timeout})
+     * - 500: cualquier otro error
+     *
+     * @param call     lanza la llamada asíncrona
+     * @param response respuesta de éxito a partir del resultado
+     */
+    private <T> DeferredResult<ResponseEntity<ToolResponse>> deferred(
+            String toolName, String errorMessage,
+            Supplier<CompletableFuture<T>> call, Function<T, ToolResponse> response) {
+
+        DeferredResult<ResponseEntity<ToolResponse>> deferred = new DeferredResult<>(asyncTimeout.toMillis());
+        deferred.onTimeout(() -> deferred.setResult(errorResponse(toolName, 503,
+                errorMessage + ": sin respuesta en " + asyncTimeout.toMillis() + " ms")));
+
+        toolLimiter.submit(toolName, call).whenComplete((value, failure) -> {
+            if (failure == null) {
+                deferred.setResult(ResponseEntity.ok(response.apply(value)));
+                return;
+            }
 
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", "Error contando usuarios: " + e.getMessage());
-            error.put("tool", "execute_count_by_department");
-            error.put("status", "error");
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof ToolConcurrencyLimiter.ToolOverloadedException overloaded) {
+                deferred.setResult(overloadedResponse(toolName, overloaded));
+            } else if (cause instanceof IllegalArgumentException) {
+                deferred.setResult(errorResponse(toolName, 400, cause.getMessage()));
+            } else if (cause instanceof RejectedExecutionException) {
+                logger.warn("{} rechazada: {}", toolName, cause.getMessage());
+                deferred.setResult(errorResponse(toolName, 503, errorMessage + ": " + cause.getMessage()));
+            } else {
+                logger.error(errorMessage, cause);
+                deferred.setResult(errorResponse(toolName, 500, errorMessage + ": " + cause.getMessage()));
+            }
+        });
+        return deferred;
+    }
 
-            return ResponseEntity.status(500).body(error);
-        }
+    private static ResponseEntity<ToolResponse> errorResponse(String toolName, int status, String message) {
+        return ResponseEntity.status(status).body(ToolResponse.error(toolName, message));
+    }
+
+    /**
+     * 429 Too Many Requests: se rechaza sin esperar, y Retry-After indica
+     * al cliente cuándo reintentar
+     */
+    private static ResponseEntity<ToolResponse> overloadedResponse(String toolName,
+                                                                   ToolConcurrencyLimiter.ToolOverloadedException e) {
+        logger.warn("{} rechazada: {}", toolName, e.getMessage());
+        return ResponseEntity.status(429)
+                .header("Retry-After", "1")
+                .body(ToolResponse.error(toolName, e.getMessage()));
     }
 
 }
@@ -0,0 +1,105 @@
+package com.dam.accesodatos.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transporte MCP stdio dentro de la JVM: el cliente MCP lanza este proceso
+ * y habla JSON-RPC por stdin/stdout, un mensaje por línea. Sustituye a
+ * mcp_adapter.py (sin Python ni salto HTTP intermedio).
+ *
+ * Se activa con el perfil "stdio" (application-stdio.yml), que además
+ * desactiva el servidor web y manda los logs a stderr:
+ * <pre>
+ * java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --spring.profiles.active=stdio
+ * </pre>
+ *
+ * stdout queda reservado para el protocolo: System.out se redirige a
+ * stderr para que un println suelto no corrompa los mensajes.
+ * Al cerrarse stdin (el cliente ha terminado) la aplicación se detiene.
+ */
+@Component
+@ConditionalOnProperty(name = "ra2.mcp.stdio.enabled", havingValue = "true")
+public class McpStdioTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(McpStdioTransport.class);
+
+    @Autowired
+    private McpJsonRpcHandler handler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private PrintStream protocolOut;
+
+    // Una línea completa por mensaje (ReentrantLock: no clava hilos virtuales)
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        protocolOut = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        Thread reader = new Thread(this::readLoop, "ra2-mcp-stdio");
+        reader.start();
+        logger.info("Transporte MCP stdio iniciado");
+    }
+
+    private void readLoop() {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode response = handler.handlePayload(line);
+                if (response != null) {
+                    send(response);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error leyendo stdin", e);
+        }
+
+        logger.info("stdin cerrado: deteniendo el servidor MCP");
+        System.exit(SpringApplication.exit(applicationContext));
+    }
+
+    /**
+     * Escribe un mensaje (una línea) en stdout
+     */
+    private void send(JsonNode message) {
+        sendLock.lock();
+        try {
+            protocolOut.print(objectMapper.writeValueAsString(message));
+            protocolOut.print('\n');
+            protocolOut.flush();
+        } catch (JsonProcessingException e) {
+            logger.error("No se pudo serializar la respuesta MCP", e);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+}
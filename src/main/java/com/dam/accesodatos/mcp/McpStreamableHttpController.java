@@ -0,0 +1,57 @@
+package com.dam.accesodatos.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Transporte MCP "Streamable HTTP": un único endpoint POST /mcp que recibe
+ * mensajes JSON-RPC y responde en el mismo cuerpo (application/json).
+ *
+ * Los clientes MCP pueden conectarse directamente, sin mcp_adapter.py:
+ * <pre>
+ * { "mcpServers": { "mcp-server-ra2-jdbc": { "type": "http", "url": "http://localhost:8082/mcp" } } }
+ * </pre>
+ *
+ * - Petición → 200 con la respuesta JSON-RPC
+ * - Solo notificaciones / respuestas del cliente → 202 sin cuerpo
+ * - GET /mcp → 405: el servidor no abre un stream SSE propio
+ *
+ * Con el perfil "reactive" estas rutas las atiende ReactiveMcpController.
+ */
+@RestController
+@RequestMapping("/mcp")
+@CrossOrigin(origins = "*")
+@Profile("!reactive")
+public class McpStreamableHttpController {
+
+    @Autowired
+    private McpJsonRpcHandler handler;
+
+    @PostMapping
+    public ResponseEntity<JsonNode> handle(@RequestBody String body) {
+        JsonNode response = handler.handlePayload(body);
+        if (response == null) {
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response);
+    }
+
+    @GetMapping
+    public ResponseEntity<Void> openStream() {
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
+                .header("Allow", "POST")
+                .build();
+    }
+}
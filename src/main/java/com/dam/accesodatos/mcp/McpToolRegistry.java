@@ -1,73 +1,204 @@
 package com.dam.accesodatos.mcp;
 
 import com.dam.accesodatos.ra2.DatabaseUserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.ai.mcp.server.annotation.Tool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.time.temporal.Temporal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Registro de herramientas MCP disponibles para LLMs.
- * 
- * Esta clase escanea automáticamente todos los métodos anotados con @Tool
- * y los registra como herramientas disponibles para el protocolo MCP.
+ *
+ * Esta clase registra todos los métodos anotados con @Tool como
+ * herramientas disponibles para el protocolo MCP. Los métodos no se
+ * buscan por reflexión al arrancar: ToolIndexProcessor (proyecto
+ * tool-processor) genera al compilar GeneratedToolIndex con todos ellos.
+ *
+ * Al registrar cada herramienta se prepara también su ejecución:
+ * - un MethodHandle ligado al servicio (sin Method.invoke por llamada)
+ * - un decodificador por parámetro (ObjectReader de Jackson para su tipo
+ *   genérico exacto, p.ej. List&lt;Long&gt;)
+ *
+ * Así cualquier herramienta se ejecuta con McpToolInfo.invoke(argumentos
+ * JSON), sin código específico en los controladores.
  */
 @Component
 public class McpToolRegistry {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(McpToolRegistry.class);
-    
+
+    /**
+     * Nombre del argumento para parámetros Java cuyo nombre no coincide
+     * con el que ya usan los endpoints REST y el adaptador Python
+     */
+    private static final Map<String, String> ARGUMENT_NAMES = Map.of(
+            "id", "userId",
+            "ids", "userIds");
+
+    // Firma común de todos los invocadores: (Object[] argumentos) -> Object
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
     @Autowired
     private ApplicationContext applicationContext;
-    
+
     @Autowired
     private DatabaseUserService databaseUserService;
-    
-    private final List<McpToolInfo> registeredTools = new ArrayList<>();
-    
+
+    @Autowired
+    private McpPipelineService pipelineService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Lista inmutable: se sustituye entera al registrar, así
+    // getRegisteredTools() la puede devolver sin copiarla
+    private volatile List<McpToolInfo> registeredTools = List.of();
+
+    private final Map<String, McpToolInfo> toolsByName = new LinkedHashMap<>();
+
+    // Cambia con cada registro; ToolCatalog la usa para saber si regenerarse
+    private volatile long version;
+
     @PostConstruct
     public void registerTools() {
         logger.info("Registrando herramientas MCP JDBC...");
-        
+
         // Registrar herramientas del DatabaseUserService
         registerToolsFromService(databaseUserService, DatabaseUserService.class);
-        
+
+        // run_pipeline: combina las herramientas anteriores en una sola llamada
+        registerToolsFromService(pipelineService, McpPipelineService.class);
+
         logger.info("Total de herramientas MCP registradas: {}", registeredTools.size());
-        
+
         // Mostrar herramientas registradas
         for (McpToolInfo tool : registeredTools) {
             logger.info("  - {}: {}", tool.getName(), tool.getDescription());
         }
     }
-    
+
+    /**
+     * Registra las herramientas de un servicio a partir del índice generado
+     * al compilar (GeneratedToolIndex): cada método se busca directamente
+     * por nombre y tipos, sin recorrer getMethods() ni leer anotaciones
+     */
     private void registerToolsFromService(Object service, Class<?> serviceClass) {
-        Method[] methods = serviceClass.getMethods();
-        
-        for (Method method : methods) {
-            Tool toolAnnotation = method.getAnnotation(Tool.class);
-            if (toolAnnotation != null) {
-                String toolName = toolAnnotation.name().isEmpty() ? method.getName() : toolAnnotation.name();
-                String description = toolAnnotation.description();
-                
-                McpToolInfo toolInfo = new McpToolInfo(toolName, description, method, service);
-                registeredTools.add(toolInfo);
-                
-                logger.debug("Registrada herramienta MCP: {} - {}", toolName, description);
+        for (ToolDescriptor descriptor : GeneratedToolIndex.TOOLS) {
+            if (descriptor.serviceType() != serviceClass) {
+                continue;
             }
+            Method method = descriptor.resolve();
+
+            McpToolInfo toolInfo = new McpToolInfo(descriptor.name(), descriptor.description(), method, service,
+                    bindInvoker(method, service), decodersFor(method, descriptor.parameterNames()));
+            register(toolInfo);
+
+            logger.debug("Registrada herramienta MCP: {} - {}", descriptor.name(), descriptor.description());
+        }
+    }
+
+    private synchronized void register(McpToolInfo toolInfo) {
+        List<McpToolInfo> tools = new ArrayList<>(registeredTools);
+        tools.add(toolInfo);
+        registeredTools = List.copyOf(tools);
+        toolsByName.put(toolInfo.getName(), toolInfo);
+        version++;
+    }
+
+    /**
+     * MethodHandle del método ligado al servicio y adaptado a la firma
+     * (Object[]) -> Object para poder llamarlo con invokeExact
+     */
+    private static MethodHandle bindInvoker(Method method, Object service) {
+        try {
+            return MethodHandles.publicLookup()
+                    .unreflect(method)
+                    .bindTo(service)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("No se puede acceder a la herramienta " + method.getName(), e);
+        }
+    }
+
+    /**
+     * @param parameterNames nombres de los parámetros en el código fuente (del índice)
+     */
+    private List<ToolArgument> decodersFor(Method method, List<String> parameterNames) {
+        List<ToolArgument> arguments = new ArrayList<>();
+        Type[] types = method.getGenericParameterTypes();
+        Class<?>[] rawTypes = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            String parameterName = parameterNames.get(i);
+            arguments.add(new ToolArgument(
+                    ARGUMENT_NAMES.getOrDefault(parameterName, parameterName),
+                    parameterName,
+                    types[i],
+                    isObjectType(rawTypes[i]),
+                    objectMapper.readerFor(objectMapper.constructType(types[i]))));
         }
+        return Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * true para los DTO: parámetros que se rellenan con el objeto de
+     * argumentos completo (UserCreateDto, UserUpdateDto, UserQueryDto...)
+     */
+    static boolean isObjectType(Class<?> type) {
+        return !type.isPrimitive()
+                && !type.isEnum()
+                && !type.isArray()
+                && type != String.class
+                && type != Boolean.class
+                && !Number.class.isAssignableFrom(type)
+                && !Temporal.class.isAssignableFrom(type)
+                && !Collection.class.isAssignableFrom(type)
+                && !Map.class.isAssignableFrom(type);
     }
-    
+
+    /**
+     * Herramientas registradas, en orden de registro (lista inmutable)
+     */
     public List<McpToolInfo> getRegisteredTools() {
-        return new ArrayList<>(registeredTools);
+        return registeredTools;
     }
-    
+
+    /**
+     * Versión del registro: cambia cada vez que se registra una herramienta
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Busca una herramienta por su nombre MCP (p.ej. "find_user_by_id")
+     *
+     * @return la herramienta, o null si no existe
+     */
+    public McpToolInfo getTool(String name) {
+        return toolsByName.get(name);
+    }
+
     /**
      * Información sobre una herramienta MCP registrada
      */
@@ -76,28 +207,126 @@ public class McpToolRegistry {
         private final String description;
         private final Method method;
         private final Object service;
-        
-        public McpToolInfo(String name, String description, Method method, Object service) {
+        private final MethodHandle invoker;
+        private final List<ToolArgument> arguments;
+
+        public McpToolInfo(String name, String description, Method method, Object service,
+                           MethodHandle invoker, List<ToolArgument> arguments) {
             this.name = name;
             this.description = description;
             this.method = method;
             this.service = service;
+            this.invoker = invoker;
+            this.arguments = arguments;
         }
-        
+
         public String getName() {
             return name;
         }
-        
+
         public String getDescription() {
             return description;
         }
-        
+
         public Method getMethod() {
             return method;
         }
-        
+
         public Object getService() {
             return service;
         }
+
+        public List<ToolArgument> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * Decodifica los argumentos JSON y ejecuta la herramienta
+         *
+         * @param json objeto con los argumentos (null = sin argumentos)
+         * @return el valor devuelto por el método @Tool
+         * @throws InvalidArgumentsException si faltan argumentos o no tienen el tipo esperado
+         */
+        public Object invoke(JsonNode json) {
+            Object[] args = new Object[arguments.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = arguments.get(i).decode(name, json);
+            }
+            try {
+                return (Object) invoker.invokeExact(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Error ejecutando " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Parámetro de una herramienta con su decodificador precalculado
+     */
+    public static class ToolArgument {
+        private final String name;
+        private final String parameterName;
+        private final Type type;
+        private final boolean wholeObject;
+        private final ObjectReader reader;
+
+        ToolArgument(String name, String parameterName, Type type, boolean wholeObject, ObjectReader reader) {
+            this.name = name;
+            this.parameterName = parameterName;
+            this.type = type;
+            this.wholeObject = wholeObject;
+            this.reader = reader;
+        }
+
+        /**
+         * Nombre del argumento en JSON (userId, department...)
+         */
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * true si el parámetro es un DTO que toma todos los argumentos
+         */
+        public boolean isWholeObject() {
+            return wholeObject;
+        }
+
+        private Object decode(String tool, JsonNode json) {
+            JsonNode value = null;
+            if (json != null && json.isObject()) {
+                value = json.get(name);
+                if (value == null) {
+                    value = json.get(parameterName);
+                }
+                if (value == null && wholeObject) {
+                    value = json;
+                }
+            }
+            if (value == null || value.isNull()) {
+                throw new InvalidArgumentsException(tool, "falta el argumento obligatorio '" + name + "'");
+            }
+            try {
+                return reader.readValue(value);
+            } catch (IOException e) {
+                String detail = e instanceof JsonProcessingException jsonError ? jsonError.getOriginalMessage() : e.getMessage();
+                throw new InvalidArgumentsException(tool, "'" + name + "' no es válido: " + detail);
+            }
+        }
+    }
+
+    /**
+     * Los argumentos recibidos no encajan con la firma de la herramienta
+     */
+    public static class InvalidArgumentsException extends IllegalArgumentException {
+        public InvalidArgumentsException(String tool, String message) {
+            super("Argumentos no válidos para " + tool + ": " + message);
+        }
     }
 }
@@ -0,0 +1,206 @@
+package com.dam.accesodatos.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Catálogo de herramientas ya preparado para responder: tools/list (MCP)
+ * y GET /mcp/tools (REST, lo usa mcp_adapter.py en cada tools/list).
+ *
+ * Se construye una sola vez y se reutiliza en todas las peticiones:
+ * - toolsList: resultado de tools/list (JSON-RPC)
+ * - json: GET /mcp/tools ya serializado a bytes (no se vuelve a serializar)
+ * - etag: ETag fuerte, hash SHA-256 de esos bytes
+ *
+ * Con el ETag el cliente puede preguntar con If-None-Match y recibir
+ * 304 Not Modified sin cuerpo si no ha cambiado nada.
+ *
+ * Solo se regenera si cambia el registro (McpToolRegistry.getVersion()).
+ *
+ * Los inputSchema (JSON Schema) se obtienen de la firma de cada método @Tool.
+ */
+@Component
+public class ToolCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolCatalog.class);
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * Catálogo para una versión del registro. json no se debe modificar:
+     * es el mismo array en todas las respuestas.
+     */
+    public record Snapshot(long version, ObjectNode toolsList, byte[] json, String etag) {
+    }
+
+    /**
+     * Catálogo actual; lo regenera si el registro ha cambiado desde la última vez
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        long version = toolRegistry.getVersion();
+        if (current != null && current.version() == version) {
+            return current;
+        }
+
+        rebuildLock.lock();
+        try {
+            current = snapshot;
+            if (current == null || current.version() != toolRegistry.getVersion()) {
+                current = build(toolRegistry.getVersion());
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private Snapshot build(long version) {
+        List<McpToolRegistry.McpToolInfo> registered = toolRegistry.getRegisteredTools();
+
+        ArrayNode tools = objectMapper.createArrayNode();
+        for (McpToolRegistry.McpToolInfo tool : registered) {
+            ObjectNode node = tools.addObject();
+            node.put("name", tool.getName());
+            node.put("description", tool.getDescription());
+            node.set("inputSchema", inputSchema(tool));
+        }
+
+        ObjectNode toolsList = objectMapper.createObjectNode();
+        toolsList.set("tools", tools);
+
+        ObjectNode rest = objectMapper.createObjectNode();
+        rest.set("tools", tools);
+        rest.put("count", registered.size());
+        rest.put("server", "MCP Server - RA2 JDBC DAM");
+        rest.put("version", "1.0.0");
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(rest);
+            String etag = "\"" + HexFormat.of().formatHex(sha256(json), 0, 16) + "\"";
+            logger.info("Catálogo de herramientas: {} herramientas, {} bytes, ETag {}", registered.size(), json.length, etag);
+            return new Snapshot(version, toolsList, json, etag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el catálogo de herramientas", e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    // ========== ESQUEMAS DE ENTRADA (inputSchema) ==========
+
+    /**
+     * JSON Schema de los argumentos de la herramienta, a partir de la firma
+     * del método. Los parámetros simples son obligatorios; de los DTO son
+     * obligatorios los campos con @NotBlank / @NotNull.
+     */
+    private ObjectNode inputSchema(McpToolRegistry.McpToolInfo tool) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = schema.putArray("required");
+
+        for (McpToolRegistry.ToolArgument argument : tool.getArguments()) {
+            if (argument.isWholeObject()) {
+                for (Field field : fieldsOf(rawClass(argument.getType()))) {
+                    properties.set(field.getName(), typeSchema(field.getGenericType()));
+                    if (field.isAnnotationPresent(NotBlank.class) || field.isAnnotationPresent(NotNull.class)) {
+                        required.add(field.getName());
+                    }
+                }
+            } else {
+                properties.set(argument.getName(), typeSchema(argument.getType()));
+                required.add(argument.getName());
+            }
+        }
+        return schema;
+    }
+
+    private ObjectNode typeSchema(Type type) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        Class<?> raw = rawClass(type);
+
+        if (raw == String.class || Temporal.class.isAssignableFrom(raw)) {
+            schema.put("type", "string");
+        } else if (raw == Boolean.class || raw == boolean.class) {
+            schema.put("type", "boolean");
+        } else if (raw == Long.class || raw == long.class || raw == Integer.class || raw == int.class) {
+            schema.put("type", "integer");
+        } else if (Number.class.isAssignableFrom(raw) || raw.isPrimitive()) {
+            schema.put("type", "number");
+        } else if (raw.isEnum()) {
+            schema.put("type", "string");
+            ArrayNode values = schema.putArray("enum");
+            for (Object constant : raw.getEnumConstants()) {
+                values.add(((Enum<?>) constant).name());
+            }
+        } else if (Collection.class.isAssignableFrom(raw)) {
+            schema.put("type", "array");
+            if (type instanceof ParameterizedType parameterized) {
+                schema.set("items", typeSchema(parameterized.getActualTypeArguments()[0]));
+            }
+        } else if (Map.class.isAssignableFrom(raw)) {
+            schema.put("type", "object");
+        } else {
+            schema.put("type", "object");
+            ObjectNode properties = schema.putObject("properties");
+            for (Field field : fieldsOf(raw)) {
+                properties.set(field.getName(), typeSchema(field.getGenericType()));
+            }
+        }
+        return schema;
+    }
+
+    private static List<Field> fieldsOf(Class<?> type) {
+        return Arrays.stream(type.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .toList();
+    }
+
+    private static Class<?> rawClass(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz;
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return (Class<?>) parameterized.getRawType();
+        }
+        return Object.class;
+    }
+}
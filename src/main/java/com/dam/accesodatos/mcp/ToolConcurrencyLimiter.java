@@ -0,0 +1,298 @@
+package com.dam.accesodatos.mcp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Límite de llamadas simultáneas por herramienta, ajustado solo (AIMD).
+ *
+ * Sin límite, unas pocas llamadas caras (batch_insert_users,
+ * find_all_users) pueden ocupar todos los hilos y conexiones mientras
+ * las búsquedas baratas esperan detrás. Con un límite por herramienta,
+ * la llamada que no cabe se rechaza en el acto (429) en vez de esperar.
+ *
+ * El límite no es fijo: se ajusta con la latencia observada de cada
+ * herramienta, como el control de congestión de TCP:
+ * - Aumento aditivo: si la llamada fue normal y el límite se estaba
+ *   usando (en curso >= límite / 2), límite + 1
+ * - Disminución multiplicativa: límite * backoff-ratio si
+ *   - la latencia reciente (media corta, ~10 llamadas) supera
+ *     latency-tolerance veces la habitual (media larga, ~100 llamadas)
+ *     en más de 1 ms: la BD ya no da más de sí y las llamadas solo
+ *     hacen cola, o
+ *   - una llamada tarda más que max-latency, o
+ *   - la llamada fue rechazada más abajo (cola JDBC llena)
+ *
+ * El límite queda siempre entre min-limit y max-limit.
+ *
+ * Configuración: {@code ra2.mcp.limits.*} (enabled: false = sin límite,
+ * solo se miden las latencias).
+ */
+@Component
+public class ToolConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolConcurrencyLimiter.class);
+
+    // Pesos de las medias móviles exponenciales de latencia
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.01;
+
+    // Diferencias de latencia menores que esto son ruido, no congestión
+    // (p.ej. aciertos de caché de microsegundos frente a una consulta)
+    private static final long LATENCY_NOISE_NANOS = 1_000_000;
+
+    @Value("${ra2.mcp.limits.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ra2.mcp.limits.initial-limit:10}")
+    private int initialLimit = 10;
+
+    @Value("${ra2.mcp.limits.min-limit:1}")
+    private int minLimit = 1;
+
+    @Value("${ra2.mcp.limits.max-limit:200}")
+    private int maxLimit = 200;
+
+    @Value("${ra2.mcp.limits.latency-tolerance:2.0}")
+    private double latencyTolerance = 2.0;
+
+    @Value("${ra2.mcp.limits.backoff-ratio:0.9}")
+    private double backoffRatio = 0.9;
+
+    @Value("${ra2.mcp.limits.max-latency:5s}")
+    private Duration maxLatency = Duration.ofSeconds(5);
+
+    private final Map<String, ToolLimit> limits = new ConcurrentHashMap<>();
+
+    public ToolConcurrencyLimiter() {
+    }
+
+    ToolConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                           double latencyTolerance, double backoffRatio, Duration maxLatency) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Reserva un hueco para una llamada a la herramienta. Hay que cerrar
+     * el permiso al terminar (try-with-resources): así se mide la latencia.
+     *
+     * @throws ToolOverloadedException si ya hay tantas llamadas en curso como el límite
+     */
+    public Permit acquire(String toolName) {
+        ToolLimit limit = limits.computeIfAbsent(toolName, ToolLimit::new);
+        if (!limit.tryAcquire()) {
+            throw new ToolOverloadedException(toolName, limit.getLimit());
+        }
+        return new Permit(limit);
+    }
+
+    /**
+     * Igual que acquire, para llamadas asíncronas: el permiso se libera
+     * cuando el futuro termina.
+     *
+     * @return el futuro de la llamada, o uno fallido con ToolOverloadedException
+     */
+    public <T> CompletableFuture<T> submit(String toolName, Supplier<CompletableFuture<T>> call) {
+        Permit permit;
+        try {
+            permit = acquire(toolName);
+        } catch (ToolOverloadedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, failure) -> {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof RejectedExecutionException) {
+                permit.dropped();
+            } else {
+                permit.close();
+            }
+        });
+    }
+
+    /**
+     * Métricas para /mcp/metrics: límite actual, en curso y rechazos por herramienta
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> tools = new LinkedHashMap<>();
+        limits.values().stream()
+                .sorted((a, b) -> a.toolName.compareTo(b.toolName))
+                .forEach(limit -> tools.put(limit.toolName, limit.getStats()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("tools", tools);
+        return stats;
+    }
+
+    /**
+     * Hueco reservado para una llamada en curso
+     */
+    public static final class Permit implements AutoCloseable {
+
+        private final ToolLimit limit;
+        private final long start = System.nanoTime();
+        private final AtomicInteger released = new AtomicInteger();
+
+        private Permit(ToolLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * La llamada terminó (bien o con error): libera el hueco y ajusta
+         * el límite con su latencia
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(0, 1)) {
+                limit.release(System.nanoTime() - start, false);
+            }
+        }
+
+        /**
+         * La llamada se rechazó más abajo por saturación: libera el hueco y
+         * reduce el límite
+         */
+        public void dropped() {
+            if (released.compareAndSet(0, 1)) {
+                limit.release(System.nanoTime() - start, true);
+            }
+        }
+    }
+
+    /**
+     * La herramienta ya tiene tantas llamadas en curso como su límite.
+     * Es una RejectedExecutionException: quien no la distinga la trata
+     * como cualquier otra saturación (503).
+     */
+    public static class ToolOverloadedException extends RejectedExecutionException {
+        public ToolOverloadedException(String toolName, int limit) {
+            super("Herramienta " + toolName + " saturada: " + limit + " llamadas en curso");
+        }
+    }
+
+    /**
+     * Estado de una herramienta
+     */
+    private final class ToolLimit {
+
+        private final String toolName;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        // ReentrantLock y no synchronized: no clava hilos virtuales a su portador
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile double limit = initialLimit;
+        private double shortLatency;
+        private double longLatency;
+
+        ToolLimit(String toolName) {
+            this.toolName = toolName;
+        }
+
+        int getLimit() {
+            return (int) limit;
+        }
+
+        boolean tryAcquire() {
+            if (!enabled) {
+                inFlight.incrementAndGet();
+                accepted.increment();
+                return true;
+            }
+            while (true) {
+                int current = inFlight.get();
+                if (current >= (int) limit) {
+                    rejected.increment();
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    accepted.increment();
+                    return true;
+                }
+            }
+        }
+
+        void release(long latencyNanos, boolean dropped) {
+            // En curso al terminar, contando esta llamada
+            int concurrent = inFlight.getAndDecrement();
+
+            lock.lock();
+            try {
+                if (longLatency == 0) {
+                    shortLatency = latencyNanos;
+                    longLatency = latencyNanos;
+                } else {
+                    shortLatency += (latencyNanos - shortLatency) * SHORT_WEIGHT;
+                    longLatency += (latencyNanos - longLatency) * LONG_WEIGHT;
+                }
+
+                double newLimit = limit;
+                boolean congested = shortLatency > longLatency * latencyTolerance
+                        && shortLatency - longLatency > LATENCY_NOISE_NANOS;
+                if (dropped || latencyNanos > maxLatency.toNanos() || congested) {
+                    newLimit = limit * backoffRatio;
+                } else if (concurrent * 2 >= limit) {
+                    newLimit = limit + 1;
+                }
+                newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+                if ((int) newLimit != (int) limit) {
+                    logger.debug("Límite de {}: {} -> {} (latencia media {} ms, habitual {} ms)", toolName,
+                            (int) limit, (int) newLimit, millis(shortLatency), millis(longLatency));
+                }
+                limit = newLimit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            lock.lock();
+            try {
+                stats.put("limit", (int) limit);
+                stats.put("inFlight", inFlight.get());
+                stats.put("accepted", accepted.sum());
+                stats.put("rejected", rejected.sum());
+                stats.put("latencyMs", millis(shortLatency));
+                stats.put("baselineLatencyMs", millis(longLatency));
+            } finally {
+                lock.unlock();
+            }
+            return stats;
+        }
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
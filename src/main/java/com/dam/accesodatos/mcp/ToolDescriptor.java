@@ -0,0 +1,48 @@
+package com.dam.accesodatos.mcp;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Una herramienta @Tool tal como la ve el compilador.
+ *
+ * ToolIndexProcessor (proyecto tool-processor) genera en compilación la
+ * clase GeneratedToolIndex con un ToolDescriptor por cada método @Tool.
+ * Así McpToolRegistry no tiene que recorrer los métodos de cada servicio
+ * ni leer anotaciones por reflexión al arrancar, y los nombres de los
+ * parámetros salen del código fuente (no dependen de compilar con
+ * -parameters).
+ *
+ * @param name nombre MCP de la herramienta (p.ej. "find_user_by_id")
+ * @param description descripción para el LLM
+ * @param serviceType interface o clase que declara el método
+ * @param methodName nombre del método Java
+ * @param parameterTypes tipos de los parámetros (sin genéricos)
+ * @param parameterNames nombres de los parámetros en el código fuente
+ */
+public record ToolDescriptor(String name, String description, Class<?> serviceType, String methodName,
+                             List<Class<?>> parameterTypes, List<String> parameterNames) {
+
+    public ToolDescriptor {
+        if (parameterTypes.size() != parameterNames.size()) {
+            throw new IllegalArgumentException("Tipos y nombres de parámetros no coinciden en " + name);
+        }
+        parameterTypes = List.copyOf(parameterTypes);
+        parameterNames = List.copyOf(parameterNames);
+    }
+
+    /**
+     * El método de la herramienta, buscado directamente por nombre y tipos
+     *
+     * @throws IllegalStateException si el índice no corresponde a las clases
+     *         compiladas (p.ej. compilado sin el procesador)
+     */
+    public Method resolve() {
+        try {
+            return serviceType.getMethod(methodName, parameterTypes.toArray(new Class<?>[0]));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("GeneratedToolIndex desactualizado: no existe "
+                    + serviceType.getSimpleName() + "." + methodName + " (recompila el proyecto)", e);
+        }
+    }
+}
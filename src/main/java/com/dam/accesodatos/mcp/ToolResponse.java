@@ -0,0 +1,118 @@
+package com.dam.accesodatos.mcp;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Respuesta de los endpoints REST de herramientas (/mcp/{tool}).
+ *
+ * Mismo JSON que los HashMap de antes:
+ * <pre>
+ * { "tool": "find_all_users", "status": "success", "result": [...], "count": 3 }
+ * { "tool": "find_all_users", "status": "error", "error": "..." }
+ * </pre>
+ *
+ * Pero sin HashMap (ni sus Entry) por petición: tool, status y result son
+ * campos, y los campos extra (count, missing, nextCursor...) van en dos
+ * arrays pequeños. El Serializer los escribe en orden directamente en el
+ * JsonGenerator; el valor de cada campo usa su propio serializador
+ * (UserSerializer para los usuarios).
+ */
+@JsonSerialize(using = ToolResponse.Serializer.class)
+public final class ToolResponse {
+
+    private final String tool;
+    private String status;
+    private boolean hasResult;
+    private Object result;
+
+    private String[] names = new String[2];
+    private Object[] values = new Object[2];
+    private int size;
+
+    private ToolResponse(String tool, String status) {
+        this.tool = tool;
+        this.status = status;
+    }
+
+    public static ToolResponse success(String tool, Object result) {
+        ToolResponse response = new ToolResponse(tool, "success");
+        response.hasResult = true;
+        response.result = result;
+        return response;
+    }
+
+    public static ToolResponse error(String tool, String message) {
+        return new ToolResponse(tool, "error").with("error", message);
+    }
+
+    /**
+     * Añade un campo después de result (el valor puede ser null)
+     */
+    public ToolResponse with(String name, Object value) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        names[size] = name;
+        values[size] = value;
+        size++;
+        return this;
+    }
+
+    public ToolResponse status(String status) {
+        this.status = status;
+        return this;
+    }
+
+    public String getTool() {
+        return tool;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * Valor de un campo extra, o null si no está
+     */
+    public Object get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public static class Serializer extends StdSerializer<ToolResponse> {
+
+        public Serializer() {
+            super(ToolResponse.class);
+        }
+
+        @Override
+        public void serialize(ToolResponse response, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject(response);
+            generator.writeStringField("tool", response.tool);
+            generator.writeStringField("status", response.status);
+            if (response.hasResult) {
+                provider.defaultSerializeField("result", response.result, generator);
+            }
+            for (int i = 0; i < response.size; i++) {
+                provider.defaultSerializeField(response.names[i], response.values[i], generator);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.VirtualThreads;
+import com.dam.accesodatos.mcp.McpToolRegistry.McpToolInfo;
+import com.dam.accesodatos.ra2.DepartmentCounters;
+import com.dam.accesodatos.ra2.UserCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calentamiento de las herramientas antes de aceptar tráfico.
+ *
+ * Las primeras llamadas tras arrancar se ejecutan en el intérprete de la
+ * JVM (todavía sin compilar por el JIT), con el pool sin conexiones
+ * abiertas y las cachés de PreparedStatement vacías: son varias veces más
+ * lentas y aparecen como picos de p99 cada vez que se despliega.
+ *
+ * Con ra2.mcp.warmup.enabled=true, al arrancar se llama a cada herramienta
+ * registrada iterations veces, con los argumentos de warmup-calls.json:
+ * - Cada llamada se hace en una transacción que siempre se deshace:
+ *   se liga la conexión al hilo (DatabaseConfig.bindConnection, como
+ *   run_pipeline) y al terminar se hace rollback. Las escrituras
+ *   (create_user, update_user, delete_user...) no cambian los datos
+ * - Hay concurrency hilos a la vez, así que se abren y preparan varias
+ *   conexiones del pool, cada una con su caché de statements
+ * - El resultado se serializa a JSON igual que en una respuesta
+ * - Las herramientas que fallan (p.ej. las TODO, que lanzan
+ *   UnsupportedOperationException) se dejan de llamar
+ *
+ * Al terminar se vacía la caché de usuarios. Los contadores por
+ * departamento no llegan a cambiar: lo que apuntan las escrituras en la
+ * conexión ligada se descarta con el rollback (ver DepartmentCounters).
+ *
+ * Mientras dura, /mcp/health responde 503 con status WARMING. Si tarda
+ * más de timeout se da por terminado igualmente.
+ *
+ * "{n}" en un texto de los argumentos se sustituye por un número distinto
+ * en cada llamada (emails únicos aunque haya hilos en paralelo).
+ * Con "setup" (otra herramienta y sus argumentos, p.ej. create_user) se
+ * ejecuta primero esa llamada en la misma transacción y "{id}" se
+ * sustituye por el id que devuelve: update_user y delete_user trabajan
+ * sobre una fila creada y deshecha por el propio calentamiento, no sobre
+ * filas reales que otros hilos podrían estar bloqueando o leyendo.
+ * Con "rollback": false la llamada se hace sin transacción: solo para
+ * herramientas que abren su propia conexión (run_pipeline) y con pasos
+ * de solo lectura.
+ */
+@Component
+public class ToolWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolWarmup.class);
+
+    public enum State {
+        DISABLED,
+        PENDING,
+        WARMING,
+        DONE
+    }
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    @Value("${ra2.mcp.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ra2.mcp.warmup.iterations:500}")
+    private int iterations = 500;
+
+    @Value("${ra2.mcp.warmup.concurrency:2}")
+    private int concurrency = 2;
+
+    @Value("${ra2.mcp.warmup.timeout:60s}")
+    private Duration timeout = Duration.ofSeconds(60);
+
+    @Value("${ra2.mcp.warmup.calls:warmup-calls.json}")
+    private String callsResource = "warmup-calls.json";
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private volatile State state = State.DISABLED;
+
+    private volatile List<WarmupCall> calls = List.of();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder completedIterations = new LongAdder();
+
+    private volatile long durationMillis;
+
+    /**
+     * Una herramienta a calentar con sus argumentos y sus métricas
+     */
+    private static final class WarmupCall {
+        private final McpToolInfo tool;
+        private final String arguments;
+        private final boolean rollback;
+        // Llamada previa en la misma transacción ("{id}" = su id), o null
+        private final WarmupCall setup;
+        private final LongAdder completed = new LongAdder();
+        private volatile String failure;
+
+        private WarmupCall(McpToolInfo tool, String arguments, boolean rollback, WarmupCall setup) {
+            this.tool = tool;
+            this.arguments = arguments;
+            this.rollback = rollback;
+            this.setup = setup;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        // PENDING desde el principio: el servidor HTTP ya responde antes de ApplicationReadyEvent
+        state = enabled ? State.PENDING : State.DISABLED;
+    }
+
+    /**
+     * true si /mcp/health debe responder WARMING (aún no ha terminado)
+     */
+    public boolean isWarming() {
+        return state == State.PENDING || state == State.WARMING;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Porcentaje completado (0-100)
+     */
+    public int getProgress() {
+        long total = (long) iterations * Math.max(1, concurrency);
+        return total == 0 ? 100 : (int) Math.min(100, completedIterations.sum() * 100 / total);
+    }
+
+    /**
+     * Lanza el calentamiento en segundo plano cuando la aplicación ya
+     * está arrancada (el servidor HTTP responde WARMING mientras tanto)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = VirtualThreads.factory("ra2-warmup", virtualThreads).newThread(this::run);
+        thread.start();
+    }
+
+    /**
+     * Ejecuta el calentamiento completo en el hilo actual
+     */
+    public void run() {
+        state = State.WARMING;
+        long start = System.nanoTime();
+        try {
+            calls = loadCalls();
+            logger.info("Calentamiento: {} herramientas x {} iteraciones en {} hilos",
+                    calls.size(), iterations, concurrency);
+
+            List<Callable<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(() -> {
+                    warm();
+                    return null;
+                });
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                    VirtualThreads.factory("ra2-warmup-worker", virtualThreads));
+            try {
+                executor.invokeAll(workers, timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } finally {
+                // Tras el timeout se interrumpen; se espera a que deshagan su transacción
+                executor.shutdownNow();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warn("Calentamiento interrumpido: {}", e.getMessage());
+        } finally {
+            userCache.clear();
+            durationMillis = (System.nanoTime() - start) / 1_000_000;
+            state = State.DONE;
+            logger.info("Calentamiento terminado en {} ms", durationMillis);
+        }
+    }
+
+    /**
+     * Un hilo de calentamiento: todas las herramientas, iterations veces
+     * (intercaladas, como el tráfico real)
+     */
+    private void warm() {
+        for (int i = 0; i < iterations && !Thread.currentThread().isInterrupted(); i++) {
+            for (WarmupCall call : calls) {
+                if (call.failure != null) {
+                    continue;
+                }
+                try {
+                    execute(call);
+                    call.completed.increment();
+                } catch (RuntimeException e) {
+                    if (call.failure == null) {
+                        call.failure = e.getMessage();
+                        logger.info("Calentamiento: {} falla y no se vuelve a llamar ({})",
+                                call.tool.getName(), e.getMessage());
+                    }
+                }
+            }
+            completedIterations.increment();
+        }
+    }
+
+    private void execute(WarmupCall call) {
+        if (!call.rollback) {
+            serialize(call.tool.invoke(arguments(call, null)));
+            return;
+        }
+
+        departmentCounters.beginWrite();
+        try (Connection connection = DatabaseConfig.getConnection()) {
+            connection.setAutoCommit(false);
+            BoundConnection bound = DatabaseConfig.bindConnection(connection, true);
+            try {
+                String id = call.setup != null ? setup(call) : null;
+                serialize(call.tool.invoke(arguments(call, id)));
+            } finally {
+                DatabaseConfig.unbindConnection();
+                connection.rollback();
+                bound.discardAfterCommit();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error en la transacción de calentamiento: " + e.getMessage(), e);
+        } finally {
+            departmentCounters.endWrite();
+        }
+    }
+
+    /**
+     * Ejecuta la llamada "setup" de call (ya dentro de su transacción)
+     *
+     * @return el id que devuelve, para sustituir "{id}"
+     */
+    private String setup(WarmupCall call) {
+        JsonNode created = objectMapper.valueToTree(call.setup.tool.invoke(arguments(call.setup, null)));
+        JsonNode id = created != null ? created.get("id") : null;
+        if (id == null || id.isNull()) {
+            throw new IllegalStateException("setup " + call.setup.tool.getName() + " no devuelve id");
+        }
+        return id.asText();
+    }
+
+    private JsonNode arguments(WarmupCall call, String id) {
+        if (call.arguments == null) {
+            return null;
+        }
+        String text = call.arguments.replace("{n}", Long.toString(sequence.incrementAndGet()));
+        if (id != null) {
+            // "{id}" va entre comillas en el JSON: se sustituye el texto entero por el número
+            text = text.replace("\"{id}\"", id);
+        }
+        try {
+            return objectMapper.readTree(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void serialize(Object result) {
+        try {
+            objectMapper.writeValueAsBytes(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Llamadas de warmup-calls.json, solo para herramientas registradas.
+     * Las herramientas registradas sin entrada en el fichero se avisan
+     * (se quedan sin calentar).
+     */
+    private List<WarmupCall> loadCalls() {
+        JsonNode entries;
+        try (InputStream in = ToolWarmup.class.getClassLoader().getResourceAsStream(callsResource)) {
+            if (in == null) {
+                throw new IllegalStateException("No existe " + callsResource + " en el classpath");
+            }
+            entries = objectMapper.readTree(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer " + callsResource, e);
+        }
+
+        Map<String, WarmupCall> byTool = new LinkedHashMap<>();
+        for (JsonNode entry : entries) {
+            String name = entry.path("tool").asText();
+            McpToolInfo tool = toolRegistry.getTool(name);
+            if (tool == null) {
+                logger.warn("Calentamiento: la herramienta {} no existe", name);
+                continue;
+            }
+            WarmupCall call = call(tool, entry, null);
+            JsonNode setup = entry.get("setup");
+            if (setup != null) {
+                McpToolInfo setupTool = toolRegistry.getTool(setup.path("tool").asText());
+                if (setupTool == null || !call.rollback) {
+                    logger.warn("Calentamiento: setup de {} no válido (herramienta desconocida o sin rollback)", name);
+                    continue;
+                }
+                call = call(tool, entry, call(setupTool, setup, null));
+            }
+            byTool.put(name, call);
+        }
+        for (McpToolInfo tool : toolRegistry.getRegisteredTools()) {
+            if (!byTool.containsKey(tool.getName())) {
+                logger.warn("Calentamiento: {} no tiene argumentos en {}", tool.getName(), callsResource);
+            }
+        }
+        return List.copyOf(byTool.values());
+    }
+
+    private static WarmupCall call(McpToolInfo tool, JsonNode entry, WarmupCall setup) {
+        JsonNode arguments = entry.get("arguments");
+        return new WarmupCall(tool, arguments == null ? null : arguments.toString(),
+                entry.path("rollback").asBoolean(true), setup);
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", state.name());
+        stats.put("progress", getProgress());
+        stats.put("iterations", iterations);
+        stats.put("concurrency", concurrency);
+        stats.put("durationMs", durationMillis);
+
+        Map<String, Object> tools = new LinkedHashMap<>();
+        for (WarmupCall call : calls) {
+            Map<String, Object> tool = new LinkedHashMap<>();
+            tool.put("calls", call.completed.sum());
+            if (call.failure != null) {
+                tool.put("failure", call.failure);
+            }
+            tools.put(call.tool.getName(), tool);
+        }
+        stats.put("tools", tools);
+        return stats;
+    }
+}
@@ -0,0 +1,74 @@
+package com.dam.accesodatos.model;
+
+/**
+ * Opciones para inserciones masivas con batch_insert_users
+ *
+ * - chunkSize: filas enviadas a H2 en cada executeBatch() / INSERT multi-fila
+ * - mode: JDBC_BATCH (addBatch/executeBatch) o MULTI_ROW_VALUES
+ *   (un único INSERT ... VALUES (...), (...), ... por chunk)
+ * - commitMode: ALL_OR_NOTHING (una transacción para todo) o PER_CHUNK
+ *   (commit tras cada chunk: un fallo no deshace los chunks anteriores)
+ */
+public class BatchInsertOptions {
+
+    public enum Mode {
+        JDBC_BATCH,
+        MULTI_ROW_VALUES
+    }
+
+    public enum CommitMode {
+        ALL_OR_NOTHING,
+        PER_CHUNK
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private int chunkSize;
+    private Mode mode;
+    private CommitMode commitMode;
+
+    public BatchInsertOptions() {
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.mode = Mode.JDBC_BATCH;
+        this.commitMode = CommitMode.ALL_OR_NOTHING;
+    }
+
+    public BatchInsertOptions(int chunkSize, Mode mode, CommitMode commitMode) {
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        this.mode = mode != null ? mode : Mode.JDBC_BATCH;
+        this.commitMode = commitMode != null ? commitMode : CommitMode.ALL_OR_NOTHING;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public CommitMode getCommitMode() {
+        return commitMode;
+    }
+
+    public void setCommitMode(CommitMode commitMode) {
+        this.commitMode = commitMode;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchInsertOptions{" +
+                "chunkSize=" + chunkSize +
+                ", mode=" + mode +
+                ", commitMode=" + commitMode +
+                '}';
+    }
+}
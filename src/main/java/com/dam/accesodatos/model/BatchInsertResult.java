@@ -0,0 +1,68 @@
+package com.dam.accesodatos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de una inserción masiva
+ *
+ * - insertedCount: filas que quedaron confirmadas (commit) en la base de datos
+ * - generatedIds: un id por fila de entrada, en el mismo orden; null si la fila
+ *   no se insertó
+ * - failedRows: índices (base 0) de las filas de entrada que fallaron
+ * - committed: false si se hizo rollback de toda la operación
+ */
+public class BatchInsertResult {
+
+    private int insertedCount;
+    private final List<Long> generatedIds = new ArrayList<>();
+    private final List<Integer> failedRows = new ArrayList<>();
+    private boolean committed = true;
+    private String error;
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public void setInsertedCount(int insertedCount) {
+        this.insertedCount = insertedCount;
+    }
+
+    public List<Long> getGeneratedIds() {
+        return generatedIds;
+    }
+
+    public List<Integer> getFailedRows() {
+        return failedRows;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean hasFailures() {
+        return !failedRows.isEmpty() || error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchInsertResult{" +
+                "insertedCount=" + insertedCount +
+                ", failedRows=" + failedRows +
+                ", committed=" + committed +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
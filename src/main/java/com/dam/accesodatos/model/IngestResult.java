@@ -0,0 +1,112 @@
+package com.dam.accesodatos.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de una inserción en streaming (UserIngestService)
+ *
+ * A diferencia de BatchInsertResult no guarda nada por fila (ni ids
+ * generados): su tamaño no depende del número de usuarios.
+ *
+ * - rowsRead: usuarios leídos del cuerpo de la petición
+ * - insertedCount: filas que quedaron confirmadas (commit) en la base de datos
+ * - failedCount: filas que fallaron; failedRows solo guarda los índices
+ *   (base 0) de las primeras MAX_FAILED_ROWS
+ * - committed: false si se hizo rollback de toda la operación
+ * - invalidInput: el error es del cuerpo (JSON mal formado o de tipo incorrecto)
+ */
+public class IngestResult {
+
+    public static final int MAX_FAILED_ROWS = 100;
+
+    private long rowsRead;
+    private long insertedCount;
+    private long failedCount;
+    private final List<Long> failedRows = new ArrayList<>();
+    private int chunks;
+    private boolean committed = true;
+    private boolean invalidInput;
+    private String error;
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getInsertedCount() {
+        return insertedCount;
+    }
+
+    public void setInsertedCount(long insertedCount) {
+        this.insertedCount = insertedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public List<Long> getFailedRows() {
+        return failedRows;
+    }
+
+    /**
+     * Anota una fila fallida (solo se guarda el índice de las primeras)
+     */
+    public void addFailedRow(long row) {
+        failedCount++;
+        if (failedRows.size() < MAX_FAILED_ROWS) {
+            failedRows.add(row);
+        }
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public void setCommitted(boolean committed) {
+        this.committed = committed;
+    }
+
+    public boolean isInvalidInput() {
+        return invalidInput;
+    }
+
+    public void setInvalidInput(boolean invalidInput) {
+        this.invalidInput = invalidInput;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public boolean hasFailures() {
+        return failedCount > 0 || error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestResult{" +
+                "rowsRead=" + rowsRead +
+                ", insertedCount=" + insertedCount +
+                ", failedCount=" + failedCount +
+                ", committed=" + committed +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,45 @@
+package com.dam.accesodatos.model;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Petición de run_pipeline: varias llamadas a herramientas que se ejecutan
+ * en el servidor en una sola petición MCP
+ *
+ * - steps: los pasos; pueden usar resultados de pasos anteriores (ver PipelineStep)
+ * - transactional: true = todos los pasos en una única transacción
+ *   (si uno falla no se confirma ninguno), false = cada paso confirma lo suyo
+ */
+public class PipelineRequest {
+
+    @NotNull(message = "Los pasos son obligatorios")
+    private List<PipelineStep> steps = new ArrayList<>();
+
+    private boolean transactional;
+
+    public PipelineRequest() {}
+
+    public PipelineRequest(List<PipelineStep> steps, boolean transactional) {
+        this.steps = steps;
+        this.transactional = transactional;
+    }
+
+    public List<PipelineStep> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<PipelineStep> steps) {
+        this.steps = steps;
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    public void setTransactional(boolean transactional) {
+        this.transactional = transactional;
+    }
+}
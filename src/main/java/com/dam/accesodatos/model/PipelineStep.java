@@ -0,0 +1,87 @@
+package com.dam.accesodatos.model;
+
+import jakarta.validation.constraints.NotBlank;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paso de un pipeline: una llamada a una herramienta MCP
+ *
+ * Los valores de texto de arguments pueden ser referencias (JSONPath
+ * reducido) al resultado de otro paso, que se sustituyen antes de llamar:
+ * - "$.paso"              resultado completo del paso "paso"
+ * - "$.paso.campo[0]"     campos e índices de arrays
+ * - "$.paso[*].id"        el campo de todos los elementos (array)
+ * - "$item", "$item.id"   elemento actual cuando el paso tiene forEach
+ *
+ * forEach es una referencia a un array: el paso se ejecuta una vez por
+ * elemento y su resultado es el array de resultados.
+ *
+ * dependsOn añade dependencias sin usar el resultado (p.ej. leer después
+ * de escribir); las referencias ya son dependencias.
+ */
+public class PipelineStep {
+
+    @NotBlank(message = "El id del paso es obligatorio")
+    private String id;
+
+    @NotBlank(message = "La herramienta es obligatoria")
+    private String tool;
+
+    private Map<String, Object> arguments = new LinkedHashMap<>();
+
+    private List<String> dependsOn = new ArrayList<>();
+
+    private String forEach;
+
+    public PipelineStep() {}
+
+    public PipelineStep(String id, String tool, Map<String, Object> arguments) {
+        this.id = id;
+        this.tool = tool;
+        this.arguments = arguments;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTool() {
+        return tool;
+    }
+
+    public void setTool(String tool) {
+        this.tool = tool;
+    }
+
+    public Map<String, Object> getArguments() {
+        return arguments;
+    }
+
+    public void setArguments(Map<String, Object> arguments) {
+        this.arguments = arguments;
+    }
+
+    public List<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public void setDependsOn(List<String> dependsOn) {
+        this.dependsOn = dependsOn;
+    }
+
+    public String getForEach() {
+        return forEach;
+    }
+
+    public void setForEach(String forEach) {
+        this.forEach = forEach;
+    }
+}
@@ -1,5 +1,6 @@
 package com.dam.accesodatos.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -17,7 +18,10 @@ import java.util.Objects;
  * - PreparedStatement: usando setters (setLong, setString, setBoolean, setTimestamp)
  *
  * Los estudiantes deben usar este modelo en sus implementaciones.
+ *
+ * JSON de salida: UserSerializer (escrito a mano, mismo formato que Jackson)
  */
+@JsonSerialize(using = UserSerializer.class)
 public class User {
 
     private Long id;
@@ -0,0 +1,51 @@
+package com.dam.accesodatos.model;
+
+import java.util.List;
+
+/**
+ * Página de resultados de search_users
+ *
+ * nextCursor es opaco: se pasa tal cual en UserQueryDto.cursor para pedir
+ * la página siguiente. Es null cuando no quedan más resultados.
+ */
+public class UserPage {
+
+    private List<User> users;
+    private String nextCursor;
+
+    public UserPage() {
+    }
+
+    public UserPage(List<User> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<User> users) {
+        this.users = users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPage{" +
+                "users=" + (users != null ? users.size() : 0) +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -1,8 +1,16 @@
 package com.dam.accesodatos.model;
 
+import java.util.Objects;
+
 /**
  * DTO para consultas de usuarios con filtros opcionales
  * Usado en herramientas MCP para búsquedas parametrizadas
+ *
+ * Paginación:
+ * - offset/limit: LIMIT ? OFFSET ? (cada página salta todas las anteriores)
+ * - cursor/limit: paginación por clave (keyset). El cursor es el nextCursor
+ *   de la página anterior; "" pide la primera página. Si hay cursor, offset
+ *   se ignora.
  */
 public class UserQueryDto {
 
@@ -11,6 +19,7 @@ public class UserQueryDto {
     private Boolean active;
     private Integer limit;
     private Integer offset;
+    private String cursor;
 
     public UserQueryDto() {
         this.limit = 10; // Por defecto 10 registros
@@ -65,6 +74,36 @@ public class UserQueryDto {
         this.offset = offset;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Dos consultas con los mismos filtros y paginación son iguales
+     * (permite agrupar peticiones idénticas simultáneas)
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserQueryDto that = (UserQueryDto) o;
+        return Objects.equals(department, that.department) &&
+               Objects.equals(role, that.role) &&
+               Objects.equals(active, that.active) &&
+               Objects.equals(limit, that.limit) &&
+               Objects.equals(offset, that.offset) &&
+               Objects.equals(cursor, that.cursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(department, role, active, limit, offset, cursor);
+    }
+
     @Override
     public String toString() {
         return "UserQueryDto{" +
@@ -73,6 +112,7 @@ public class UserQueryDto {
                 ", active=" + active +
                 ", limit=" + limit +
                 ", offset=" + offset +
+                ", cursor='" + cursor + '\'' +
                 '}';
     }
 }
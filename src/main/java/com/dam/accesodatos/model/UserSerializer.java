@@ -0,0 +1,117 @@
+package com.dam.accesodatos.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Serializador JSON de User escrito a mano.
+ *
+ * Produce exactamente el mismo JSON que el serializador por defecto de
+ * Jackson (mismos nombres y orden de campos, nulls incluidos, fechas
+ * ISO-8601 como con write-dates-as-timestamps: false), pero sin
+ * introspección ni reflexión: cada campo se escribe directamente en el
+ * JsonGenerator, que escribe en su propio buffer reciclado.
+ *
+ * Las fechas tampoco pasan por DateTimeFormatter: se escriben dígito a
+ * dígito en un char[] pequeño (un único objeto por usuario).
+ */
+public class UserSerializer extends StdSerializer<User> {
+
+    // Tamaño del buffer de writeDateTimeField: yyyy-MM-ddTHH:mm:ss.nnnnnnnnn
+    public static final int DATE_TIME_BUFFER_SIZE = 29;
+
+    public UserSerializer() {
+        super(User.class);
+    }
+
+    @Override
+    public void serialize(User user, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject(user);
+        writeLongField(generator, "id", user.getId());
+        generator.writeStringField("name", user.getName());
+        generator.writeStringField("email", user.getEmail());
+        generator.writeStringField("department", user.getDepartment());
+        generator.writeStringField("role", user.getRole());
+        if (user.getActive() == null) {
+            generator.writeNullField("active");
+        } else {
+            generator.writeBooleanField("active", user.getActive());
+        }
+
+        char[] buffer = new char[DATE_TIME_BUFFER_SIZE];
+        writeDateTimeField(generator, "createdAt", user.getCreatedAt(), buffer);
+        writeDateTimeField(generator, "updatedAt", user.getUpdatedAt(), buffer);
+        generator.writeEndObject();
+    }
+
+    private static void writeLongField(JsonGenerator generator, String field, Long value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeNumberField(field, value);
+        }
+    }
+
+    /**
+     * Escribe la fecha con el formato de DateTimeFormatter.ISO_LOCAL_DATE_TIME
+     * (también lo usa el streaming de find_all_users)
+     *
+     * @param buffer char[] de DATE_TIME_BUFFER_SIZE posiciones, reutilizable
+     */
+    public static void writeDateTimeField(JsonGenerator generator, String field, LocalDateTime value,
+                                          char[] buffer) throws IOException {
+        generator.writeFieldName(field);
+        if (value == null) {
+            generator.writeNull();
+        } else if (value.getYear() < 0 || value.getYear() > 9999) {
+            // Años de más de 4 cifras: signo y relleno del formato ISO
+            generator.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value));
+        } else {
+            generator.writeString(buffer, 0, formatDateTime(value, buffer));
+        }
+    }
+
+    /**
+     * @return caracteres escritos en buffer
+     */
+    static int formatDateTime(LocalDateTime value, char[] buffer) {
+        int pos = 0;
+        pos = digits(buffer, pos, value.getYear(), 4);
+        buffer[pos++] = '-';
+        pos = digits(buffer, pos, value.getMonthValue(), 2);
+        buffer[pos++] = '-';
+        pos = digits(buffer, pos, value.getDayOfMonth(), 2);
+        buffer[pos++] = 'T';
+        pos = digits(buffer, pos, value.getHour(), 2);
+        buffer[pos++] = ':';
+        pos = digits(buffer, pos, value.getMinute(), 2);
+        buffer[pos++] = ':';
+        pos = digits(buffer, pos, value.getSecond(), 2);
+
+        int nanos = value.getNano();
+        if (nanos > 0) {
+            // Como ISO_LOCAL_TIME: fracción sin ceros a la derecha
+            buffer[pos++] = '.';
+            int length = 9;
+            while (nanos % 10 == 0) {
+                nanos /= 10;
+                length--;
+            }
+            pos = digits(buffer, pos, nanos, length);
+        }
+        return pos;
+    }
+
+    private static int digits(char[] buffer, int pos, int value, int length) {
+        for (int i = pos + length - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + length;
+    }
+}
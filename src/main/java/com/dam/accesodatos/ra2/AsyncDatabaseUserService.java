@@ -0,0 +1,92 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versión asíncrona de {@link DatabaseUserService}: los mismos métodos,
+ * pero devuelven un CompletableFuture en vez de esperar a la BD.
+ *
+ * JDBC es bloqueante: la llamada sigue esperando a H2, pero en un hilo del
+ * ejecutor JDBC (JdbcExecutor), no en el hilo que la pide. El controlador
+ * devuelve el futuro como DeferredResult y el hilo de Tomcat queda libre
+ * para otras peticiones mientras tanto.
+ *
+ * Los futuros terminan con la misma excepción que lanzaría el método
+ * síncrono, o con RejectedExecutionException si el ejecutor está saturado.
+ */
+public interface AsyncDatabaseUserService {
+
+    // ========== CE2.a: Connection Management ==========
+
+    /** @see DatabaseUserService#testConnection() */
+    CompletableFuture<String> testConnection();
+
+    // ========== CE2.b: CRUD Operations ==========
+
+    /** @see DatabaseUserService#createUser(UserCreateDto) */
+    CompletableFuture<User> createUser(UserCreateDto dto);
+
+    /** @see DatabaseUserService#findUserById(Long) */
+    CompletableFuture<User> findUserById(Long id);
+
+    /** @see DatabaseUserService#findUsersByIds(List) */
+    CompletableFuture<List<User>> findUsersByIds(List<Long> ids);
+
+    /** @see DatabaseUserService#updateUser(Long, UserUpdateDto) */
+    CompletableFuture<User> updateUser(Long id, UserUpdateDto dto);
+
+    /** @see DatabaseUserService#deleteUser(Long) */
+    CompletableFuture<Boolean> deleteUser(Long id);
+
+    /** @see DatabaseUserService#findAll() */
+    CompletableFuture<List<User>> findAll();
+
+    /** @see DatabaseUserService#streamAllUsers(JsonGenerator) */
+    CompletableFuture<Long> streamAllUsers(JsonGenerator generator);
+
+    // ========== CE2.c: Advanced Queries ==========
+
+    /** @see DatabaseUserService#findUsersByDepartment(String) */
+    CompletableFuture<List<User>> findUsersByDepartment(String department);
+
+    /** @see DatabaseUserService#searchUsers(UserQueryDto) */
+    CompletableFuture<List<User>> searchUsers(UserQueryDto query);
+
+    /** @see DatabaseUserService#searchUsersPage(UserQueryDto) */
+    CompletableFuture<UserPage> searchUsersPage(UserQueryDto query);
+
+    // ========== CE2.d: Transactions ==========
+
+    /** @see DatabaseUserService#transferData(List) */
+    CompletableFuture<Boolean> transferData(List<User> users);
+
+    /** @see DatabaseUserService#batchInsertUsers(List) */
+    CompletableFuture<Integer> batchInsertUsers(List<User> users);
+
+    /** @see DatabaseUserService#batchInsertUsers(List, BatchInsertOptions) */
+    CompletableFuture<BatchInsertResult> batchInsertUsers(List<User> users, BatchInsertOptions options);
+
+    // ========== CE2.e: Metadata ==========
+
+    /** @see DatabaseUserService#getDatabaseInfo() */
+    CompletableFuture<String> getDatabaseInfo();
+
+    /** @see DatabaseUserService#getTableColumns(String) */
+    CompletableFuture<List<Map<String, Object>>> getTableColumns(String tableName);
+
+    // ========== CE2.f: Funciones de Agregación ==========
+
+    /** @see DatabaseUserService#executeCountByDepartment(String) */
+    CompletableFuture<Integer> executeCountByDepartment(String department);
+}
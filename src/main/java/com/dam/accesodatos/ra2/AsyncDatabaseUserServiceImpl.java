@@ -0,0 +1,119 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.JdbcExecutor;
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementación de AsyncDatabaseUserService: cada método ejecuta el mismo
+ * método de DatabaseUserService en el ejecutor JDBC.
+ *
+ * Se delega en el bean @Primary (CoalescingDatabaseUserService), así que
+ * las lecturas asíncronas también usan la caché y el agrupamiento.
+ */
+@Service
+public class AsyncDatabaseUserServiceImpl implements AsyncDatabaseUserService {
+
+    @Autowired
+    private DatabaseUserService databaseUserService;
+
+    @Autowired
+    private JdbcExecutor jdbcExecutor;
+
+    @Override
+    public CompletableFuture<String> testConnection() {
+        return jdbcExecutor.submit(databaseUserService::testConnection);
+    }
+
+    @Override
+    public CompletableFuture<User> createUser(UserCreateDto dto) {
+        return jdbcExecutor.submit(() -> databaseUserService.createUser(dto));
+    }
+
+    @Override
+    public CompletableFuture<User> findUserById(Long id) {
+        return jdbcExecutor.submit(() -> databaseUserService.findUserById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findUsersByIds(List<Long> ids) {
+        return jdbcExecutor.submit(() -> databaseUserService.findUsersByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<User> updateUser(Long id, UserUpdateDto dto) {
+        return jdbcExecutor.submit(() -> databaseUserService.updateUser(id, dto));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteUser(Long id) {
+        return jdbcExecutor.submit(() -> databaseUserService.deleteUser(id));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findAll() {
+        return jdbcExecutor.submit(databaseUserService::findAll);
+    }
+
+    @Override
+    public CompletableFuture<Long> streamAllUsers(JsonGenerator generator) {
+        return jdbcExecutor.submit(() -> databaseUserService.streamAllUsers(generator));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> findUsersByDepartment(String department) {
+        return jdbcExecutor.submit(() -> databaseUserService.findUsersByDepartment(department));
+    }
+
+    @Override
+    public CompletableFuture<List<User>> searchUsers(UserQueryDto query) {
+        return jdbcExecutor.submit(() -> databaseUserService.searchUsers(query));
+    }
+
+    @Override
+    public CompletableFuture<UserPage> searchUsersPage(UserQueryDto query) {
+        return jdbcExecutor.submit(() -> databaseUserService.searchUsersPage(query));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> transferData(List<User> users) {
+        return jdbcExecutor.submit(() -> databaseUserService.transferData(users));
+    }
+
+    @Override
+    public CompletableFuture<Integer> batchInsertUsers(List<User> users) {
+        return jdbcExecutor.submit(() -> databaseUserService.batchInsertUsers(users));
+    }
+
+    @Override
+    public CompletableFuture<BatchInsertResult> batchInsertUsers(List<User> users, BatchInsertOptions options) {
+        return jdbcExecutor.submit(() -> databaseUserService.batchInsertUsers(users, options));
+    }
+
+    @Override
+    public CompletableFuture<String> getDatabaseInfo() {
+        return jdbcExecutor.submit(databaseUserService::getDatabaseInfo);
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> getTableColumns(String tableName) {
+        return jdbcExecutor.submit(() -> databaseUserService.getTableColumns(tableName));
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeCountByDepartment(String department) {
+        return jdbcExecutor.submit(() -> databaseUserService.executeCountByDepartment(department));
+    }
+}
@@ -0,0 +1,193 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Decorador de DatabaseUserService que agrupa lecturas idénticas simultáneas.
+ *
+ * Si varios agentes lanzan a la vez la misma consulta (mismo método y
+ * mismos argumentos), solo se ejecuta una contra la BD y todos reciben su
+ * resultado. Las escrituras se delegan sin cambios.
+ *
+ * Es el bean @Primary: el controlador y el registro de herramientas lo
+ * reciben al inyectar DatabaseUserService. La implementación JDBC sigue
+ * siendo DatabaseUserServiceImpl.
+ *
+ * Cada llamada agrupada recibe su propia copia del resultado: de la lista
+ * y de cada User (UserCache.copy), porque User es mutable y quien lo
+ * recibe puede modificarlo. La espera a la consulta en curso está acotada
+ * por {@code ra2.coalescing.max-wait}; si se agota, la llamada consulta
+ * por su cuenta. Una lectura agrupada puede devolver el resultado de una
+ * consulta que empezó justo antes que ella, igual que si hubiera llegado
+ * unos milisegundos antes.
+ *
+ * Las lecturas de un hilo con conexión ligada (DatabaseConfig.bindConnection,
+ * usado por run_pipeline) no se agrupan.
+ *
+ * Se desactiva con {@code ra2.coalescing.enabled=false}.
+ */
+@Service
+@Primary
+public class CoalescingDatabaseUserService implements DatabaseUserService {
+
+    @Autowired
+    private DatabaseUserServiceImpl delegate;
+
+    @Value("${ra2.coalescing.enabled:true}")
+    private boolean enabled = true;
+
+    // Espera máxima a una consulta agrupada en curso
+    @Value("${ra2.coalescing.max-wait:10s}")
+    private Duration maxWait = Duration.ofSeconds(10);
+
+    private SingleFlight singleFlight;
+
+    @PostConstruct
+    void init() {
+        singleFlight = new SingleFlight(maxWait);
+    }
+
+    // ========== Lecturas agrupadas ==========
+
+    @Override
+    public User findUserById(Long id) {
+        return coalesce("findUserById", id, () -> delegate.findUserById(id), UserCache::copy);
+    }
+
+    @Override
+    public List<User> findUsersByIds(List<Long> ids) {
+        return coalesce("findUsersByIds", new ArrayList<>(ids),
+                () -> delegate.findUsersByIds(ids), CoalescingDatabaseUserService::copyUsers);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return coalesce("findAll", null, delegate::findAll, CoalescingDatabaseUserService::copyUsers);
+    }
+
+    @Override
+    public List<User> findUsersByDepartment(String department) {
+        return coalesce("findUsersByDepartment", department,
+                () -> delegate.findUsersByDepartment(department), CoalescingDatabaseUserService::copyUsers);
+    }
+
+    @Override
+    public List<User> searchUsers(UserQueryDto query) {
+        return searchUsersPage(query).getUsers();
+    }
+
+    @Override
+    public UserPage searchUsersPage(UserQueryDto query) {
+        return coalesce("searchUsers", query, () -> delegate.searchUsersPage(query),
+                page -> new UserPage(copyUsers(page.getUsers()), page.getNextCursor()));
+    }
+
+    @Override
+    public int executeCountByDepartment(String department) {
+        return coalesce("executeCountByDepartment", department,
+                () -> delegate.executeCountByDepartment(department), SingleFlight.Shared.same());
+    }
+
+    @Override
+    public String getDatabaseInfo() {
+        return coalesce("getDatabaseInfo", null, delegate::getDatabaseInfo, SingleFlight.Shared.same());
+    }
+
+    @Override
+    public List<Map<String, Object>> getTableColumns(String tableName) {
+        return coalesce("getTableColumns", tableName, () -> delegate.getTableColumns(tableName), ArrayList::new);
+    }
+
+    // ========== Sin agrupar ==========
+
+    @Override
+    public String testConnection() {
+        return delegate.testConnection();
+    }
+
+    @Override
+    public long streamAllUsers(JsonGenerator generator) {
+        return delegate.streamAllUsers(generator);
+    }
+
+    @Override
+    public User createUser(UserCreateDto dto) {
+        return delegate.createUser(dto);
+    }
+
+    @Override
+    public User updateUser(Long id, UserUpdateDto dto) {
+        return delegate.updateUser(id, dto);
+    }
+
+    @Override
+    public boolean deleteUser(Long id) {
+        return delegate.deleteUser(id);
+    }
+
+    @Override
+    public boolean transferData(List<User> users) {
+        return delegate.transferData(users);
+    }
+
+    @Override
+    public int batchInsertUsers(List<User> users) {
+        return delegate.batchInsertUsers(users);
+    }
+
+    @Override
+    public BatchInsertResult batchInsertUsers(List<User> users, BatchInsertOptions options) {
+        return delegate.batchInsertUsers(users, options);
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("executions", singleFlight.getExecutions());
+        stats.put("coalesced", singleFlight.getCoalesced());
+        stats.put("coalescedByOperation", singleFlight.getCoalescedByOperation());
+        stats.put("waitTimeouts", singleFlight.getWaitTimeouts());
+        stats.put("inFlight", singleFlight.getInFlight());
+        return stats;
+    }
+
+    private static List<User> copyUsers(List<User> users) {
+        List<User> copy = new ArrayList<>(users.size());
+        for (User user : users) {
+            copy.add(UserCache.copy(user));
+        }
+        return copy;
+    }
+
+    private <T> T coalesce(String operation, Object argument, Supplier<T> loader, SingleFlight.Shared<T> shared) {
+        // Con una conexión ligada al hilo (pipeline) la lectura debe ir por
+        // esa conexión: agruparla con la de otro hilo usaría otra conexión
+        if (!enabled || DatabaseConfig.getBoundConnection() != null) {
+            return loader.get();
+        }
+        return singleFlight.execute(new SingleFlight.Key(operation, argument), loader, shared);
+    }
+}
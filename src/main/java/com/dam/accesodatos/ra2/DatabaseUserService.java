@@ -1,9 +1,13 @@
 package com.dam.accesodatos.ra2;
 
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
 import com.dam.accesodatos.model.User;
 import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
 import com.dam.accesodatos.model.UserQueryDto;
 import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.ai.mcp.server.annotation.Tool;
 
 import java.sql.Connection;
@@ -100,15 +104,32 @@ public interface DatabaseUserService {
           description = "Busca un usuario por ID usando SELECT con PreparedStatement")
     User findUserById(Long id);
 
+    /**
+     * CE2.b: Busca varios usuarios por ID en una sola llamada
+     *
+     * - Los ids que están en la caché de usuarios no van a la BD
+     * - El resto se consulta con {@code WHERE id = ANY(?)} y un
+     *   java.sql.Array (Connection.createArrayOf), en bloques de tamaño
+     *   acotado y sobre una única conexión
+     *
+     * @param ids IDs a buscar (puede haber repetidos)
+     * @return Lista alineada con ids: el usuario de cada posición o null si no existe
+     * @throws RuntimeException si hay error de BD
+     */
+    @Tool(name = "find_users_by_ids",
+          description = "Busca varios usuarios por ID en una sola llamada (null para los que no existen)")
+    List<User> findUsersByIds(List<Long> ids);
+
     /**
      * CE2.b: Actualiza los datos de un usuario existente
      *
      * Implementación requerida:
-     * - Primero verificar que el usuario existe (SELECT)
      * - Usar PreparedStatement con SQL UPDATE
      * - Actualizar solo campos no nulos del DTO
      * - Actualizar campo updated_at con CURRENT_TIMESTAMP
-     * - Retornar usuario actualizado
+     * - Retornar usuario actualizado (en la misma sentencia con FINAL TABLE
+     *   o leyéndolo con la misma conexión)
+     * - Lanzar excepción si el usuario no existe (0 filas actualizadas)
      *
      * Clases JDBC requeridas:
      * - java.sql.PreparedStatement (SELECT y UPDATE)
@@ -164,6 +185,21 @@ public interface DatabaseUserService {
           description = "Obtiene todos los usuarios de la base de datos")
     List<User> findAll();
 
+    /**
+     * Igual que findAll(), pero escribe cada usuario directamente en el
+     * JsonGenerator según se lee del ResultSet (sin List ni objetos User).
+     *
+     * Cada usuario se escribe como un objeto JSON en el contexto actual del
+     * generador: el llamador decide si van dentro de un array o separados
+     * por saltos de línea (NDJSON).
+     *
+     * @param generator destino de los objetos JSON
+     * @return Número de usuarios escritos
+     * @throws RuntimeException si hay error de BD
+     * @throws java.io.UncheckedIOException si falla la escritura
+     */
+    long streamAllUsers(JsonGenerator generator);
+
     // ========== CE2.c: Advanced Queries ==========
 
     /**
@@ -193,7 +229,7 @@ public interface DatabaseUserService {
      * - Construir query SQL dinámica según filtros presentes
      * - Usar PreparedStatement con múltiples placeholders
      * - Manejar filtros opcionales (department, role, active)
-     * - Aplicar paginación con LIMIT y OFFSET
+     * - Aplicar paginación con LIMIT y OFFSET (o por cursor, ver searchUsersPage)
      *
      * Clases JDBC requeridas:
      * - java.sql.PreparedStatement
@@ -207,6 +243,17 @@ public interface DatabaseUserService {
           description = "Busca usuarios con múltiples filtros opcionales y paginación")
     List<User> searchUsers(UserQueryDto query);
 
+    /**
+     * Igual que searchUsers, pero devuelve también el cursor de la página
+     * siguiente (paginación keyset con UserQueryDto.cursor).
+     *
+     * @param query DTO con filtros opcionales, limit y offset o cursor
+     * @return Usuarios de la página y nextCursor (null si no hay más)
+     * @throws IllegalArgumentException si el cursor no es válido
+     * @throws RuntimeException si hay error
+     */
+    UserPage searchUsersPage(UserQueryDto query);
+
 
     // ========== CE2.d: Transactions ==========
 
@@ -253,6 +300,20 @@ public interface DatabaseUserService {
           description = "Inserta múltiples usuarios usando batch operations")
     int batchInsertUsers(List<User> users);
 
+    /**
+     * Inserción masiva configurable: tamaño de chunk, estrategia
+     * (executeBatch o INSERT multi-fila) y semántica de commit.
+     *
+     * Con CommitMode.PER_CHUNK los errores no lanzan excepción: las filas
+     * erróneas se informan en {@link BatchInsertResult#getFailedRows()}.
+     *
+     * @param users Lista de usuarios a insertar (reciben el id generado)
+     * @param options Opciones del batch (null = configuración ra2.jdbc.batch.*)
+     * @return ids generados, filas con error y si se hizo commit
+     * @throws RuntimeException si hay error de conexión en modo ALL_OR_NOTHING
+     */
+    BatchInsertResult batchInsertUsers(List<User> users, BatchInsertOptions options);
+
     // ========== CE2.e: Metadata ==========
 
     /**
@@ -1,16 +1,31 @@
 package com.dam.accesodatos.ra2;
 
+import com.dam.accesodatos.config.BoundConnection;
 import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
 import com.dam.accesodatos.model.User;
 import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
 import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserSerializer;
 import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,31 +34,63 @@ import java.util.Map;
  *
  * ESTRUCTURA DE IMPLEMENTACIÓN:
  * - ✅ 5 MÉTODOS IMPLEMENTADOS (ejemplos para estudiantes)
- * - ❌ 8 MÉTODOS TODO (estudiantes deben implementar)
+ * - ❌ 2 MÉTODOS TODO (estudiantes deben implementar)
  *
  * MÉTODOS IMPLEMENTADOS (Ejemplos):
  * 1. testConnection() - Ejemplo básico de conexión JDBC
  * 2. createUser() - INSERT con PreparedStatement y getGeneratedKeys
  * 3. findUserById() - SELECT y mapeo de ResultSet a objeto
- * 4. updateUser() - UPDATE statement con validación
+ * 4. updateUser() - UPDATE parcial en una sola sentencia (FINAL TABLE)
  * 5. transferData() - Transacción manual con commit/rollback
+ * + batchInsertUsers() - addBatch/executeBatch por chunks (o INSERT multi-fila)
+ * + searchUsers() - filtros dinámicos, paginación por offset o por cursor (keyset)
+ * + findAll() / streamAllUsers() - lista completa o streaming fila a fila a JSON
+ * + deleteUser() - DELETE; findUserById() con caché de lectura (UserCache)
+ * + findUsersByIds() - multi-get con = ANY(?) por bloques
+ * + findUsersByDepartment() - WHERE department = ? AND active
+ * + executeCountByDepartment() - O(1) con contadores en memoria (DepartmentCounters)
  *
  * MÉTODOS TODO (Estudiantes implementan):
- * 1. deleteUser()
- * 2. findAll()
- * 3. findUsersByDepartment()
- * 4. searchUsers()
- * 5. batchInsertUsers()
- * 6. getDatabaseInfo()
- * 7. getTableColumns()
- * 8. executeCountByDepartment()
+ * 1. getDatabaseInfo()
+ * 2. getTableColumns()
  */
 @Service
 public class DatabaseUserServiceImpl implements DatabaseUserService {
 
     // JDBC PURO - SIN Spring DataSource
     // Los estudiantes usan DatabaseConfig.getConnection() directamente
-    // para obtener conexiones usando DriverManager
+    // para obtener conexiones (pool propio o DriverManager, ver DatabaseConfig)
+
+    // También lo usa UserIngestService (inserción en streaming)
+    static final String INSERT_USER_SQL =
+            "INSERT INTO users (name, email, department, role, active, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_USER_ROW = "(?, ?, ?, ?, ?, ?, ?)";
+
+    // Filas por executeBatch() en transferData/batchInsertUsers
+    @Value("${ra2.jdbc.batch.chunk-size:500}")
+    private int batchChunkSize = BatchInsertOptions.DEFAULT_CHUNK_SIZE;
+
+    // Estrategia por defecto de batch_insert_users
+    @Value("${ra2.jdbc.batch.mode:JDBC_BATCH}")
+    private BatchInsertOptions.Mode batchMode = BatchInsertOptions.Mode.JDBC_BATCH;
+
+    // Caché de findUserById(); toda escritura en users invalida sus ids
+    @Autowired
+    private UserCache userCache;
+
+    // Usuarios activos por departamento, mantenidos en cada escritura
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    // Ids por consulta = ANY(?) en findUsersByIds
+    @Value("${ra2.jdbc.multi-get.chunk-size:500}")
+    private int multiGetChunkSize = 500;
+
+    // Filas por fetch (y por flush) en streamAllUsers
+    @Value("${ra2.jdbc.stream.fetch-size:256}")
+    private int streamFetchSize = 256;
 
     // ========== CE2.a: Connection Management ==========
 
@@ -103,11 +150,9 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
      */
     @Override
     public User createUser(UserCreateDto dto) {
-        String sql = "INSERT INTO users (name, email, department, role, active, created_at, updated_at) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
-
+        departmentCounters.beginWrite();
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_USER_SQL, Statement.RETURN_GENERATED_KEYS)) {
 
             // Setear parámetros del PreparedStatement
             // Índices empiezan en 1, no en 0
@@ -138,6 +183,8 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
                     newUser.setCreatedAt(LocalDateTime.now());
                     newUser.setUpdatedAt(LocalDateTime.now());
 
+                    userCache.invalidate(generatedId);
+                    departmentCounters.increment(dto.getDepartment());
                     return newUser;
                 } else {
                     throw new RuntimeException("Error: INSERT exitoso pero no se generó ID");
@@ -150,6 +197,8 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
                 throw new RuntimeException("Error: El email '" + dto.getEmail() + "' ya está registrado", e);
             }
             throw new RuntimeException("Error al crear usuario: " + e.getMessage(), e);
+        } finally {
+            departmentCounters.endWrite();
         }
     }
 
@@ -161,12 +210,25 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
      * - Navegar ResultSet con rs.next()
      * - Mapear columnas SQL a campos Java
      * - Manejar tipos de datos (Long, String, Boolean, Timestamp)
+     *
+     * Antes de ir a la BD se consulta UserCache (ver sus comentarios sobre
+     * el stamp que evita cachear un valor antiguo).
      */
     @Override
     public User findUserById(Long id) {
         String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
                      "FROM users WHERE id = ?";
 
+        long stamp = 0;
+        boolean cacheable = id != null && userCache.isEnabled() && !inBoundTransaction();
+        if (cacheable) {
+            User cached = userCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            stamp = userCache.stamp(id);
+        }
+
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -177,7 +239,11 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
                 // next() retorna true si hay un resultado, false si no
                 if (rs.next()) {
                     // Mapear ResultSet a objeto User
-                    return mapResultSetToUser(rs);
+                    User user = mapResultSetToUser(rs);
+                    if (cacheable) {
+                        userCache.putIfUnchanged(id, user, stamp);
+                    }
+                    return user;
                 } else {
                     // No se encontró usuario con ese ID
                     return null;
@@ -189,77 +255,381 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
         }
     }
 
+    /**
+     * Multi-get: primero la caché y luego, para los ids que falten,
+     * {@code WHERE id = ANY(?)} por bloques de multiGetChunkSize ids.
+     *
+     * Con un array como único parámetro el SQL es siempre el mismo, sea
+     * cual sea el número de ids, así que el PreparedStatement se reutiliza
+     * (un IN (?, ?, ...) generaría un SQL distinto por cada tamaño).
+     */
+    @Override
+    public List<User> findUsersByIds(List<Long> ids) {
+        String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
+                     "FROM users WHERE id = ANY(?)";
+
+        Map<Long, User> found = new HashMap<>();
+        Map<Long, Long> pending = new LinkedHashMap<>(); // id -> stamp de la caché
+        boolean cacheable = !inBoundTransaction();
+
+        for (Long id : ids) {
+            if (id == null || found.containsKey(id) || pending.containsKey(id)) {
+                continue;
+            }
+            User cached = cacheable ? userCache.get(id) : null;
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                pending.put(id, userCache.stamp(id));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<Long> missing = new ArrayList<>(pending.keySet());
+
+            try (Connection conn = DatabaseConfig.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                for (int start = 0; start < missing.size(); start += multiGetChunkSize) {
+                    List<Long> chunk = missing.subList(start, Math.min(start + multiGetChunkSize, missing.size()));
+                    Array idArray = conn.createArrayOf("BIGINT", chunk.toArray());
+                    try {
+                        pstmt.setArray(1, idArray);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                User user = mapResultSetToUser(rs);
+                                found.put(user.getId(), user);
+                                if (cacheable) {
+                                    userCache.putIfUnchanged(user.getId(), user, pending.get(user.getId()));
+                                }
+                            }
+                        }
+                    } finally {
+                        idArray.free();
+                    }
+                }
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Error al buscar usuarios por ID: " + e.getMessage(), e);
+            }
+        }
+
+        // Resultado en el orden pedido; null = no existe
+        List<User> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            users.add(id != null ? found.get(id) : null);
+        }
+        return users;
+    }
+
     /**
      * ✅ EJEMPLO IMPLEMENTADO 4/5: UPDATE statement
      *
      * Este método muestra cómo:
-     * - Validar que un registro existe antes de actualizar
      * - Construir UPDATE statement con campos opcionales
-     * - Actualizar solo los campos proporcionados
-     * - Verificar filas afectadas
+     * - Actualizar solo los campos proporcionados (no nulos en el DTO)
+     * - Obtener la fila actualizada en la MISMA sentencia con
+     *   {@code SELECT ... FROM FINAL TABLE (UPDATE ...)} (extensión de H2)
+     * - Detectar "no encontrado" cuando el UPDATE no devuelve ninguna fila
+     *
+     * Una única sentencia y una única conexión: sin SELECT previo para
+     * comprobar que existe ni SELECT posterior para releer el usuario.
+     *
+     * Si cambian department o active, los contadores por departamento
+     * necesitan también los valores anteriores. Sigue siendo una sola
+     * sentencia: se lee {@code OLD TABLE (UPDATE ...)} (la fila antes del
+     * UPDATE) y la fila nueva se calcula aplicando el DTO.
      */
     @Override
     public User updateUser(Long id, UserUpdateDto dto) {
-        // Primero verificar que el usuario existe
-        User existing = findUserById(id);
-        if (existing == null) {
-            throw new RuntimeException("No se encontró usuario con ID " + id);
-        }
+        // Micros: la precisión de TIMESTAMP en H2, igual en OLD y FINAL TABLE
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+
+        // Construir la cláusula SET solo con los campos presentes en el DTO
+        StringBuilder setClause = new StringBuilder();
+        List<Object> values = new ArrayList<>();
+        appendAssignment(setClause, values, "name", dto.getName());
+        appendAssignment(setClause, values, "email", dto.getEmail());
+        appendAssignment(setClause, values, "department", dto.getDepartment());
+        appendAssignment(setClause, values, "role", dto.getRole());
+        appendAssignment(setClause, values, "active", dto.getActive());
+        appendAssignment(setClause, values, "updated_at", now);
+
+        boolean countersAffected = departmentCounters.isEnabled()
+                && (dto.getDepartment() != null || dto.getActive() != null);
 
-        // Aplicar actualizaciones del DTO al usuario existente
-        dto.applyTo(existing);
-
-        // Construir UPDATE statement
-        String sql = "UPDATE users SET name = ?, email = ?, department = ?, role = ?, " +
-                     "active = ?, updated_at = ? WHERE id = ?";
+        String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
+                     "FROM " + (countersAffected ? "OLD" : "FINAL") + " TABLE " +
+                     "(UPDATE users SET " + setClause + " WHERE id = ?)";
 
+        departmentCounters.beginWrite();
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            // Setear todos los parámetros (incluso los no modificados)
-            pstmt.setString(1, existing.getName());
-            pstmt.setString(2, existing.getEmail());
-            pstmt.setString(3, existing.getDepartment());
-            pstmt.setString(4, existing.getRole());
-            pstmt.setBoolean(5, existing.getActive());
-            pstmt.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
-            pstmt.setLong(7, id);
-
-            // Ejecutar UPDATE
-            int affectedRows = pstmt.executeUpdate();
+            // Setear los valores de SET en orden y finalmente el id del WHERE
+            int index = 1;
+            for (Object value : values) {
+                setParameter(pstmt, index++, value);
+            }
+            pstmt.setLong(index, id);
 
-            if (affectedRows == 0) {
-                throw new RuntimeException("Error: UPDATE no afectó ninguna fila");
+            User updated;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Si el UPDATE no afectó ninguna fila, la tabla viene vacía
+                if (!rs.next()) {
+                    throw new RuntimeException("No se encontró usuario con ID " + id);
+                }
+                updated = mapResultSetToUser(rs);
             }
 
-            // Retornar usuario actualizado
-            return findUserById(id);
+            if (countersAffected) {
+                // updated es la fila ANTERIOR: apuntar el cambio y aplicarle el DTO
+                String oldDepartment = updated.getDepartment();
+                boolean oldActive = Boolean.TRUE.equals(updated.getActive());
+                applyUpdate(updated, dto, now);
+                departmentCounters.moved(oldDepartment, oldActive, updated.getDepartment(), updated.getActive());
+            }
+            userCache.invalidate(id);
+            return updated;
 
         } catch (SQLException e) {
+            if (e.getMessage().contains("Unique index or primary key violation")) {
+                throw new RuntimeException("Error: El email '" + dto.getEmail() + "' ya está registrado", e);
+            }
             throw new RuntimeException("Error al actualizar usuario con ID " + id + ": " + e.getMessage(), e);
+        } finally {
+            departmentCounters.endWrite();
+        }
+    }
+
+    /**
+     * Aplica a user los campos no nulos del DTO (lo mismo que hace el SET del UPDATE)
+     */
+    private static void applyUpdate(User user, UserUpdateDto dto, Timestamp now) {
+        if (dto.getName() != null) {
+            user.setName(dto.getName());
+        }
+        if (dto.getEmail() != null) {
+            user.setEmail(dto.getEmail());
+        }
+        if (dto.getDepartment() != null) {
+            user.setDepartment(dto.getDepartment());
+        }
+        if (dto.getRole() != null) {
+            user.setRole(dto.getRole());
         }
+        if (dto.getActive() != null) {
+            user.setActive(dto.getActive());
+        }
+        user.setUpdatedAt(now.toLocalDateTime());
     }
 
+    /**
+     * DELETE que devuelve la fila borrada ({@code OLD TABLE}, extensión de H2)
+     * para saber qué contador de departamento hay que decrementar.
+     */
     @Override
     public boolean deleteUser(Long id) {
-        throw new UnsupportedOperationException("TODO: Método deleteUser() para implementar por estudiantes");
+        String sql = "SELECT department, active FROM OLD TABLE (DELETE FROM users WHERE id = ?)";
+
+        departmentCounters.beginWrite();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, id);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                // Sin filas: el id no existía
+                if (!rs.next()) {
+                    return false;
+                }
+                if (rs.getBoolean("active")) {
+                    departmentCounters.decrement(rs.getString("department"));
+                }
+            }
+            userCache.invalidate(id);
+            return true;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al eliminar usuario con ID " + id + ": " + e.getMessage(), e);
+        } finally {
+            departmentCounters.endWrite();
+        }
     }
 
     @Override
     public List<User> findAll() {
-        throw new UnsupportedOperationException("TODO: Método findAll() para implementar por estudiantes");
+        String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
+                     "FROM users ORDER BY created_at DESC, id";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            List<User> users = new ArrayList<>();
+            while (rs.next()) {
+                users.add(mapResultSetToUser(rs));
+            }
+            return users;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al obtener usuarios: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Versión en streaming de findAll(): cada fila se escribe en el
+     * JsonGenerator nada más leerla, sin crear objetos User ni listas.
+     *
+     * - ResultSet TYPE_FORWARD_ONLY / CONCUR_READ_ONLY con fetch size
+     * - LAZY_QUERY_EXECUTION: H2 genera las filas según se piden en vez de
+     *   materializar el resultado completo antes de devolver la primera
+     * - ORDER BY created_at DESC, id recorre el índice idx_users_created_at_id:
+     *   sin él H2 tendría que ordenar toda la tabla antes de la primera fila
+     *
+     * Así la memoria usada no depende del tamaño de la tabla.
+     */
+    @Override
+    public long streamAllUsers(JsonGenerator generator) {
+        String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
+                     "FROM users ORDER BY created_at DESC, id";
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            setLazyQueryExecution(conn, true);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                pstmt.setFetchSize(streamFetchSize);
+
+                long count = 0;
+                char[] dates = new char[UserSerializer.DATE_TIME_BUFFER_SIZE];
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        writeUserRow(generator, rs, dates);
+                        // Vaciar el buffer cada fetch: el cliente recibe las filas según se leen
+                        if (++count % streamFetchSize == 0) {
+                            generator.flush();
+                        }
+                    }
+                }
+                generator.flush();
+                return count;
+            } finally {
+                // La conexión vuelve al pool: dejar el modo por defecto
+                setLazyQueryExecution(conn, false);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al obtener usuarios: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error escribiendo usuarios: " + e.getMessage(), e);
+        }
     }
 
     // ========== CE2.c: Advanced Queries ==========
 
     @Override
     public List<User> findUsersByDepartment(String department) {
-        throw new UnsupportedOperationException("TODO: Método findUsersByDepartment() para implementar por estudiantes");
+        String sql = "SELECT id, name, email, department, role, active, created_at, updated_at " +
+                     "FROM users WHERE department = ? AND active = TRUE ORDER BY name";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, department);
+
+            List<User> users = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+            return users;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al buscar usuarios del departamento " + department + ": " + e.getMessage(), e);
+        }
     }
 
     @Override
     public List<User> searchUsers(UserQueryDto query) {
-        throw new UnsupportedOperationException("TODO: Método searchUsers() para implementar por estudiantes");
+        return searchUsersPage(query).getUsers();
+    }
+
+    /**
+     * Búsqueda con filtros dinámicos y dos modos de paginación.
+     *
+     * Orden estable: ORDER BY name, id (índice idx_users_name_id).
+     *
+     * - Sin cursor: LIMIT ? OFFSET ?. H2 tiene que recorrer y descartar las
+     *   'offset' filas anteriores, así que las páginas profundas son lentas.
+     * - Con cursor: se busca directamente la primera fila posterior a la
+     *   última (name, id) vista, sin recorrer las anteriores. El coste por
+     *   página es constante.
+     *
+     * Se lee una fila de más (limit + 1) para saber si hay página siguiente.
+     */
+    @Override
+    public UserPage searchUsersPage(UserQueryDto query) {
+        int limit = query.getLimit() != null && query.getLimit() > 0 ? query.getLimit() : 10;
+        int offset = query.getOffset() != null && query.getOffset() > 0 ? query.getOffset() : 0;
+        boolean keyset = query.getCursor() != null;
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, name, email, department, role, active, created_at, updated_at FROM users WHERE 1=1");
+        List<Object> values = new ArrayList<>();
+
+        if (query.getDepartment() != null) {
+            sql.append(" AND department = ?");
+            values.add(query.getDepartment());
+        }
+        if (query.getRole() != null) {
+            sql.append(" AND role = ?");
+            values.add(query.getRole());
+        }
+        if (query.getActive() != null) {
+            sql.append(" AND active = ?");
+            values.add(query.getActive());
+        }
+        if (keyset && !query.getCursor().isEmpty()) {
+            // Equivale a (name, id) > (?, ?), escrito para que H2 use el índice por name
+            PageCursor cursor = decodeCursor(query.getCursor());
+            sql.append(" AND name >= ? AND (name > ? OR id > ?)");
+            values.add(cursor.name());
+            values.add(cursor.name());
+            values.add(cursor.id());
+        }
+
+        sql.append(" ORDER BY name, id LIMIT ?");
+        values.add((long) limit + 1);
+        if (!keyset) {
+            sql.append(" OFFSET ?");
+            values.add((long) offset);
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < values.size(); i++) {
+                setParameter(pstmt, i + 1, values.get(i));
+            }
+
+            List<User> users = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    users.add(mapResultSetToUser(rs));
+                }
+            }
+
+            String nextCursor = null;
+            if (users.size() > limit) {
+                users.remove(limit);
+                nextCursor = encodeCursor(users.get(limit - 1));
+            }
+            return new UserPage(users, nextCursor);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al buscar usuarios: " + e.getMessage(), e);
+        }
     }
 
 
@@ -271,6 +641,8 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
      * Este método muestra cómo:
      * - Desactivar auto-commit para control manual de transacciones
      * - Realizar múltiples operaciones en una transacción
+     * - Enviarlas agrupadas con addBatch()/executeBatch() (un viaje por chunk,
+     *   no uno por fila)
      * - Hacer commit si todo tiene éxito
      * - Hacer rollback si hay algún error
      * - Restaurar auto-commit al estado original
@@ -279,6 +651,7 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
     public boolean transferData(List<User> users) {
         Connection conn = null;
 
+        departmentCounters.beginWrite();
         try {
             // Obtener conexión
             conn = DatabaseConfig.getConnection();
@@ -286,22 +659,23 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
             // IMPORTANTE: Desactivar auto-commit para control manual
             conn.setAutoCommit(false);
 
-            String sql = "INSERT INTO users (name, email, department, role, active, created_at, updated_at) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?)";
+            List<Long> insertedIds = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_USER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                int pending = 0;
 
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                // Insertar cada usuario en la transacción
+                // Añadir cada usuario al batch; enviarlo cada batchChunkSize filas
                 for (User user : users) {
-                    pstmt.setString(1, user.getName());
-                    pstmt.setString(2, user.getEmail());
-                    pstmt.setString(3, user.getDepartment());
-                    pstmt.setString(4, user.getRole());
-                    pstmt.setBoolean(5, user.getActive() != null ? user.getActive() : true);
-                    pstmt.setTimestamp(6, Timestamp.valueOf(
-                            user.getCreatedAt() != null ? user.getCreatedAt() : LocalDateTime.now()));
-                    pstmt.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
-
-                    pstmt.executeUpdate();
+                    bindUserParameters(pstmt, 1, user, now);
+                    pstmt.addBatch();
+
+                    if (++pending == batchChunkSize) {
+                        executeBatchCollectingKeys(pstmt, insertedIds);
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    executeBatchCollectingKeys(pstmt, insertedIds);
                 }
             }
 
@@ -309,10 +683,12 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
             // COMMIT: hacer permanentes los cambios
             conn.commit();
 
+            insertedIds.forEach(userCache::invalidate);
+            users.forEach(this::countInserted);
             return true;
 
         } catch (SQLException e) {
-            // Si hubo algún error, deshacer TODOS los cambios
+            // Si hubo algún error (incluida BatchUpdateException), deshacer TODOS los cambios
             if (conn != null) {
                 try {
                     // ROLLBACK: deshacer todos los cambios de la transacción
@@ -335,12 +711,139 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
                     System.err.println("Error al cerrar conexión: " + e.getMessage());
                 }
             }
+            departmentCounters.endWrite();
         }
     }
 
+    /**
+     * Inserción masiva con la configuración por defecto (una transacción:
+     * todo o nada).
+     */
     @Override
     public int batchInsertUsers(List<User> users) {
-        throw new UnsupportedOperationException("TODO: Método batchInsertUsers() para implementar por estudiantes");
+        BatchInsertResult result = batchInsertUsers(users, null);
+        if (result.hasFailures()) {
+            throw new RuntimeException("Error en batch insert, se hizo rollback. Filas con error: "
+                    + result.getFailedRows() + " - " + result.getError());
+        }
+        return result.getInsertedCount();
+    }
+
+    /**
+     * Inserción masiva por chunks con addBatch()/executeBatch() o con un
+     * INSERT multi-fila por chunk.
+     *
+     * Semántica de commit:
+     * - ALL_OR_NOTHING: una sola transacción; al primer chunk con errores se
+     *   hace rollback de todo y se informa de las filas que fallaron.
+     * - PER_CHUNK: commit tras cada chunk; las filas correctas de un chunk con
+     *   errores también se confirman y las erróneas se listan en failedRows.
+     *
+     * Los ids generados se devuelven en el resultado (uno por fila de entrada)
+     * y se asignan a los objetos User insertados.
+     *
+     * Con options == null se usa ra2.jdbc.batch.* y ALL_OR_NOTHING.
+     */
+    @Override
+    public BatchInsertResult batchInsertUsers(List<User> users, BatchInsertOptions options) {
+        BatchInsertResult result = new BatchInsertResult();
+        if (users == null || users.isEmpty()) {
+            return result;
+        }
+        if (options == null) {
+            options = new BatchInsertOptions(batchChunkSize, batchMode, BatchInsertOptions.CommitMode.ALL_OR_NOTHING);
+        }
+
+        int chunkSize = options.getChunkSize() > 0 ? options.getChunkSize() : batchChunkSize;
+        boolean perChunk = options.getCommitMode() == BatchInsertOptions.CommitMode.PER_CHUNK;
+        boolean multiRow = options.getMode() == BatchInsertOptions.Mode.MULTI_ROW_VALUES;
+
+        Connection conn = null;
+        int nextRow = 0;
+
+        departmentCounters.beginWrite();
+        try {
+            conn = DatabaseConfig.getConnection();
+            conn.setAutoCommit(false);
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            while (nextRow < users.size()) {
+                List<User> chunk = users.subList(nextRow, Math.min(nextRow + chunkSize, users.size()));
+
+                ChunkOutcome outcome = multiRow
+                        ? insertChunkMultiRow(conn, chunk, now)
+                        : insertChunkBatch(conn, chunk, now);
+
+                if (outcome.error() != null && !perChunk) {
+                    // Todo o nada: deshacer también los chunks anteriores
+                    conn.rollback();
+                    return rolledBack(result, users.size(), nextRow, outcome);
+                }
+
+                if (perChunk) {
+                    conn.commit();
+                }
+                // El chunk pasa al resultado solo cuando está confirmado: si el
+                // commit falla, sus filas se tratan abajo como no insertadas
+                mergeChunk(result, nextRow, outcome);
+                nextRow += chunk.size();
+            }
+
+            if (!perChunk) {
+                conn.commit();
+            }
+
+            // Asignar los ids generados a los usuarios insertados
+            for (int i = 0; i < users.size(); i++) {
+                Long id = result.getGeneratedIds().get(i);
+                if (id != null) {
+                    users.get(i).setId(id);
+                    userCache.invalidate(id);
+                    countInserted(users.get(i));
+                }
+            }
+            return result;
+
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackEx) {
+                    throw new RuntimeException("Error crítico en rollback: " + rollbackEx.getMessage(), rollbackEx);
+                }
+            }
+            if (!perChunk) {
+                throw new RuntimeException("Error en batch insert, se hizo rollback: " + e.getMessage(), e);
+            }
+
+            // PER_CHUNK: los chunks ya confirmados (las primeras nextRow filas) se
+            // conservan; el resto se marca como fallido
+            for (int i = 0; i < nextRow; i++) {
+                Long id = result.getGeneratedIds().get(i);
+                if (id != null) {
+                    users.get(i).setId(id);
+                    userCache.invalidate(id);
+                    countInserted(users.get(i));
+                }
+            }
+            for (int i = nextRow; i < users.size(); i++) {
+                result.getGeneratedIds().add(null);
+                result.getFailedRows().add(i);
+            }
+            result.setError(e.getMessage());
+            return result;
+
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Error al cerrar conexión: " + e.getMessage());
+                }
+            }
+            departmentCounters.endWrite();
+        }
     }
 
     // ========== CE2.e: Metadata ==========
@@ -359,11 +862,282 @@ public class DatabaseUserServiceImpl implements DatabaseUserService {
 
     @Override
     public int executeCountByDepartment(String department) {
-        throw new UnsupportedOperationException("TODO: Método executeCountByDepartment() para implementar por estudiantes");
+        // O(1): contadores mantenidos en cada escritura (ver DepartmentCounters).
+        // En una transacción ligada aún no incluyen sus cambios: se cuenta en la BD
+        if (departmentCounters.isReady() && !inBoundTransaction()) {
+            return (int) departmentCounters.get(department);
+        }
+
+        String sql = "SELECT COUNT(*) FROM users WHERE department = ? AND active = TRUE";
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, department);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Error al contar usuarios del departamento " + department + ": " + e.getMessage(), e);
+        }
     }
 
     // ========== HELPER METHODS ==========
 
+    /**
+     * Escribe la fila actual como objeto JSON con los mismos nombres y
+     * formatos que Jackson usa para User (fechas ISO-8601, ver UserSerializer).
+     */
+    private void writeUserRow(JsonGenerator generator, ResultSet rs, char[] dates) throws SQLException, IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", rs.getLong("id"));
+        generator.writeStringField("name", rs.getString("name"));
+        generator.writeStringField("email", rs.getString("email"));
+        generator.writeStringField("department", rs.getString("department"));
+        generator.writeStringField("role", rs.getString("role"));
+        generator.writeBooleanField("active", rs.getBoolean("active"));
+        writeTimestampField(generator, "createdAt", rs.getTimestamp("created_at"), dates);
+        writeTimestampField(generator, "updatedAt", rs.getTimestamp("updated_at"), dates);
+        generator.writeEndObject();
+    }
+
+    private void writeTimestampField(JsonGenerator generator, String field, Timestamp value, char[] dates) throws IOException {
+        UserSerializer.writeDateTimeField(generator, field, value != null ? value.toLocalDateTime() : null, dates);
+    }
+
+    private void setLazyQueryExecution(Connection conn, boolean lazy) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
+    }
+
+    /**
+     * Posición de la última fila de una página: clave de orden + id
+     */
+    private record PageCursor(String name, long id) {
+    }
+
+    /**
+     * Codifica la posición como Base64 URL-safe de "id|name"
+     */
+    private String encodeCursor(User last) {
+        String raw = last.getId() + "|" + last.getName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new PageCursor(raw.substring(separator + 1), Long.parseLong(raw.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido: " + cursor, e);
+        }
+    }
+
+    /**
+     * Suma al contador de su departamento un usuario recién insertado
+     * (active null se inserta como true, ver bindUserParameters)
+     */
+    private void countInserted(User user) {
+        if (user.getActive() == null || user.getActive()) {
+            departmentCounters.increment(user.getDepartment());
+        }
+    }
+
+    /**
+     * executeBatch() y añade a ids las claves generadas
+     */
+    private void executeBatchCollectingKeys(PreparedStatement pstmt, List<Long> ids) throws SQLException {
+        pstmt.executeBatch();
+        try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                ids.add(generatedKeys.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Resultado de insertar un chunk: id y éxito por fila, y el error si lo hubo
+     */
+    private record ChunkOutcome(Long[] ids, boolean[] succeeded, SQLException error) {
+    }
+
+    /**
+     * Inserta un chunk con addBatch()/executeBatch().
+     *
+     * H2 sigue ejecutando el resto del batch cuando una fila falla, así que
+     * BatchUpdateException.getUpdateCounts() indica qué filas fallaron
+     * (Statement.EXECUTE_FAILED) y las claves generadas corresponden, en
+     * orden, a las filas correctas.
+     */
+    private ChunkOutcome insertChunkBatch(Connection conn, List<User> chunk, Timestamp now) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_USER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (User user : chunk) {
+                bindUserParameters(pstmt, 1, user, now);
+                pstmt.addBatch();
+            }
+
+            int[] updateCounts;
+            SQLException error = null;
+            try {
+                updateCounts = pstmt.executeBatch();
+            } catch (BatchUpdateException e) {
+                updateCounts = e.getUpdateCounts();
+                error = e;
+            }
+
+            // Un driver puede parar en la primera fila errónea: las que faltan no se ejecutaron
+            boolean[] succeeded = new boolean[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                succeeded[i] = i < updateCounts.length && updateCounts[i] != Statement.EXECUTE_FAILED;
+            }
+
+            Long[] ids = new Long[chunk.size()];
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (succeeded[i] && generatedKeys.next()) {
+                        ids[i] = generatedKeys.getLong(1);
+                    }
+                }
+            }
+            return new ChunkOutcome(ids, succeeded, error);
+        }
+    }
+
+    /**
+     * Inserta un chunk con un único INSERT ... VALUES (...), (...), ...
+     *
+     * La sentencia es atómica: si falla no se inserta ninguna fila del chunk.
+     * En ese caso se repite el chunk con executeBatch() para saber exactamente
+     * qué filas son las erróneas.
+     */
+    private ChunkOutcome insertChunkMultiRow(Connection conn, List<User> chunk, Timestamp now) throws SQLException {
+        String sql = INSERT_USER_SQL.substring(0, INSERT_USER_SQL.indexOf("VALUES") + "VALUES ".length())
+                + String.join(", ", Collections.nCopies(chunk.size(), INSERT_USER_ROW));
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            int index = 1;
+            for (User user : chunk) {
+                index = bindUserParameters(pstmt, index, user, now);
+            }
+
+            try {
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                return insertChunkBatch(conn, chunk, now);
+            }
+
+            Long[] ids = new Long[chunk.size()];
+            boolean[] succeeded = new boolean[chunk.size()];
+            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                for (int i = 0; i < chunk.size() && generatedKeys.next(); i++) {
+                    ids[i] = generatedKeys.getLong(1);
+                    succeeded[i] = true;
+                }
+            }
+            return new ChunkOutcome(ids, succeeded, null);
+        }
+    }
+
+    /**
+     * Añade al resultado los ids, filas insertadas y filas fallidas de un
+     * chunk que empieza en la fila chunkStart
+     */
+    private void mergeChunk(BatchInsertResult result, int chunkStart, ChunkOutcome outcome) {
+        for (int i = 0; i < outcome.succeeded().length; i++) {
+            result.getGeneratedIds().add(outcome.ids()[i]);
+            if (outcome.succeeded()[i]) {
+                result.setInsertedCount(result.getInsertedCount() + 1);
+            } else {
+                result.getFailedRows().add(chunkStart + i);
+            }
+        }
+        if (outcome.error() != null && result.getError() == null) {
+            result.setError(outcome.error().getMessage());
+        }
+    }
+
+    /**
+     * Construye el resultado de un batch ALL_OR_NOTHING que terminó en rollback
+     */
+    private BatchInsertResult rolledBack(BatchInsertResult result, int totalRows, int chunkStart, ChunkOutcome outcome) {
+        result.setCommitted(false);
+        result.setInsertedCount(0);
+        result.getGeneratedIds().clear();
+        for (int i = 0; i < totalRows; i++) {
+            result.getGeneratedIds().add(null);
+        }
+        for (int i = 0; i < outcome.succeeded().length; i++) {
+            if (!outcome.succeeded()[i]) {
+                result.getFailedRows().add(chunkStart + i);
+            }
+        }
+        result.setError(outcome.error().getMessage());
+        return result;
+    }
+
+    /**
+     * Setea las 7 columnas del INSERT de usuarios a partir de firstIndex.
+     *
+     * @return índice del siguiente parámetro libre
+     */
+    static int bindUserParameters(PreparedStatement pstmt, int firstIndex, User user, Timestamp now) throws SQLException {
+        int index = firstIndex;
+        pstmt.setString(index++, user.getName());
+        pstmt.setString(index++, user.getEmail());
+        pstmt.setString(index++, user.getDepartment());
+        pstmt.setString(index++, user.getRole());
+        pstmt.setBoolean(index++, user.getActive() != null ? user.getActive() : true);
+        pstmt.setTimestamp(index++, user.getCreatedAt() != null ? Timestamp.valueOf(user.getCreatedAt()) : now);
+        pstmt.setTimestamp(index++, now);
+        return index;
+    }
+
+    /**
+     * Añade "columna = ?" a la cláusula SET si el valor no es null
+     */
+    private void appendAssignment(StringBuilder setClause, List<Object> values, String column, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (setClause.length() > 0) {
+            setClause.append(", ");
+        }
+        setClause.append(column).append(" = ?");
+        values.add(value);
+    }
+
+    /**
+     * Setea un parámetro usando el setter JDBC adecuado a su tipo
+     */
+    private void setParameter(PreparedStatement pstmt, int index, Object value) throws SQLException {
+        if (value instanceof String text) {
+            pstmt.setString(index, text);
+        } else if (value instanceof Boolean flag) {
+            pstmt.setBoolean(index, flag);
+        } else if (value instanceof Timestamp timestamp) {
+            pstmt.setTimestamp(index, timestamp);
+        } else if (value instanceof Long number) {
+            pstmt.setLong(index, number);
+        } else {
+            pstmt.setObject(index, value);
+        }
+    }
+
+    /**
+     * true si el hilo ejecuta dentro de una transacción ligada (pipeline
+     * transaccional): lo que lee puede no estar confirmado todavía y no
+     * debe entrar en la caché compartida
+     */
+    private static boolean inBoundTransaction() {
+        BoundConnection bound = DatabaseConfig.getBoundConnection();
+        return bound != null && bound.isTransactional();
+    }
+
     /**
      * Método auxiliar para mapear ResultSet a objeto User
      *
@@ -0,0 +1,329 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.VirtualThreads;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Contadores en memoria de usuarios ACTIVOS por departamento.
+ *
+ * executeCountByDepartment() se consulta continuamente desde los paneles:
+ * en vez de un SELECT COUNT(*) por llamada, DatabaseUserServiceImpl
+ * actualiza estos contadores en cada escritura y la consulta es O(1).
+ *
+ * - Un LongAdder por departamento (los incrementos concurrentes no compiten
+ *   por la misma variable)
+ * - Se inicializan con un único SELECT ... GROUP BY al arrancar
+ * - Un job periódico (reconcile) vuelve a contar en la BD y corrige la
+ *   deriva (escrituras hechas fuera del servicio, desde la consola H2...)
+ *
+ * Protocolo de escritura: beginWrite() antes de tocar la BD, aplicar el
+ * cambio en los contadores DESPUÉS del commit, y endWrite() en un finally
+ * (en el mismo hilo).
+ *
+ * beginWrite()/endWrite() toman y sueltan la parte compartida de un
+ * ReentrantReadWriteLock (barrera de escrituras). reconcile() toma la parte
+ * exclusiva solo mientras hace el COUNT: ninguna escritura está entre su
+ * commit y su cambio en los contadores, así que BD y contadores son
+ * comparables. Las escrituras esperan lo que dura el COUNT. Como el lock
+ * no deja pasar lectores nuevos mientras hay un escritor esperando, la
+ * reconciliación no se queda sin turno aunque las escrituras no paren;
+ * si en reconcile-wait no lo consigue (p.ej. una inserción en streaming
+ * larga), se salta esa ronda.
+ *
+ * Dentro de una transacción ligada al hilo (DatabaseConfig.bindConnection:
+ * run_pipeline, calentamiento) el commit de cada método no es el real: los
+ * cambios se apuntan en la BoundConnection (afterCommit) y se aplican solo
+ * si quien la ligó confirma; con rollback se descartan. Quien liga la
+ * conexión mantiene beginWrite() hasta aplicar esos cambios (los
+ * beginWrite() de los métodos anidados son reentrantes).
+ *
+ * Configuración (application.yml):
+ * <pre>
+ * ra2:
+ *   counters:
+ *     departments:
+ *       enabled: true            # false = COUNT(*) en cada llamada
+ *       reconcile-interval: 1m
+ *       reconcile-wait: 2s       # espera máxima a que terminen las escrituras en curso
+ * </pre>
+ */
+@Component
+public class DepartmentCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(DepartmentCounters.class);
+
+    private static final String COUNT_SQL =
+            "SELECT department, COUNT(*) FROM users WHERE active = TRUE GROUP BY department";
+
+    @Value("${ra2.counters.departments.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ra2.counters.departments.reconcile-interval:1m}")
+    private Duration reconcileInterval = Duration.ofMinutes(1);
+
+    @Value("${ra2.counters.departments.reconcile-wait:2s}")
+    private Duration reconcileWait = Duration.ofSeconds(2);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    // Compartido: escrituras en curso; exclusivo: reconcile() contando
+    private final ReentrantReadWriteLock writeBarrier = new ReentrantReadWriteLock();
+
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private volatile boolean seeded;
+    private volatile Instant lastReconcile;
+
+    // Métricas de reconciliación
+    private final LongAdder reconciliations = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder driftDetected = new LongAdder();
+    private final LongAdder driftRepaired = new LongAdder();
+
+    private ScheduledExecutorService reconciler;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * true cuando los contadores están inicializados y se pueden usar en
+     * lugar de la BD
+     */
+    public boolean isReady() {
+        return enabled && seeded;
+    }
+
+    /**
+     * Siembra los contadores y programa la reconciliación periódica
+     * (cuando la BD ya está inicializada)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        reconcile();
+
+        reconciler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreads.factory("ra2-department-counters", virtualThreads));
+        long periodMillis = Math.max(1000L, reconcileInterval.toMillis());
+        reconciler.scheduleWithFixedDelay(this::reconcile, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
+    /**
+     * Usuarios activos del departamento. Solo es fiable si isReady().
+     */
+    public long get(String department) {
+        if (department == null) {
+            return 0;
+        }
+        LongAdder adder = counts.get(department);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    /**
+     * Empieza una escritura (espera si reconcile() está contando)
+     */
+    public void beginWrite() {
+        if (enabled) {
+            writeBarrier.readLock().lock();
+        }
+    }
+
+    /**
+     * Termina una escritura empezada con beginWrite() en este mismo hilo
+     */
+    public void endWrite() {
+        if (enabled) {
+            writeBarrier.readLock().unlock();
+        }
+    }
+
+    /**
+     * Se ha insertado (o reactivado) un usuario activo
+     */
+    public void increment(String department) {
+        add(department, 1);
+    }
+
+    /**
+     * Se han insertado count usuarios activos de golpe
+     */
+    public void increment(String department, long count) {
+        add(department, count);
+    }
+
+    /**
+     * Se ha borrado (o desactivado) un usuario activo
+     */
+    public void decrement(String department) {
+        add(department, -1);
+    }
+
+    /**
+     * Cambio de departamento y/o de estado activo de un usuario
+     */
+    public void moved(String oldDepartment, boolean oldActive, String newDepartment, boolean newActive) {
+        if (oldActive) {
+            decrement(oldDepartment);
+        }
+        if (newActive) {
+            increment(newDepartment);
+        }
+    }
+
+    private void add(String department, long delta) {
+        if (!enabled || department == null) {
+            return;
+        }
+        BoundConnection bound = DatabaseConfig.getBoundConnection();
+        if (bound != null) {
+            bound.afterCommit(() -> apply(department, delta));
+        } else {
+            apply(department, delta);
+        }
+    }
+
+    private void apply(String department, long delta) {
+        counts.computeIfAbsent(department, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Vuelve a contar en la BD y corrige las diferencias.
+     *
+     * La corrección se aplica como suma (add(diferencia)), no como
+     * reset: las escrituras que terminen mientras tanto suman su propio
+     * cambio y no se pierden.
+     *
+     * Se ejecuta con la barrera de escrituras cerrada (ver la documentación
+     * de la clase): no la llames entre un beginWrite() y su endWrite().
+     *
+     * @return true si se comparó, false si se saltó (escrituras que no
+     *         terminan en reconcile-wait, interrupción o error)
+     */
+    public boolean reconcile() {
+        if (!enabled) {
+            return false;
+        }
+        reconcileLock.lock();
+        try {
+            if (!writeBarrier.writeLock().tryLock(reconcileWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                skipped.increment();
+                logger.debug("Reconciliación saltada: escrituras en curso durante más de {}", reconcileWait);
+                return false;
+            }
+            Map<String, Long> expected = new HashMap<>();
+            Map<String, Long> actual;
+            try {
+                counts.forEach((department, adder) -> expected.put(department, adder.sum()));
+                actual = countActiveByDepartment();
+            } finally {
+                writeBarrier.writeLock().unlock();
+            }
+
+            Set<String> departments = new HashSet<>(expected.keySet());
+            departments.addAll(actual.keySet());
+
+            long drift = 0;
+            for (String department : departments) {
+                long diff = actual.getOrDefault(department, 0L) - expected.getOrDefault(department, 0L);
+                if (diff != 0) {
+                    counts.computeIfAbsent(department, key -> new LongAdder()).add(diff);
+                    drift += Math.abs(diff);
+                }
+            }
+
+            if (seeded && drift > 0) {
+                driftDetected.increment();
+                driftRepaired.add(drift);
+                logger.warn("Contadores por departamento corregidos: deriva de {} usuarios", drift);
+            }
+            seeded = true;
+            reconciliations.increment();
+            lastReconcile = Instant.now();
+            return true;
+
+        } catch (SQLException e) {
+            failures.increment();
+            logger.warn("No se pudieron reconciliar los contadores por departamento: {}", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            skipped.increment();
+            return false;
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> departments = new TreeMap<>();
+        counts.forEach((department, adder) -> departments.put(department, adder.sum()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", isReady());
+        stats.put("departments", departments);
+        stats.put("reconciliations", reconciliations.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failures", failures.sum());
+        stats.put("driftDetected", driftDetected.sum());
+        stats.put("driftRepaired", driftRepaired.sum());
+        stats.put("lastReconcile", lastReconcile != null ? lastReconcile.toString() : null);
+        return stats;
+    }
+
+    private Map<String, Long> countActiveByDepartment() throws SQLException {
+        Map<String, Long> actual = new HashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(COUNT_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                actual.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return actual;
+    }
+}
@@ -0,0 +1,147 @@
+package com.dam.accesodatos.ra2;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa llamadas idénticas simultáneas ("single flight").
+ *
+ * La primera llamada con una clave ejecuta la operación; las que llegan
+ * con la misma clave mientras sigue en curso esperan a que termine y
+ * reciben su mismo resultado (o su misma excepción). En cuanto termina,
+ * la clave se libera: la siguiente llamada vuelve a ejecutar.
+ *
+ * La espera está acotada (maxWait): si la llamada en curso no termina a
+ * tiempo (una consulta colgada, un bloqueo en la BD), el que espera deja
+ * de esperarla y ejecuta la operación por su cuenta.
+ */
+final class SingleFlight {
+
+    /**
+     * Clave de agrupación: operación + argumentos (con equals/hashCode)
+     */
+    record Key(String operation, Object argument) {
+    }
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> coalesced = new ConcurrentHashMap<>();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    private final long maxWaitMillis;
+
+    SingleFlight() {
+        this(Duration.ofSeconds(10));
+    }
+
+    /**
+     * @param maxWait tiempo máximo esperando a la llamada en curso
+     */
+    SingleFlight(Duration maxWait) {
+        this.maxWaitMillis = Math.max(1L, maxWait.toMillis());
+    }
+
+    /**
+     * @param key    operación y argumentos
+     * @param loader operación real (solo la ejecuta el primero)
+     * @param shared true si el valor lo ha calculado otra llamada
+     */
+    <T> T execute(Key key, Supplier<T> loader, Shared<T> shared) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.computeIfAbsent(key.operation(), operation -> new LongAdder()).increment();
+            Object value;
+            try {
+                value = await(existing);
+            } catch (TimeoutException e) {
+                // Sin agrupar: la llamada en curso sigue y la clave sigue siendo suya
+                waitTimeouts.increment();
+                executions.increment();
+                return loader.get();
+            }
+            @SuppressWarnings("unchecked")
+            T result = (T) value;
+            return shared.copyOf(result);
+        }
+
+        executions.increment();
+        try {
+            T value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Cómo entregar a los que esperan un valor calculado por otra llamada
+     * (por ejemplo, una copia de la lista para que no la compartan)
+     */
+    @FunctionalInterface
+    interface Shared<T> {
+        T copyOf(T value);
+
+        static <T> Shared<T> same() {
+            return value -> value;
+        }
+    }
+
+    long getExecutions() {
+        return executions.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Map<String, Long> getCoalescedByOperation() {
+        Map<String, Long> byOperation = new TreeMap<>();
+        coalesced.forEach((operation, adder) -> byOperation.put(operation, adder.sum()));
+        return byOperation;
+    }
+
+    /**
+     * Llamadas agrupadas que dejaron de esperar (incluidas en getCoalesced())
+     */
+    long getWaitTimeouts() {
+        return waitTimeouts.sum();
+    }
+
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    private Object await(CompletableFuture<Object> future) throws TimeoutException {
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrumpido esperando una consulta agrupada", e);
+        } catch (ExecutionException e) {
+            // Relanzar la misma excepción que recibió la llamada que ejecutó la consulta
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de lectura para findUserById() con límite de tamaño y TTL.
+ *
+ * Estructura:
+ * - 16 segmentos, cada uno con su propio ReentrantLock (los hilos que
+ *   consultan ids distintos casi nunca compiten por el mismo lock)
+ * - En cada segmento, una tabla hash de direccionamiento abierto con las
+ *   claves en un long[]: los ids no se convierten a Long
+ * - Lista doblemente enlazada para expulsar el menos usado (LRU) cuando el
+ *   segmento está lleno
+ *
+ * Se guardan y se devuelven COPIAS de User: el llamador puede modificar el
+ * objeto sin alterar la caché.
+ *
+ * Consistencia: cada escritura en la tabla users llama a invalidate(id)
+ * (y, en una transacción ligada, de nuevo tras su commit real).
+ * Para que una lectura lenta no vuelva a meter un valor antiguo después de
+ * una invalidación, el lector toma stamp(id) ANTES de ir a la BD y
+ * putIfUnchanged() descarta el valor si el segmento se ha invalidado entre
+ * medias.
+ *
+ * Configuración (application.yml):
+ * <pre>
+ * ra2:
+ *   cache:
+ *     users:
+ *       enabled: true      # false = siempre a la BD (para comparar)
+ *       max-size: 10000
+ *       ttl: 5m
+ * </pre>
+ */
+@Component
+public class UserCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+
+    @Value("${ra2.cache.users.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${ra2.cache.users.max-size:10000}")
+    private int maxSize = 10_000;
+
+    @Value("${ra2.cache.users.ttl:5m}")
+    private Duration ttl = Duration.ofMinutes(5);
+
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private Segment[] segments;
+
+    public UserCache() {
+        this.clock = System::nanoTime;
+    }
+
+    /**
+     * Constructor para usar la caché fuera de Spring (tests)
+     */
+    UserCache(boolean enabled, int maxSize, Duration ttl, LongSupplier clock) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.clock = clock;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Devuelve una copia del usuario cacheado o null si no está (o ha caducado)
+     */
+    public User get(long id) {
+        if (!enabled) {
+            return null;
+        }
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            int slot = segment.indexOf(id, hash);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+            Node node = segment.nodes[slot];
+            if (clock.getAsLong() - node.expiresAt >= 0) {
+                segment.removeAt(slot);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            segment.moveToHead(node);
+            hits.increment();
+            return copy(node.user);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Marca de versión del segmento del id. Se toma antes de leer de la BD y
+     * se pasa a putIfUnchanged().
+     */
+    public long stamp(long id) {
+        return enabled ? segmentFor(hash(id)).stamp : 0;
+    }
+
+    /**
+     * Guarda (una copia de) el usuario si no ha habido ninguna invalidación
+     * en su segmento desde que se tomó el stamp
+     */
+    public void putIfUnchanged(long id, User user, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            if (segment.stamp != stamp) {
+                return;
+            }
+            long expiresAt = clock.getAsLong() + ttl.toNanos();
+            int slot = segment.indexOf(id, hash);
+            if (slot >= 0) {
+                Node node = segment.nodes[slot];
+                node.user = copy(user);
+                node.expiresAt = expiresAt;
+                segment.moveToHead(node);
+                return;
+            }
+            if (segment.size == segment.capacity) {
+                Node eldest = segment.tail;
+                segment.removeAt(segment.indexOf(eldest.id, hash(eldest.id)));
+                evictions.increment();
+                slot = segment.indexOf(id, hash);
+            }
+            segment.insertAt(-1 - slot, id, new Node(id, copy(user), expiresAt));
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Elimina el id de la caché. Llamar después de cualquier escritura en la BD.
+     *
+     * Dentro de una transacción ligada al hilo (run_pipeline) el cambio aún
+     * no es visible para los demás: otro hilo podría volver a cachear la
+     * versión anterior antes del commit real. Por eso se vuelve a eliminar
+     * tras ese commit (BoundConnection.afterCommit), igual que los
+     * contadores de DepartmentCounters aplican sus cambios.
+     */
+    public void invalidate(long id) {
+        if (!enabled) {
+            return;
+        }
+        evict(id);
+        BoundConnection bound = DatabaseConfig.getBoundConnection();
+        if (bound != null && bound.isTransactional()) {
+            bound.afterCommit(() -> evict(id));
+        }
+    }
+
+    private void evict(long id) {
+        int hash = hash(id);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            segment.stamp++;
+            int slot = segment.indexOf(id, hash);
+            if (slot >= 0) {
+                segment.removeAt(slot);
+                invalidations.increment();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Vacía la caché
+     */
+    public void clear() {
+        if (!enabled) {
+            return;
+        }
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.stamp++;
+                segment.clear();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        if (!enabled) {
+            return 0;
+        }
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxSize", maxSize);
+        stats.put("ttl", ttl.toString());
+        stats.put("size", size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * Mezcla los bits del id (ids consecutivos no deben caer en huecos consecutivos)
+     */
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Copia de un User (User es mutable: quien lo recibe no debe poder
+     * cambiar el de la caché ni el de otra llamada). null si user es null
+     */
+    static User copy(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setName(user.getName());
+        copy.setEmail(user.getEmail());
+        copy.setDepartment(user.getDepartment());
+        copy.setRole(user.getRole());
+        copy.setActive(user.getActive());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+
+    /**
+     * Entrada de la caché (también nodo de la lista LRU)
+     */
+    private static final class Node {
+        private final long id;
+        private User user;
+        private long expiresAt;
+        private Node prev;
+        private Node next;
+
+        private Node(long id, User user, long expiresAt) {
+            this.id = id;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Tabla hash long -> Node con sondeo lineal. Se accede siempre con el lock tomado.
+     */
+    private static final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int capacity;
+        private final long[] keys;
+        private final Node[] nodes;
+        private final int mask;
+        private int size;
+        private Node head;
+        private Node tail;
+        private volatile long stamp;
+
+        private Segment(int capacity) {
+            // Tamaño potencia de 2 y ocupación máxima del 50 %: sondeos cortos
+            int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.capacity = capacity;
+            this.keys = new long[tableSize];
+            this.nodes = new Node[tableSize];
+            this.mask = tableSize - 1;
+        }
+
+        /**
+         * @return posición del id, o (-1 - hueco libre donde insertarlo)
+         */
+        private int indexOf(long id, int hash) {
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                if (nodes[i] == null) {
+                    return -1 - i;
+                }
+                if (keys[i] == id) {
+                    return i;
+                }
+            }
+        }
+
+        private void insertAt(int slot, long id, Node node) {
+            keys[slot] = id;
+            nodes[slot] = node;
+            size++;
+            linkFirst(node);
+        }
+
+        /**
+         * Borra la posición y desplaza hacia atrás las entradas siguientes
+         * del mismo grupo de sondeo (sin marcas de borrado)
+         */
+        private void removeAt(int slot) {
+            unlink(nodes[slot]);
+            nodes[slot] = null;
+            size--;
+
+            int hole = slot;
+            for (int i = (slot + 1) & mask; nodes[i] != null; i = (i + 1) & mask) {
+                int ideal = hash(keys[i]) & mask;
+                // La entrada puede ocupar el hueco si su posición ideal no está en (hole, i]
+                boolean reachable = hole <= i ? (ideal <= hole || ideal > i) : (ideal <= hole && ideal > i);
+                if (reachable) {
+                    keys[hole] = keys[i];
+                    nodes[hole] = nodes[i];
+                    nodes[i] = null;
+                    hole = i;
+                }
+            }
+        }
+
+        private void clear() {
+            java.util.Arrays.fill(nodes, null);
+            size = 0;
+            head = null;
+            tail = null;
+        }
+
+        private void moveToHead(Node node) {
+            if (head != node) {
+                unlink(node);
+                linkFirst(node);
+            }
+        }
+
+        private void linkFirst(Node node) {
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            if (tail == null) {
+                tail = node;
+            }
+        }
+
+        private void unlink(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
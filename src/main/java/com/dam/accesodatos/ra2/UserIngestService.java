@@ -0,0 +1,336 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.VirtualThreads;
+import com.dam.accesodatos.model.BatchInsertOptions.CommitMode;
+import com.dam.accesodatos.model.IngestResult;
+import com.dam.accesodatos.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inserción masiva en streaming: lee los usuarios del cuerpo de la
+ * petición mientras los inserta, con memoria constante.
+ *
+ * batch_insert_users y transfer_data reciben el cuerpo entero como una
+ * lista: con cientos de miles de usuarios, el heap crece con el tamaño
+ * de la petición. Aquí hay dos hilos:
+ * - Lector (el hilo de la petición): UserStreamReader va leyendo usuarios
+ *   y los agrupa en chunks de chunkSize filas
+ * - Escritor (un hilo propio): saca chunks de una cola acotada
+ *   (ArrayBlockingQueue de queueChunks chunks) y los inserta con
+ *   addBatch()/executeBatch() en una sola conexión
+ *
+ * Si la BD va más lenta que la red, la cola se llena y el lector espera
+ * (contrapresión): deja de leer del socket y TCP frena al cliente. En
+ * memoria hay como mucho queueChunks + 2 chunks (la cola, el que se
+ * inserta y el que se está llenando), sea cual sea el tamaño del cuerpo.
+ *
+ * Modos de commit (como en batchInsertUsers):
+ * - ALL_OR_NOTHING: una transacción; un error de cualquier fila o un
+ *   cuerpo mal formado deshace todo
+ * - PER_CHUNK: commit tras cada chunk; las filas que fallan se anotan y
+ *   el resto se confirma. Si el cuerpo está mal formado se confirman los
+ *   chunks completos leídos antes del error
+ *
+ * No se devuelven ids generados (serían una lista del tamaño del cuerpo).
+ * La caché de usuarios no se toca: los ids nuevos no pueden estar en ella.
+ */
+@Service
+public class UserIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIngestService.class);
+
+    // Marca de fin de datos en la cola (se compara por identidad)
+    private static final List<User> END = new ArrayList<>();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    // Filas por executeBatch() si la petición no indica chunkSize
+    @Value("${ra2.jdbc.batch.chunk-size:500}")
+    private int defaultChunkSize = 500;
+
+    // Chunks leídos que pueden esperar al escritor
+    @Value("${ra2.jdbc.ingest.queue-chunks:4}")
+    private int queueChunks = 4;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final LongAdder ingests = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Lee los usuarios de in y los inserta según se leen
+     *
+     * @param in cuerpo de la petición (no se cierra)
+     * @param format JSON (array o {"users": [...]}) o NDJSON
+     * @param chunkSize filas por executeBatch() (0 o negativo: ra2.jdbc.batch.chunk-size)
+     * @param commitMode ALL_OR_NOTHING (null) o PER_CHUNK
+     */
+    public IngestResult ingest(InputStream in, UserStreamReader.Format format, int chunkSize, CommitMode commitMode) {
+        int size = chunkSize > 0 ? chunkSize : defaultChunkSize;
+        IngestResult result = new IngestResult();
+        BlockingQueue<List<User>> queue = new ArrayBlockingQueue<>(Math.max(1, queueChunks));
+        Writer writer = new Writer(queue, commitMode == CommitMode.PER_CHUNK, result);
+        FutureTask<Void> task = new FutureTask<>(writer, null);
+
+        ingests.increment();
+        active.incrementAndGet();
+        VirtualThreads.factory("ra2-ingest-writer", virtualThreads).newThread(task).start();
+
+        long read = 0;
+        boolean complete = false;
+        // El resultado lo escribe el escritor; el error del lector se añade al terminar
+        String inputError = null;
+        try (UserStreamReader reader = new UserStreamReader(objectMapper, in, format)) {
+            List<User> chunk = new ArrayList<>(size);
+            User user;
+            while ((user = reader.next()) != null) {
+                read++;
+                chunk.add(user);
+                if (chunk.size() == size) {
+                    if (!put(queue, chunk, task)) {
+                        break;
+                    }
+                    chunk = new ArrayList<>(size);
+                }
+            }
+            if (!chunk.isEmpty() && !task.isDone()) {
+                put(queue, chunk, task);
+            }
+            complete = true;
+        } catch (IOException e) {
+            inputError = "Cuerpo no válido: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!complete) {
+                writer.aborted = true;
+            }
+            finish(queue, task);
+            active.decrementAndGet();
+        }
+
+        if (inputError != null) {
+            result.setInvalidInput(true);
+            result.setError(inputError);
+        }
+        rows.add(result.getInsertedCount());
+        result.setRowsRead(read);
+        return result;
+    }
+
+    /**
+     * Mete un chunk en la cola esperando si está llena (contrapresión)
+     *
+     * @return false si el escritor ya terminó (por un error) y no va a sacar más
+     */
+    private boolean put(BlockingQueue<List<User>> queue, List<User> chunk, FutureTask<Void> task)
+            throws InterruptedException {
+        if (queue.offer(chunk)) {
+            return true;
+        }
+        backpressureWaits.increment();
+        while (!task.isDone()) {
+            if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Envía la marca de fin y espera a que el escritor haga commit o rollback
+     */
+    private void finish(BlockingQueue<List<User>> queue, FutureTask<Void> task) {
+        try {
+            put(queue, END, task);
+            task.get();
+        } catch (InterruptedException e) {
+            // El escritor deshace su transacción al ser interrumpido
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Inserción en streaming interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error en el hilo escritor: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Hilo escritor: una conexión, un PreparedStatement y un executeBatch() por chunk
+     */
+    private final class Writer implements Runnable {
+
+        private final BlockingQueue<List<User>> queue;
+        private final boolean perChunk;
+        private final IngestResult result;
+
+        // El lector ha fallado: en ALL_OR_NOTHING se deshace todo
+        private volatile boolean aborted;
+
+        private Writer(BlockingQueue<List<User>> queue, boolean perChunk, IngestResult result) {
+            this.queue = queue;
+            this.perChunk = perChunk;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            // Usuarios activos por departamento pendientes de commit
+            Map<String, Long> counted = new HashMap<>();
+            long inserted = 0;
+            long pending = 0;
+            long position = 0;
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            try (Connection conn = DatabaseConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                try (PreparedStatement pstmt = conn.prepareStatement(DatabaseUserServiceImpl.INSERT_USER_SQL)) {
+                    List<User> chunk;
+                    while ((chunk = queue.take()) != END) {
+                        if (aborted && !perChunk) {
+                            break;
+                        }
+                        for (User user : chunk) {
+                            DatabaseUserServiceImpl.bindUserParameters(pstmt, 1, user, now);
+                            pstmt.addBatch();
+                        }
+
+                        int[] updateCounts;
+                        SQLException error = null;
+                        try {
+                            updateCounts = pstmt.executeBatch();
+                        } catch (BatchUpdateException e) {
+                            updateCounts = e.getUpdateCounts();
+                            error = e;
+                        }
+                        result.setChunks(result.getChunks() + 1);
+
+                        // Un driver puede parar en la primera fila errónea: las que faltan no se ejecutaron
+                        for (int i = 0; i < chunk.size(); i++) {
+                            if (i < updateCounts.length && updateCounts[i] != Statement.EXECUTE_FAILED) {
+                                pending++;
+                                count(counted, chunk.get(i));
+                            } else {
+                                result.addFailedRow(position + i);
+                            }
+                        }
+                        position += chunk.size();
+
+                        if (error != null) {
+                            result.setError(error.getMessage());
+                            if (!perChunk) {
+                                break;
+                            }
+                        }
+                        if (perChunk) {
+                            commit(conn, counted);
+                            inserted += pending;
+                            pending = 0;
+                        }
+                    }
+
+                    if (!perChunk) {
+                        if (aborted || result.getError() != null) {
+                            conn.rollback();
+                            result.setCommitted(false);
+                        } else {
+                            commit(conn, counted);
+                            inserted += pending;
+                        }
+                    }
+                } catch (SQLException | InterruptedException e) {
+                    conn.rollback();
+                    result.setError(e instanceof SQLException ? e.getMessage() : "Inserción interrumpida");
+                    if (!perChunk) {
+                        result.setCommitted(false);
+                    }
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logger.error("Error en la conexión de inserción en streaming", e);
+                result.setError(e.getMessage());
+                if (!perChunk) {
+                    result.setCommitted(false);
+                }
+            } finally {
+                result.setInsertedCount(inserted);
+            }
+        }
+
+        /**
+         * Apunta un usuario insertado (active null se inserta como true)
+         */
+        private void count(Map<String, Long> counted, User user) {
+            if (user.getDepartment() != null && (user.getActive() == null || user.getActive())) {
+                counted.merge(user.getDepartment(), 1L, Long::sum);
+            }
+        }
+
+        /**
+         * Commit y suma a los contadores lo ya confirmado.
+         *
+         * Las filas sin confirmar no las ve el COUNT de reconcile(): basta con
+         * la barrera de escrituras (beginWrite/endWrite) alrededor del commit
+         * y de los contadores, no durante toda la inserción.
+         */
+        private void commit(Connection conn, Map<String, Long> counted) throws SQLException {
+            departmentCounters.beginWrite();
+            try {
+                conn.commit();
+                counted.forEach(departmentCounters::increment);
+            } finally {
+                counted.clear();
+                departmentCounters.endWrite();
+            }
+        }
+    }
+
+    /**
+     * Métricas para /mcp/metrics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ingests", ingests.sum());
+        stats.put("rows", rows.sum());
+        stats.put("active", active.get());
+        stats.put("backpressureWaits", backpressureWaits.sum());
+        stats.put("queueChunks", queueChunks);
+        stats.put("chunkSize", defaultChunkSize);
+        return stats;
+    }
+}
@@ -0,0 +1,126 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.model.User;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lee usuarios de un cuerpo JSON de uno en uno con el parser de streaming
+ * de Jackson (JsonParser), sin cargar el cuerpo entero en memoria.
+ *
+ * Formatos:
+ * - JSON: un array [{...}, {...}] o un objeto {"users": [{...}, ...]}
+ *   (los campos anteriores a "users" se saltan sin leerlos; los
+ *   posteriores no se llegan a leer)
+ * - NDJSON: un objeto por línea
+ *
+ * Cada usuario se convierte con el ObjectReader de User en cuanto se
+ * lee; solo hay en memoria el usuario actual y el buffer del parser.
+ */
+public final class UserStreamReader implements Closeable {
+
+    public enum Format {
+        JSON,
+        NDJSON;
+
+        /**
+         * Formato a partir del parámetro format ("json" o "ndjson")
+         */
+        public static Format of(String name) {
+            return "ndjson".equalsIgnoreCase(name) ? NDJSON : JSON;
+        }
+    }
+
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final Format format;
+
+    private boolean started;
+    private boolean finished;
+    private long rowsRead;
+
+    public UserStreamReader(ObjectMapper objectMapper, InputStream in, Format format) throws IOException {
+        this.parser = objectMapper.getFactory().createParser(in);
+        // El InputStream lo cierra quien lo abrió (el contenedor de servlets)
+        this.parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        this.reader = objectMapper.readerFor(User.class);
+        this.format = format;
+    }
+
+    /**
+     * Siguiente usuario del cuerpo
+     *
+     * @return el usuario, o null si no quedan más
+     * @throws IOException si el JSON está mal formado o un usuario no
+     *         tiene los tipos esperados (el mensaje incluye la fila)
+     */
+    public User next() throws IOException {
+        if (!started) {
+            started = true;
+            start();
+        }
+        if (finished) {
+            return null;
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == null && format == Format.NDJSON || token == JsonToken.END_ARRAY && format == Format.JSON) {
+            finished = true;
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Fila " + rowsRead + ": se esperaba un usuario (objeto JSON) y llega " + token);
+        }
+        User user = reader.readValue(parser);
+        rowsRead++;
+        return user;
+    }
+
+    /**
+     * Usuarios leídos hasta ahora
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Deja el parser justo antes del primer usuario
+     */
+    private void start() throws IOException {
+        if (format == Format.NDJSON) {
+            return;
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("users".equals(field)) {
+                    token = value;
+                    break;
+                }
+                parser.skipChildren();
+            }
+            if (token == null) {
+                throw new JsonParseException(parser, "Falta el campo 'users'");
+            }
+        }
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Se esperaba un array de usuarios y llega " + token);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,200 @@
+package com.dam.accesodatos.reactive;
+
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.dam.accesodatos.ra2.DatabaseUserService;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * Implementación R2DBC (perfil "reactive") de ReactiveDatabaseUserService.
+ *
+ * LECTURAS: SQL con R2DBC (DatabaseClient), las mismas consultas que en
+ * DatabaseUserServiceImpl pero con parámetros con nombre (:department)
+ * en vez de '?'. Las filas se mapean a User una a una según llegan.
+ *
+ * ESCRITURAS: se delegan en el servicio JDBC, en Schedulers.boundedElastic()
+ * (hilos pensados para llamadas bloqueantes). Así UserCache y
+ * DepartmentCounters, que se actualizan en cada escritura JDBC, siguen
+ * siendo coherentes; por eso las lecturas R2DBC no usan la caché: leen
+ * siempre de la BD.
+ */
+@Service
+@Profile("reactive")
+public class R2dbcDatabaseUserService implements ReactiveDatabaseUserService {
+
+    private static final String USER_COLUMNS =
+            "SELECT id, name, email, department, role, active, created_at, updated_at FROM users";
+
+    // Filas que se piden a R2DBC de cada vez (contrapresión hacia la BD)
+    private static final int PREFETCH = 256;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private DatabaseUserService databaseUserService;
+
+    @Override
+    public Mono<String> testConnection() {
+        return databaseClient.sql("SELECT 1 AS test, DATABASE() AS db_name")
+                .map((row, metadata) -> String.format("✓ Conexión R2DBC a H2 | Base de datos: %s | Test: %d",
+                        row.get("db_name", String.class), row.get("test", Integer.class)))
+                .one();
+    }
+
+    @Override
+    public Mono<User> findUserById(Long id) {
+        return databaseClient.sql(USER_COLUMNS + " WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> mapRowToUser(row))
+                .one();
+    }
+
+    @Override
+    public Flux<User> findUsersByIds(List<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinct.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // IN (:ids): Spring expande la lista a un parámetro por id
+        return databaseClient.sql(USER_COLUMNS + " WHERE id IN (:ids)")
+                .bind("ids", distinct)
+                .map((row, metadata) -> mapRowToUser(row))
+                .all()
+                .collectList()
+                .flatMapMany(users -> {
+                    Map<Long, User> found = new LinkedHashMap<>();
+                    users.forEach(user -> found.put(user.getId(), user));
+                    return Flux.fromIterable(ids.stream()
+                            .filter(Objects::nonNull)
+                            .map(found::get)
+                            .filter(Objects::nonNull)
+                            .toList());
+                });
+    }
+
+    @Override
+    public Flux<User> findAll() {
+        // Mismo orden que la versión JDBC (índice idx_users_created_at_id)
+        return databaseClient.sql(USER_COLUMNS + " ORDER BY created_at DESC, id")
+                .map((row, metadata) -> mapRowToUser(row))
+                .all()
+                .limitRate(PREFETCH);
+    }
+
+    @Override
+    public Flux<User> findUsersByDepartment(String department) {
+        return databaseClient.sql(USER_COLUMNS + " WHERE department = :department AND active = TRUE ORDER BY name")
+                .bind("department", department)
+                .map((row, metadata) -> mapRowToUser(row))
+                .all();
+    }
+
+    @Override
+    public Flux<User> searchUsers(UserQueryDto query) {
+        int limit = query.getLimit() != null && query.getLimit() > 0 ? query.getLimit() : 10;
+        int offset = query.getOffset() != null && query.getOffset() > 0 ? query.getOffset() : 0;
+
+        StringBuilder sql = new StringBuilder(USER_COLUMNS).append(" WHERE 1=1");
+        Map<String, Object> values = new LinkedHashMap<>();
+
+        if (query.getDepartment() != null) {
+            sql.append(" AND department = :department");
+            values.put("department", query.getDepartment());
+        }
+        if (query.getRole() != null) {
+            sql.append(" AND role = :role");
+            values.put("role", query.getRole());
+        }
+        if (query.getActive() != null) {
+            sql.append(" AND active = :active");
+            values.put("active", query.getActive());
+        }
+        sql.append(" ORDER BY name, id LIMIT :limit OFFSET :offset");
+        values.put("limit", (long) limit);
+        values.put("offset", (long) offset);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            spec = spec.bind(value.getKey(), value.getValue());
+        }
+        return spec.map((row, metadata) -> mapRowToUser(row))
+                .all()
+                .limitRate(PREFETCH);
+    }
+
+    @Override
+    public Mono<Integer> executeCountByDepartment(String department) {
+        return databaseClient.sql("SELECT COUNT(*) AS total FROM users WHERE department = :department AND active = TRUE")
+                .bind("department", department)
+                .map((row, metadata) -> row.get("total", Long.class).intValue())
+                .one();
+    }
+
+    // ========== ESCRITURAS (JDBC en boundedElastic) ==========
+
+    @Override
+    public Mono<User> createUser(UserCreateDto dto) {
+        return blocking(() -> databaseUserService.createUser(dto));
+    }
+
+    @Override
+    public Mono<User> updateUser(Long id, UserUpdateDto dto) {
+        return blocking(() -> databaseUserService.updateUser(id, dto));
+    }
+
+    @Override
+    public Mono<Boolean> deleteUser(Long id) {
+        return blocking(() -> databaseUserService.deleteUser(id));
+    }
+
+    @Override
+    public Mono<Boolean> transferData(List<User> users) {
+        return blocking(() -> databaseUserService.transferData(users));
+    }
+
+    @Override
+    public Mono<Integer> batchInsertUsers(List<User> users) {
+        return blocking(() -> databaseUserService.batchInsertUsers(users));
+    }
+
+    // ========== HELPER METHODS ==========
+
+    /**
+     * Llamada JDBC bloqueante fuera de los hilos de Netty: si bloqueara un
+     * hilo del event loop, pararía todas las conexiones HTTP de ese hilo
+     */
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static User mapRowToUser(Row row) {
+        User user = new User();
+        user.setId(row.get("id", Long.class));
+        user.setName(row.get("name", String.class));
+        user.setEmail(row.get("email", String.class));
+        user.setDepartment(row.get("department", String.class));
+        user.setRole(row.get("role", String.class));
+        user.setActive(row.get("active", Boolean.class));
+        user.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        user.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return user;
+    }
+}
@@ -0,0 +1,82 @@
+package com.dam.accesodatos.reactive;
+
+import com.dam.accesodatos.config.DatabaseConfig;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * Configuración R2DBC del perfil "reactive".
+ *
+ * Usa la misma base de datos que JDBC (DatabaseConfig.getUrl(), por
+ * defecto jdbc:h2:mem:ra2db con DB_CLOSE_DELAY=-1): las dos pilas ven los
+ * mismos datos dentro de la JVM.
+ * El esquema lo sigue creando DatabaseConfig.initializeDatabase() al arrancar.
+ *
+ * No se usa la autoconfiguración de Spring (R2dbcAutoConfiguration está
+ * excluida, igual que DataSourceAutoConfiguration): la conexión se
+ * construye aquí a mano, a partir de DatabaseConfig.getUrl().
+ *
+ * Las conexiones salen de un pool (r2dbc-pool, ra2.r2dbc.pool.*): sin él
+ * cada consulta abriría y cerraría una sesión de H2, lo mismo que
+ * ConnectionPool evita en la pila JDBC.
+ */
+@Configuration
+@Profile("reactive")
+@DependsOn("dataSourceConfig") // ra2.jdbc.storage ya aplicado a DatabaseConfig
+public class ReactiveDatabaseConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveDatabaseConfig.class);
+
+    private static final String JDBC_PREFIX = "jdbc:h2:";
+
+    @Value("${ra2.r2dbc.pool.initial-size:2}")
+    private int initialSize = 2;
+
+    @Value("${ra2.r2dbc.pool.max-size:10}")
+    private int maxSize = 10;
+
+    @Value("${ra2.r2dbc.pool.max-idle-time:5m}")
+    private Duration maxIdleTime = Duration.ofMinutes(5);
+
+    @Value("${ra2.r2dbc.pool.acquire-timeout:5s}")
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+
+    // dispose(): close() devuelve un Mono que Spring no llegaría a suscribir
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool connectionFactory() {
+        // r2dbc-h2 espera la URL de H2 sin el prefijo "jdbc:h2:"
+        String url = DatabaseConfig.getUrl().substring(JDBC_PREFIX.length());
+        logger.info("R2DBC H2: {} (pool {}-{})", url, initialSize, maxSize);
+
+        ConnectionFactory h2 = new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(url)
+                .username(DatabaseConfig.DB_USER)
+                .password(DatabaseConfig.DB_PASSWORD)
+                .build());
+
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(h2)
+                .initialSize(initialSize)
+                .maxSize(maxSize)
+                .maxIdleTime(maxIdleTime)
+                .maxAcquireTime(acquireTimeout)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
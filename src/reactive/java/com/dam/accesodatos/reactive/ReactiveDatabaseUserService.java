@@ -0,0 +1,72 @@
+package com.dam.accesodatos.reactive;
+
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Versión reactiva (Project Reactor) de las herramientas de DatabaseUserService.
+ *
+ * Diferencias con la versión JDBC:
+ * - Nada bloquea al hilo que llama: el resultado es un Mono (0..1 valores)
+ *   o un Flux (0..N valores) que se ejecuta al suscribirse.
+ * - Un Flux entrega las filas según llegan de la BD, con contrapresión:
+ *   si el cliente HTTP lee despacio, se piden menos filas a R2DBC en vez
+ *   de acumularlas en memoria.
+ * - "No encontrado" es un Mono vacío, no null.
+ *
+ * @see com.dam.accesodatos.ra2.DatabaseUserService
+ */
+public interface ReactiveDatabaseUserService {
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#testConnection() */
+    Mono<String> testConnection();
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#findUserById(Long) */
+    Mono<User> findUserById(Long id);
+
+    /**
+     * Mismo orden que ids; los que no existen no aparecen en el Flux
+     * (un Flux no puede emitir null)
+     *
+     * @see com.dam.accesodatos.ra2.DatabaseUserService#findUsersByIds(List)
+     */
+    Flux<User> findUsersByIds(List<Long> ids);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#findAll() */
+    Flux<User> findAll();
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#findUsersByDepartment(String) */
+    Flux<User> findUsersByDepartment(String department);
+
+    /**
+     * Filtros y paginación por offset (limit por defecto 10, sin máximo).
+     * La paginación por cursor solo está en la versión JDBC (searchUsersPage).
+     *
+     * @see com.dam.accesodatos.ra2.DatabaseUserService#searchUsers(UserQueryDto)
+     */
+    Flux<User> searchUsers(UserQueryDto query);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#executeCountByDepartment(String) */
+    Mono<Integer> executeCountByDepartment(String department);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#createUser(UserCreateDto) */
+    Mono<User> createUser(UserCreateDto dto);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#updateUser(Long, UserUpdateDto) */
+    Mono<User> updateUser(Long id, UserUpdateDto dto);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#deleteUser(Long) */
+    Mono<Boolean> deleteUser(Long id);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#transferData(List) */
+    Mono<Boolean> transferData(List<User> users);
+
+    /** @see com.dam.accesodatos.ra2.DatabaseUserService#batchInsertUsers(List) */
+    Mono<Integer> batchInsertUsers(List<User> users);
+}
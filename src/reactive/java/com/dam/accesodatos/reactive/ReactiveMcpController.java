@@ -0,0 +1,302 @@
+package com.dam.accesodatos.reactive;
+
+import com.dam.accesodatos.mcp.McpJsonRpcHandler;
+import com.dam.accesodatos.mcp.McpRequests;
+import com.dam.accesodatos.mcp.McpToolRegistry;
+import com.dam.accesodatos.mcp.ToolCatalog;
+import com.dam.accesodatos.mcp.ToolConcurrencyLimiter;
+import com.dam.accesodatos.mcp.ToolResponse;
+import com.dam.accesodatos.mcp.ToolWarmup;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Controlador WebFlux del perfil "reactive": mismas rutas, mismos cuerpos
+ * (McpRequests) y mismas respuestas (ToolResponse) que McpServerController,
+ * pero sobre Netty y R2DBC.
+ *
+ *   java -jar build/libs/mcp-server-ra2-jdbc-1.0.0.jar --spring.profiles.active=reactive
+ *
+ * - Lecturas (find_*, search_users, execute_count_by_department,
+ *   test_connection): R2DBC, sin bloquear ningún hilo.
+ * - find_all_users/stream y search_users/stream: un User por línea
+ *   (application/x-ndjson) según llegan de la BD. La contrapresión llega
+ *   hasta R2DBC: si el cliente no lee, no se piden más filas.
+ * - POST /mcp (JSON-RPC) y /call/{tool}: las herramientas @Tool son JDBC
+ *   bloqueante, así que se ejecutan en Schedulers.boundedElastic().
+ *   Las escrituras (create_user, update_user...) se hacen por aquí.
+ */
+@RestController
+@RequestMapping("/mcp")
+@CrossOrigin(origins = "*")
+@Profile("reactive")
+public class ReactiveMcpController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveMcpController.class);
+
+    @Autowired
+    private ReactiveDatabaseUserService reactiveUserService;
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private ToolCatalog toolCatalog;
+
+    @Autowired
+    private ToolConcurrencyLimiter toolLimiter;
+
+    @Autowired
+    private McpJsonRpcHandler handler;
+
+    @Autowired
+    private ToolWarmup toolWarmup;
+
+    /**
+     * 503 WARMING mientras se calientan las herramientas (ToolWarmup)
+     */
+    @GetMapping("/health")
+    public Mono<ResponseEntity<Map<String, String>>> getHealth() {
+        Map<String, String> health = new HashMap<>();
+        health.put("service", "MCP Server RA2 JDBC");
+        health.put("stack", "reactive");
+        if (toolWarmup.isWarming()) {
+            health.put("status", "WARMING");
+            health.put("progress", toolWarmup.getProgress() + "%");
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(health));
+        }
+        health.put("status", "UP");
+        return Mono.just(ResponseEntity.ok(health));
+    }
+
+    /**
+     * Mismos bytes y ETag que en McpServerController (ToolCatalog);
+     * WebFlux también responde 304 si If-None-Match coincide
+     */
+    @GetMapping("/tools")
+    public Mono<ResponseEntity<byte[]>> getTools() {
+        ToolCatalog.Snapshot catalog = toolCatalog.current();
+        return Mono.just(ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.json()));
+    }
+
+    /**
+     * Transporte MCP Streamable HTTP (ver McpStreamableHttpController)
+     */
+    @PostMapping
+    public Mono<ResponseEntity<JsonNode>> handle(@RequestBody String body) {
+        return Mono.fromCallable(() -> Optional.ofNullable(handler.handlePayload(body)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(response -> response
+                        .map(json -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json))
+                        .orElseGet(() -> ResponseEntity.accepted().build()));
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<Void>> openStream() {
+        return Mono.just(ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
+                .header("Allow", "POST")
+                .build());
+    }
+
+    /**
+     * Ejecuta cualquier herramienta registrada por su nombre (JDBC en boundedElastic)
+     */
+    @PostMapping("/call/{tool}")
+    public Mono<ResponseEntity<ToolResponse>> callTool(@PathVariable("tool") String toolName,
+                                                       @RequestBody(required = false) JsonNode arguments) {
+        McpToolRegistry.McpToolInfo tool = toolRegistry.getTool(toolName);
+        if (tool == null) {
+            return Mono.just(errorResponse(toolName, 404, "Herramienta desconocida: " + toolName));
+        }
+
+        return respond(toolName, "Error ejecutando " + toolName,
+                Mono.fromCallable(() -> Optional.ofNullable(tool.invoke(arguments)))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                result -> ToolResponse.success(toolName, result.orElse(null)));
+    }
+
+    // ========== LECTURAS R2DBC ==========
+
+    @PostMapping("/test_connection")
+    public Mono<ResponseEntity<ToolResponse>> testConnection() {
+        return respond("test_connection", "Error probando conexión",
+                reactiveUserService.testConnection(),
+                result -> ToolResponse.success("test_connection", result));
+    }
+
+    @PostMapping("/find_user_by_id")
+    public Mono<ResponseEntity<ToolResponse>> findUserById(@RequestBody McpRequests.UserIdRequest request) {
+        return respond("find_user_by_id", "Error buscando usuario",
+                Mono.defer(() -> reactiveUserService.findUserById(request.requireUserId("find_user_by_id")))
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()),
+                user -> ToolResponse.success("find_user_by_id", user.orElse(null)));
+    }
+
+    /**
+     * result está alineado con userIds (null = no existe), igual que en JDBC
+     */
+    @PostMapping("/find_users_by_ids")
+    public Mono<ResponseEntity<ToolResponse>> findUsersByIds(@RequestBody McpRequests.UserIdsRequest request) {
+        return respond("find_users_by_ids", "Error buscando usuarios",
+                Mono.defer(() -> reactiveUserService.findUsersByIds(request.requireUserIds("find_users_by_ids"))
+                        .collectList()),
+                found -> {
+                    List<Long> userIds = request.userIds();
+                    Map<Long, User> byId = new HashMap<>();
+                    found.forEach(user -> byId.put(user.getId(), user));
+
+                    List<User> users = new ArrayList<>(userIds.size());
+                    List<Long> missing = new ArrayList<>();
+                    for (Long id : userIds) {
+                        User user = id != null ? byId.get(id) : null;
+                        users.add(user);
+                        if (user == null) {
+                            missing.add(id);
+                        }
+                    }
+
+                    return ToolResponse.success("find_users_by_ids", users)
+                            .with("count", users.size() - missing.size())
+                            .with("missing", missing);
+                });
+    }
+
+    /**
+     * Lista completa en una sola respuesta JSON: toda la lista en memoria
+     * (como en JDBC). Para tablas grandes, find_all_users/stream.
+     */
+    @PostMapping("/find_all_users")
+    public Mono<ResponseEntity<ToolResponse>> findAllUsers() {
+        return respond("find_all_users", "Error obteniendo usuarios",
+                reactiveUserService.findAll().collectList(),
+                users -> listResponse("find_all_users", users));
+    }
+
+    /**
+     * Todos los usuarios en NDJSON, fila a fila y con contrapresión
+     */
+    @PostMapping(value = "/find_all_users/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> streamAllUsers() {
+        return reactiveUserService.findAll()
+                .doOnError(e -> logger.error("Error en streaming de usuarios", e));
+    }
+
+    @PostMapping("/find_users_by_department")
+    public Mono<ResponseEntity<ToolResponse>> findUsersByDepartment(@RequestBody McpRequests.DepartmentRequest request) {
+        return respond("find_users_by_department", "Error buscando usuarios",
+                Mono.defer(() -> reactiveUserService.findUsersByDepartment(request.department()).collectList()),
+                users -> listResponse("find_users_by_department", users));
+    }
+
+    /**
+     * Filtros dinámicos con paginación por offset (sin cursor, ver ReactiveDatabaseUserService).
+     * Con cursor responde 400: ignorarlo devolvería siempre la primera página.
+     */
+    @PostMapping("/search_users")
+    public Mono<ResponseEntity<ToolResponse>> searchUsers(@RequestBody McpRequests.SearchUsersRequest request) {
+        return respond("search_users", "Error buscando usuarios",
+                Mono.defer(() -> reactiveUserService.searchUsers(offsetQuery("search_users", request)).collectList()),
+                users -> listResponse("search_users", users));
+    }
+
+    /**
+     * search_users en NDJSON: útil con limit grandes, sin lista en memoria.
+     * Con cursor responde 400 antes de empezar el stream.
+     */
+    @PostMapping(value = "/search_users/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> streamSearchUsers(@RequestBody McpRequests.SearchUsersRequest request) {
+        UserQueryDto query;
+        try {
+            query = offsetQuery("search_users/stream", request);
+        } catch (McpToolRegistry.InvalidArgumentsException e) {
+            return errorResponse("search_users/stream", 400, e.getMessage());
+        }
+        return ResponseEntity.ok(reactiveUserService.searchUsers(query)
+                .doOnError(e -> logger.error("Error en streaming de search_users", e)));
+    }
+
+    @PostMapping("/execute_count_by_department")
+    public Mono<ResponseEntity<ToolResponse>> executeCountByDepartment(@RequestBody McpRequests.DepartmentRequest request) {
+        String department = request.department();
+        return respond("execute_count_by_department", "Error contando usuarios",
+                reactiveUserService.executeCountByDepartment(department),
+                count -> ToolResponse.success("execute_count_by_department", count)
+                        .with("department", department));
+    }
+
+    // ========== RESPUESTAS ==========
+
+    /**
+     * Consulta de search_users sin cursor (la versión R2DBC solo pagina por offset)
+     *
+     * @throws McpToolRegistry.InvalidArgumentsException si la petición trae cursor
+     */
+    private static UserQueryDto offsetQuery(String toolName, McpRequests.SearchUsersRequest request) {
+        if (request.cursor() != null) {
+            throw new McpToolRegistry.InvalidArgumentsException(toolName,
+                    "cursor no está disponible con el perfil reactive: usa limit/offset");
+        }
+        return request.toQuery();
+    }
+
+    private static ToolResponse listResponse(String toolName, List<User> users) {
+        return ToolResponse.success(toolName, users).with("count", users.size());
+    }
+
+    /**
+     * Respuesta con el mismo formato que McpServerController: los errores
+     * son 400 (argumentos no válidos), 429 (herramienta saturada, ver
+     * ToolConcurrencyLimiter) o 500.
+     *
+     * El permiso del limitador se reserva al suscribirse y se libera al
+     * terminar (o cancelarse) la llamada.
+     */
+    private <T> Mono<ResponseEntity<ToolResponse>> respond(
+            String toolName, String errorMessage, Mono<T> call, Function<T, ToolResponse> response) {
+
+        return Mono.using(() -> toolLimiter.acquire(toolName), permit -> call, ToolConcurrencyLimiter.Permit::close)
+                .map(value -> ResponseEntity.ok(response.apply(value)))
+                .onErrorResume(e -> {
+                    if (e instanceof McpToolRegistry.InvalidArgumentsException) {
+                        return Mono.just(errorResponse(toolName, 400, e.getMessage()));
+                    }
+                    if (e instanceof ToolConcurrencyLimiter.ToolOverloadedException) {
+                        logger.warn("{} rechazada: {}", toolName, e.getMessage());
+                        return Mono.just(ResponseEntity.status(429)
+                                .header("Retry-After", "1")
+                                .body(ToolResponse.error(toolName, e.getMessage())));
+                    }
+                    logger.error(errorMessage, e);
+                    return Mono.just(errorResponse(toolName, 500, errorMessage + ": " + e.getMessage()));
+                });
+    }
+
+    private static ResponseEntity<ToolResponse> errorResponse(String toolName, int status, String message) {
+        return ResponseEntity.status(status).body(ToolResponse.error(toolName, message));
+    }
+}
@@ -0,0 +1,105 @@
+package com.dam.accesodatos.reactive;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserQueryDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la versión R2DBC (perfil "reactive") sobre los mismos datos de prueba
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@ActiveProfiles("reactive")
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class R2dbcDatabaseUserServiceTest {
+
+    @Autowired
+    private ReactiveDatabaseUserService reactiveUserService;
+
+    @Test
+    void findAll_shouldStreamAllRowsMapped() {
+        // Act
+        List<User> users = reactiveUserService.findAll().collectList().block();
+
+        // Assert
+        assertEquals(3, users.size());
+        // Mismo orden que findAll() de JDBC: los más recientes primero
+        assertEquals(List.of(3L, 2L, 1L), users.stream().map(User::getId).toList());
+        User user1 = users.get(2);
+        assertEquals("test1@example.com", user1.getEmail());
+        assertEquals("IT", user1.getDepartment());
+        assertTrue(user1.getActive());
+        assertNotNull(user1.getCreatedAt());
+        assertFalse(users.get(0).getActive());
+    }
+
+    @Test
+    void findUserById_whenMissing_shouldBeEmpty() {
+        // Act & Assert
+        assertEquals("Test User 2", reactiveUserService.findUserById(2L).block().getName());
+        assertNull(reactiveUserService.findUserById(999L).block());
+    }
+
+    @Test
+    void findUsersByIds_shouldKeepRequestedOrderAndSkipMissing() {
+        // Act
+        List<User> users = reactiveUserService.findUsersByIds(List.of(3L, 999L, 1L)).collectList().block();
+
+        // Assert
+        assertEquals(List.of(3L, 1L), users.stream().map(User::getId).toList());
+    }
+
+    @Test
+    void searchUsers_shouldApplyFiltersAndPaging() {
+        // Arrange
+        UserQueryDto activeIt = new UserQueryDto("IT", null, true, 10, 0);
+        UserQueryDto secondPage = new UserQueryDto(null, null, null, 2, 2);
+
+        // Act
+        List<User> it = reactiveUserService.searchUsers(activeIt).collectList().block();
+        List<User> page = reactiveUserService.searchUsers(secondPage).collectList().block();
+
+        // Assert
+        assertEquals(1, it.size());
+        assertEquals(1L, it.get(0).getId());
+        assertEquals(1, page.size());
+        assertEquals("Test User 3", page.get(0).getName());
+    }
+
+    @Test
+    void executeCountByDepartment_shouldCountActiveOnly() {
+        // Act & Assert
+        assertEquals(1, reactiveUserService.executeCountByDepartment("IT").block());
+        assertEquals(0, reactiveUserService.executeCountByDepartment("Sales").block());
+    }
+
+    @Test
+    void createUser_throughJdbc_shouldBeVisibleToR2dbc() {
+        // Arrange
+        UserCreateDto dto = new UserCreateDto("Reactive User", "reactive@example.com", "IT", "Developer");
+
+        // Act
+        User created = reactiveUserService.createUser(dto).block();
+        User found = reactiveUserService.findUserById(created.getId()).block();
+
+        // Assert
+        assertNotNull(found);
+        assertEquals("reactive@example.com", found.getEmail());
+        assertEquals(2, reactiveUserService.executeCountByDepartment("IT").block());
+    }
+}
@@ -0,0 +1,272 @@
+package com.dam.accesodatos.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del pool de conexiones propio
+ *
+ * Usa una base de datos H2 en memoria independiente (ra2pooltest) para no
+ * interferir con la base de datos de la aplicación.
+ */
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:ra2pooltest;DB_CLOSE_DELAY=-1";
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool(URL, "sa", "",
+                new ConnectionPool.Settings(0, 2, Duration.ofMillis(200), Duration.ofMinutes(5), 1, 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void getConnection_afterClose_shouldReuseSamePhysicalConnection() throws SQLException {
+        // Arrange: pedir y devolver una conexión
+        Connection first = pool.getConnection();
+        Connection physicalFirst = first.unwrap(Connection.class);
+        first.close();
+
+        // Act: pedir otra conexión
+        Connection second = pool.getConnection();
+        Connection physicalSecond = second.unwrap(Connection.class);
+        second.close();
+
+        // Assert: se reutiliza la misma conexión física
+        assertTrue(first.isClosed(), "El proxy devuelto debe aparecer como cerrado");
+        assertSame(physicalFirst, physicalSecond, "Debe reutilizarse la conexión física");
+        assertEquals(1, pool.getTotalConnections(), "Solo debe haberse abierto una conexión");
+        assertEquals(1, pool.getIdleConnections(), "La conexión debe estar ociosa en el pool");
+    }
+
+    @Test
+    void getConnection_whenExhausted_shouldTimeout() throws SQLException {
+        // Arrange: ocupar todas las conexiones
+        try (Connection c1 = pool.getConnection();
+             Connection c2 = pool.getConnection()) {
+
+            // Act & Assert: la tercera debe agotar el timeout
+            assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection(),
+                    "Debe lanzar timeout cuando el pool está agotado");
+            assertEquals(2, pool.getActiveConnections(), "Debe haber 2 conexiones activas");
+        }
+
+        assertEquals(0, pool.getActiveConnections(), "Al cerrar, no debe quedar ninguna activa");
+    }
+
+    @Test
+    void getConnection_withBrokenIdleConnection_shouldValidateAndReplace() throws SQLException {
+        // Arrange: devolver una conexión cuya conexión física se ha cerrado por debajo
+        Connection connection = pool.getConnection();
+        Connection physical = connection.unwrap(Connection.class);
+        connection.close();
+        physical.close();
+
+        // Act: pedir una conexión nueva
+        try (Connection replacement = pool.getConnection()) {
+
+            // Assert: la conexión rota se descarta en la validación
+            assertNotSame(physical, replacement.unwrap(Connection.class), "Debe abrirse una conexión nueva");
+            assertTrue(replacement.isValid(1), "La conexión nueva debe ser válida");
+        }
+        assertEquals(1, pool.getTotalConnections(), "La conexión rota no debe contarse");
+    }
+
+    @Test
+    void close_shouldRollbackPendingTransaction() throws SQLException {
+        // Arrange: dejar una transacción abierta al devolver la conexión
+        try (Connection conn = pool.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE IF NOT EXISTS pool_tx (id INT)");
+            conn.setAutoCommit(false);
+            conn.createStatement().execute("INSERT INTO pool_tx VALUES (1)");
+        }
+
+        // Act & Assert: la siguiente conexión debe estar limpia
+        try (Connection conn = pool.getConnection()) {
+            assertTrue(conn.getAutoCommit(), "El auto-commit debe haberse restaurado");
+            var rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM pool_tx");
+            rs.next();
+            assertEquals(0, rs.getInt(1), "El INSERT sin commit debe haberse deshecho");
+            conn.createStatement().execute("DROP TABLE pool_tx");
+        }
+    }
+
+    @Test
+    void close_shouldRestoreSessionAndCloseLeftoverStatements() throws SQLException {
+        // Arrange: el prestatario cambia la sesión y deja un cursor abierto
+        int isolation;
+        Statement leftOpen;
+        ResultSet cursor;
+        try (Connection conn = pool.getConnection()) {
+            isolation = conn.getTransactionIsolation();
+            conn.setReadOnly(true);
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            leftOpen = conn.createStatement();
+            cursor = leftOpen.executeQuery("SELECT 1");
+        }
+
+        // Act: el siguiente recibe la misma conexión física
+        try (Connection conn = pool.getConnection()) {
+
+            // Assert: con la sesión tal como se abrió
+            assertFalse(conn.isReadOnly(), "readOnly no debe pasar al siguiente");
+            assertEquals(isolation, conn.getTransactionIsolation(), "El aislamiento debe restaurarse");
+        }
+        assertTrue(leftOpen.isClosed(), "El statement olvidado debe cerrarse");
+        assertTrue(cursor.isClosed(), "Su ResultSet también");
+    }
+
+    @Test
+    void prepareStatement_afterClose_shouldReuseCachedStatement() throws SQLException {
+        // Arrange: preparar y cerrar un statement
+        PreparedStatement physicalFirst;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+            pstmt.setInt(1, 1);
+            pstmt.executeQuery().close();
+            physicalFirst = pstmt.unwrap(PreparedStatement.class);
+        }
+
+        // Act: preparar el mismo SQL en otra petición
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+
+            // Assert: es el mismo statement físico, con los parámetros limpios
+            assertSame(physicalFirst, pstmt.unwrap(PreparedStatement.class), "Debe reutilizarse el statement");
+            assertSame(conn, pstmt.getConnection(), "getConnection() debe devolver la conexión del pool");
+        }
+
+        Map<?, ?> cacheStats = (Map<?, ?>) pool.getStats().get("statementCache");
+        assertEquals(1L, cacheStats.get("hits"), "Debe haber 1 acierto de caché");
+        assertEquals(1L, cacheStats.get("misses"), "Debe haber 1 fallo de caché");
+    }
+
+    @Test
+    void prepareStatement_afterClose_shouldResetStatementSettings() throws SQLException {
+        // Arrange: un llamador cambia fetch size, máximo de filas y timeout
+        int fetchSize;
+        int maxRows;
+        int queryTimeout;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+            fetchSize = pstmt.getFetchSize();
+            maxRows = pstmt.getMaxRows();
+            queryTimeout = pstmt.getQueryTimeout();
+            pstmt.setFetchSize(fetchSize + 7);
+            pstmt.setMaxRows(3);
+            pstmt.setQueryTimeout(5);
+        }
+
+        // Act: el siguiente que prepara el mismo SQL recibe el statement cacheado
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+
+            // Assert: con los valores por defecto, no los del llamador anterior
+            assertEquals(fetchSize, pstmt.getFetchSize());
+            assertEquals(maxRows, pstmt.getMaxRows());
+            assertEquals(queryTimeout, pstmt.getQueryTimeout());
+        }
+    }
+
+    @Test
+    void prepareStatement_withDifferentOptions_shouldUseDifferentEntries() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            conn.createStatement().execute("CREATE TABLE IF NOT EXISTS pool_keys (id INT AUTO_INCREMENT PRIMARY KEY, v INT)");
+            String sql = "INSERT INTO pool_keys (v) VALUES (?)";
+
+            PreparedStatement plain = conn.prepareStatement(sql);
+            PreparedStatement physicalPlain = plain.unwrap(PreparedStatement.class);
+            plain.close();
+
+            // Act: mismo SQL pero pidiendo las claves generadas
+            try (PreparedStatement withKeys = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                // Assert: la opción forma parte de la clave de la caché
+                assertNotSame(physicalPlain, withKeys.unwrap(PreparedStatement.class),
+                        "RETURN_GENERATED_KEYS debe usar otra entrada de la caché");
+            }
+            conn.createStatement().execute("DROP TABLE pool_keys");
+        }
+    }
+
+    @Test
+    void prepareStatement_beyondCacheSize_shouldEvictLeastRecentlyUsed() throws SQLException {
+        try (Connection conn = pool.getConnection()) {
+            // Arrange: llenar la caché (tamaño 2) y añadir un tercer SQL
+            PreparedStatement first = conn.prepareStatement("SELECT 1");
+            PreparedStatement physicalFirst = first.unwrap(PreparedStatement.class);
+            first.close();
+            conn.prepareStatement("SELECT 2").close();
+            conn.prepareStatement("SELECT 3").close();
+
+            // Assert: el menos usado recientemente se ha cerrado físicamente
+            assertTrue(physicalFirst.isClosed(), "El statement expulsado debe cerrarse");
+        }
+
+        Map<?, ?> cacheStats = (Map<?, ?>) pool.getStats().get("statementCache");
+        assertEquals(1L, cacheStats.get("evictions"), "Debe haber 1 expulsión");
+    }
+
+    @Test
+    void prepareStatement_leftOpen_shouldBeReclaimedWhenConnectionIsReturned() throws SQLException {
+        // Arrange: el llamador no cierra el statement
+        PreparedStatement leaked;
+        PreparedStatement physicalLeaked;
+        try (Connection conn = pool.getConnection()) {
+            leaked = conn.prepareStatement("SELECT ?");
+            physicalLeaked = leaked.unwrap(PreparedStatement.class);
+        }
+
+        // Act: el siguiente prestatario prepara el mismo SQL
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT ?")) {
+
+            // Assert: el statement olvidado volvió a la caché y su proxy ya no sirve
+            assertSame(physicalLeaked, pstmt.unwrap(PreparedStatement.class), "Debe reutilizarse el statement");
+            assertTrue(leaked.isClosed());
+            assertThrows(SQLException.class, () -> leaked.setInt(1, 1),
+                    "El proxy viejo no debe ejecutar en la conexión del siguiente");
+        }
+
+        Map<?, ?> cacheStats = (Map<?, ?>) pool.getStats().get("statementCache");
+        assertEquals(1L, cacheStats.get("reclaimed"), "Debe haberse recuperado 1 statement");
+    }
+
+    @Test
+    void prepareStatement_sameSqlOpenTwice_shouldWrapTheUncachedStatement() throws SQLException {
+        PreparedStatement physicalSecond;
+        try (Connection conn = pool.getConnection()) {
+            // Arrange: el primero ocupa la entrada de la caché
+            PreparedStatement first = conn.prepareStatement("SELECT ?");
+
+            // Act: el mismo SQL otra vez, sin cerrar el primero
+            PreparedStatement second = conn.prepareStatement("SELECT ?");
+            physicalSecond = second.unwrap(PreparedStatement.class);
+
+            // Assert: también es un proxy que expone la conexión del pool
+            assertNotSame(first.unwrap(PreparedStatement.class), physicalSecond);
+            assertSame(conn, second.getConnection(), "getConnection() no debe exponer la conexión física");
+            first.close();
+        }
+
+        // Al devolver la conexión, el statement no cacheado se cierra físicamente
+        assertTrue(physicalSecond.isClosed(), "El statement duplicado debe cerrarse");
+    }
+}
@@ -0,0 +1,103 @@
+package com.dam.accesodatos.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del snapshot de la BD (SCRIPT / RUNSCRIPT), con BD en memoria
+ * propias: no tocan la BD de DatabaseConfig
+ */
+class DatabaseSnapshotTest {
+
+    private final Path directory = createDirectory();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(DatabaseSnapshot::deleteQuietly);
+        }
+    }
+
+    @Test
+    void writeAndRestore_shouldRecreateTablesDataAndIdentity() throws SQLException {
+        // Arrange: una BD con datos y el identity reiniciado, como la inicial
+        Path snapshot = DatabaseSnapshot.fileFor(directory, "test");
+        try (Connection source = open("snapshot_source");
+             Statement stmt = source.createStatement()) {
+            stmt.execute("CREATE TABLE users (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(50) NOT NULL)");
+            stmt.execute("INSERT INTO users (id, name) VALUES (1, 'Juan'), (2, 'María')");
+            stmt.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 100");
+
+            // Act
+            assertTrue(DatabaseSnapshot.write(source, snapshot));
+        }
+
+        // Act: otra BD, que además ya tiene la tabla (RUNSCRIPT la borra antes)
+        try (Connection target = open("snapshot_target");
+             Statement stmt = target.createStatement()) {
+            stmt.execute("CREATE TABLE users (id BIGINT PRIMARY KEY)");
+            DatabaseSnapshot.restore(target, snapshot);
+
+            // Assert
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+            }
+            stmt.execute("INSERT INTO users (name) VALUES ('Nuevo')");
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM users")) {
+                assertTrue(rs.next());
+                assertEquals(100L, rs.getLong(1));
+            }
+        }
+    }
+
+    @Test
+    void restore_whenFileIsCorrupt_shouldFail() throws Exception {
+        // Arrange
+        Path snapshot = DatabaseSnapshot.fileFor(directory, "test");
+        Files.writeString(snapshot, "no es gzip");
+
+        // Act & Assert: DatabaseConfig lo borra y vuelve a ejecutar los scripts
+        try (Connection conn = open("snapshot_corrupt")) {
+            assertThrows(SQLException.class, () -> DatabaseSnapshot.restore(conn, snapshot));
+        }
+    }
+
+    @Test
+    void fileFor_shouldChangeWithScripts() {
+        // Act
+        Path first = DatabaseSnapshot.fileFor(directory, "CREATE TABLE a (id INT)");
+        Path same = DatabaseSnapshot.fileFor(directory, "CREATE TABLE a (id INT)");
+        Path changed = DatabaseSnapshot.fileFor(directory, "CREATE TABLE a (id BIGINT)");
+
+        // Assert
+        assertEquals(first, same);
+        assertNotEquals(first, changed);
+        assertTrue(first.getFileName().toString().matches("ra2db-[0-9a-f]{12}\\.sql\\.gz"));
+    }
+
+    private static Connection open(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=0", "sa", "");
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("ra2db-snapshot-test");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
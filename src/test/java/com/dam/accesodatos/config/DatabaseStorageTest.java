@@ -0,0 +1,64 @@
+package com.dam.accesodatos.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de las URL JDBC de cada modo de almacenamiento
+ */
+class DatabaseStorageTest {
+
+    @Test
+    void memory_shouldUseDefaultUrl() {
+        // Act
+        DatabaseStorage storage = DatabaseStorage.memory();
+
+        // Assert: la misma BD que TestDataSourceConfig
+        assertEquals(DatabaseConfig.DB_URL, storage.jdbcUrl());
+        assertFalse(storage.isPersistent());
+    }
+
+    @Test
+    void file_shouldIncludeMvStoreSettings() {
+        // Arrange
+        DatabaseStorage storage = new DatabaseStorage(DatabaseStorage.Mode.FILE, "./data/ra2db",
+                131072, true, Duration.ofMillis(0));
+
+        // Act
+        String url = storage.jdbcUrl();
+
+        // Assert
+        assertTrue(url.startsWith("jdbc:h2:file:./data/ra2db;MODE=PostgreSQL;"), url);
+        assertTrue(url.contains(";CACHE_SIZE=131072"), url);
+        assertTrue(url.contains(";COMPRESS=TRUE"), url);
+        assertTrue(url.contains(";WRITE_DELAY=0"), url);
+        assertTrue(storage.isPersistent());
+    }
+
+    @Test
+    void memFs_shouldNotBePersistent() {
+        // Arrange: sin caché ni compresión explícitas
+        DatabaseStorage storage = new DatabaseStorage(DatabaseStorage.Mode.MEMFS, "ra2db",
+                0, false, Duration.ofMillis(500));
+
+        // Act
+        String url = storage.jdbcUrl();
+
+        // Assert
+        assertTrue(url.startsWith("jdbc:h2:memFS:ra2db;"), url);
+        assertFalse(url.contains("CACHE_SIZE"), url);
+        assertFalse(url.contains("COMPRESS"), url);
+        assertFalse(url.contains("WRITE_DELAY"), url);
+        assertFalse(storage.isPersistent());
+    }
+
+    @Test
+    void file_withoutPath_shouldBeRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new DatabaseStorage(DatabaseStorage.Mode.FILE, " ", 0, false, Duration.ZERO));
+    }
+}
@@ -0,0 +1,71 @@
+package com.dam.accesodatos.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del ejecutor JDBC acotado
+ */
+class JdbcExecutorTest {
+
+    // 1 hilo y 1 hueco en la cola
+    private final JdbcExecutor executor = new JdbcExecutor(1, 1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void submit_whenQueueIsFull_shouldFailFastWithRejection() throws Exception {
+        // Arrange: una llamada ocupa el hilo y otra ocupa la cola
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<String> first = executor.submit(() -> {
+            running.countDown();
+            await(release);
+            return "primera";
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = executor.submit(() -> "en cola");
+
+        // Act: no cabe
+        CompletableFuture<String> rejected = executor.submit(() -> "rechazada");
+
+        // Assert: la tercera falla sin esperar; las otras terminan al liberar
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        release.countDown();
+        assertEquals("primera", first.get(5, TimeUnit.SECONDS));
+        assertEquals("en cola", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, executor.getStats().get("rejected"));
+    }
+
+    @Test
+    void submit_whenCallFails_shouldCompleteExceptionally() {
+        // Act
+        CompletableFuture<Object> future = executor.submit(() -> {
+            throw new IllegalStateException("fallo JDBC");
+        });
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals("fallo JDBC", e.getCause().getMessage());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
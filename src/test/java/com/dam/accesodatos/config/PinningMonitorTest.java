@@ -0,0 +1,50 @@
+package com.dam.accesodatos.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la agregación de eventos de hilos virtuales clavados
+ */
+class PinningMonitorTest {
+
+    private final PinningMonitor monitor = new PinningMonitor();
+
+    @Test
+    void record_shouldAggregateEventsBySite() {
+        // Act
+        monitor.record(Duration.ofMillis(30), "org.h2.Driver.connect:10");
+        monitor.record(Duration.ofMillis(50), "org.h2.Driver.connect:10");
+        monitor.record(Duration.ofMillis(25), "com.example.Other.run:5");
+
+        // Assert
+        Map<String, Object> pinning = pinning();
+        assertEquals(3L, pinning.get("events"));
+        assertEquals(105L, pinning.get("totalMs"));
+        assertEquals(50L, pinning.get("maxMs"));
+        @SuppressWarnings("unchecked")
+        Map<String, Long> sites = (Map<String, Long>) pinning.get("sites");
+        assertEquals("org.h2.Driver.connect:10", sites.keySet().iterator().next(), "Primero el lugar más frecuente");
+        assertEquals(2L, sites.get("org.h2.Driver.connect:10"));
+    }
+
+    @Test
+    void getStats_withoutVirtualThreads_shouldNotMonitor() {
+        // Act: start() sin spring.threads.virtual.enabled no abre el RecordingStream
+        monitor.start();
+
+        // Assert
+        assertFalse(monitor.isRunning());
+        assertEquals(false, monitor.getStats().get("enabled"));
+        assertEquals(0L, pinning().get("events"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> pinning() {
+        return (Map<String, Object>) monitor.getStats().get("pinning");
+    }
+}
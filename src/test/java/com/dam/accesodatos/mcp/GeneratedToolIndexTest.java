@@ -0,0 +1,71 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.ra2.DatabaseUserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.mcp.server.annotation.Tool;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del índice de herramientas generado al compilar (ToolIndexProcessor)
+ * frente a lo que se obtendría por reflexión (sin Spring ni base de datos)
+ */
+class GeneratedToolIndexTest {
+
+    @Test
+    void index_shouldResolveEveryToolToItsAnnotatedMethod() {
+        for (ToolDescriptor descriptor : GeneratedToolIndex.TOOLS) {
+            // Act
+            Method method = descriptor.resolve();
+
+            // Assert: mismo nombre y descripción que la anotación
+            Tool tool = method.getAnnotation(Tool.class);
+            assertNotNull(tool, descriptor.name());
+            assertEquals(tool.name(), descriptor.name());
+            assertEquals(tool.description(), descriptor.description());
+            assertEquals(method.getParameterCount(), descriptor.parameterNames().size(), descriptor.name());
+        }
+    }
+
+    @Test
+    void index_shouldContainEveryToolOfTheService() {
+        // Arrange: lo que encontraba antes el escaneo con getMethods()
+        Set<String> scanned = new HashSet<>();
+        for (Method method : DatabaseUserService.class.getMethods()) {
+            Tool tool = method.getAnnotation(Tool.class);
+            if (tool != null) {
+                scanned.add(tool.name());
+            }
+        }
+
+        // Act
+        Set<String> indexed = new HashSet<>();
+        for (ToolDescriptor descriptor : GeneratedToolIndex.TOOLS) {
+            if (descriptor.serviceType() == DatabaseUserService.class) {
+                indexed.add(descriptor.name());
+            }
+        }
+
+        // Assert
+        assertEquals(scanned, indexed);
+        assertTrue(GeneratedToolIndex.TOOLS.stream().anyMatch(d -> d.name().equals(McpPipelineService.TOOL_NAME)));
+    }
+
+    @Test
+    void index_shouldKeepSourceParameterNames() {
+        // Arrange
+        ToolDescriptor updateUser = GeneratedToolIndex.TOOLS.stream()
+                .filter(d -> d.name().equals("update_user"))
+                .findFirst()
+                .orElseThrow();
+
+        // Assert: nombres del código fuente aunque no se compile con -parameters
+        assertEquals(List.of("id", "dto"), updateUser.parameterNames());
+        assertEquals(Long.class, updateUser.parameterTypes().get(0));
+    }
+}
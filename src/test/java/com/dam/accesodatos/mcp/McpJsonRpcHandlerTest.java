@@ -0,0 +1,160 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del protocolo MCP nativo (JSON-RPC) sin transporte: se pasan los
+ * mensajes como texto, igual que los recibirían POST /mcp o stdin.
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class McpJsonRpcHandlerTest {
+
+    @Autowired
+    private McpJsonRpcHandler handler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void initialize_shouldNegotiateProtocolVersion() {
+        // Act
+        JsonNode response = handler.handlePayload(
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{\"protocolVersion\":\"2024-11-05\"}}");
+
+        // Assert
+        assertEquals(1, response.get("id").asInt());
+        assertEquals("2024-11-05", response.at("/result/protocolVersion").asText());
+        assertTrue(response.at("/result/capabilities/tools").isObject(), "Debe anunciar la capacidad tools");
+        assertEquals("mcp-server-ra2-jdbc", response.at("/result/serverInfo/name").asText());
+    }
+
+    @Test
+    void toolsList_shouldDescribeArguments() {
+        // Act
+        JsonNode response = handler.handlePayload("{\"jsonrpc\":\"2.0\",\"id\":\"a\",\"method\":\"tools/list\"}");
+
+        // Assert: find_user_by_id pide userId; create_user expone los campos del DTO
+        JsonNode findById = findTool(response, "find_user_by_id");
+        assertEquals("integer", findById.at("/inputSchema/properties/userId/type").asText());
+        assertEquals("userId", findById.at("/inputSchema/required/0").asText());
+
+        JsonNode create = findTool(response, "create_user");
+        assertTrue(create.at("/inputSchema/properties/email").isObject());
+        assertEquals(4, create.at("/inputSchema/required").size(), "name, email, department y role son @NotBlank");
+    }
+
+    @Test
+    void toolsCall_shouldInvokeToolAndReturnJsonText() throws Exception {
+        // Act
+        JsonNode response = handler.handlePayload(
+                "{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"tools/call\","
+                        + "\"params\":{\"name\":\"find_user_by_id\",\"arguments\":{\"userId\":1}}}");
+
+        // Assert
+        assertFalse(response.at("/result/isError").asBoolean(), "No debe ser un error");
+        JsonNode user = objectMapper.readTree(response.at("/result/content/0/text").asText());
+        assertEquals(1, user.get("id").asInt());
+        assertEquals("IT", user.get("department").asText());
+    }
+
+    @Test
+    void toolsCall_withDtoArguments_shouldBindWholeObject() throws Exception {
+        // Act: update_user recibe userId + campos del UserUpdateDto al mismo nivel
+        JsonNode response = handler.handlePayload(
+                "{\"jsonrpc\":\"2.0\",\"id\":8,\"method\":\"tools/call\","
+                        + "\"params\":{\"name\":\"update_user\",\"arguments\":{\"userId\":2,\"role\":\"Manager\"}}}");
+
+        // Assert
+        JsonNode user = objectMapper.readTree(response.at("/result/content/0/text").asText());
+        assertEquals(2, user.get("id").asInt());
+        assertEquals("Manager", user.get("role").asText());
+    }
+
+    @Test
+    void toolsCall_whenToolFails_shouldReturnToolError() {
+        // Act: el usuario no existe, el servicio lanza excepción
+        JsonNode response = handler.handlePayload(
+                "{\"jsonrpc\":\"2.0\",\"id\":9,\"method\":\"tools/call\","
+                        + "\"params\":{\"name\":\"update_user\",\"arguments\":{\"userId\":999,\"role\":\"X\"}}}");
+
+        // Assert: error de la herramienta, no del protocolo
+        assertNull(response.get("error"));
+        assertTrue(response.at("/result/isError").asBoolean());
+    }
+
+    @Test
+    void protocolErrors_shouldUseJsonRpcCodes() {
+        // Act + Assert
+        assertEquals(McpJsonRpcHandler.PARSE_ERROR,
+                handler.handlePayload("{no es json").at("/error/code").asInt());
+        assertEquals(McpJsonRpcHandler.METHOD_NOT_FOUND,
+                handler.handlePayload("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"resources/list\"}").at("/error/code").asInt());
+        assertEquals(McpJsonRpcHandler.INVALID_PARAMS,
+                handler.handlePayload("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":{\"name\":\"no_existe\"}}")
+                        .at("/error/code").asInt());
+        assertEquals(McpJsonRpcHandler.INVALID_PARAMS,
+                handler.handlePayload("{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\",\"params\":{\"name\":\"find_user_by_id\"}}")
+                        .at("/error/code").asInt());
+    }
+
+    @Test
+    void notification_shouldHaveNoResponse() {
+        // Act + Assert
+        assertNull(handler.handlePayload("{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}"));
+    }
+
+    @Test
+    void batch_shouldReturnResponsesInRequestOrder() {
+        // Arrange: tres llamadas independientes y una notificación
+        String batch = "["
+                + "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\",\"params\":{\"name\":\"find_user_by_id\",\"arguments\":{\"userId\":2}}},"
+                + "{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"},"
+                + "{\"jsonrpc\":\"2.0\",\"id\":\"b\",\"method\":\"tools/call\",\"params\":{\"name\":\"execute_count_by_department\",\"arguments\":{\"department\":\"IT\"}}},"
+                + "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"no/existe\"}"
+                + "]";
+
+        // Act
+        JsonNode responses = handler.handlePayload(batch);
+
+        // Assert: una respuesta por petición (la notificación no tiene), en orden
+        assertTrue(responses.isArray());
+        assertEquals(3, responses.size());
+        assertEquals(1, responses.get(0).get("id").asInt());
+        assertTrue(responses.get(0).at("/result/content/0/text").asText().contains("\"id\":2"));
+        assertEquals("b", responses.get(1).get("id").asText());
+        assertEquals("1", responses.get(1).at("/result/content/0/text").asText());
+        assertEquals(McpJsonRpcHandler.METHOD_NOT_FOUND, responses.get(2).at("/error/code").asInt());
+    }
+
+    @Test
+    void batch_withOnlyNotifications_orEmpty_shouldFollowJsonRpcRules() {
+        // Act + Assert
+        assertNull(handler.handlePayload("[{\"jsonrpc\":\"2.0\",\"method\":\"notifications/initialized\"}]"));
+        assertEquals(McpJsonRpcHandler.INVALID_REQUEST, handler.handlePayload("[]").at("/error/code").asInt());
+    }
+
+    private JsonNode findTool(JsonNode toolsListResponse, String name) {
+        for (JsonNode tool : toolsListResponse.at("/result/tools")) {
+            if (name.equals(tool.get("name").asText())) {
+                return tool;
+            }
+        }
+        fail("No se encontró la herramienta " + name);
+        return null;
+    }
+}
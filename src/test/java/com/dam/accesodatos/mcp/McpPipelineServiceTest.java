@@ -0,0 +1,121 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.PipelineRequest;
+import com.dam.accesodatos.ra2.DatabaseUserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de run_pipeline: referencias entre pasos, forEach y transacción única
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class McpPipelineServiceTest {
+
+    @Autowired
+    private McpPipelineService pipelineService;
+
+    @Autowired
+    private DatabaseUserService databaseUserService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void runPipeline_shouldResolveReferencesAndForEach() throws Exception {
+        // Arrange: los pasos se declaran desordenados; el orden sale de las referencias
+        PipelineRequest request = request("{\"steps\": ["
+                + "{\"id\": \"upd\", \"tool\": \"update_user\", \"forEach\": \"$.it[*].id\","
+                + " \"arguments\": {\"userId\": \"$item\", \"role\": \"Dev\"}},"
+                + "{\"id\": \"it\", \"tool\": \"find_users_by_department\", \"arguments\": {\"department\": \"IT\"}},"
+                + "{\"id\": \"first\", \"tool\": \"find_user_by_id\", \"arguments\": {\"userId\": \"$.it[0].id\"},"
+                + " \"dependsOn\": [\"upd\"]}"
+                + "]}");
+
+        // Act
+        Map<String, Object> result = pipelineService.runPipeline(request);
+
+        // Assert
+        assertEquals("completed", result.get("status"));
+        JsonNode steps = (JsonNode) result.get("steps");
+        assertEquals(steps.get("it").size(), steps.get("upd").size(), "Un update_user por usuario de IT");
+        assertEquals("Dev", steps.at("/first/role").asText(), "first se ejecuta después de upd");
+        assertEquals("Dev", databaseUserService.findUserById(1L).getRole());
+    }
+
+    @Test
+    void runPipeline_transactional_whenStepFails_shouldRollBackPreviousSteps() throws Exception {
+        // Arrange: create_user va bien, update_user del 999 falla
+        int before = databaseUserService.findAll().size();
+        PipelineRequest request = request("{\"transactional\": true, \"steps\": ["
+                + "{\"id\": \"new\", \"tool\": \"create_user\","
+                + " \"arguments\": {\"name\": \"Pipeline\", \"email\": \"pipeline@example.com\", \"department\": \"IT\", \"role\": \"Dev\"}},"
+                + "{\"id\": \"bad\", \"tool\": \"update_user\", \"arguments\": {\"userId\": 999, \"role\": \"X\"}, \"dependsOn\": [\"new\"]}"
+                + "]}");
+
+        // Act
+        Map<String, Object> result = pipelineService.runPipeline(request);
+
+        // Assert: el usuario creado en el primer paso no se confirma
+        assertEquals("rolled_back", result.get("status"));
+        assertEquals("bad", result.get("failedStep"));
+        assertEquals(false, result.get("committed"));
+        assertEquals(before, databaseUserService.findAll().size());
+        assertNull(DatabaseConfig.getBoundConnection(), "La conexión se desliga al terminar");
+    }
+
+    @Test
+    void runPipeline_notTransactional_whenStepFails_shouldKeepPreviousSteps() throws Exception {
+        // Arrange
+        int before = databaseUserService.findAll().size();
+        PipelineRequest request = request("{\"steps\": ["
+                + "{\"id\": \"new\", \"tool\": \"create_user\","
+                + " \"arguments\": {\"name\": \"Pipeline\", \"email\": \"pipeline@example.com\", \"department\": \"IT\", \"role\": \"Dev\"}},"
+                + "{\"id\": \"bad\", \"tool\": \"update_user\", \"arguments\": {\"userId\": 999, \"role\": \"X\"}, \"dependsOn\": [\"new\"]}"
+                + "]}");
+
+        // Act
+        Map<String, Object> result = pipelineService.runPipeline(request);
+
+        // Assert
+        assertEquals("failed", result.get("status"));
+        assertEquals(before + 1, databaseUserService.findAll().size());
+    }
+
+    @Test
+    void runPipeline_withInvalidGraph_shouldNotRunAnyStep() throws Exception {
+        // Arrange: ciclo a -> b -> a, referencia a un paso inexistente y pipeline anidado
+        PipelineRequest cycle = request("{\"steps\": ["
+                + "{\"id\": \"a\", \"tool\": \"find_user_by_id\", \"arguments\": {\"userId\": \"$.b.id\"}},"
+                + "{\"id\": \"b\", \"tool\": \"find_user_by_id\", \"arguments\": {\"userId\": \"$.a.id\"}}"
+                + "]}");
+        PipelineRequest unknown = request("{\"steps\": ["
+                + "{\"id\": \"a\", \"tool\": \"find_user_by_id\", \"arguments\": {\"userId\": \"$.zz.id\"}}]}");
+        PipelineRequest nested = request("{\"steps\": [{\"id\": \"a\", \"tool\": \"run_pipeline\"}]}");
+
+        // Act + Assert
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class, () -> pipelineService.runPipeline(cycle));
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class, () -> pipelineService.runPipeline(unknown));
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class, () -> pipelineService.runPipeline(nested));
+    }
+
+    private PipelineRequest request(String json) throws Exception {
+        return objectMapper.readValue(json, PipelineRequest.class);
+    }
+}
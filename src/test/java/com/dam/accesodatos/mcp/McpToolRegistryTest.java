@@ -0,0 +1,79 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la ejecución genérica de herramientas (McpToolInfo.invoke)
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class McpToolRegistryTest {
+
+    @Autowired
+    private McpToolRegistry registry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void registerTools_shouldPrepareOneDecoderPerParameter() {
+        // Assert: todas las herramientas tienen invocador y decodificadores
+        for (McpToolRegistry.McpToolInfo tool : registry.getRegisteredTools()) {
+            assertEquals(tool.getMethod().getParameterCount(), tool.getArguments().size(), tool.getName());
+        }
+        assertEquals("userIds", registry.getTool("find_users_by_ids").getArguments().get(0).getName());
+    }
+
+    @Test
+    void invoke_shouldDecodeGenericArguments() throws Exception {
+        // Arrange
+        McpToolRegistry.McpToolInfo tool = registry.getTool("find_users_by_ids");
+
+        // Act: List<Long> desde un array JSON
+        @SuppressWarnings("unchecked")
+        List<User> users = (List<User>) tool.invoke(objectMapper.readTree("{\"userIds\": [2, 999, 1]}"));
+
+        // Assert: orden de la petición, null para el que no existe
+        assertEquals(3, users.size());
+        assertEquals(2L, users.get(0).getId());
+        assertNull(users.get(1));
+        assertEquals(1L, users.get(2).getId());
+    }
+
+    @Test
+    void invoke_withoutArguments_shouldCallNoArgTool() {
+        // Act
+        Object result = registry.getTool("test_connection").invoke(null);
+
+        // Assert
+        assertTrue(result instanceof String);
+    }
+
+    @Test
+    void invoke_withWrongArgumentType_shouldThrowInvalidArguments() throws Exception {
+        // Arrange
+        McpToolRegistry.McpToolInfo tool = registry.getTool("find_user_by_id");
+
+        // Act + Assert
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class,
+                () -> tool.invoke(objectMapper.readTree("{\"userId\": \"uno\"}")));
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class,
+                () -> tool.invoke(objectMapper.readTree("{}")));
+    }
+}
@@ -0,0 +1,81 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.jdbc.Sql;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del catálogo de herramientas pre-serializado (GET /mcp/tools)
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ToolCatalogTest {
+
+    @Autowired
+    private ToolCatalog toolCatalog;
+
+    @Autowired
+    private McpToolRegistry toolRegistry;
+
+    @Autowired
+    private McpServerController controller;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void current_shouldReuseSameBytesAndEtag() {
+        // Act
+        ToolCatalog.Snapshot first = toolCatalog.current();
+        ToolCatalog.Snapshot second = toolCatalog.current();
+
+        // Assert: no se vuelve a serializar mientras el registro no cambie
+        assertSame(first, second);
+        assertSame(first.json(), second.json());
+        assertEquals(toolRegistry.getVersion(), first.version());
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""), "ETag fuerte (entre comillas, sin W/)");
+    }
+
+    @Test
+    void json_shouldIncludeInputSchemas() throws Exception {
+        // Act
+        JsonNode json = objectMapper.readTree(toolCatalog.current().json());
+
+        // Assert
+        assertEquals(toolRegistry.getRegisteredTools().size(), json.get("count").asInt());
+        assertEquals(json.get("count").asInt(), json.get("tools").size());
+        assertEquals("MCP Server - RA2 JDBC DAM", json.get("server").asText());
+
+        JsonNode findById = null;
+        for (JsonNode tool : json.get("tools")) {
+            if ("find_user_by_id".equals(tool.get("name").asText())) {
+                findById = tool;
+            }
+        }
+        assertNotNull(findById);
+        assertEquals("integer", findById.at("/inputSchema/properties/userId/type").asText());
+    }
+
+    @Test
+    void getTools_shouldSendCatalogBytesWithEtag() {
+        // Act
+        ResponseEntity<byte[]> response = controller.getTools();
+
+        // Assert
+        assertSame(toolCatalog.current().json(), response.getBody());
+        assertEquals(toolCatalog.current().etag(), response.getHeaders().getETag());
+    }
+}
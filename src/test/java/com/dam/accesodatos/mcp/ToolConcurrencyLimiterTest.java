@@ -0,0 +1,118 @@
+package com.dam.accesodatos.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del límite adaptativo (AIMD) de llamadas simultáneas por herramienta
+ */
+class ToolConcurrencyLimiterTest {
+
+    @Test
+    void acquire_whenLimitReached_shouldRejectOnlyThatTool() {
+        // Arrange: límite 2 (máximo 2 para que no crezca)
+        ToolConcurrencyLimiter limiter = new ToolConcurrencyLimiter(2, 1, 2, 2.0, 0.9, Duration.ofSeconds(5));
+        ToolConcurrencyLimiter.Permit first = limiter.acquire("batch_insert_users");
+        ToolConcurrencyLimiter.Permit second = limiter.acquire("batch_insert_users");
+
+        // Act & Assert: la tercera se rechaza en el acto; otra herramienta no se ve afectada
+        assertThrows(ToolConcurrencyLimiter.ToolOverloadedException.class,
+                () -> limiter.acquire("batch_insert_users"));
+        limiter.acquire("find_user_by_id").close();
+
+        first.close();
+        second.close();
+        limiter.acquire("batch_insert_users").close();
+
+        Map<String, Object> stats = stats(limiter, "batch_insert_users");
+        assertEquals(1L, stats.get("rejected"));
+        assertEquals(3L, stats.get("accepted"));
+        assertEquals(0, stats.get("inFlight"));
+    }
+
+    @Test
+    void close_whenLimitIsUsed_shouldIncreaseByOne() {
+        // Arrange
+        ToolConcurrencyLimiter limiter = new ToolConcurrencyLimiter(2, 1, 10, 2.0, 0.9, Duration.ofSeconds(5));
+        ToolConcurrencyLimiter.Permit first = limiter.acquire("find_all_users");
+        ToolConcurrencyLimiter.Permit second = limiter.acquire("find_all_users");
+
+        // Act & Assert: termina una con el límite lleno (2 en curso) -> +1
+        second.close();
+        assertEquals(3, stats(limiter, "find_all_users").get("limit"));
+
+        // Act & Assert: 1 en curso de 3, el límite no se está usando -> igual
+        first.close();
+        assertEquals(3, stats(limiter, "find_all_users").get("limit"));
+    }
+
+    @Test
+    void close_whenSlowerThanMaxLatency_shouldDecreaseMultiplicatively() {
+        // Arrange: cualquier llamada es "lenta"
+        ToolConcurrencyLimiter limiter = new ToolConcurrencyLimiter(10, 1, 100, 2.0, 0.5, Duration.ZERO);
+
+        // Act
+        limiter.acquire("batch_insert_users").close();
+        limiter.acquire("batch_insert_users").close();
+
+        // Assert: 10 -> 5 -> 2
+        assertEquals(2, stats(limiter, "batch_insert_users").get("limit"));
+
+        // Act: nunca baja del mínimo
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("batch_insert_users").close();
+        }
+        assertEquals(1, stats(limiter, "batch_insert_users").get("limit"));
+    }
+
+    @Test
+    void submit_whenCallIsRejectedDownstream_shouldReleaseAndDecrease() {
+        // Arrange
+        ToolConcurrencyLimiter limiter = new ToolConcurrencyLimiter(10, 1, 100, 2.0, 0.5, Duration.ofSeconds(5));
+
+        // Act: la cola JDBC rechaza la llamada
+        CompletableFuture<Object> future = limiter.submit("search_users",
+                () -> CompletableFuture.failedFuture(new RejectedExecutionException("Cola JDBC llena")));
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        Map<String, Object> stats = stats(limiter, "search_users");
+        assertEquals(5, stats.get("limit"));
+        assertEquals(0, stats.get("inFlight"));
+    }
+
+    @Test
+    void submit_whenLimitReached_shouldFailWithoutCalling() throws Exception {
+        // Arrange
+        ToolConcurrencyLimiter limiter = new ToolConcurrencyLimiter(1, 1, 1, 2.0, 0.9, Duration.ofSeconds(5));
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> first = limiter.submit("find_all_users", () -> running);
+
+        // Act
+        CompletableFuture<String> second = limiter.submit("find_all_users", () -> {
+            fail("No debe ejecutarse");
+            return null;
+        });
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(ToolConcurrencyLimiter.ToolOverloadedException.class, e.getCause());
+        running.complete("ok");
+        assertEquals("ok", first.get());
+        assertEquals(0, stats(limiter, "find_all_users").get("inFlight"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(ToolConcurrencyLimiter limiter, String toolName) {
+        Map<String, Object> tools = (Map<String, Object>) limiter.getStats().get("tools");
+        return (Map<String, Object>) tools.get(toolName);
+    }
+}
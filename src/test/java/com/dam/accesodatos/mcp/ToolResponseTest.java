@@ -0,0 +1,246 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserQueryDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de los cuerpos tipados (McpRequests) y de las respuestas
+ * ToolResponse / UserSerializer (sin Spring ni base de datos)
+ */
+class ToolResponseTest {
+
+    private static final byte[] SEARCH_BODY =
+            "{\"department\":\"IT\",\"active\":true,\"limit\":100,\"offset\":0}".getBytes(StandardCharsets.UTF_8);
+
+    // Como el ObjectMapper de Spring Boot (application.yml)
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    // Serializadores por defecto de Jackson: sin @JsonSerialize
+    private final ObjectMapper reflectionMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(MapperFeature.USE_ANNOTATIONS)
+            .build();
+
+    private final List<User> users = users(100);
+
+    private static List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            User user = new User((long) i, "User " + i, "user" + i + "@example.com", "IT", "Developer");
+            user.setCreatedAt(LocalDateTime.of(2024, 1, 1, 10, 0).plusNanos(i * 1_000_000L));
+            user.setUpdatedAt(i % 2 == 0 ? null : LocalDateTime.of(2024, 2, 1, 10, 0, 30));
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Test
+    void userSerializer_shouldMatchJacksonDefault() throws Exception {
+        // Arrange: fechas con y sin fracción, nulls
+        User partial = new User();
+        partial.setActive(null);
+        partial.setCreatedAt(LocalDateTime.of(2024, 3, 5, 7, 8, 9, 120_000_000));
+        partial.setUpdatedAt(null);
+
+        for (User user : List.of(users.get(0), users.get(1), partial)) {
+            // Act
+            String handWritten = mapper.writeValueAsString(user);
+            String reflection = reflectionMapper.writeValueAsString(user);
+
+            // Assert: mismo texto (mismo orden de campos y mismo formato de fecha)
+            assertEquals(reflection, handWritten);
+        }
+    }
+
+    @Test
+    void toolResponse_shouldMatchPreviousMapResponse() throws Exception {
+        // Arrange
+        Map<String, Object> previous = new HashMap<>();
+        previous.put("tool", "search_users");
+        previous.put("status", "success");
+        previous.put("result", users);
+        previous.put("count", users.size());
+        previous.put("nextCursor", null);
+
+        // Act
+        ToolResponse response = ToolResponse.success("search_users", users)
+                .with("count", users.size())
+                .with("nextCursor", null);
+
+        // Assert: mismo JSON (el orden de claves de un HashMap no estaba definido)
+        assertEquals(reflectionMapper.readTree(reflectionMapper.writeValueAsString(previous)),
+                mapper.readTree(mapper.writeValueAsString(response)));
+    }
+
+    @Test
+    void toolResponse_error_shouldHaveToolStatusAndError() throws Exception {
+        // Act
+        JsonNode json = mapper.valueToTree(ToolResponse.error("find_user_by_id", "Error buscando usuario: x"));
+
+        // Assert
+        assertEquals("find_user_by_id", json.get("tool").asText());
+        assertEquals("error", json.get("status").asText());
+        assertEquals("Error buscando usuario: x", json.get("error").asText());
+        assertFalse(json.has("result"));
+    }
+
+    @Test
+    void searchUsersRequest_shouldDistinguishMissingAndNullCursor() throws Exception {
+        // Act
+        UserQueryDto offset = mapper.readValue("{\"limit\":5,\"offset\":10}",
+                McpRequests.SearchUsersRequest.class).toQuery();
+        UserQueryDto firstPage = mapper.readValue("{\"cursor\":null}",
+                McpRequests.SearchUsersRequest.class).toQuery();
+        UserQueryDto nextPage = mapper.readValue("{\"cursor\":\"abc\",\"active\":false}",
+                McpRequests.SearchUsersRequest.class).toQuery();
+
+        // Assert
+        assertNull(offset.getCursor());
+        assertEquals(5, offset.getLimit());
+        assertEquals(10, offset.getOffset());
+        assertEquals("", firstPage.getCursor());
+        assertEquals("abc", nextPage.getCursor());
+        assertFalse(nextPage.getActive());
+    }
+
+    @Test
+    void userIdRequest_withoutUserId_shouldBeInvalidArguments() throws Exception {
+        // Arrange
+        McpRequests.UserIdRequest request = mapper.readValue("{}", McpRequests.UserIdRequest.class);
+
+        // Act & Assert
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class,
+                () -> request.requireUserId("find_user_by_id"));
+    }
+
+    @Test
+    void userIdsRequest_withoutUserIds_shouldBeInvalidArguments() throws Exception {
+        // Arrange
+        McpRequests.UserIdsRequest request = mapper.readValue("{}", McpRequests.UserIdsRequest.class);
+
+        // Act & Assert
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class,
+                () -> request.requireUserIds("find_users_by_ids"));
+    }
+
+    @Test
+    void updateUserRequest_shouldPassActiveThrough() throws Exception {
+        // Act
+        UserUpdateDto unchanged = mapper.readValue("{\"userId\":1,\"name\":\"A\"}",
+                McpRequests.UpdateUserRequest.class).toDto();
+        UserUpdateDto deactivate = mapper.readValue("{\"userId\":1,\"active\":false}",
+                McpRequests.UpdateUserRequest.class).toDto();
+
+        // Assert: sin active no se modifica (null); false desactiva
+        assertNull(unchanged.getActive());
+        assertEquals("A", unchanged.getName());
+        assertFalse(deactivate.getActive());
+        assertNull(deactivate.getName());
+    }
+
+    @Test
+    void usersRequest_withUnknownMode_shouldBeInvalidArguments() throws Exception {
+        // Arrange
+        McpRequests.UsersRequest badCommitMode = mapper.readValue("{\"users\":[],\"commitMode\":\"sometimes\"}",
+                McpRequests.UsersRequest.class);
+        McpRequests.UsersRequest badMode = mapper.readValue("{\"users\":[],\"mode\":\"fast\"}",
+                McpRequests.UsersRequest.class);
+        McpRequests.UsersRequest valid = mapper.readValue("{\"users\":[],\"commitMode\":\"per_chunk\"}",
+                McpRequests.UsersRequest.class);
+
+        // Act & Assert
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class, () -> badCommitMode.options("batch_insert_users"));
+        assertThrows(McpToolRegistry.InvalidArgumentsException.class, () -> badMode.options("batch_insert_users"));
+        assertEquals(BatchInsertOptions.CommitMode.PER_CHUNK, valid.options("batch_insert_users").getCommitMode());
+    }
+
+    /**
+     * Bytes reservados por petición de search_users con 100 usuarios:
+     * leer el cuerpo, construir la respuesta y serializarla.
+     *
+     * - antes: Map + casts, HashMap de respuesta, serializadores por reflexión
+     * - ahora: record, ToolResponse, serializadores escritos a mano
+     */
+    @Test
+    void typedRequestAndResponse_shouldAllocateLessPerRequest() throws Exception {
+        // Arrange
+        ThrowingRunnable before = () -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> request = reflectionMapper.readValue(SEARCH_BODY, Map.class);
+            UserQueryDto query = new UserQueryDto();
+            query.setDepartment((String) request.get("department"));
+            query.setActive((Boolean) request.get("active"));
+            query.setLimit(((Number) request.get("limit")).intValue());
+            query.setOffset(((Number) request.get("offset")).intValue());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("result", users);
+            response.put("count", users.size());
+            response.put("nextCursor", null);
+            response.put("tool", "search_users");
+            response.put("status", "success");
+            reflectionMapper.writeValue(OutputStream.nullOutputStream(), response);
+        };
+        ThrowingRunnable after = () -> {
+            UserQueryDto query = mapper.readValue(SEARCH_BODY, McpRequests.SearchUsersRequest.class).toQuery();
+            ToolResponse response = ToolResponse.success("search_users", users)
+                    .with("count", users.size())
+                    .with("nextCursor", null);
+            mapper.writeValue(OutputStream.nullOutputStream(), response);
+        };
+
+        // Act
+        long beforeBytes = allocatedBytesPerCall(before);
+        long afterBytes = allocatedBytesPerCall(after);
+
+        // Assert
+        assertTrue(afterBytes < beforeBytes,
+                "Debe reservar menos memoria por petición: " + afterBytes + " >= " + beforeBytes);
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private static long allocatedBytesPerCall(ThrowingRunnable call) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // Calentamiento: serializadores de Jackson en caché. Basta para comparar
+        // las dos versiones; no se espera al JIT para no alargar la suite
+        for (int i = 0; i < 500; i++) {
+            call.run();
+        }
+
+        int iterations = 500;
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            call.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - start) / iterations;
+    }
+}
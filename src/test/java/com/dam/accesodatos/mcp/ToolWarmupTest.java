@@ -0,0 +1,98 @@
+package com.dam.accesodatos.mcp;
+
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.ra2.DatabaseUserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del calentamiento: llama a las herramientas sin cambiar los datos
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false",
+    "ra2.mcp.warmup.iterations=3"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ToolWarmupTest {
+
+    @Autowired
+    private ToolWarmup warmup;
+
+    @Autowired
+    private DatabaseUserService databaseUserService;
+
+    @Test
+    void run_shouldCallToolsAndRollBackEveryWrite() {
+        // Arrange
+        int before = databaseUserService.findAll().size();
+        User first = databaseUserService.findUserById(1L);
+
+        // Act
+        warmup.run();
+
+        // Assert: create/update/delete/batch deshechos
+        assertEquals(before, databaseUserService.findAll().size());
+        assertEquals(first.getName(), databaseUserService.findUserById(1L).getName());
+        assertNotNull(databaseUserService.findUserById(2L), "delete_user se deshace");
+        assertNull(DatabaseConfig.getBoundConnection(), "La conexión se desliga al terminar");
+        assertFalse(warmup.isWarming());
+        assertEquals(ToolWarmup.State.DONE, warmup.getState());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldSkipToolsThatFail() {
+        // Act
+        warmup.run();
+
+        // Assert: las herramientas que funcionan se llaman iterations x concurrency
+        // veces; las TODO fallan una vez y se dejan de llamar
+        Map<String, Object> tools = (Map<String, Object>) warmup.getStats().get("tools");
+        Map<String, Object> findById = (Map<String, Object>) tools.get("find_user_by_id");
+        assertEquals(6L, findById.get("calls"));
+        assertFalse(findById.containsKey("failure"));
+        Map<String, Object> databaseInfo = (Map<String, Object>) tools.get("get_database_info");
+        assertEquals(0L, databaseInfo.get("calls"));
+        assertTrue(databaseInfo.containsKey("failure"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldWarmUpdateAndDeleteOnRowCreatedInSameTransaction() {
+        // Arrange
+        User second = databaseUserService.findUserById(2L);
+
+        // Act
+        warmup.run();
+
+        // Assert: update_user y delete_user trabajan sobre la fila de su setup
+        Map<String, Object> tools = (Map<String, Object>) warmup.getStats().get("tools");
+        for (String tool : new String[]{"update_user", "delete_user"}) {
+            Map<String, Object> stats = (Map<String, Object>) tools.get(tool);
+            assertFalse(stats.containsKey("failure"), tool + " no debe fallar: " + stats.get("failure"));
+            assertEquals(6L, stats.get("calls"));
+        }
+        User after = databaseUserService.findUserById(2L);
+        assertEquals(second.getDepartment(), after.getDepartment());
+        assertEquals(second.getUpdatedAt(), after.getUpdatedAt(), "Las filas reales no se tocan");
+    }
+
+    @Test
+    void health_whenWarmupDisabled_shouldNotReportWarming() {
+        // Assert: sin ra2.mcp.warmup.enabled no se espera a nada
+        assertNotEquals(ToolWarmup.State.PENDING, warmup.getState());
+        assertFalse(warmup.isWarming());
+    }
+}
@@ -0,0 +1,75 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserUpdateDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la versión asíncrona del servicio
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class AsyncDatabaseUserServiceTest {
+
+    @Autowired
+    private AsyncDatabaseUserService asyncUserService;
+
+    @Test
+    void findUserById_shouldRunOnJdbcExecutor() throws Exception {
+        // Arrange
+        String caller = Thread.currentThread().getName();
+
+        // Act
+        CompletableFuture<String> thread = asyncUserService.findUserById(1L)
+                .thenApply(user -> Thread.currentThread().getName());
+        User user = asyncUserService.findUserById(1L).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(1L, user.getId());
+        String executorThread = thread.get(5, TimeUnit.SECONDS);
+        assertNotEquals(caller, executorThread);
+    }
+
+    @Test
+    void concurrentCalls_shouldAllComplete() throws Exception {
+        // Act: más llamadas que hilos del ejecutor (= conexiones del pool)
+        List<CompletableFuture<List<User>>> calls = new java.util.ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            calls.add(asyncUserService.findUsersByDepartment(i % 2 == 0 ? "IT" : "HR"));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertFalse(calls.get(0).get().isEmpty());
+        assertFalse(calls.get(1).get().isEmpty());
+    }
+
+    @Test
+    void updateUser_whenUserDoesNotExist_shouldFailTheFuture() {
+        // Arrange
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setRole("X");
+
+        // Act + Assert: la excepción del servicio llega como causa del futuro
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncUserService.updateUser(999L, dto).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RuntimeException.class, e.getCause());
+    }
+}
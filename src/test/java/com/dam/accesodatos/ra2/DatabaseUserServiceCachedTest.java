@@ -0,0 +1,166 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserUpdateDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DatabaseUserService con la caché de usuarios y los contadores por
+ * departamento activos (la configuración por defecto de la aplicación).
+ *
+ * DatabaseUserServiceTest los desactiva; aquí se comprueba que, tras cada
+ * escritura hecha por el servicio, las lecturas no devuelven datos viejos:
+ * - findUserById: leer → escribir → volver a leer
+ * - executeCountByDepartment: contar → escribir → volver a contar
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=true",
+    "ra2.counters.departments.enabled=true"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class DatabaseUserServiceCachedTest {
+
+    @Autowired
+    private DatabaseUserService service;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private DepartmentCounters departmentCounters;
+
+    @BeforeEach
+    void resyncWithScripts() {
+        // @Sql recrea los datos por debajo del servicio: se parte de una caché
+        // vacía y de unos contadores recontados
+        userCache.clear();
+        assertTrue(departmentCounters.reconcile(), "Los contadores deben sincronizarse con la BD");
+        assertTrue(departmentCounters.isReady());
+    }
+
+    @Test
+    void updateUser_shouldNotServeStaleCachedUser() {
+        // Arrange: la primera lectura deja al usuario en la caché
+        assertEquals("Test User 1", service.findUserById(1L).getName());
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setName("Nombre Nuevo");
+
+        // Act
+        service.updateUser(1L, dto);
+
+        // Assert
+        assertEquals("Nombre Nuevo", service.findUserById(1L).getName());
+    }
+
+    @Test
+    void deleteUser_shouldNotServeStaleCachedUser() {
+        // Arrange
+        assertNotNull(service.findUserById(2L));
+
+        // Act
+        assertTrue(service.deleteUser(2L));
+
+        // Assert
+        assertNull(service.findUserById(2L), "El usuario borrado no debe salir de la caché");
+    }
+
+    @Test
+    void transferData_shouldBeVisibleOnReRead() {
+        // Arrange: los ids 4 y 5 aún no existen (y se cachea la ausencia si la hubiera)
+        assertNull(service.findUserById(4L));
+        User first = new User(null, "Transfer 1", "transfer1@example.com", "Sales", "Rep");
+        User second = new User(null, "Transfer 2", "transfer2@example.com", "Sales", "Rep");
+
+        // Act
+        assertTrue(service.transferData(List.of(first, second)));
+
+        // Assert
+        User read = service.findUserById(4L);
+        assertNotNull(read, "El usuario transferido debe leerse tras el commit");
+        assertEquals("transfer1@example.com", read.getEmail());
+        assertEquals(2, service.findUsersByIds(List.of(4L, 5L)).size());
+    }
+
+    @Test
+    void updateUser_shouldMoveDepartmentCounters() {
+        // Arrange
+        int itBefore = service.executeCountByDepartment("IT");
+        int hrBefore = service.executeCountByDepartment("HR");
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setDepartment("HR");
+
+        // Act: el usuario 1 (IT, activo) pasa a HR
+        service.updateUser(1L, dto);
+
+        // Assert
+        assertEquals(itBefore - 1, service.executeCountByDepartment("IT"));
+        assertEquals(hrBefore + 1, service.executeCountByDepartment("HR"));
+    }
+
+    @Test
+    void updateUser_reactivation_shouldIncrementCounter() {
+        // Arrange: el usuario 3 es de IT pero está inactivo
+        int itBefore = service.executeCountByDepartment("IT");
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setActive(true);
+
+        // Act
+        service.updateUser(3L, dto);
+
+        // Assert
+        assertEquals(itBefore + 1, service.executeCountByDepartment("IT"));
+    }
+
+    @Test
+    void deleteUser_shouldDecrementCounter() {
+        // Arrange
+        int hrBefore = service.executeCountByDepartment("HR");
+
+        // Act
+        service.deleteUser(2L);
+
+        // Assert
+        assertEquals(hrBefore - 1, service.executeCountByDepartment("HR"));
+    }
+
+    @Test
+    void transferData_shouldIncrementCounters() {
+        // Arrange
+        int salesBefore = service.executeCountByDepartment("Sales");
+        User user = new User(null, "Transfer 3", "transfer3@example.com", "Sales", "Rep");
+
+        // Act
+        service.transferData(List.of(user));
+
+        // Assert
+        assertEquals(salesBefore + 1, service.executeCountByDepartment("Sales"));
+    }
+
+    @Test
+    void transferData_rolledBack_shouldLeaveCountersUntouched() {
+        // Arrange: el segundo usuario repite un email existente (UNIQUE)
+        int salesBefore = service.executeCountByDepartment("Sales");
+        User ok = new User(null, "Transfer 4", "transfer4@example.com", "Sales", "Rep");
+        User duplicated = new User(null, "Duplicado", "test1@example.com", "Sales", "Rep");
+
+        // Act
+        assertThrows(RuntimeException.class, () -> service.transferData(List.of(ok, duplicated)));
+
+        // Assert: el rollback no suma nada y la BD coincide con el contador
+        assertEquals(salesBefore, service.executeCountByDepartment("Sales"));
+        assertTrue(departmentCounters.reconcile());
+        assertEquals(salesBefore, service.executeCountByDepartment("Sales"));
+    }
+}
@@ -1,22 +1,32 @@
 package com.dam.accesodatos.ra2;
 
+import com.dam.accesodatos.config.DatabaseConfig;
 import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.BatchInsertOptions;
+import com.dam.accesodatos.model.BatchInsertResult;
 import com.dam.accesodatos.model.User;
 import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserPage;
 import com.dam.accesodatos.model.UserQueryDto;
 import com.dam.accesodatos.model.UserUpdateDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.io.StringWriter;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Suite de tests para DatabaseUserService
@@ -31,7 +41,12 @@ import static org.junit.jupiter.api.Assertions.*;
  * - Act: Ejecutar el método bajo prueba
  * - Assert: Verificar el resultado esperado
  */
-@SpringBootTest
+@SpringBootTest(properties = {
+    // @Sql recrea los datos por debajo del servicio: sin caché ni contadores
+    // en memoria para no leer el estado de otro test
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false"
+})
 @Import(TestDataSourceConfig.class)
 @Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -122,6 +137,22 @@ class DatabaseUserServiceTest {
         assertNull(user, "Debe retornar null para ID inexistente");
     }
 
+    @Test
+    void testFindUsersByIds_shouldReturnUsersInRequestOrderWithMisses() {
+        // Arrange: ids desordenados, uno inexistente y uno repetido
+        List<Long> ids = List.of(3L, 9999L, 1L, 3L);
+
+        // Act: Buscar todos en una llamada
+        List<User> users = service.findUsersByIds(ids);
+
+        // Assert: misma longitud y orden que la petición, null para el inexistente
+        assertEquals(4, users.size(), "Debe haber una posición por id pedido");
+        assertEquals("Test User 3", users.get(0).getName());
+        assertNull(users.get(1), "El id inexistente debe devolver null");
+        assertEquals("Test User 1", users.get(2).getName());
+        assertEquals(3L, users.get(3).getId(), "Los ids repetidos también se devuelven");
+    }
+
     @Test
     void testUpdateUser_shouldModifyExistingUser() {
         // Arrange: Preparar datos de actualización
@@ -152,6 +183,57 @@ class DatabaseUserServiceTest {
             "Debe lanzar RuntimeException al actualizar usuario inexistente");
     }
 
+    @Test
+    void testUpdateUser_withNullFields_shouldLeaveColumnsUntouched() {
+        // Arrange: solo cambia el rol
+        User before = service.findUserById(3L);
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setRole("Lead");
+
+        // Act
+        service.updateUser(3L, dto);
+
+        // Assert: el resto de columnas sigue igual en la BD (active incluido)
+        User after = service.findUserById(3L);
+        assertEquals("Lead", after.getRole());
+        assertEquals(before.getName(), after.getName());
+        assertEquals(before.getEmail(), after.getEmail());
+        assertEquals(before.getDepartment(), after.getDepartment());
+        assertEquals(before.getActive(), after.getActive(), "active no debe forzarse a true");
+        assertEquals(before.getCreatedAt(), after.getCreatedAt());
+    }
+
+    @Test
+    void testUpdateUser_shouldReturnRowWithNewUpdatedAt() {
+        // Arrange
+        LocalDateTime start = LocalDateTime.now().minusSeconds(1);
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setName("Renombrado");
+
+        // Act
+        User updated = service.updateUser(1L, dto);
+
+        // Assert: FINAL TABLE devuelve la fila tal como queda en la BD
+        assertTrue(updated.getUpdatedAt().isAfter(start), "updated_at debe ser el del UPDATE");
+        assertEquals(service.findUserById(1L).getUpdatedAt(), updated.getUpdatedAt());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0), updated.getCreatedAt());
+    }
+
+    @Test
+    void testUpdateUser_withNonExistentId_shouldUseSingleStatement() {
+        // Arrange: cada prepareStatement cuenta como acierto o fallo de la caché del pool
+        assumeTrue(DatabaseConfig.getConnectionMode() == DatabaseConfig.ConnectionMode.POOLED);
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setName("Nobody");
+        long before = preparedStatements();
+
+        // Act
+        assertThrows(RuntimeException.class, () -> service.updateUser(9999L, dto));
+
+        // Assert: ni SELECT previo de existencia ni relectura posterior
+        assertEquals(before + 1, preparedStatements(), "updateUser debe preparar una única sentencia");
+    }
+
     @Test
     void testTransferData_shouldInsertMultipleUsersInTransaction() {
         // Arrange: Preparar lista de usuarios para transferencia
@@ -234,6 +316,28 @@ class DatabaseUserServiceTest {
             "El primer usuario debe ser el más reciente (Test User 3)");
     }
 
+    @Test
+    void testStreamAllUsers_shouldWriteOneJsonObjectPerLine() throws Exception {
+        // Arrange: generador NDJSON sobre un StringWriter
+        ObjectMapper mapper = new ObjectMapper();
+        StringWriter out = new StringWriter();
+
+        // Act: escribir todos los usuarios en streaming
+        long count;
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            count = service.streamAllUsers(generator);
+        }
+
+        // Assert: una línea por usuario, en el mismo orden que findAll()
+        String[] lines = out.toString().split("\n");
+        assertEquals(3, count, "Debe escribir 3 usuarios");
+        assertEquals(3, lines.length, "Debe haber una línea por usuario");
+        JsonNode first = mapper.readTree(lines[0]);
+        assertEquals("Test User 3", first.get("name").asText(), "Debe respetar created_at DESC");
+        assertEquals("2024-01-03T12:00:00", first.get("createdAt").asText(), "Fechas en ISO-8601");
+    }
+
     // CE2.c: Advanced Queries
 
     @Test
@@ -323,6 +427,39 @@ class DatabaseUserServiceTest {
         }
     }
 
+    @Test
+    void testSearchUsersPage_withCursor_shouldWalkAllPagesInOrder() {
+        // Arrange: primera página keyset de 2 usuarios
+        UserQueryDto query = new UserQueryDto();
+        query.setLimit(2);
+        query.setCursor("");
+
+        // Act: recorrer las páginas siguiendo nextCursor
+        UserPage first = service.searchUsersPage(query);
+        query.setCursor(first.getNextCursor());
+        UserPage second = service.searchUsersPage(query);
+
+        // Assert: 2 + 1 usuarios, ordenados por nombre y sin repetidos
+        assertEquals(2, first.getUsers().size(), "La primera página debe tener 2 usuarios");
+        assertNotNull(first.getNextCursor(), "Debe haber página siguiente");
+        assertEquals(1, second.getUsers().size(), "La segunda página debe tener 1 usuario");
+        assertNull(second.getNextCursor(), "No debe haber más páginas");
+        assertEquals("Test User 1", first.getUsers().get(0).getName());
+        assertEquals("Test User 2", first.getUsers().get(1).getName());
+        assertEquals("Test User 3", second.getUsers().get(0).getName());
+    }
+
+    @Test
+    void testSearchUsersPage_withInvalidCursor_shouldThrowException() {
+        // Arrange: cursor que no ha generado el servidor
+        UserQueryDto query = new UserQueryDto();
+        query.setCursor("not-a-cursor");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.searchUsersPage(query),
+            "Debe rechazar un cursor inválido");
+    }
+
     // CE2.d: Transactions
 
     @Test
@@ -364,6 +501,76 @@ class DatabaseUserServiceTest {
         assertEquals(0, insertedCount, "Debe retornar 0 para lista vacía");
     }
 
+    @Test
+    void testBatchInsertUsers_withMultiRowValues_shouldReturnGeneratedIds() {
+        // Arrange: 5 usuarios en chunks de 2 (2 + 2 + 1)
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            users.add(batchUser("multi" + i + "@example.com"));
+        }
+        BatchInsertOptions options = new BatchInsertOptions(2,
+                BatchInsertOptions.Mode.MULTI_ROW_VALUES, BatchInsertOptions.CommitMode.ALL_OR_NOTHING);
+
+        // Act: Insertar con INSERT multi-fila
+        BatchInsertResult result = service.batchInsertUsers(users, options);
+
+        // Assert: un id por fila, asignado también a cada User
+        assertFalse(result.hasFailures(), "No debe haber filas con error");
+        assertEquals(5, result.getInsertedCount(), "Deben insertarse 5 usuarios");
+        assertEquals(5, result.getGeneratedIds().size(), "Debe haber un id por fila");
+        for (int i = 0; i < users.size(); i++) {
+            Long id = result.getGeneratedIds().get(i);
+            assertNotNull(id, "Cada fila debe tener id generado");
+            assertEquals(id, users.get(i).getId(), "El id debe asignarse al usuario");
+            assertEquals(users.get(i).getEmail(), service.findUserById(id).getEmail());
+        }
+    }
+
+    @Test
+    void testBatchInsertUsers_perChunkWithDuplicateEmail_shouldKeepValidRows() {
+        // Arrange: la fila 2 repite un email existente
+        List<User> users = new ArrayList<>();
+        users.add(batchUser("chunk1@example.com"));
+        users.add(batchUser("chunk2@example.com"));
+        users.add(batchUser("test1@example.com"));
+        users.add(batchUser("chunk3@example.com"));
+        BatchInsertOptions options = new BatchInsertOptions(2,
+                BatchInsertOptions.Mode.JDBC_BATCH, BatchInsertOptions.CommitMode.PER_CHUNK);
+
+        // Act: Insertar con commit por chunk
+        BatchInsertResult result = service.batchInsertUsers(users, options);
+
+        // Assert: solo falla la fila duplicada; el resto queda confirmado
+        assertTrue(result.isCommitted(), "Los chunks deben confirmarse");
+        assertEquals(List.of(2), result.getFailedRows(), "Solo debe fallar la fila 2");
+        assertEquals(3, result.getInsertedCount(), "Deben insertarse 3 usuarios");
+        assertNull(result.getGeneratedIds().get(2), "La fila fallida no tiene id");
+        assertNotNull(service.findUserById(result.getGeneratedIds().get(3)), "La fila 3 debe existir");
+    }
+
+    @Test
+    void testBatchInsertUsers_withDuplicateEmail_shouldRollbackAll() {
+        // Arrange: el segundo usuario repite un email existente
+        List<User> users = List.of(batchUser("rollback1@example.com"), batchUser("test2@example.com"));
+
+        // Act & Assert: todo o nada
+        assertThrows(RuntimeException.class, () -> service.batchInsertUsers(users),
+                "Debe lanzar excepción si alguna fila falla");
+        assertNull(users.get(0).getId(), "No debe asignarse id tras el rollback");
+        assertNotNull(service.createUser(new UserCreateDto("Again", "rollback1@example.com", "Sales", "Agent")),
+                "La primera fila no debe haber quedado insertada");
+    }
+
+    private User batchUser(String email) {
+        User user = new User();
+        user.setName("Batch " + email);
+        user.setEmail(email);
+        user.setDepartment("Sales");
+        user.setRole("Agent");
+        user.setActive(true);
+        return user;
+    }
+
     // CE2.e: Metadata
 
     @Test
@@ -475,4 +682,9 @@ class DatabaseUserServiceTest {
         assertEquals(hrUsers.size(), hrCount,
             "Debe coincidir con findUsersByDepartment (solo activos)");
     }
+
+    private long preparedStatements() {
+        Map<?, ?> cache = (Map<?, ?>) DatabaseConfig.getPool().getStats().get("statementCache");
+        return (Long) cache.get("hits") + (Long) cache.get("misses");
+    }
 }
@@ -0,0 +1,202 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.User;
+import com.dam.accesodatos.model.UserCreateDto;
+import com.dam.accesodatos.model.UserUpdateDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de los contadores por departamento mantenidos en las escrituras
+ *
+ * Cada test compara executeCountByDepartment() (contadores en memoria) con
+ * un COUNT(*) real en la BD.
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=true"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class DepartmentCountersTest {
+
+    @Autowired
+    private DatabaseUserService service;
+
+    @Autowired
+    private DepartmentCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        // @Sql ha recreado los datos: volver a sincronizar con la BD
+        assertTrue(counters.reconcile(), "La reconciliación inicial debe completarse");
+    }
+
+    @Test
+    void writes_shouldKeepCountersInSyncWithDatabase() throws SQLException {
+        // Arrange: IT tiene 1 activo y HR 1 (test-data.sql)
+        assertEquals(1, service.executeCountByDepartment("IT"));
+
+        // Act: crear, mover, desactivar y borrar usuarios
+        service.createUser(new UserCreateDto("Nuevo", "nuevo@example.com", "IT", "Dev"));
+        UserUpdateDto toIt = new UserUpdateDto();
+        toIt.setDepartment("IT");
+        service.updateUser(2L, toIt);
+        UserUpdateDto reactivate = new UserUpdateDto();
+        reactivate.setActive(true);
+        service.updateUser(3L, reactivate);
+        service.deleteUser(1L);
+
+        // Assert: coinciden con la BD
+        assertEquals(countInDatabase("IT"), service.executeCountByDepartment("IT"), "IT debe coincidir con la BD");
+        assertEquals(countInDatabase("HR"), service.executeCountByDepartment("HR"), "HR debe coincidir con la BD");
+        assertEquals(3, service.executeCountByDepartment("IT"), "IT: 1 + nuevo + movido + reactivado - borrado");
+    }
+
+    @Test
+    void reconcile_afterWriteOutsideService_shouldRepairDrift() throws SQLException {
+        // Arrange: escritura directa en la BD, sin pasar por el servicio
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE users SET active = FALSE WHERE department = 'HR'");
+        }
+        long driftBefore = (Long) counters.getStats().get("driftRepaired");
+
+        // Act
+        boolean compared = counters.reconcile();
+
+        // Assert: la deriva se detecta y se corrige
+        assertTrue(compared, "Sin escrituras en curso la reconciliación debe completarse");
+        assertEquals(0, service.executeCountByDepartment("HR"), "HR debe corregirse a 0");
+        assertEquals(driftBefore + 1, counters.getStats().get("driftRepaired"), "Debe registrarse 1 de deriva");
+    }
+
+    @Test
+    void reconcile_underContinuousWrites_shouldStillCompare() throws Exception {
+        // Arrange: un hilo crea y borra usuarios sin parar
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger writes = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; running.get(); i++) {
+                User created = service.createUser(
+                        new UserCreateDto("Carga " + i, "carga-" + i + "@example.com", "IT", "Dev"));
+                service.deleteUser(created.getId());
+                writes.incrementAndGet();
+            }
+        });
+        writer.start();
+        try {
+            while (writes.get() < 5) {
+                Thread.sleep(1);
+            }
+
+            // Act: reconciliar con escrituras en curso
+            boolean compared = counters.reconcile();
+
+            // Assert: la barrera deja contar sin saltarse la ronda
+            assertTrue(compared, "La reconciliación no debe saltarse por escrituras continuas");
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        assertEquals(countInDatabase("IT"), service.executeCountByDepartment("IT"), "IT debe coincidir con la BD");
+    }
+
+    @Test
+    void updateUser_deactivate_shouldDecrementOldDepartment() throws SQLException {
+        // Arrange: mover a HR y desactivar en la misma llamada
+        UserUpdateDto dto = new UserUpdateDto();
+        dto.setDepartment("HR");
+        dto.setActive(false);
+
+        // Act
+        User updated = service.updateUser(1L, dto);
+
+        // Assert: la respuesta es la fila nueva y los contadores coinciden con la BD
+        assertEquals("HR", updated.getDepartment());
+        assertFalse(updated.getActive());
+        assertEquals("Test User 1", updated.getName(), "Los campos sin cambios se conservan");
+        assertEquals(countInDatabase("IT"), service.executeCountByDepartment("IT"), "IT debe coincidir con la BD");
+        assertEquals(countInDatabase("HR"), service.executeCountByDepartment("HR"), "HR debe coincidir con la BD");
+    }
+
+    @Test
+    void boundTransaction_rolledBack_shouldNotChangeCounters() throws SQLException {
+        // Arrange: transacción ligada al hilo, como run_pipeline o el calentamiento
+        long itBefore = counters.get("IT");
+
+        // Act: se crea un usuario dentro y se deshace
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            BoundConnection bound = DatabaseConfig.bindConnection(conn, true);
+            try {
+                service.createUser(new UserCreateDto("Efímero", "efimero@example.com", "IT", "Dev"));
+                // Assert: sin commit real los contadores no cambian
+                assertEquals(itBefore, counters.get("IT"), "El cambio debe esperar al commit real");
+            } finally {
+                DatabaseConfig.unbindConnection();
+                conn.rollback();
+                bound.discardAfterCommit();
+                conn.setAutoCommit(true);
+            }
+        }
+
+        // Assert
+        assertEquals(itBefore, counters.get("IT"));
+        assertEquals(countInDatabase("IT"), service.executeCountByDepartment("IT"));
+    }
+
+    @Test
+    void boundTransaction_committed_shouldApplyCountersAfterCommit() throws SQLException {
+        // Arrange
+        long hrBefore = counters.get("HR");
+
+        // Act
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            BoundConnection bound = DatabaseConfig.bindConnection(conn, true);
+            try {
+                service.createUser(new UserCreateDto("Confirmado", "confirmado@example.com", "HR", "Dev"));
+            } finally {
+                DatabaseConfig.unbindConnection();
+            }
+            conn.commit();
+            bound.runAfterCommit();
+            conn.setAutoCommit(true);
+        }
+
+        // Assert
+        assertEquals(hrBefore + 1, counters.get("HR"));
+        assertEquals(countInDatabase("HR"), service.executeCountByDepartment("HR"));
+    }
+
+    private int countInDatabase(String department) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM users WHERE department = ? AND active = TRUE")) {
+            pstmt.setString(1, department);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.dam.accesodatos.ra2;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests del agrupador de llamadas idénticas simultáneas
+ */
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    void execute_withConcurrentEqualKeys_shouldRunLoaderOnce() throws Exception {
+        // Arrange: una consulta "lenta" que espera a que la liberemos
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Key key = new SingleFlight.Key("findUsersByDepartment", "IT");
+
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute(key, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return new ArrayList<>(List.of("Ana", "Luis"));
+                }, ArrayList::new));
+        waitUntil(() -> singleFlight.getInFlight() == 1);
+
+        // Act: segunda llamada idéntica mientras la primera sigue en curso
+        CompletableFuture<List<String>> second = CompletableFuture.supplyAsync(() ->
+                singleFlight.execute(key, () -> {
+                    loads.incrementAndGet();
+                    return List.of();
+                }, ArrayList::new));
+        waitUntil(() -> singleFlight.getCoalesced() == 1);
+        release.countDown();
+
+        // Assert: una sola ejecución, mismo resultado y listas distintas
+        assertEquals(List.of("Ana", "Luis"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("Ana", "Luis"), second.get(5, TimeUnit.SECONDS));
+        assertNotSame(first.get(), second.get(), "Cada llamada debe recibir su propia lista");
+        assertEquals(1, loads.get(), "La consulta debe ejecutarse una sola vez");
+        assertEquals(0, singleFlight.getInFlight(), "La clave debe liberarse al terminar");
+    }
+
+    @Test
+    void execute_afterCompletion_shouldRunAgain() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        SingleFlight.Key key = new SingleFlight.Key("findAll", null);
+
+        // Act: dos llamadas secuenciales
+        singleFlight.execute(key, loads::incrementAndGet, SingleFlight.Shared.same());
+        singleFlight.execute(key, loads::incrementAndGet, SingleFlight.Shared.same());
+
+        // Assert: sin solapamiento no se agrupa nada
+        assertEquals(2, loads.get(), "Cada llamada secuencial debe ejecutarse");
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void execute_whenLoaderFails_shouldPropagateException() {
+        // Arrange
+        SingleFlight.Key key = new SingleFlight.Key("searchUsers", "x");
+
+        // Act & Assert
+        RuntimeException error = assertThrows(RuntimeException.class, () ->
+                singleFlight.execute(key, () -> {
+                    throw new RuntimeException("Error de BD");
+                }, SingleFlight.Shared.same()));
+        assertEquals("Error de BD", error.getMessage());
+        assertEquals(0, singleFlight.getInFlight(), "La clave debe liberarse tras el error");
+    }
+
+    @Test
+    void execute_whenInFlightCallHangs_shouldStopWaitingAndLoad() throws Exception {
+        // Arrange: espera máxima corta y una primera llamada que no termina
+        SingleFlight bounded = new SingleFlight(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Key key = new SingleFlight.Key("findUserById", 1L);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() ->
+                bounded.execute(key, () -> {
+                    await(release);
+                    return "colgada";
+                }, SingleFlight.Shared.same()));
+        waitUntil(() -> bounded.getInFlight() == 1);
+
+        // Act: la segunda deja de esperar y consulta por su cuenta
+        String second = bounded.execute(key, () -> "propia", SingleFlight.Shared.same());
+
+        // Assert
+        assertEquals("propia", second);
+        assertEquals(1, bounded.getWaitTimeouts());
+        release.countDown();
+        assertEquals("colgada", first.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Tiempo de espera agotado");
+            Thread.sleep(5);
+        }
+    }
+}
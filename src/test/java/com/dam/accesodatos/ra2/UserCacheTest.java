@@ -0,0 +1,118 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.BoundConnection;
+import com.dam.accesodatos.config.DatabaseConfig;
+import com.dam.accesodatos.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la caché de usuarios (sin Spring ni base de datos)
+ */
+class UserCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private UserCache newCache(int maxSize) {
+        return new UserCache(true, maxSize, Duration.ofSeconds(60), now::get);
+    }
+
+    private User user(long id, String name) {
+        return new User(id, name, name.toLowerCase() + "@example.com", "IT", "Developer");
+    }
+
+    @Test
+    void get_afterPut_shouldReturnCopy() {
+        // Arrange
+        UserCache cache = newCache(100);
+        cache.putIfUnchanged(1L, user(1L, "Ana"), cache.stamp(1L));
+
+        // Act: modificar el objeto devuelto
+        User first = cache.get(1L);
+        first.setName("Modificado");
+
+        // Assert: la caché no se ve afectada
+        assertEquals("Ana", cache.get(1L).getName(), "La caché debe guardar copias");
+        assertEquals(2L, cache.getStats().get("hits"), "Debe haber 2 aciertos");
+    }
+
+    @Test
+    void putIfUnchanged_afterInvalidate_shouldIgnoreStaleValue() {
+        // Arrange: un lector toma el stamp y, mientras lee de la BD, otro hilo escribe
+        UserCache cache = newCache(100);
+        long stamp = cache.stamp(1L);
+        cache.invalidate(1L);
+
+        // Act: el lector intenta cachear el valor leído antes de la escritura
+        cache.putIfUnchanged(1L, user(1L, "Antiguo"), stamp);
+
+        // Assert
+        assertNull(cache.get(1L), "No debe cachearse un valor anterior a la invalidación");
+    }
+
+    @Test
+    void invalidate_inBoundTransaction_shouldEvictAgainAfterCommit() {
+        // Arrange: transacción ligada al hilo (como run_pipeline)
+        UserCache cache = newCache(100);
+        BoundConnection bound = DatabaseConfig.bindConnection(null, true);
+        try {
+            cache.invalidate(1L);
+            // Antes del commit real otro lector cachea la versión anterior
+            cache.putIfUnchanged(1L, user(1L, "Antiguo"), cache.stamp(1L));
+        } finally {
+            DatabaseConfig.unbindConnection();
+        }
+
+        // Act
+        bound.runAfterCommit();
+
+        // Assert
+        assertNull(cache.get(1L), "Tras el commit real no debe quedar la versión anterior");
+    }
+
+    @Test
+    void get_afterTtl_shouldExpire() {
+        // Arrange
+        UserCache cache = newCache(100);
+        cache.putIfUnchanged(1L, user(1L, "Ana"), cache.stamp(1L));
+
+        // Act: avanzar el reloj más allá del TTL
+        now.addAndGet(Duration.ofSeconds(61).toNanos());
+
+        // Assert
+        assertNull(cache.get(1L), "La entrada debe caducar");
+        assertEquals(1L, cache.getStats().get("expirations"), "Debe contarse la caducidad");
+    }
+
+    @Test
+    void putIfUnchanged_beyondMaxSize_shouldEvictAndStayBounded() {
+        // Arrange: tamaño mínimo (1 entrada por segmento)
+        UserCache cache = newCache(1);
+
+        // Act: insertar muchos ids
+        for (long id = 1; id <= 1000; id++) {
+            cache.putIfUnchanged(id, user(id, "U" + id), cache.stamp(id));
+        }
+
+        // Assert: como mucho una entrada por segmento y la última sigue presente
+        assertTrue(cache.size() <= 16, "La caché no debe superar su tamaño máximo");
+        assertTrue((Long) cache.getStats().get("evictions") >= 984L, "Debe haber expulsiones LRU");
+        assertEquals("U1000", cache.get(1000L).getName(), "La entrada más reciente debe seguir en caché");
+    }
+
+    @Test
+    void disabledCache_shouldNeverStoreUsers() {
+        // Arrange
+        UserCache cache = new UserCache(false, 100, Duration.ofSeconds(60), now::get);
+
+        // Act
+        cache.putIfUnchanged(1L, user(1L, "Ana"), cache.stamp(1L));
+
+        // Assert
+        assertNull(cache.get(1L), "Con la caché desactivada siempre se va a la BD");
+    }
+}
@@ -0,0 +1,125 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.config.TestDataSourceConfig;
+import com.dam.accesodatos.model.BatchInsertOptions.CommitMode;
+import com.dam.accesodatos.model.IngestResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de la inserción en streaming (lector + escritor con cola acotada)
+ */
+@SpringBootTest(properties = {
+    "ra2.cache.users.enabled=false",
+    "ra2.counters.departments.enabled=false",
+    // Cola de un chunk: el lector tiene que esperar al escritor
+    "ra2.jdbc.ingest.queue-chunks=1"
+})
+@Import(TestDataSourceConfig.class)
+@Sql(scripts = {"/test-schema.sql", "/test-data.sql"},
+     executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class UserIngestServiceTest {
+
+    @Autowired
+    private UserIngestService ingestService;
+
+    @Autowired
+    private DatabaseUserService databaseUserService;
+
+    @Test
+    void ingest_shouldInsertEveryUserInChunks() {
+        // Arrange: 25 usuarios en chunks de 4
+        int before = databaseUserService.findAll().size();
+
+        // Act
+        IngestResult result = ingestService.ingest(ndjson(25, -1), UserStreamReader.Format.NDJSON,
+                4, CommitMode.ALL_OR_NOTHING);
+
+        // Assert
+        assertFalse(result.hasFailures(), result.toString());
+        assertEquals(25, result.getRowsRead());
+        assertEquals(25, result.getInsertedCount());
+        assertEquals(7, result.getChunks());
+        assertEquals(before + 25, databaseUserService.findAll().size());
+    }
+
+    @Test
+    void ingest_allOrNothing_withDuplicateEmail_shouldRollBackEverything() {
+        // Arrange: la fila 10 repite el email de test1
+        int before = databaseUserService.findAll().size();
+
+        // Act
+        IngestResult result = ingestService.ingest(ndjson(25, 10), UserStreamReader.Format.NDJSON,
+                4, CommitMode.ALL_OR_NOTHING);
+
+        // Assert
+        assertFalse(result.isCommitted());
+        assertEquals(0, result.getInsertedCount());
+        assertTrue(result.getFailedRows().contains(10L));
+        assertEquals(before, databaseUserService.findAll().size());
+    }
+
+    @Test
+    void ingest_perChunk_withDuplicateEmail_shouldCommitTheOtherRows() {
+        // Arrange
+        int before = databaseUserService.findAll().size();
+
+        // Act
+        IngestResult result = ingestService.ingest(ndjson(25, 10), UserStreamReader.Format.NDJSON,
+                4, CommitMode.PER_CHUNK);
+
+        // Assert
+        assertTrue(result.isCommitted());
+        assertEquals(24, result.getInsertedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(before + 24, databaseUserService.findAll().size());
+    }
+
+    @Test
+    void ingest_withMalformedBody_shouldRollBackAndReportInvalidInput() {
+        // Arrange: array JSON cortado tras 9 usuarios válidos
+        int before = databaseUserService.findAll().size();
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 9; i++) {
+            body.append("{\"name\": \"U").append(i).append("\", \"email\": \"ingest-").append(i)
+                    .append("@example.com\", \"department\": \"IT\", \"role\": \"Developer\"},");
+        }
+        body.append("{\"name\": ");
+
+        // Act
+        IngestResult result = ingestService.ingest(stream(body.toString()), UserStreamReader.Format.JSON,
+                4, CommitMode.ALL_OR_NOTHING);
+
+        // Assert
+        assertTrue(result.isInvalidInput());
+        assertFalse(result.isCommitted());
+        assertEquals(9, result.getRowsRead());
+        assertEquals(before, databaseUserService.findAll().size());
+    }
+
+    /**
+     * count usuarios en NDJSON; la fila duplicate (si >= 0) usa un email existente
+     */
+    private InputStream ndjson(int count, int duplicate) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String email = i == duplicate ? "test1@example.com" : "ingest-" + i + "@example.com";
+            body.append("{\"name\": \"Ingest ").append(i).append("\", \"email\": \"").append(email)
+                    .append("\", \"department\": \"IT\", \"role\": \"Developer\", \"active\": true}\n");
+        }
+        return stream(body.toString());
+    }
+
+    private InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,115 @@
+package com.dam.accesodatos.ra2;
+
+import com.dam.accesodatos.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de UserStreamReader (sin Spring ni BD)
+ */
+class UserStreamReaderTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+
+    @Test
+    void next_withJsonArray_shouldReadEveryUser() throws IOException {
+        // Arrange
+        String body = "[{\"name\": \"A\", \"email\": \"a@example.com\", \"department\": \"IT\"},"
+                + " {\"name\": \"B\", \"email\": \"b@example.com\", \"active\": false}]";
+
+        // Act
+        List<User> users = readAll(body, UserStreamReader.Format.JSON);
+
+        // Assert
+        assertEquals(2, users.size());
+        assertEquals("a@example.com", users.get(0).getEmail());
+        assertEquals("IT", users.get(0).getDepartment());
+        assertFalse(users.get(1).getActive());
+    }
+
+    @Test
+    void next_withUsersField_shouldSkipOtherFields() throws IOException {
+        // Arrange: mismo cuerpo que /mcp/batch_insert_users, con opciones delante
+        String body = "{\"chunkSize\": 10, \"extra\": {\"a\": [1, 2]},"
+                + " \"users\": [{\"name\": \"A\", \"email\": \"a@example.com\"}]}";
+
+        // Act
+        List<User> users = readAll(body, UserStreamReader.Format.JSON);
+
+        // Assert
+        assertEquals(1, users.size());
+        assertEquals("A", users.get(0).getName());
+    }
+
+    @Test
+    void next_withNdjson_shouldReadOneUserPerLine() throws IOException {
+        // Arrange
+        String body = "{\"name\": \"A\", \"email\": \"a@example.com\"}\n"
+                + "{\"name\": \"B\", \"email\": \"b@example.com\"}\n"
+                + "{\"name\": \"C\", \"email\": \"c@example.com\"}\n";
+
+        // Act
+        List<User> users = readAll(body, UserStreamReader.Format.NDJSON);
+
+        // Assert
+        assertEquals(3, users.size());
+        assertEquals("c@example.com", users.get(2).getEmail());
+    }
+
+    @Test
+    void next_withEmptyArray_shouldReturnNull() throws IOException {
+        // Act + Assert
+        assertTrue(readAll("[]", UserStreamReader.Format.JSON).isEmpty());
+        assertTrue(readAll("", UserStreamReader.Format.NDJSON).isEmpty());
+    }
+
+    @Test
+    void next_withMalformedBody_shouldFailAfterValidUsers() throws IOException {
+        // Arrange: el segundo usuario está cortado
+        String body = "[{\"name\": \"A\", \"email\": \"a@example.com\"}, {\"name\": ";
+
+        try (UserStreamReader reader = reader(body, UserStreamReader.Format.JSON)) {
+            // Act + Assert: el primero se lee antes de llegar al error
+            assertNotNull(reader.next());
+            assertThrows(IOException.class, reader::next);
+            assertEquals(1, reader.getRowsRead());
+        }
+    }
+
+    @Test
+    void next_withoutArray_shouldFail() throws IOException {
+        // Arrange
+        try (UserStreamReader noArray = reader("{\"name\": \"A\"}", UserStreamReader.Format.JSON);
+             UserStreamReader notObject = reader("[1, 2]", UserStreamReader.Format.JSON)) {
+            // Act + Assert
+            assertThrows(IOException.class, noArray::next);
+            assertThrows(IOException.class, notObject::next);
+        }
+    }
+
+    private UserStreamReader reader(String body, UserStreamReader.Format format) throws IOException {
+        return new UserStreamReader(objectMapper,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private List<User> readAll(String body, UserStreamReader.Format format) throws IOException {
+        List<User> users = new ArrayList<>();
+        try (UserStreamReader reader = reader(body, format)) {
+            User user;
+            while ((user = reader.next()) != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+}
@@ -19,6 +19,8 @@ CREATE INDEX idx_users_department ON users(department);
 CREATE INDEX idx_users_role ON users(role);
 CREATE INDEX idx_users_active ON users(active);
 CREATE INDEX idx_users_email ON users(email);
+CREATE INDEX idx_users_name_id ON users(name, id);
+CREATE INDEX idx_users_created_at_id ON users(created_at DESC, id);
 
 CREATE TABLE user_statistics (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY (START WITH 1) PRIMARY KEY,
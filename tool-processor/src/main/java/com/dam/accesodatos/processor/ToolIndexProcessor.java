@@ -0,0 +1,209 @@
+package com.dam.accesodatos.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Genera en compilación el índice de herramientas MCP (GeneratedToolIndex).
+ *
+ * Por cada método anotado con @Tool escribe un ToolDescriptor con el
+ * nombre y la descripción de la herramienta, el tipo que la declara, el
+ * nombre del método y los tipos y nombres de sus parámetros. Con el
+ * índice, McpToolRegistry busca cada método directamente
+ * (Class.getMethod) en lugar de recorrer getMethods() y leer las
+ * anotaciones por reflexión en cada arranque.
+ *
+ * Los errores (herramienta duplicada, método no público o estático...)
+ * se detectan al compilar, no al arrancar.
+ *
+ * Orden del índice: tipos por nombre completo y, dentro de cada tipo, el
+ * orden de los métodos en el código fuente. Así el fichero generado es
+ * siempre el mismo para el mismo código.
+ */
+@SupportedAnnotationTypes(ToolIndexProcessor.TOOL_ANNOTATION)
+public class ToolIndexProcessor extends AbstractProcessor {
+
+    static final String TOOL_ANNOTATION = "org.springframework.ai.mcp.server.annotation.Tool";
+
+    static final String INDEX_PACKAGE = "com.dam.accesodatos.mcp";
+
+    static final String INDEX_CLASS = "GeneratedToolIndex";
+
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (generated || annotations.isEmpty() || roundEnv.processingOver()) {
+            return false;
+        }
+
+        // Tipos que declaran herramientas, ordenados por nombre
+        Map<String, TypeElement> types = new TreeMap<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = (TypeElement) element.getEnclosingElement();
+                types.put(type.getQualifiedName().toString(), type);
+            }
+        }
+
+        List<String> entries = new ArrayList<>();
+        Map<String, ExecutableElement> names = new HashMap<>();
+        for (TypeElement type : types.values()) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                AnnotationMirror tool = toolAnnotation(method);
+                if (tool == null || !isValid(type, method)) {
+                    continue;
+                }
+                String name = stringValue(tool, "name");
+                if (name.isEmpty()) {
+                    name = method.getSimpleName().toString();
+                }
+                ExecutableElement previous = names.putIfAbsent(name, method);
+                if (previous != null) {
+                    error(method, "Herramienta MCP duplicada '" + name + "' (ya declarada en "
+                            + previous.getEnclosingElement() + "." + previous.getSimpleName() + ")");
+                    continue;
+                }
+                entries.add(descriptor(name, stringValue(tool, "description"), type, method));
+            }
+        }
+
+        writeIndex(entries, types.values());
+        generated = true;
+        return false;
+    }
+
+    private AnnotationMirror toolAnnotation(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(TOOL_ANNOTATION)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * El registro llama al método con Class.getMethod sobre el tipo que lo
+     * declara: tiene que ser público, de instancia, y el tipo accesible
+     */
+    private boolean isValid(TypeElement type, ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+            error(method, "Un método @Tool debe ser público y no estático");
+            return false;
+        }
+        if (!type.getModifiers().contains(Modifier.PUBLIC)
+                || (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)
+                    && type.getKind() != ElementKind.INTERFACE)) {
+            error(method, "El tipo que declara un método @Tool debe ser público y de primer nivel o estático");
+            return false;
+        }
+        return true;
+    }
+
+    private String stringValue(AnnotationMirror mirror, String attribute) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(attribute)) {
+                return (String) entry.getValue().getValue();
+            }
+        }
+        return "";
+    }
+
+    private String descriptor(String name, String description, TypeElement type, ExecutableElement method) {
+        List<String> parameterTypes = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            String erasure = processingEnv.getTypeUtils().erasure(parameter.asType()).toString();
+            parameterTypes.add(erasure + ".class");
+            parameterNames.add(literal(parameter.getSimpleName().toString()));
+        }
+        return "            new ToolDescriptor(" + literal(name) + ",\n"
+                + "                    " + literal(description) + ",\n"
+                + "                    " + type.getQualifiedName() + ".class, " + literal(method.getSimpleName().toString()) + ",\n"
+                + "                    List.of(" + String.join(", ", parameterTypes) + "),\n"
+                + "                    List.of(" + String.join(", ", parameterNames) + "))";
+    }
+
+    private void writeIndex(List<String> entries, Collection<TypeElement> originatingTypes) {
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(INDEX_PACKAGE + "." + INDEX_CLASS,
+                    originatingTypes.toArray(new Element[0]));
+            try (Writer out = file.openWriter()) {
+                out.write("package " + INDEX_PACKAGE + ";\n\n");
+                out.write("import java.util.List;\n\n");
+                out.write("/**\n * Herramientas @Tool encontradas al compilar. Generado por ToolIndexProcessor: no editar.\n */\n");
+                out.write("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")\n");
+                out.write("public final class " + INDEX_CLASS + " {\n\n");
+                out.write("    public static final List<ToolDescriptor> TOOLS = List.of(\n");
+                out.write(String.join(",\n", entries));
+                out.write(");\n\n");
+                out.write("    private " + INDEX_CLASS + "() {\n    }\n}\n");
+            }
+        } catch (IOException e) {
+            messager().printMessage(Diagnostic.Kind.ERROR, "No se pudo generar " + INDEX_CLASS + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Literal Java de una cadena; lo que no es ASCII va como \\uXXXX para
+     * no depender de la codificación del fichero generado
+     */
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        messager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private Messager messager() {
+        return processingEnv.getMessager();
+    }
+}